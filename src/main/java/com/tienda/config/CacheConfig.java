@@ -0,0 +1,21 @@
+package com.tienda.config;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+
+/**
+ * Hibernate usa el mismo CacheManager JCache que Spring (configurado desde ehcache.xml),
+ * así las regiones del segundo nivel y sus políticas de expiración están en un solo lugar.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateSecondLevelCacheCustomizer(CacheManager cacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+}
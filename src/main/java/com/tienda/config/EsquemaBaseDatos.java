@@ -0,0 +1,209 @@
+package com.tienda.config;
+
+import com.tienda.repository.BusquedaTextoRepository.TablaBusqueda;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Todo el esquema que no declara JPA (tablas de apoyo, índices parciales, triggers y búsqueda
+ * de texto), creado en un solo lugar y en orden. Corre cuando ya existen los singletons y las
+ * tablas de Hibernate, pero antes de que arranque el servidor web: ninguna petición ni tarea de
+ * arranque ve el esquema a medias. Cada sentencia es idempotente.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EsquemaBaseDatos implements SmartInitializingSingleton {
+
+    // Clave del bloqueo consultivo que serializa la secuencia del registro de cambios del catálogo
+    private static final long CLAVE_BLOQUEO_CATALOGO = 7245001L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean busquedaTextoDisponible;
+    private volatile boolean registroCambiosDisponible;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        prepararLibroCajas();
+        prepararArbolCategorias();
+        prepararClientes();
+        prepararIndiceCajaAbiertaPorUsuario();
+        // Opcionales: si la base no los admite, las funciones que dependen de ellos se degradan
+        prepararRegistroCambiosCatalogo();
+        prepararBusquedaTexto();
+        log.info("Esquema preparado (búsqueda de texto: {}, registro de cambios del catálogo: {})",
+                busquedaTextoDisponible, registroCambiosDisponible);
+    }
+
+    public boolean isBusquedaTextoDisponible() {
+        return busquedaTextoDisponible;
+    }
+
+    public boolean isRegistroCambiosDisponible() {
+        return registroCambiosDisponible;
+    }
+
+    // Libro de movimientos, saldo corriente y resumen mensual de cierres
+    private void prepararLibroCajas() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS caja_saldos (" +
+                "caja_id bigint PRIMARY KEY REFERENCES cajas (id) ON DELETE CASCADE, " +
+                "sesion integer NOT NULL, saldo numeric(15,2) NOT NULL, abierta_en timestamp NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS caja_movimientos (" +
+                "id bigserial PRIMARY KEY, " +
+                "caja_id bigint NOT NULL REFERENCES cajas (id) ON DELETE CASCADE, " +
+                "sesion integer NOT NULL, tipo varchar(20) NOT NULL, forma_pago varchar(30) NOT NULL, " +
+                "monto numeric(15,2) NOT NULL, saldo numeric(15,2) NOT NULL, venta_id bigint, usuario_id bigint, " +
+                "concepto varchar(255), fecha timestamp NOT NULL DEFAULT now())");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS caja_movimientos_sesion_idx " +
+                "ON caja_movimientos (caja_id, sesion, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS caja_movimientos_fecha_idx " +
+                "ON caja_movimientos (caja_id, fecha)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS cierres_caja_caja_idx ON cierres_caja (caja_id, creado_en)");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cierres_caja_mensual (" +
+                "mes date NOT NULL, caja_id bigint NOT NULL REFERENCES cajas (id) ON DELETE CASCADE, " +
+                "estado varchar(50) NOT NULL, cierres integer NOT NULL, total_ventas numeric(15,2) NOT NULL, " +
+                "total_ingresos numeric(15,2) NOT NULL, total_egresos numeric(15,2) NOT NULL, " +
+                "suma_diferencias numeric(15,2) NOT NULL, PRIMARY KEY (mes, caja_id, estado))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS cierres_caja_fecha_idx ON cierres_caja (fecha_cierre)");
+    }
+
+    // Tabla de clausura del árbol de categorías
+    private void prepararArbolCategorias() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS categoria_arbol (" +
+                "ancestro_id bigint NOT NULL REFERENCES categorias (id) ON DELETE CASCADE, " +
+                "descendiente_id bigint NOT NULL REFERENCES categorias (id) ON DELETE CASCADE, " +
+                "profundidad integer NOT NULL, " +
+                "PRIMARY KEY (ancestro_id, descendiente_id))");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS categoria_arbol_descendiente_idx " +
+                "ON categoria_arbol (descendiente_id, ancestro_id)");
+    }
+
+    // Métricas, segmentos, cohortes y productos comprados por cliente
+    private void prepararClientes() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_metricas (" +
+                "cliente_id bigint PRIMARY KEY REFERENCES clientes (id) ON DELETE CASCADE, " +
+                "compras integer NOT NULL, total numeric(15,2) NOT NULL, " +
+                "ticket_promedio numeric(15,2) NOT NULL, " +
+                "primera_compra timestamp, ultima_compra timestamp, " +
+                "frecuencia_dias numeric(10,2), actualizado timestamp NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_metricas_archivo (" +
+                "cliente_id bigint PRIMARY KEY REFERENCES clientes (id) ON DELETE CASCADE, " +
+                "compras integer NOT NULL, total numeric(15,2) NOT NULL, " +
+                "primera_compra timestamp NOT NULL, ultima_compra timestamp NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_segmentos (" +
+                "cliente_id bigint PRIMARY KEY REFERENCES clientes (id) ON DELETE CASCADE, " +
+                "recencia smallint NOT NULL, frecuencia smallint NOT NULL, monetario smallint NOT NULL, " +
+                "segmento varchar(30) NOT NULL, calculado timestamp NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS cliente_segmentos_segmento_idx " +
+                "ON cliente_segmentos (segmento, cliente_id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ventas_cliente_fecha_idx " +
+                "ON ventas (cliente_id, fecha_emision, id) WHERE cliente_id IS NOT NULL");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_cohortes (" +
+                "cohorte date NOT NULL, mes date NOT NULL, clientes integer NOT NULL, " +
+                "ventas integer NOT NULL, total numeric(15,2) NOT NULL, PRIMARY KEY (cohorte, mes))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_cohortes_estado (" +
+                "id integer PRIMARY KEY, cerrado_hasta date)");
+        jdbcTemplate.execute("INSERT INTO cliente_cohortes_estado (id) VALUES (1) ON CONFLICT DO NOTHING");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ventas_fecha_emision_idx ON ventas (fecha_emision)");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS cliente_productos (" +
+                "cliente_id bigint NOT NULL REFERENCES clientes (id) ON DELETE CASCADE, " +
+                "producto_id bigint NOT NULL REFERENCES productos (id) ON DELETE CASCADE, " +
+                "veces integer NOT NULL, unidades numeric(15,3) NOT NULL, ultima_compra timestamp NOT NULL, " +
+                "PRIMARY KEY (cliente_id, producto_id))");
+    }
+
+    private void prepararIndiceCajaAbiertaPorUsuario() {
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS cajas_usuario_abierta_uidx " +
+                    "ON cajas (usuario_asignado_id) WHERE estado = 'ABIERTA'");
+        } catch (DataAccessException e) {
+            // Datos previos con un usuario en dos cajas abiertas: se avisa y se sigue sin el índice
+            log.warn("No se pudo crear el índice de una caja abierta por usuario: {}", e.getMessage());
+        }
+    }
+
+    // Tablas, función y triggers diferidos del registro de cambios del catálogo
+    private void prepararRegistroCambiosCatalogo() {
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS catalogo_cambios (" +
+                    "secuencia bigserial PRIMARY KEY, tabla varchar(20) NOT NULL, " +
+                    "registro_id bigint NOT NULL, fecha timestamp NOT NULL DEFAULT clock_timestamp())");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS catalogo_cambios_estado (" +
+                    "id integer PRIMARY KEY, secuencia_purgada bigint NOT NULL DEFAULT 0)");
+            jdbcTemplate.execute("INSERT INTO catalogo_cambios_estado (id) VALUES (1) ON CONFLICT DO NOTHING");
+
+            jdbcTemplate.execute("CREATE OR REPLACE FUNCTION catalogo_registrar_cambio() RETURNS trigger " +
+                    "LANGUAGE plpgsql AS $$ BEGIN " +
+                    "PERFORM pg_advisory_xact_lock(" + CLAVE_BLOQUEO_CATALOGO + "); " +
+                    "INSERT INTO catalogo_cambios (tabla, registro_id) VALUES (TG_ARGV[0], " +
+                    "CASE WHEN TG_OP = 'DELETE' THEN OLD.id ELSE NEW.id END); " +
+                    "RETURN NULL; END $$");
+
+            crearTriggerCatalogo("productos_catalogo_alta_baja", "INSERT OR DELETE ON productos", null, "producto");
+            crearTriggerCatalogo("productos_catalogo_modificacion", "UPDATE ON productos",
+                    "OLD.codigo IS DISTINCT FROM NEW.codigo OR OLD.codigo_barras IS DISTINCT FROM NEW.codigo_barras " +
+                    "OR OLD.nombre IS DISTINCT FROM NEW.nombre OR OLD.marca IS DISTINCT FROM NEW.marca " +
+                    "OR OLD.categoria_id IS DISTINCT FROM NEW.categoria_id " +
+                    "OR OLD.unidad_medida IS DISTINCT FROM NEW.unidad_medida " +
+                    "OR OLD.permite_decimal IS DISTINCT FROM NEW.permite_decimal " +
+                    "OR OLD.tipo_producto IS DISTINCT FROM NEW.tipo_producto " +
+                    "OR OLD.precio_venta IS DISTINCT FROM NEW.precio_venta " +
+                    "OR OLD.precio_venta2 IS DISTINCT FROM NEW.precio_venta2 " +
+                    "OR OLD.precio_venta3 IS DISTINCT FROM NEW.precio_venta3 " +
+                    "OR OLD.estado IS DISTINCT FROM NEW.estado",
+                    "producto");
+            crearTriggerCatalogo("categorias_catalogo_cambio", "INSERT OR UPDATE OR DELETE ON categorias", null,
+                    "categoria");
+            registroCambiosDisponible = true;
+        } catch (DataAccessException e) {
+            log.warn("Registro de cambios del catálogo no disponible, el feed enviará siempre el catálogo completo: {}",
+                    e.getMessage());
+        }
+    }
+
+    // Extensiones, función sin tildes, columnas tsvector generadas e índices GIN y de trigramas
+    private void prepararBusquedaTexto() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS unaccent");
+            jdbcTemplate.execute("CREATE OR REPLACE FUNCTION tienda_unaccent(text) RETURNS text " +
+                    "LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT AS " +
+                    "$$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$");
+
+            for (TablaBusqueda t : TablaBusqueda.values()) {
+                jdbcTemplate.execute("ALTER TABLE " + t.getTabla() + " ADD COLUMN IF NOT EXISTS busqueda tsvector " +
+                        "GENERATED ALWAYS AS (" + t.getExpresionVector() + ") STORED");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + t.getTabla() + "_busqueda_gin ON " +
+                        t.getTabla() + " USING gin (busqueda)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + t.getTabla() + "_nombre_trgm ON " +
+                        t.getTabla() + " USING gin (" + t.nombreNormalizado() + " gin_trgm_ops)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + t.getTabla() + "_codigo_trgm ON " +
+                        t.getTabla() + " USING gin (lower(" + t.getColumnaCodigo() + ") gin_trgm_ops)");
+            }
+            busquedaTextoDisponible = true;
+        } catch (DataAccessException e) {
+            log.warn("Búsqueda de texto completo no disponible, se usan consultas LIKE: {}", e.getMessage());
+        }
+    }
+
+    // CREATE CONSTRAINT TRIGGER no admite OR REPLACE: se crea solo si no existe
+    private void crearTriggerCatalogo(String nombre, String evento, String condicion, String tabla) {
+        Integer existentes = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_trigger WHERE tgname = ? AND NOT tgisinternal", Integer.class, nombre);
+        if (existentes != null && existentes > 0) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE CONSTRAINT TRIGGER " + nombre + " AFTER " + evento +
+                " DEFERRABLE INITIALLY DEFERRED FOR EACH ROW" +
+                (condicion != null ? " WHEN (" + condicion + ")" : "") +
+                " EXECUTE PROCEDURE catalogo_registrar_cambio('" + tabla + "')");
+    }
+}
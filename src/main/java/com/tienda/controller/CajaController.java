@@ -232,8 +232,15 @@ public class CajaController {
     public ResponseEntity<Void> actualizarSaldoCaja(
             @Parameter(description = "ID de la caja", required = true) @PathVariable Long id,
             @Parameter(description = "Monto a actualizar", required = true) @RequestParam BigDecimal monto,
-            @Parameter(description = "Tipo de operación (VENTA, EGRESO)", required = true) @RequestParam String tipoOperacion) {
+            @Parameter(description = "Tipo de operación (VENTA, INGRESO, EGRESO)", required = true) @RequestParam String tipoOperacion) {
         cajaService.actualizarSaldoCaja(id, monto, tipoOperacion);
         return ResponseEntity.ok().build();
     }
+
+    @Operation(summary = "Obtener movimientos de la sesión", description = "Libro de movimientos de la sesión actual de la caja con sus totales por forma de pago")
+    @GetMapping("/{id}/movimientos")
+    public ResponseEntity<Map<String, Object>> obtenerMovimientosSesion(
+            @Parameter(description = "ID de la caja", required = true) @PathVariable Long id) {
+        return ResponseEntity.ok(cajaService.obtenerMovimientosSesion(id));
+    }
 }
\ No newline at end of file
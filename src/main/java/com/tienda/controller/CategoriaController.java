@@ -95,6 +95,12 @@ public class CategoriaController {
         return ResponseEntity.ok(categoriaService.obtenerCategoriasConProductos());
     }
 
+    @Operation(summary = "Obtener productos y valor de stock por categoría, incluidas sus subcategorías")
+    @GetMapping("/resumen")
+    public ResponseEntity<List<Map<String, Object>>> obtenerResumenCategorias() {
+        return ResponseEntity.ok(categoriaService.obtenerResumenCategorias());
+    }
+
     @Operation(summary = "Verificar si existe categoría por nombre")
     @GetMapping("/existe-nombre")
     public ResponseEntity<Boolean> existeCategoriaPorNombre(@RequestParam String nombre) {
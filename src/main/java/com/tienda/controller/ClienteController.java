@@ -4,7 +4,9 @@ import com.tienda.dto.request.ClienteRequest;
 import com.tienda.dto.response.ClienteResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.model.Cliente;
+import com.tienda.service.ClienteAnaliticaService;
 import com.tienda.service.ClienteService;
+import com.tienda.service.HistorialClienteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,6 +18,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -29,6 +32,8 @@ import java.util.Map;
 public class ClienteController {
 
     private final ClienteService clienteService;
+    private final ClienteAnaliticaService clienteAnaliticaService;
+    private final HistorialClienteService historialClienteService;
 
     @Operation(summary = "Crear un nuevo cliente")
     @ApiResponses(value = {
@@ -125,6 +130,19 @@ public class ClienteController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Búsqueda de clientes por relevancia (nombre, documento, email, teléfono)")
+    @GetMapping("/busqueda")
+    public ResponseEntity<PaginacionResponse<ClienteResponse>> buscarClientes(
+            @Parameter(description = "Texto a buscar") @RequestParam(required = false) String q,
+            @Parameter(description = "Tipo de cliente") @RequestParam(required = false) Cliente.TipoCliente tipo,
+            @Parameter(description = "Estado") @RequestParam(required = false) String estado,
+            @Parameter(description = "Número de página (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Tamaño de página") @RequestParam(defaultValue = "20") int size) {
+        PaginacionResponse<ClienteResponse> response =
+                clienteService.buscarClientes(q, tipo, estado, PageRequest.of(page, size));
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Obtener clientes por tipo")
     @GetMapping("/tipo/{tipo}")
     public ResponseEntity<List<ClienteResponse>> obtenerClientesPorTipo(
@@ -164,6 +182,65 @@ public class ClienteController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Obtener métricas de compra y segmento RFM de un cliente")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Métricas del cliente"),
+            @ApiResponse(responseCode = "404", description = "Cliente no encontrado")
+    })
+    @GetMapping("/{id}/metricas")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasCliente(
+            @Parameter(description = "ID del cliente") @PathVariable Long id) {
+        return ResponseEntity.ok(clienteAnaliticaService.obtenerMetricasCliente(id));
+    }
+
+    @Operation(summary = "Obtener clientes, importe y promedios por segmento RFM")
+    @GetMapping("/segmentos")
+    public ResponseEntity<List<Map<String, Object>>> obtenerResumenSegmentos() {
+        return ResponseEntity.ok(clienteAnaliticaService.obtenerResumenSegmentos());
+    }
+
+    @Operation(summary = "Obtener los clientes de un segmento RFM, de mayor a menor importe")
+    @GetMapping("/segmentos/{segmento}")
+    public ResponseEntity<PaginacionResponse<Map<String, Object>>> obtenerClientesSegmento(
+            @Parameter(description = "Segmento (CAMPEONES, LEALES, NUEVOS, POTENCIALES, EN_RIESGO, " +
+                    "HIBERNANDO, PERDIDOS, NECESITAN_ATENCION)") @PathVariable String segmento,
+            @Parameter(description = "Número de página (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Tamaño de página") @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(clienteAnaliticaService.obtenerClientesSegmento(segmento, page, size));
+    }
+
+    @Operation(summary = "Recalcular la segmentación RFM")
+    @PostMapping("/segmentos/recalcular")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<Map<String, Object>> recalcularSegmentos() {
+        return ResponseEntity.ok(clienteAnaliticaService.recalcularSegmentos());
+    }
+
+    @Operation(summary = "Reconstruir las métricas de todos los clientes desde las ventas")
+    @PostMapping("/metricas/reconstruir")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconstruirMetricas() {
+        return ResponseEntity.ok(clienteAnaliticaService.reconstruirMetricas());
+    }
+
+    @Operation(summary = "Obtener el resumen del cliente para caja: totales y productos favoritos")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resumen del cliente"),
+            @ApiResponse(responseCode = "404", description = "Cliente no encontrado")
+    })
+    @GetMapping("/{id}/resumen")
+    public ResponseEntity<Map<String, Object>> obtenerResumenCliente(
+            @Parameter(description = "ID del cliente") @PathVariable Long id) {
+        return ResponseEntity.ok(historialClienteService.obtenerResumen(id));
+    }
+
+    @Operation(summary = "Obtener métricas de la caché de resúmenes de cliente")
+    @GetMapping("/resumen/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricasCacheResumen() {
+        return ResponseEntity.ok(historialClienteService.obtenerMetricasCache());
+    }
+
     @Operation(summary = "Verificar si existe un cliente por documento")
     @GetMapping("/existe/{documento}")
     public ResponseEntity<Boolean> existeClientePorDocumento(
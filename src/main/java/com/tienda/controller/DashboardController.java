@@ -1,12 +1,14 @@
 package com.tienda.controller;
 
 import com.tienda.dto.response.DashboardResponse;
+import com.tienda.service.CacheEntidadesService;
 import com.tienda.service.DashboardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
@@ -19,6 +21,7 @@ import java.util.Map;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final CacheEntidadesService cacheEntidadesService;
 
     @Operation(summary = "Obtener métricas principales")
     @GetMapping("/metricas-principales")
@@ -146,4 +149,19 @@ public class DashboardController {
     public ResponseEntity<Map<String, Object>> obtenerWidgetMetricasClientes() {
         return ResponseEntity.ok(dashboardService.obtenerWidgetMetricasClientes());
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Obtener aciertos y fallos del caché de entidades de referencia")
+    @GetMapping("/cache-entidades")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(cacheEntidadesService.obtenerEstadisticas());
+    }
+
+    @Operation(summary = "Vaciar el caché de entidades de referencia")
+    @PostMapping("/cache-entidades/vaciar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> vaciarCache() {
+        cacheEntidadesService.vaciar();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,19 +1,34 @@
 package com.tienda.controller;
 
+import com.tienda.dto.request.AjusteStockMasivoRequest;
 import com.tienda.dto.response.ApiResponse;
 import com.tienda.dto.response.EstadoStockResponse;
+import com.tienda.dto.response.KardexResponse;
 import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.dto.response.SugerenciaCompraResponse;
+import com.tienda.event.AlertaStockEvent;
+import com.tienda.exception.ConflictoConcurrenciaException;
 import com.tienda.model.Producto;
+import com.tienda.service.AlertaStockService;
 import com.tienda.service.InventarioService;
+import com.tienda.service.KardexService;
+import com.tienda.service.ReordenService;
+import com.tienda.service.impl.EjecutorReintentos;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.validation.Valid;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +39,10 @@ import java.util.Map;
 public class InventarioController {
 
     private final InventarioService inventarioService;
+    private final AlertaStockService alertaStockService;
+    private final KardexService kardexService;
+    private final ReordenService reordenService;
+    private final EjecutorReintentos ejecutorReintentos;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
@@ -58,6 +77,27 @@ public class InventarioController {
         }
     }
 
+    @GetMapping(value = "/alertas/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public SseEmitter suscribirAlertasStock() {
+        return alertaStockService.suscribir();
+    }
+
+    @GetMapping("/alertas/transiciones")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public ResponseEntity<ApiResponse> obtenerTransicionesAlertas(
+            @RequestParam(defaultValue = "50") int limite) {
+        try {
+            Map<String, Object> respuesta = new HashMap<>();
+            List<AlertaStockEvent> transiciones = alertaStockService.obtenerTransicionesRecientes(limite);
+            respuesta.put("resumen", alertaStockService.obtenerResumenAlertas());
+            respuesta.put("transiciones", transiciones);
+            return ResponseEntity.ok(ApiResponse.success("Transiciones de alertas de stock", respuesta));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @GetMapping("/valoracion")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
     public ResponseEntity<ApiResponse> obtenerValoracionInventario() {
@@ -110,6 +150,24 @@ public class InventarioController {
                     productoId, cantidad, motivo, tipoAjuste, usuarioId);
 
             return ResponseEntity.ok(ApiResponse.success("Stock ajustado exitosamente", resultado));
+        } catch (ConflictoConcurrenciaException e) {
+            // Reintentos agotados: el 409 lo responde GlobalExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/ajustar-stock-masivo")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public ResponseEntity<ApiResponse> ajustarStockMasivo(
+            @Valid @RequestBody AjusteStockMasivoRequest request) {
+
+        try {
+            Map<String, Object> resultado = inventarioService.ajustarStockMasivo(request);
+            return ResponseEntity.ok(ApiResponse.success("Ajuste masivo de stock aplicado", resultado));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -128,6 +186,8 @@ public class InventarioController {
                     productoId, cantidad, motivo, usuarioId);
 
             return ResponseEntity.ok(ApiResponse.success("Stock incrementado exitosamente", resultado));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -146,6 +206,8 @@ public class InventarioController {
                     productoId, cantidad, motivo, usuarioId);
 
             return ResponseEntity.ok(ApiResponse.success("Stock decrementado exitosamente", resultado));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -200,6 +262,65 @@ public class InventarioController {
 
     @GetMapping("/reorden")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public ResponseEntity<ApiResponse> obtenerSugerenciaCompra() {
+        try {
+            List<SugerenciaCompraResponse> sugerencia = reordenService.obtenerSugerenciaCompra();
+            return ResponseEntity.ok(ApiResponse.success("Sugerencia de compra por proveedor", sugerencia));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/stock-en-fecha")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public ResponseEntity<ApiResponse> obtenerStockEnFecha(
+            @RequestParam Long productoId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha) {
+
+        try {
+            Map<String, Object> stock = kardexService.obtenerStockEnFecha(productoId, fecha);
+            return ResponseEntity.ok(ApiResponse.success("Stock a la fecha", stock));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/kardex/{productoId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
+    public ResponseEntity<ApiResponse> obtenerKardex(
+            @PathVariable Long productoId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaDesde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaHasta) {
+
+        try {
+            KardexResponse kardex = kardexService.obtenerKardex(productoId, fechaDesde, fechaHasta);
+            return ResponseEntity.ok(ApiResponse.success("Kardex del producto", kardex));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/saldos/generar")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> generarSaldos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaCorte) {
+
+        try {
+            LocalDate corte = fechaCorte != null ? fechaCorte : LocalDate.now();
+            int generados = kardexService.generarSaldos(corte);
+
+            Map<String, Object> resultado = new HashMap<>();
+            resultado.put("fechaCorte", corte);
+            resultado.put("saldosGenerados", generados);
+
+            return ResponseEntity.ok(ApiResponse.success("Saldos de inventario generados", resultado));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reorden/productos")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
     public ResponseEntity<ApiResponse> obtenerProductosParaReorden() {
         try {
             List<EstadoStockResponse> productos = inventarioService.obtenerProductosParaReorden();
@@ -220,6 +341,17 @@ public class InventarioController {
         }
     }
 
+    @GetMapping("/concurrencia/metricas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> obtenerMetricasConcurrencia() {
+        try {
+            Map<String, Object> metricas = ejecutorReintentos.obtenerMetricas();
+            return ResponseEntity.ok(ApiResponse.success("Métricas de conflictos de concurrencia", metricas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @GetMapping("/reporte")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
     public ResponseEntity<ApiResponse> generarReporteStock() {
@@ -1,10 +1,16 @@
 package com.tienda.controller;
 
+import com.tienda.dto.request.ActualizacionPreciosRequest;
 import com.tienda.dto.request.ProductoRequest;
 import com.tienda.dto.response.ApiResponse;
 import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.dto.response.ProductoEscaneoResponse;
 import com.tienda.dto.response.ProductoResponse;
+import com.tienda.exception.ConflictoConcurrenciaException;
 import com.tienda.model.Producto;
+import com.tienda.service.BusquedaProductoService;
+import com.tienda.service.CatalogoEscaneoService;
+import com.tienda.service.CatalogoSincronizacionService;
 import com.tienda.service.ProductoService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
@@ -14,6 +20,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.math.BigDecimal;
@@ -27,6 +34,9 @@ import java.util.Map;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final CatalogoEscaneoService catalogoEscaneoService;
+    private final BusquedaProductoService busquedaProductoService;
+    private final CatalogoSincronizacionService catalogoSincronizacionService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'INVENTARIO')")
@@ -85,6 +95,100 @@ public class ProductoController {
         }
     }
 
+    @GetMapping("/escaneo/{codigo}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse> escanearProducto(@PathVariable String codigo) {
+        try {
+            ProductoEscaneoResponse producto = catalogoEscaneoService.buscarPorCodigoEscaneado(codigo);
+            return ResponseEntity.ok(ApiResponse.success("Producto obtenido", producto));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/sugerencias")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse> sugerirProductos(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limite,
+            @RequestParam(defaultValue = "true") boolean soloActivos) {
+        try {
+            List<ProductoEscaneoResponse> productos = busquedaProductoService.buscar(q, limite, soloActivos);
+            return ResponseEntity.ok(ApiResponse.success("Sugerencias de productos", productos));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/sugerencias/indice")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> obtenerEstadisticasIndice() {
+        try {
+            Map<String, Object> estadisticas = busquedaProductoService.obtenerEstadisticas();
+            return ResponseEntity.ok(ApiResponse.success("Índice de búsqueda de productos", estadisticas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/escaneo/metricas")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> obtenerMetricasEscaneo() {
+        try {
+            Map<String, Object> metricas = catalogoEscaneoService.obtenerMetricas();
+            return ResponseEntity.ok(ApiResponse.success("Métricas de la caché de escaneo", metricas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/escaneo/precargar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> precargarCacheEscaneo() {
+        try {
+            catalogoEscaneoService.invalidarTodo();
+            int cargados = catalogoEscaneoService.precargar();
+            return ResponseEntity.ok(ApiResponse.success("Caché de escaneo precargada", cargados));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/catalogo/cambios")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> obtenerCambiosCatalogo(
+            @RequestParam(defaultValue = "0") long desde) {
+        // NDJSON comprimido; desde=0 devuelve el catálogo completo
+        StreamingResponseBody cuerpo = salida -> catalogoSincronizacionService.escribirCambios(desde, salida);
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/x-ndjson")
+                .header("Content-Encoding", "gzip")
+                .header("Cache-Control", "no-store")
+                .body(cuerpo);
+    }
+
+    @GetMapping("/catalogo/estado")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse> obtenerEstadoCatalogo() {
+        try {
+            Map<String, Object> estado = catalogoSincronizacionService.obtenerEstado();
+            return ResponseEntity.ok(ApiResponse.success("Estado del registro de cambios del catálogo", estado));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/catalogo/purgar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> purgarCambiosCatalogo() {
+        try {
+            Map<String, Object> resultado = catalogoSincronizacionService.purgarCambios();
+            return ResponseEntity.ok(ApiResponse.success("Registro de cambios del catálogo purgado", resultado));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @GetMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ApiResponse> obtenerTodosProductos(
@@ -115,10 +219,16 @@ public class ProductoController {
             @RequestParam(required = false) Long categoriaId,
             @RequestParam(required = false) String estado,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
 
         try {
-            Pageable pageable = PageRequest.of(page, size);
+            // Sin sortBy se ordena por relevancia
+            Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ?
+                    Sort.Direction.DESC : Sort.Direction.ASC;
+            Pageable pageable = sortBy != null ?
+                    PageRequest.of(page, size, Sort.by(direction, sortBy)) : PageRequest.of(page, size);
             Producto.EstadoProducto estadoEnum = null;
 
             if (estado != null) {
@@ -143,6 +253,9 @@ public class ProductoController {
         try {
             ProductoResponse producto = productoService.ajustarStock(id, cantidad, motivo);
             return ResponseEntity.ok(ApiResponse.success("Stock ajustado exitosamente", producto));
+        } catch (ConflictoConcurrenciaException e) {
+            // Reintentos agotados: el 409 lo responde GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -157,6 +270,8 @@ public class ProductoController {
         try {
             ProductoResponse producto = productoService.incrementarStock(id, cantidad, motivo);
             return ResponseEntity.ok(ApiResponse.success("Stock incrementado exitosamente", producto));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -171,6 +286,8 @@ public class ProductoController {
         try {
             ProductoResponse producto = productoService.decrementarStock(id, cantidad, motivo);
             return ResponseEntity.ok(ApiResponse.success("Stock decrementado exitosamente", producto));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -189,12 +306,34 @@ public class ProductoController {
         }
     }
 
+    @PostMapping("/precios/masivo")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> actualizarPreciosMasivo(@Valid @RequestBody ActualizacionPreciosRequest request) {
+        try {
+            Map<String, Object> resultado = productoService.actualizarPreciosMasivo(request);
+            return ResponseEntity.ok(ApiResponse.success("Precios actualizados", resultado));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/historial-precios")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> obtenerHistorialPrecios(@PathVariable Long id) {
+        try {
+            List<Map<String, Object>> historial = productoService.obtenerHistorialPrecios(id);
+            return ResponseEntity.ok(ApiResponse.success("Historial de precios", historial));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     @PostMapping("/importar")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
     public ResponseEntity<ApiResponse> importarProductos(@RequestParam("archivo") MultipartFile archivo) {
         try {
             Map<String, Object> resultado = productoService.importarProductosDesdeExcel(archivo);
-            return ResponseEntity.ok(ApiResponse.success("Importación iniciada", resultado));
+            return ResponseEntity.ok(ApiResponse.success("Importación finalizada", resultado));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -202,16 +341,13 @@ public class ProductoController {
 
     @GetMapping("/exportar")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
-    public ResponseEntity<byte[]> exportarProductos() {
-        try {
-            byte[] excelBytes = productoService.exportarProductosAExcel();
-            return ResponseEntity.ok()
-                    .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                    .header("Content-Disposition", "attachment; filename=productos.xlsx")
-                    .body(excelBytes);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
-        }
+    public ResponseEntity<StreamingResponseBody> exportarProductos() {
+        // El libro se escribe directamente sobre la respuesta
+        StreamingResponseBody cuerpo = productoService::exportarProductosAExcel;
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .header("Content-Disposition", "attachment; filename=productos.xlsx")
+                .body(cuerpo);
     }
 
     @GetMapping("/stats")
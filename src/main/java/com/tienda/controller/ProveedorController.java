@@ -75,6 +75,15 @@ public class ProveedorController {
         return ResponseEntity.ok(proveedorService.buscarProveedoresPorNombre(nombre));
     }
 
+    @Operation(summary = "Búsqueda de proveedores por relevancia (nombre, código, RUC, contacto)")
+    @GetMapping("/busqueda")
+    public ResponseEntity<PaginacionResponse<ProveedorResponse>> buscarProveedores(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Proveedor.EstadoProveedor estado,
+            @PageableDefault(size = 20) Pageable pageable) {
+        return ResponseEntity.ok(proveedorService.buscarProveedores(q, estado, pageable));
+    }
+
     @Operation(summary = "Obtener proveedor por código")
     @GetMapping("/codigo/{codigo}")
     public ResponseEntity<ProveedorResponse> obtenerProveedorPorCodigo(@PathVariable String codigo) {
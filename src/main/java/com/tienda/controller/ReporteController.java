@@ -1,16 +1,24 @@
 package com.tienda.controller;
 
+import com.tienda.dto.request.FiltroReporteRequest;
 import com.tienda.dto.response.ApiResponse;
 import com.tienda.dto.response.CierreCajaResponse;
 import com.tienda.dto.response.ReporteInventarioResponse;
 import com.tienda.dto.response.ReporteVentaResponse;
+import com.tienda.dto.response.TrabajoReporteResponse;
+import com.tienda.exception.ColaReportesLlenaException;
+import com.tienda.service.ArchivoHistoricoService;
 import com.tienda.service.ReporteService;
+import com.tienda.service.ReporteTrabajoService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,6 +30,8 @@ import java.util.Map;
 public class ReporteController {
 
     private final ReporteService reporteService;
+    private final ArchivoHistoricoService archivoHistoricoService;
+    private final ReporteTrabajoService reporteTrabajoService;
 
     // ============ CIERRE DE CAJA ============
 
@@ -193,6 +203,46 @@ public class ReporteController {
         }
     }
 
+    @GetMapping("/ventas/categoria")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> generarReporteVentasPorCategoria(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaDesde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaHasta) {
+
+        try {
+            List<Map<String, Object>> reporte = reporteService.generarReporteVentasPorCategoria(fechaDesde, fechaHasta);
+            return ResponseEntity.ok(ApiResponse.success("Reporte de ventas por categoría", reporte));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    // ============ REPORTES DE CLIENTES ============
+
+    @GetMapping("/clientes/frecuencia")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> generarReporteFrecuenciaClientes() {
+        try {
+            Map<String, Object> reporte = reporteService.generarReporteFrecuenciaClientes();
+            return ResponseEntity.ok(ApiResponse.success("Reporte de frecuencia de clientes", reporte));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/clientes/cohortes")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> generarReporteCohortesClientes(
+            @RequestParam(defaultValue = "12") int meses) {
+
+        try {
+            List<Map<String, Object>> reporte = reporteService.generarReporteCohortesClientes(meses);
+            return ResponseEntity.ok(ApiResponse.success("Cohortes mensuales de clientes", reporte));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     // ============ REPORTES DE INVENTARIO ============
 
     @GetMapping("/inventario/estado")
@@ -303,37 +353,88 @@ public class ReporteController {
         }
     }
 
-    // ============ EXPORTACIÓN DE REPORTES ============
+    // ============ TRABAJOS DE REPORTE ============
 
-    @GetMapping("/exportar/ventas/excel")
+    @PostMapping("/trabajos")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
-    public ResponseEntity<byte[]> exportarReporteVentasExcel(
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaDesde,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaHasta) {
+    public ResponseEntity<ApiResponse> solicitarReporte(
+            @RequestBody FiltroReporteRequest filtro,
+            @RequestParam(defaultValue = "NORMAL") String prioridad) {
 
         try {
-            byte[] excelBytes = reporteService.exportarReporteVentasExcel(fechaDesde, fechaHasta);
-            return ResponseEntity.ok()
-                    .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                    .header("Content-Disposition", "attachment; filename=reporte_ventas.xlsx")
-                    .body(excelBytes);
+            TrabajoReporteResponse trabajo = reporteTrabajoService.solicitarReporte(filtro, prioridad);
+            return ResponseEntity.accepted().body(ApiResponse.success("Reporte en cola", trabajo));
+        } catch (ColaReportesLlenaException e) {
+            // Cola llena: GlobalExceptionHandler responde 503 con Retry-After
+            throw e;
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
 
-    @GetMapping("/exportar/inventario/excel")
+    @GetMapping("/trabajos")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
-    public ResponseEntity<byte[]> exportarReporteInventarioExcel() {
+    public ResponseEntity<ApiResponse> obtenerTrabajosReporte() {
         try {
-            byte[] excelBytes = reporteService.exportarReporteInventarioExcel();
-            return ResponseEntity.ok()
-                    .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                    .header("Content-Disposition", "attachment; filename=reporte_inventario.xlsx")
-                    .body(excelBytes);
+            List<TrabajoReporteResponse> trabajos = reporteTrabajoService.obtenerTrabajos();
+            return ResponseEntity.ok(ApiResponse.success("Trabajos de reporte", trabajos));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/trabajos/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> obtenerTrabajoReporte(@PathVariable String id) {
+        try {
+            TrabajoReporteResponse trabajo = reporteTrabajoService.obtenerTrabajo(id);
+            return ResponseEntity.ok(ApiResponse.success("Estado del reporte", trabajo));
         } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/trabajos/{id}/resultado")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<StreamingResponseBody> descargarResultadoReporte(@PathVariable String id) {
+        // Se valida antes de empezar a escribir: después ya no se puede responder con error
+        Path resultado = reporteTrabajoService.obtenerResultado(id);
+
+        StreamingResponseBody cuerpo = salida -> Files.copy(resultado, salida);
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/json")
+                .header("Content-Disposition", "attachment; filename=reporte_" + id + ".json")
+                .body(cuerpo);
+    }
+
+    // ============ EXPORTACIÓN DE REPORTES ============
+
+    @GetMapping("/exportar/ventas/excel")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<StreamingResponseBody> exportarReporteVentasExcel(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaDesde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaHasta) {
+
+        // Una vez iniciada la escritura ya no se puede responder con error
+        if (fechaDesde.isAfter(fechaHasta)) {
             return ResponseEntity.badRequest().build();
         }
+
+        StreamingResponseBody cuerpo = salida -> reporteService.exportarReporteVentasExcel(fechaDesde, fechaHasta, salida);
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .header("Content-Disposition", "attachment; filename=reporte_ventas.xlsx")
+                .body(cuerpo);
+    }
+
+    @GetMapping("/exportar/inventario/excel")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<StreamingResponseBody> exportarReporteInventarioExcel() {
+        StreamingResponseBody cuerpo = reporteService::exportarReporteInventarioExcel;
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .header("Content-Disposition", "attachment; filename=reporte_inventario.xlsx")
+                .body(cuerpo);
     }
 
     @GetMapping("/exportar/cierre-caja/pdf/{id}")
@@ -426,4 +527,43 @@ public class ReporteController {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // ============ ARCHIVO HISTÓRICO ============
+
+    @GetMapping("/archivo/resumen")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> obtenerResumenArchivo() {
+        try {
+            Map<String, Object> resumen = archivoHistoricoService.obtenerResumenArchivo();
+            return ResponseEntity.ok(ApiResponse.success("Resumen del archivo histórico", resumen));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/archivo/ventas")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE')")
+    public ResponseEntity<ApiResponse> obtenerVentasArchivadas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaDesde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaHasta) {
+
+        try {
+            List<Map<String, Object>> ventas =
+                    archivoHistoricoService.obtenerVentasArchivadasPorMes(fechaDesde, fechaHasta);
+            return ResponseEntity.ok(ApiResponse.success("Ventas archivadas por mes", ventas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/archivo/ejecutar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> archivarPeriodosCerrados() {
+        try {
+            Map<String, Object> resultado = archivoHistoricoService.archivarPeriodosCerrados();
+            return ResponseEntity.ok(ApiResponse.success("Periodos cerrados archivados", resultado));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
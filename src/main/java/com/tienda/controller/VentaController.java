@@ -2,13 +2,17 @@ package com.tienda.controller;
 
 import com.tienda.dto.request.VentaRequest;
 import com.tienda.dto.response.ApiResponse;
+import com.tienda.dto.response.HistorialClienteResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.dto.response.VentaResponse;
+import com.tienda.exception.ConflictoConcurrenciaException;
+import com.tienda.service.HistorialClienteService;
 import com.tienda.service.VentaService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +29,7 @@ import java.util.Map;
 public class VentaController {
 
     private final VentaService ventaService;
+    private final HistorialClienteService historialClienteService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'VENDEDOR', 'CAJERO')")
@@ -32,6 +37,9 @@ public class VentaController {
         try {
             VentaResponse venta = ventaService.crearVenta(request);
             return ResponseEntity.ok(ApiResponse.success("Venta realizada exitosamente", venta));
+        } catch (ConflictoConcurrenciaException e) {
+            // Reintentos agotados: el 409 lo responde GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -107,6 +115,8 @@ public class VentaController {
 
             ventaService.anularVenta(id, motivo);
             return ResponseEntity.ok(ApiResponse.success("Venta anulada exitosamente", null));
+        } catch (ConflictoConcurrenciaException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -123,12 +133,34 @@ public class VentaController {
         }
     }
 
+    // Obsoleto: devuelve solo las últimas VentaService.MAX_VENTAS_POR_CLIENTE; usar /cliente/{id}/historial
+    @Deprecated
     @GetMapping("/cliente/{clienteId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'VENDEDOR')")
     public ResponseEntity<ApiResponse> obtenerVentasPorCliente(@PathVariable Long clienteId) {
         try {
             List<VentaResponse> ventas = ventaService.obtenerVentasPorCliente(clienteId);
-            return ResponseEntity.ok(ApiResponse.success("Ventas del cliente", ventas));
+            return ResponseEntity.ok()
+                    .header("Deprecation", "true")
+                    .header(HttpHeaders.LINK,
+                            "</api/ventas/cliente/" + clienteId + "/historial>; rel=\"successor-version\"")
+                    .body(ApiResponse.success("Ventas del cliente", ventas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/cliente/{clienteId}/historial")
+    @PreAuthorize("hasAnyRole('ADMIN', 'GERENTE', 'VENDEDOR')")
+    public ResponseEntity<ApiResponse> obtenerHistorialCliente(
+            @PathVariable Long clienteId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int tamano,
+            @RequestParam(defaultValue = "false") boolean detalles) {
+        try {
+            HistorialClienteResponse historial =
+                    historialClienteService.obtenerHistorial(clienteId, cursor, tamano, detalles);
+            return ResponseEntity.ok(ApiResponse.success("Historial de compras del cliente", historial));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
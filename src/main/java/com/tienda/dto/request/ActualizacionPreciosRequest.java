@@ -0,0 +1,40 @@
+package com.tienda.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActualizacionPreciosRequest {
+
+    @NotBlank(message = "El tipo de cambio es obligatorio")
+    private String tipoCambio; // PORCENTAJE, MONTO, MARGEN
+
+    // Porcentaje (+/-), monto fijo (+/-) o margen objetivo en % sobre el costo promedio
+    @NotNull(message = "El valor es obligatorio")
+    private BigDecimal valor;
+
+    // Alcance: se combinan los criterios informados (al menos uno)
+    private Long categoriaId;
+    private Boolean incluirSubcategorias = true;
+    private Long proveedorId;
+    private List<Long> productoIds;
+
+    private Boolean soloActivos = true;
+
+    @Min(value = 0, message = "Los decimales no pueden ser negativos")
+    @Max(value = 2, message = "Máximo 2 decimales")
+    private Integer decimales = 2;
+
+    private String motivo;
+    private Long usuarioId;
+}
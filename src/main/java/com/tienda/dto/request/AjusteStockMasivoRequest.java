@@ -0,0 +1,60 @@
+package com.tienda.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjusteStockMasivoRequest {
+
+    public static final int MAX_AJUSTES = 1000;
+
+    @NotNull(message = "El ID del usuario es obligatorio")
+    private Long usuarioId;
+
+    // Referencia común del lote (ej: número de recepción o de conteo físico)
+    private String documentoNumero;
+
+    @Valid
+    @NotEmpty(message = "Debe incluir al menos un ajuste")
+    @Size(max = MAX_AJUSTES, message = "Un ajuste masivo admite como máximo " + MAX_AJUSTES + " líneas")
+    private List<ItemAjusteRequest> ajustes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemAjusteRequest {
+
+        @NotNull(message = "El ID del producto es obligatorio")
+        private Long productoId;
+
+        @NotNull(message = "La cantidad es obligatoria")
+        @DecimalMin(value = "0", message = "La cantidad no puede ser negativa")
+        private BigDecimal cantidad;
+
+        @NotBlank(message = "El tipo de ajuste es obligatorio")
+        private String tipoAjuste; // INCREMENTO, DECREMENTO, FIJO
+
+        private String motivo;
+
+        // Cero solo tiene sentido como stock FIJO; incrementar o decrementar en cero no es un ajuste
+        @JsonIgnore
+        @AssertTrue(message = "La cantidad debe ser mayor que cero salvo en un ajuste FIJO")
+        public boolean isCantidadValida() {
+            return cantidad == null || cantidad.signum() > 0 || "FIJO".equalsIgnoreCase(tipoAjuste);
+        }
+    }
+}
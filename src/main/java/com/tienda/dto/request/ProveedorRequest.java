@@ -26,5 +26,6 @@ public class ProveedorRequest {
     private String observaciones;
     private String estado;
     private Integer diasCredito;
+    private Integer diasEntrega;
     private BigDecimal limiteCredito;
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.tienda.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistorialClienteResponse {
+
+    private Long clienteId;
+
+    // Cabeceras de la página (con detalles solo si se pidieron)
+    private List<VentaResponse> ventas;
+
+    // Cursor para pedir la página siguiente; null en la última
+    private String siguienteCursor;
+    private boolean hayMas;
+    private int tamano;
+}
@@ -0,0 +1,54 @@
+package com.tienda.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KardexResponse {
+
+    private Long productoId;
+    private String codigo;
+    private String nombre;
+
+    // Rango consultado
+    private LocalDateTime fechaDesde;
+    private LocalDateTime fechaHasta;
+
+    // Saldos
+    private BigDecimal saldoInicial;
+    private BigDecimal saldoFinal;
+    private BigDecimal totalEntradas;
+    private BigDecimal totalSalidas;
+
+    // Saldo de cierre usado como punto de partida
+    private LocalDateTime fechaSaldoBase;
+
+    private List<MovimientoKardex> movimientos;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MovimientoKardex {
+        private Long id;
+        private LocalDateTime fecha;
+        private String tipoMovimiento;
+        private String subtipo;
+        private String documentoNumero;
+        private String motivo;
+        private BigDecimal entrada;
+        private BigDecimal salida;
+        private BigDecimal saldo;
+        private BigDecimal costoUnitario;
+        private String usuario;
+    }
+}
@@ -0,0 +1,58 @@
+package com.tienda.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tienda.model.Producto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Vista compacta e inmutable de un producto para el escaneo en caja. Se comparte
+ * entre hilos desde la caché, por eso no tiene setters.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ProductoEscaneoResponse {
+
+    private final Long id;
+    private final String codigo;
+    private final String codigoBarras;
+    private final String nombre;
+    private final String marca;
+    private final String unidadMedida;
+    private final Boolean permiteDecimal;
+
+    private final BigDecimal precioVenta;
+    private final BigDecimal precioVenta2;
+    private final BigDecimal precioVenta3;
+
+    private final BigDecimal stockDisponible;
+    private final String estado;
+    private final String alertaStock;
+
+    // Versión de la fila de la que se tomó la vista; evita reemplazar una vista por otra más antigua
+    @JsonIgnore
+    private final long version;
+
+    public static ProductoEscaneoResponse de(Producto producto) {
+        return ProductoEscaneoResponse.builder()
+                .id(producto.getId())
+                .codigo(producto.getCodigo())
+                .codigoBarras(producto.getCodigoBarras())
+                .nombre(producto.getNombre())
+                .marca(producto.getMarca())
+                .unidadMedida(producto.getUnidadMedida())
+                .permiteDecimal(producto.getPermiteDecimal())
+                .precioVenta(producto.getPrecioVenta())
+                .precioVenta2(producto.getPrecioVenta2())
+                .precioVenta3(producto.getPrecioVenta3())
+                .stockDisponible(producto.getStockDisponible())
+                .estado(producto.getEstado() != null ? producto.getEstado().name() : null)
+                .alertaStock(producto.getAlertaStock() != null ? producto.getAlertaStock().name() : null)
+                .version(producto.getVersion())
+                .build();
+    }
+}
@@ -24,6 +24,7 @@ public class ProveedorResponse {
     private String observaciones;
     private String estado;
     private Integer diasCredito;
+    private Integer diasEntrega;
     private BigDecimal limiteCredito;
     private Integer totalProductos;
     private BigDecimal totalCompras;
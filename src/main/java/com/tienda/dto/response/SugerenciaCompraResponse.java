@@ -0,0 +1,53 @@
+package com.tienda.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SugerenciaCompraResponse {
+
+    private Long proveedorId;
+    private String proveedorCodigo;
+    private String proveedorNombre;
+    private String proveedorEmail;
+    private Integer diasEntrega;
+
+    private Integer totalItems;
+    private BigDecimal costoEstimado;
+    private List<ItemSugerido> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemSugerido {
+        private Long productoId;
+        private String codigo;
+        private String nombre;
+        private String unidadMedida;
+
+        // Situación actual
+        private BigDecimal stockDisponible;
+        private BigDecimal stockMinimo;
+        private BigDecimal stockMaximo;
+
+        // Demanda y punto de reorden dinámico
+        private BigDecimal velocidadDiaria;
+        private BigDecimal diasCobertura;
+        private BigDecimal stockSeguridad;
+        private BigDecimal puntoReorden;
+
+        // Pedido sugerido
+        private BigDecimal cantidadSugerida;
+        private BigDecimal costoUnitario;
+        private BigDecimal costoTotal;
+    }
+}
@@ -0,0 +1,35 @@
+package com.tienda.dto.response;
+
+import com.tienda.dto.request.FiltroReporteRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrabajoReporteResponse {
+
+    private String id;
+    private String tipoReporte;
+    private String prioridad;
+    private String estado; // PENDIENTE, EN_CURSO, COMPLETADO, FALLIDO
+    private Integer progreso; // 0-100
+    private String fase;
+    private FiltroReporteRequest filtro;
+
+    // Solicitudes idénticas atendidas por esta misma ejecución
+    private Integer solicitudes;
+
+    private LocalDateTime creadoEn;
+    private LocalDateTime iniciadoEn;
+    private LocalDateTime finalizadoEn;
+    private LocalDateTime expiraEn;
+
+    private Long tamanoResultado;
+    private String error;
+}
@@ -0,0 +1,67 @@
+package com.tienda.event;
+
+import com.tienda.model.Producto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import org.hibernate.Hibernate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Estado de stock de un producto tras una escritura. Se publica cuando cambia
+ * la alerta de stock o cuando un producto en alerta actualiza sus cantidades.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class AlertaStockEvent {
+
+    private final Long productoId;
+    private final String codigo;
+    private final String nombre;
+    private final String categoria;
+    private final String proveedor;
+    private final String unidadMedida;
+    private final String estadoProducto;
+
+    private final BigDecimal stockActual;
+    private final BigDecimal stockDisponible;
+    private final BigDecimal stockMinimo;
+    private final BigDecimal stockMaximo;
+    private final BigDecimal costoPromedio;
+    private final BigDecimal precioVenta;
+
+    private final Producto.AlertaStock alertaAnterior;
+    private final Producto.AlertaStock alertaNueva;
+    private final LocalDateTime fecha;
+
+    public static AlertaStockEvent de(Producto producto, Producto.AlertaStock alertaAnterior) {
+        return AlertaStockEvent.builder()
+                .productoId(producto.getId())
+                .codigo(producto.getCodigo())
+                .nombre(producto.getNombre())
+                // Solo se leen relaciones ya cargadas: el evento puede emitirse durante un flush
+                .categoria(producto.getCategoria() != null && Hibernate.isInitialized(producto.getCategoria()) ?
+                        producto.getCategoria().getNombre() : null)
+                .proveedor(producto.getProveedor() != null && Hibernate.isInitialized(producto.getProveedor()) ?
+                        producto.getProveedor().getNombre() : null)
+                .unidadMedida(producto.getUnidadMedida())
+                .estadoProducto(producto.getEstado() != null ? producto.getEstado().name() : null)
+                .stockActual(producto.getStockActual())
+                .stockDisponible(producto.getStockDisponible())
+                .stockMinimo(producto.getStockMinimo())
+                .stockMaximo(producto.getStockMaximo())
+                .costoPromedio(producto.getCostoPromedio())
+                .precioVenta(producto.getPrecioVenta())
+                .alertaAnterior(alertaAnterior)
+                .alertaNueva(producto.getAlertaStock())
+                .fecha(LocalDateTime.now())
+                .build();
+    }
+
+    public boolean esTransicion() {
+        return alertaAnterior != alertaNueva;
+    }
+}
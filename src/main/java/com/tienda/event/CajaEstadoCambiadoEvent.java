@@ -0,0 +1,15 @@
+package com.tienda.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Apertura, cierre, bloqueo o cambio de usuario de una caja; el registro de sesiones abiertas
+ * relee la caja tras el commit.
+ */
+@Getter
+@AllArgsConstructor
+public class CajaEstadoCambiadoEvent {
+
+    private final Long cajaId;
+}
@@ -0,0 +1,14 @@
+package com.tienda.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Alta, modificación o baja de una categoría; el árbol en memoria se reconstruye tras el commit.
+ */
+@Getter
+@AllArgsConstructor
+public class CategoriasModificadasEvent {
+
+    private final Long categoriaId;
+}
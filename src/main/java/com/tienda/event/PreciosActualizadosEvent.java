@@ -0,0 +1,18 @@
+package com.tienda.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Actualización masiva de precios aplicada con sentencias SQL; no pasa por las
+ * entidades, así que no genera {@link ProductoModificadoEvent} por producto.
+ */
+@Getter
+@AllArgsConstructor
+public class PreciosActualizadosEvent {
+
+    private final String lote;
+    private final List<Long> productoIds;
+}
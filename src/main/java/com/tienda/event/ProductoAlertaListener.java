@@ -0,0 +1,42 @@
+package com.tienda.event;
+
+import com.tienda.model.Producto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+
+/**
+ * Detecta los cambios de {@link Producto.AlertaStock} en el momento en que se
+ * escriben y los publica como {@link AlertaStockEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductoAlertaListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostLoad
+    public void alCargar(Producto producto) {
+        producto.setAlertaStockPersistida(producto.getAlertaStock());
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void alEscribir(Producto producto) {
+        Producto.AlertaStock anterior = producto.getAlertaStockPersistida();
+        Producto.AlertaStock nueva = producto.getAlertaStock();
+        producto.setAlertaStockPersistida(nueva);
+
+        // Producto que estaba y sigue fuera de alerta: nada que indexar
+        if (nueva == Producto.AlertaStock.NORMAL &&
+                (anterior == null || anterior == Producto.AlertaStock.NORMAL)) {
+            return;
+        }
+
+        eventPublisher.publishEvent(AlertaStockEvent.de(producto, anterior));
+    }
+}
@@ -0,0 +1,34 @@
+package com.tienda.event;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import com.tienda.model.Producto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Publica un {@link ProductoModificadoEvent} por cada escritura de {@link Producto},
+ * con la vista ya tomada de la entidad para no volver a consultarla.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductoCambioListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    public void alEscribir(Producto producto) {
+        eventPublisher.publishEvent(new ProductoModificadoEvent(
+                producto.getId(), ProductoEscaneoResponse.de(producto), false));
+    }
+
+    @PostRemove
+    public void alEliminar(Producto producto) {
+        eventPublisher.publishEvent(new ProductoModificadoEvent(producto.getId(), null, true));
+    }
+}
@@ -0,0 +1,17 @@
+package com.tienda.event;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Estado de un producto tras cualquier escritura (alta, modificación o baja).
+ */
+@Getter
+@AllArgsConstructor
+public class ProductoModificadoEvent {
+
+    private final Long productoId;
+    private final ProductoEscaneoResponse producto;
+    private final boolean eliminado;
+}
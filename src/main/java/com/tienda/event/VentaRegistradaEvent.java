@@ -0,0 +1,23 @@
+package com.tienda.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Unidades vendidas por producto en una venta (o devueltas, si es una anulación).
+ * clienteId es null en las ventas a consumidor final.
+ */
+@Getter
+@AllArgsConstructor
+public class VentaRegistradaEvent {
+
+    private final Long ventaId;
+    private final Long clienteId;
+    private final LocalDate fechaVenta;
+    private final Map<Long, BigDecimal> unidadesPorProducto;
+    private final boolean anulacion;
+}
@@ -0,0 +1,18 @@
+package com.tienda.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@Getter
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ColaReportesLlenaException extends RuntimeException {
+
+    // Segundos sugeridos al cliente antes de volver a solicitar (cabecera Retry-After)
+    private final long reintentarEnSegundos;
+
+    public ColaReportesLlenaException(String message, long reintentarEnSegundos) {
+        super(message);
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+}
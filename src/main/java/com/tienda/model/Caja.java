@@ -63,6 +63,11 @@ public class Caja {
     @Column(name = "actualizado_en")
     private LocalDateTime actualizadoEn;
 
+    // Control optimista de saldo y estado
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     @OneToMany(mappedBy = "caja", fetch = FetchType.LAZY)
     @Builder.Default
     private List<Venta> ventas = new ArrayList<>();
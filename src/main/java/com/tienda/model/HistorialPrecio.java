@@ -0,0 +1,67 @@
+package com.tienda.model;
+
+import lombok.*;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "historial_precios", indexes = {
+        @Index(name = "idx_historial_precios_producto_fecha", columnList = "producto_id, fecha_cambio"),
+        @Index(name = "idx_historial_precios_lote", columnList = "lote")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HistorialPrecio {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", nullable = false)
+    private Producto producto;
+
+    @Column(name = "precio_anterior", precision = 15, scale = 2)
+    private BigDecimal precioAnterior;
+
+    @Column(name = "precio_nuevo", precision = 15, scale = 2, nullable = false)
+    private BigDecimal precioNuevo;
+
+    @Column(name = "costo_promedio", precision = 15, scale = 2)
+    private BigDecimal costoPromedio;
+
+    @Column(name = "margen_anterior", precision = 5, scale = 2)
+    private BigDecimal margenAnterior;
+
+    @Column(name = "margen_nuevo", precision = 5, scale = 2)
+    private BigDecimal margenNuevo;
+
+    // MANUAL, PORCENTAJE, MONTO, MARGEN
+    @Column(name = "tipo_cambio", nullable = false, length = 20)
+    private String tipoCambio;
+
+    // Identificador común de las filas de una misma actualización masiva
+    @Column(length = 50)
+    private String lote;
+
+    @Column(columnDefinition = "TEXT")
+    private String motivo;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "usuario_id")
+    private Usuario usuario;
+
+    @Column(name = "fecha_cambio", nullable = false)
+    private LocalDateTime fechaCambio;
+
+    @PrePersist
+    protected void onCreate() {
+        if (fechaCambio == null) {
+            fechaCambio = LocalDateTime.now();
+        }
+    }
+}
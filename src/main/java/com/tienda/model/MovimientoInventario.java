@@ -6,7 +6,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "movimientos_inventario")
+@Table(name = "movimientos_inventario", indexes = {
+        @Index(name = "idx_movimientos_producto_fecha", columnList = "producto_id, fecha_movimiento")
+})
 @Getter
 @Setter
 @NoArgsConstructor
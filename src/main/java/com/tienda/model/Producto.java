@@ -1,5 +1,7 @@
 package com.tienda.model;
 
+import com.tienda.event.ProductoAlertaListener;
+import com.tienda.event.ProductoCambioListener;
 import lombok.*;
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -8,6 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "productos")
+@EntityListeners({ProductoAlertaListener.class, ProductoCambioListener.class})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -128,6 +131,15 @@ public class Producto extends BaseEntity {
     @Column(length = 100)
     private String lote;
 
+    // Control optimista: una escritura concurrente sobre la misma versión falla en vez de pisarse
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    // Última alerta leída o escrita en BD; permite detectar transiciones
+    @Transient
+    private AlertaStock alertaStockPersistida;
+
     // ============ MÉTODOS DE NEGOCIO ============
     @PreUpdate
     @PrePersist
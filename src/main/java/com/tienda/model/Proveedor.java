@@ -1,12 +1,16 @@
 package com.tienda.model;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "proveedores")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "tienda.proveedores")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -54,6 +58,10 @@ public class Proveedor {
     @Column(name = "limite_credito", precision = 15, scale = 2)
     private java.math.BigDecimal limiteCredito;
 
+    // Tiempo de reposición en días; si es nulo se usa el valor por defecto del motor de reorden
+    @Column(name = "dias_entrega")
+    private Integer diasEntrega;
+
     @OneToMany(mappedBy = "proveedor", fetch = FetchType.LAZY)
     @Builder.Default
     private List<Producto> productos = new ArrayList<>();
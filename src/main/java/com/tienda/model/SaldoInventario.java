@@ -0,0 +1,54 @@
+package com.tienda.model;
+
+import lombok.*;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "saldos_inventario",
+        uniqueConstraints = @UniqueConstraint(name = "uk_saldo_producto_corte",
+                columnNames = {"producto_id", "fecha_corte"}),
+        indexes = @Index(name = "idx_saldos_producto_fecha", columnList = "producto_id, fecha_saldo"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SaldoInventario {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", nullable = false)
+    private Producto producto;
+
+    // Día de cierre al que corresponde el saldo
+    @Column(name = "fecha_corte", nullable = false)
+    private LocalDate fechaCorte;
+
+    // Instante exacto (reloj de la BD) en que se tomó el saldo
+    @Column(name = "fecha_saldo", nullable = false)
+    private LocalDateTime fechaSaldo;
+
+    // Último id de movimiento incluido en la cantidad; los ids mayores son el delta
+    @Column(name = "ultimo_movimiento_id")
+    private Long ultimoMovimientoId;
+
+    @Column(precision = 15, scale = 3, nullable = false)
+    private BigDecimal cantidad;
+
+    @Column(name = "costo_promedio", precision = 15, scale = 2)
+    private BigDecimal costoPromedio;
+
+    @Column(name = "creado_en")
+    private LocalDateTime creadoEn;
+
+    @PrePersist
+    protected void onCreate() {
+        creadoEn = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,60 @@
+package com.tienda.model;
+
+import lombok.*;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Velocidad de venta por producto: media exponencial de unidades vendidas por día.
+ * Las unidades del día en curso se acumulan en unidadesDia y se incorporan a la
+ * media cuando llega la primera venta de un día posterior.
+ * Los valores de reposición (velocidad vigente, stock de seguridad, punto de reorden por
+ * velocidad y stock de cobertura) se recalculan con cada venta y cada noche; la regla de
+ * stock mínimo y el tope de stock máximo se aplican al leer.
+ */
+@Entity
+@Table(name = "velocidades_venta",
+        uniqueConstraints = @UniqueConstraint(name = "uk_velocidad_producto", columnNames = "producto_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VelocidadVenta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", nullable = false)
+    private Producto producto;
+
+    @Column(name = "velocidad_diaria", precision = 15, scale = 4)
+    @Builder.Default
+    private BigDecimal velocidadDiaria = BigDecimal.ZERO;
+
+    @Column(name = "unidades_dia", precision = 15, scale = 3)
+    @Builder.Default
+    private BigDecimal unidadesDia = BigDecimal.ZERO;
+
+    @Column(name = "fecha_dia", nullable = false)
+    private LocalDate fechaDia;
+
+    @Column(name = "velocidad_reorden", precision = 15, scale = 4)
+    private BigDecimal velocidadReorden;
+
+    @Column(name = "stock_seguridad", precision = 15, scale = 2)
+    private BigDecimal stockSeguridad;
+
+    @Column(name = "punto_reorden", precision = 15, scale = 2)
+    private BigDecimal puntoReorden;
+
+    @Column(name = "stock_cobertura", precision = 15, scale = 2)
+    private BigDecimal stockCobertura;
+
+    @Column(name = "actualizado_en")
+    private LocalDateTime actualizadoEn;
+}
@@ -0,0 +1,177 @@
+package com.tienda.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Acceso a las tablas históricas: cada tabla de alto volumen tiene una gemela
+ * <tabla>_historico particionada por mes, sin índices B-tree (solo BRIN sobre la
+ * fecha), a la que se mueven los periodos cerrados.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ArchivoHistoricoRepository {
+
+    private static final DateTimeFormatter FORMATO_PARTICION = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Getter
+    public enum TablaArchivable {
+        // Los detalles van antes que las ventas por la FK detalle_ventas.venta_id
+        DETALLE_VENTAS("detalle_ventas", "fecha_venta", "ventas v", "v.fecha_emision",
+                "v.id = t.venta_id AND v.estado <> 'PENDIENTE'", "fecha_venta timestamp"),
+        VENTAS("ventas", "fecha_emision", null, "t.fecha_emision",
+                "t.estado <> 'PENDIENTE'", null),
+        MOVIMIENTOS_INVENTARIO("movimientos_inventario", "fecha_movimiento", null, "t.fecha_movimiento",
+                null, null),
+        LOGS_AUTENTICACION("logs_autenticacion", "creado_en", null, "t.creado_en",
+                null, null),
+        SESIONES_USUARIO("sesiones_usuario", "fecha_inicio", null, "t.fecha_inicio",
+                "t.estado <> 'ACTIVA'", null);
+
+        private final String tabla;
+        private final String columnaParticion;
+        private final String tablaRelacionada;
+        private final String expresionFecha;
+        private final String condicion;
+        private final String columnaExtra;
+
+        TablaArchivable(String tabla, String columnaParticion, String tablaRelacionada,
+                        String expresionFecha, String condicion, String columnaExtra) {
+            this.tabla = tabla;
+            this.columnaParticion = columnaParticion;
+            this.tablaRelacionada = tablaRelacionada;
+            this.expresionFecha = expresionFecha;
+            this.condicion = condicion;
+            this.columnaExtra = columnaExtra;
+        }
+
+        public String getTablaHistorica() {
+            return tabla + "_historico";
+        }
+
+        private String condicionCompleta() {
+            return condicion != null ? " AND " + condicion : "";
+        }
+    }
+
+    // ✅ Crea la tabla histórica particionada y sincroniza columnas nuevas de la tabla activa
+    public void prepararTablaHistorica(TablaArchivable t) {
+        String definicion = "LIKE " + t.getTabla() +
+                (t.getColumnaExtra() != null ? ", " + t.getColumnaExtra() : "");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + t.getTablaHistorica() +
+                " (" + definicion + ") PARTITION BY RANGE (" + t.getColumnaParticion() + ")");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + t.getTablaHistorica() + "_fecha_brin ON " +
+                t.getTablaHistorica() + " USING brin (" + t.getColumnaParticion() + ")");
+
+        // ddl-auto puede haber agregado columnas a la tabla activa después de crear la histórica
+        Map<String, String> columnasActivas = obtenerColumnas(t.getTabla());
+        Map<String, String> columnasHistoricas = obtenerColumnas(t.getTablaHistorica());
+        columnasActivas.forEach((columna, tipo) -> {
+            if (!columnasHistoricas.containsKey(columna)) {
+                jdbcTemplate.execute("ALTER TABLE " + t.getTablaHistorica() +
+                        " ADD COLUMN IF NOT EXISTS \"" + columna + "\" " + tipo);
+            }
+        });
+    }
+
+    // ✅ Partición mensual de la tabla histórica (idempotente)
+    public void crearParticion(TablaArchivable t, YearMonth periodo) {
+        LocalDate desde = periodo.atDay(1);
+        LocalDate hasta = periodo.plusMonths(1).atDay(1);
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + t.getTablaHistorica() + "_p" +
+                periodo.format(FORMATO_PARTICION) + " PARTITION OF " + t.getTablaHistorica() +
+                " FOR VALUES FROM ('" + desde + "') TO ('" + hasta + "')");
+    }
+
+    // ✅ Fecha más antigua que sigue en la tabla activa antes del corte
+    public LocalDateTime obtenerFechaMasAntigua(TablaArchivable t, LocalDateTime corte) {
+        Timestamp fecha = jdbcTemplate.queryForObject(
+                "SELECT MIN(" + t.getExpresionFecha() + ") FROM " + origen(t) +
+                " WHERE " + t.getExpresionFecha() + " < ?" + t.condicionCompleta(),
+                Timestamp.class, Timestamp.valueOf(corte));
+        return fecha != null ? fecha.toLocalDateTime() : null;
+    }
+
+    // ✅ Mueve un periodo en una sola sentencia: DELETE ... RETURNING alimenta el INSERT
+    public int moverPeriodo(TablaArchivable t, YearMonth periodo) {
+        String columnas = obtenerColumnas(t.getTabla()).keySet().stream()
+                .map(c -> "\"" + c + "\"")
+                .collect(Collectors.joining(", "));
+        String columnasDestino = columnas + (t.getColumnaExtra() != null ? ", " + t.getColumnaParticion() : "");
+        String retorno = "t.*" + (t.getColumnaExtra() != null ?
+                ", " + t.getExpresionFecha() + " AS " + t.getColumnaParticion() : "");
+
+        String sql = "WITH movidos AS (DELETE FROM " + t.getTabla() + " t" +
+                (t.getTablaRelacionada() != null ? " USING " + t.getTablaRelacionada() : "") +
+                " WHERE " + t.getExpresionFecha() + " >= ? AND " + t.getExpresionFecha() + " < ?" +
+                t.condicionCompleta() + " RETURNING " + retorno + ") " +
+                "INSERT INTO " + t.getTablaHistorica() + " (" + columnasDestino + ") " +
+                "SELECT " + columnasDestino + " FROM movidos";
+
+        return jdbcTemplate.update(sql,
+                Timestamp.valueOf(periodo.atDay(1).atStartOfDay()),
+                Timestamp.valueOf(periodo.plusMonths(1).atDay(1).atStartOfDay()));
+    }
+
+    // ✅ Particiones existentes con filas estimadas y tamaño en disco
+    public List<Map<String, Object>> obtenerParticiones(TablaArchivable t) {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname AS particion, " +
+                "pg_get_expr(c.relpartbound, c.oid) AS rango, " +
+                "c.reltuples::bigint AS filasEstimadas, " +
+                "pg_total_relation_size(c.oid) AS bytes " +
+                "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname",
+                t.getTablaHistorica());
+    }
+
+    public boolean existeTablaHistorica(TablaArchivable t) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, t.getTablaHistorica()));
+    }
+
+    // ✅ Ventas archivadas agregadas por mes (lectura para reportes; poda por partición)
+    public List<Map<String, Object>> obtenerVentasArchivadasPorMes(LocalDateTime desde, LocalDateTime hasta) {
+        return jdbcTemplate.queryForList(
+                "SELECT to_char(date_trunc('month', fecha_emision), 'YYYY-MM') AS periodo, " +
+                "COUNT(*) AS cantidadVentas, " +
+                "COALESCE(SUM(total), 0) AS totalVentas, " +
+                "COUNT(*) FILTER (WHERE estado = 'ANULADA') AS ventasAnuladas " +
+                "FROM ventas_historico " +
+                "WHERE fecha_emision >= ? AND fecha_emision < ? " +
+                "GROUP BY 1 ORDER BY 1",
+                Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+
+    // Métodos privados auxiliares
+    private String origen(TablaArchivable t) {
+        return t.getTabla() + " t" + (t.getTablaRelacionada() != null ? ", " + t.getTablaRelacionada() : "");
+    }
+
+    private Map<String, String> obtenerColumnas(String tabla) {
+        Map<String, String> columnas = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT a.attname, format_type(a.atttypid, a.atttypmod) FROM pg_attribute a " +
+                "WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 AND NOT a.attisdropped " +
+                "ORDER BY a.attnum",
+                rs -> { columnas.put(rs.getString(1), rs.getString(2)); },
+                tabla);
+        return columnas;
+    }
+}
@@ -0,0 +1,166 @@
+package com.tienda.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Búsqueda de texto en PostgreSQL: cada tabla tiene una columna tsvector generada
+ * (configuración spanish, sin tildes) con índice GIN, e índices de trigramas sobre el
+ * nombre y el código. Los filtros se agregan solo cuando vienen informados, para que
+ * el planificador pueda usar los índices.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BusquedaTextoRepository {
+
+    private static final Pattern PROPIEDAD_ORDEN = Pattern.compile("[a-zA-Z][a-zA-Z0-9]*");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Getter
+    public enum TablaBusqueda {
+        PRODUCTOS("productos", "nombre", "codigo",
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(nombre, ''))), 'A') || " +
+                "setweight(to_tsvector('simple', coalesce(codigo, '') || ' ' || coalesce(codigo_barras, '')), 'A') || " +
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(marca, ''))), 'B') || " +
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(descripcion, ''))), 'C')"),
+        CLIENTES("clientes", "nombre", "numero_documento",
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(nombre, ''))), 'A') || " +
+                "setweight(to_tsvector('simple', coalesce(numero_documento, '')), 'A') || " +
+                "setweight(to_tsvector('simple', coalesce(email, '') || ' ' || coalesce(telefono, '')), 'B')"),
+        PROVEEDORES("proveedores", "nombre", "codigo",
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(nombre, ''))), 'A') || " +
+                "setweight(to_tsvector('simple', coalesce(codigo, '') || ' ' || coalesce(ruc, '')), 'A') || " +
+                "setweight(to_tsvector('spanish', tienda_unaccent(coalesce(contacto, ''))), 'B') || " +
+                "setweight(to_tsvector('simple', coalesce(email, '')), 'B')");
+
+        private final String tabla;
+        private final String columnaNombre;
+        private final String columnaCodigo;
+        private final String expresionVector;
+
+        TablaBusqueda(String tabla, String columnaNombre, String columnaCodigo, String expresionVector) {
+            this.tabla = tabla;
+            this.columnaNombre = columnaNombre;
+            this.columnaCodigo = columnaCodigo;
+            this.expresionVector = expresionVector;
+        }
+
+        public String nombreNormalizado() {
+            return "tienda_unaccent(lower(" + columnaNombre + "))";
+        }
+    }
+
+    public Page<Long> buscar(TablaBusqueda t, String texto, Map<String, Object> filtros, Pageable pageable) {
+        return buscar(t, texto, null, filtros, pageable);
+    }
+
+    /**
+     * Ids que coinciden por palabras (con raíz), por fragmento del nombre o por prefijo del
+     * código. El prefijo de código, si viene, es un filtro más y no parte del texto. Se
+     * respeta el orden pedido en el Pageable; sin él, con texto se ordena por relevancia
+     * (rango de texto completo más similitud de palabra del nombre) y sin texto por nombre.
+     */
+    public Page<Long> buscar(TablaBusqueda t, String texto, String prefijoCodigo,
+                             Map<String, Object> filtros, Pageable pageable) {
+        List<Object> parametros = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT t.id, COUNT(*) OVER () AS total FROM ")
+                .append(t.getTabla()).append(" t WHERE 1 = 1");
+
+        boolean conTexto = informado(texto);
+        if (conTexto) {
+            String consulta = texto.trim();
+            sql.append(" AND (t.busqueda @@ websearch_to_tsquery('spanish', tienda_unaccent(?))")
+                    .append(" OR tienda_unaccent(lower(?)) <% ").append(t.nombreNormalizado())
+                    .append(" OR lower(t.").append(t.getColumnaCodigo()).append(") LIKE ? ESCAPE '\\')");
+            parametros.add(consulta);
+            parametros.add(consulta);
+            parametros.add(escaparLike(consulta.toLowerCase()) + "%");
+        }
+
+        if (informado(prefijoCodigo)) {
+            sql.append(" AND lower(t.").append(t.getColumnaCodigo()).append(") LIKE ? ESCAPE '\\'");
+            parametros.add(escaparLike(prefijoCodigo.trim().toLowerCase()) + "%");
+        }
+
+        // Solo los filtros informados: sin "(? IS NULL OR ...)" que impida usar índices
+        filtros.forEach((columna, valor) -> {
+            if (valor != null) {
+                sql.append(" AND t.").append(columna).append(" = ?");
+                parametros.add(valor);
+            }
+        });
+
+        sql.append(" ORDER BY ");
+        Sort orden = pageable.getSort();
+        orden.forEach(o -> sql.append("t.").append(columnaOrden(o.getProperty()))
+                .append(o.isAscending() ? " ASC" : " DESC").append(", "));
+        if (conTexto) {
+            // Con orden explícito la relevancia solo desempata
+            String consulta = texto.trim();
+            sql.append("ts_rank_cd(t.busqueda, websearch_to_tsquery('spanish', tienda_unaccent(?)), 32)")
+                    .append(" + word_similarity(tienda_unaccent(lower(?)), ").append(t.nombreNormalizado()).append(")")
+                    .append(" + CASE WHEN lower(t.").append(t.getColumnaCodigo()).append(") = lower(?) THEN 1 ELSE 0 END")
+                    .append(" DESC, t.id");
+            parametros.add(consulta);
+            parametros.add(consulta);
+            parametros.add(consulta);
+        } else if (orden.isSorted()) {
+            sql.append("t.id");
+        } else {
+            sql.append("t.").append(t.getColumnaNombre()).append(", t.id");
+        }
+
+        if (pageable.isPaged()) {
+            sql.append(" LIMIT ? OFFSET ?");
+            parametros.add(pageable.getPageSize());
+            parametros.add(pageable.getOffset());
+        }
+
+        List<Long> ids = new ArrayList<>();
+        long[] total = {0};
+        jdbcTemplate.query(sql.toString(), rs -> {
+            ids.add(rs.getLong("id"));
+            total[0] = rs.getLong("total");
+        }, parametros.toArray());
+
+        // Página fuera de rango: el total viene con las filas, así que se cuenta aparte
+        if (ids.isEmpty() && pageable.isPaged() && pageable.getOffset() > 0) {
+            return new PageImpl<>(ids, pageable, contar(t, texto, prefijoCodigo, filtros));
+        }
+        return new PageImpl<>(ids, pageable, total[0]);
+    }
+
+    // Métodos privados auxiliares
+    private long contar(TablaBusqueda t, String texto, String prefijoCodigo, Map<String, Object> filtros) {
+        Page<Long> primera = buscar(t, texto, prefijoCodigo, filtros, Pageable.ofSize(1));
+        return primera.getTotalElements();
+    }
+
+    // Propiedad de la entidad (precioVenta) a columna (precio_venta); nunca SQL libre
+    private String columnaOrden(String propiedad) {
+        if (!PROPIEDAD_ORDEN.matcher(propiedad).matches()) {
+            throw new IllegalArgumentException("Campo de ordenamiento inválido: " + propiedad);
+        }
+        return propiedad.replaceAll("([A-Z])", "_$1").toLowerCase();
+    }
+
+    private boolean informado(String valor) {
+        return valor != null && !valor.trim().isEmpty();
+    }
+
+    private String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
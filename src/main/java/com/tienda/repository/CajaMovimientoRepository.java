@@ -0,0 +1,175 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Libro de movimientos por caja: cada apertura, venta, anulación, ingreso y egreso es una fila
+ * inmutable con su forma de pago y el saldo acumulado tras aplicarla. El saldo corriente de la
+ * sesión abierta vive en caja_saldos y se actualiza en la misma sentencia que inserta el
+ * movimiento, así que dos escrituras sobre la misma caja se serializan en esa fila sin leer y
+ * reescribir la entidad. Los totales de una sesión salen de una lectura por (caja_id, sesion).
+ */
+@Repository
+@RequiredArgsConstructor
+public class CajaMovimientoRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Abre una sesión en el libro a las cajas que ya estaban abiertas antes de existir, con su
+     * saldo inicial y las ventas completadas desde la apertura. Devuelve las cajas migradas.
+     */
+    public int migrarCajasAbiertas() {
+        String sinSesion = "c.estado = 'ABIERTA' AND NOT EXISTS (SELECT 1 FROM caja_saldos s WHERE s.caja_id = c.id)";
+        jdbcTemplate.update(
+                "INSERT INTO caja_movimientos (caja_id, sesion, tipo, forma_pago, monto, saldo, venta_id, usuario_id, concepto, fecha) " +
+                "SELECT m.caja_id, 1, m.tipo, m.forma_pago, m.monto, " +
+                "SUM(m.monto) OVER (PARTITION BY m.caja_id ORDER BY m.orden, m.fecha, m.venta_id ROWS UNBOUNDED PRECEDING), " +
+                "m.venta_id, m.usuario_id, m.concepto, m.fecha FROM (" +
+                "SELECT c.id AS caja_id, 0 AS orden, 'APERTURA' AS tipo, 'EFECTIVO' AS forma_pago, " +
+                "COALESCE(c.saldo_inicial, 0) AS monto, NULL::bigint AS venta_id, c.usuario_asignado_id AS usuario_id, " +
+                "'Apertura' AS concepto, COALESCE(c.fecha_apertura, now()) AS fecha FROM cajas c WHERE " + sinSesion +
+                " UNION ALL " +
+                "SELECT v.caja_id, 1, 'VENTA', COALESCE(v.forma_pago, 'EFECTIVO'), v.total, v.id, v.vendedor_id, " +
+                "v.numero_factura, v.fecha_emision FROM ventas v JOIN cajas c ON c.id = v.caja_id " +
+                "WHERE " + sinSesion + " AND v.estado = 'COMPLETADA' AND v.fecha_emision >= COALESCE(c.fecha_apertura, now())" +
+                ") m");
+        return jdbcTemplate.update(
+                "INSERT INTO caja_saldos (caja_id, sesion, saldo, abierta_en) " +
+                "SELECT m.caja_id, 1, SUM(m.monto), MIN(m.fecha) FROM caja_movimientos m " +
+                "WHERE NOT EXISTS (SELECT 1 FROM caja_saldos s WHERE s.caja_id = m.caja_id) GROUP BY m.caja_id");
+    }
+
+    // ✅ Nueva sesión: el saldo vuelve al inicial y se anota la apertura. Devuelve el número de sesión
+    public int abrirSesion(Long cajaId, BigDecimal saldoInicial, Long usuarioId) {
+        Integer sesion = jdbcTemplate.queryForObject(
+                "INSERT INTO caja_saldos (caja_id, sesion, saldo, abierta_en) VALUES (?, 1, ?, now()) " +
+                "ON CONFLICT (caja_id) DO UPDATE SET sesion = caja_saldos.sesion + 1, " +
+                "saldo = EXCLUDED.saldo, abierta_en = EXCLUDED.abierta_en RETURNING sesion",
+                Integer.class, cajaId, saldoInicial);
+        jdbcTemplate.update(
+                "INSERT INTO caja_movimientos (caja_id, sesion, tipo, forma_pago, monto, saldo, usuario_id, concepto) " +
+                "VALUES (?, ?, 'APERTURA', 'EFECTIVO', ?, ?, ?, 'Apertura')",
+                cajaId, sesion, saldoInicial, saldoInicial, usuarioId);
+        return sesion;
+    }
+
+    /**
+     * Anota un movimiento en la sesión actual de la caja y devuelve el saldo resultante
+     * (null si la caja nunca abrió sesión). El importe va con signo: los egresos y las
+     * anulaciones restan.
+     */
+    public BigDecimal registrar(Long cajaId, String tipo, String formaPago, BigDecimal monto,
+                                Long ventaId, Long usuarioId, String concepto) {
+        List<BigDecimal> saldo = jdbcTemplate.queryForList(
+                "WITH s AS (UPDATE caja_saldos SET saldo = saldo + ? WHERE caja_id = ? RETURNING caja_id, sesion, saldo) " +
+                "INSERT INTO caja_movimientos (caja_id, sesion, tipo, forma_pago, monto, saldo, venta_id, usuario_id, concepto) " +
+                "SELECT caja_id, sesion, ?, ?, ?, saldo, ?, ?, ? FROM s RETURNING saldo",
+                BigDecimal.class, monto, cajaId, tipo, formaPago, monto, ventaId, usuarioId, concepto);
+        return saldo.isEmpty() ? null : saldo.get(0);
+    }
+
+    // ✅ Sesión actual y saldo corriente (null si la caja nunca abrió sesión)
+    public Map<String, Object> obtenerSaldo(Long cajaId) {
+        List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                "SELECT sesion, saldo, abierta_en FROM caja_saldos WHERE caja_id = ?", cajaId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    // ✅ Bloquea la sesión para que ningún movimiento entre mientras se calcula el cierre
+    public Integer bloquearSesion(Long cajaId) {
+        List<Integer> sesion = jdbcTemplate.queryForList(
+                "SELECT sesion FROM caja_saldos WHERE caja_id = ? FOR UPDATE", Integer.class, cajaId);
+        return sesion.isEmpty() ? null : sesion.get(0);
+    }
+
+    /**
+     * Totales de una sesión por tipo y forma de pago. La suma de efectivo, tarjetas,
+     * transferencias y otros medios es el saldo final teórico (el efectivo incluye la apertura).
+     */
+    public Map<String, Object> obtenerTotalesSesion(Long cajaId, int sesion) {
+        return jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(monto) FILTER (WHERE tipo = 'APERTURA'), 0) AS saldo_inicial, " +
+                "COALESCE(SUM(monto) FILTER (WHERE tipo IN ('VENTA', 'ANULACION')), 0) AS ventas, " +
+                "COUNT(*) FILTER (WHERE tipo = 'VENTA') - COUNT(*) FILTER (WHERE tipo = 'ANULACION') AS numero_ventas, " +
+                "COALESCE(SUM(monto) FILTER (WHERE tipo = 'INGRESO'), 0) AS ingresos, " +
+                "COALESCE(-SUM(monto) FILTER (WHERE tipo = 'EGRESO'), 0) AS egresos, " +
+                "COALESCE(SUM(monto) FILTER (WHERE forma_pago = 'EFECTIVO'), 0) AS efectivo, " +
+                "COALESCE(SUM(monto) FILTER (WHERE forma_pago LIKE '%TARJETA%'), 0) AS tarjetas, " +
+                "COALESCE(SUM(monto) FILTER (WHERE forma_pago LIKE '%TRANSFERENCIA%'), 0) AS transferencias, " +
+                "COALESCE(SUM(monto) FILTER (WHERE forma_pago <> 'EFECTIVO' AND forma_pago NOT LIKE '%TARJETA%' " +
+                "AND forma_pago NOT LIKE '%TRANSFERENCIA%'), 0) AS otros_medios, " +
+                "COALESCE(SUM(monto), 0) AS saldo, MIN(fecha) AS apertura, COUNT(*) AS movimientos " +
+                "FROM caja_movimientos WHERE caja_id = ? AND sesion = ?",
+                cajaId, sesion);
+    }
+
+    // ✅ Movimientos de una sesión en orden de registro
+    public List<Map<String, Object>> obtenerMovimientosSesion(Long cajaId, int sesion) {
+        return jdbcTemplate.queryForList(
+                "SELECT id, tipo, forma_pago, monto, saldo, venta_id, usuario_id, concepto, fecha " +
+                "FROM caja_movimientos WHERE caja_id = ? AND sesion = ? ORDER BY id",
+                cajaId, sesion);
+    }
+
+    /**
+     * Resumen de varias cajas en una consulta: saldo corriente, ventas netas (número e importe)
+     * desde {@code desde} y número de cierres con la fecha del último. Cajas sin datos vienen a cero.
+     */
+    public Map<Long, Map<String, Object>> obtenerResumenCajas(List<Long> cajaIds, LocalDateTime desde) {
+        Map<Long, Map<String, Object>> resumen = new HashMap<>();
+        if (cajaIds.isEmpty()) {
+            return resumen;
+        }
+        jdbcTemplate.query(
+                "SELECT c.id AS caja_id, s.saldo, COALESCE(h.ventas, 0) AS ventas_hoy, " +
+                "COALESCE(h.total, 0) AS total_hoy, COALESCE(k.cierres, 0) AS cierres, k.ultimo_cierre " +
+                "FROM unnest(?::bigint[]) AS c (id) " +
+                "LEFT JOIN caja_saldos s ON s.caja_id = c.id " +
+                "LEFT JOIN (SELECT caja_id, COUNT(*) FILTER (WHERE tipo = 'VENTA') - " +
+                "COUNT(*) FILTER (WHERE tipo = 'ANULACION') AS ventas, SUM(monto) AS total " +
+                "FROM caja_movimientos WHERE caja_id = ANY (?) AND fecha >= ? AND tipo IN ('VENTA', 'ANULACION') " +
+                "GROUP BY caja_id) h ON h.caja_id = c.id " +
+                "LEFT JOIN (SELECT caja_id, COUNT(*) AS cierres, MAX(creado_en) AS ultimo_cierre " +
+                "FROM cierres_caja WHERE caja_id = ANY (?) GROUP BY caja_id) k ON k.caja_id = c.id",
+                ps -> {
+                    Array ids = ps.getConnection().createArrayOf("bigint", cajaIds.toArray());
+                    ps.setArray(1, ids);
+                    ps.setArray(2, ids);
+                    ps.setTimestamp(3, Timestamp.valueOf(desde));
+                    ps.setArray(4, ids);
+                },
+                rs -> {
+                    Map<String, Object> fila = new HashMap<>();
+                    fila.put("saldo", rs.getBigDecimal("saldo"));
+                    fila.put("ventasHoy", rs.getInt("ventas_hoy"));
+                    fila.put("totalHoy", rs.getBigDecimal("total_hoy"));
+                    fila.put("cierres", rs.getInt("cierres"));
+                    Timestamp ultimoCierre = rs.getTimestamp("ultimo_cierre");
+                    fila.put("ultimoCierre", ultimoCierre != null ? ultimoCierre.toLocalDateTime() : null);
+                    resumen.put(rs.getLong("caja_id"), fila);
+                });
+        return resumen;
+    }
+
+    // ✅ Ventas netas de la caja en [desde, hasta) por forma de pago y hora
+    public List<Map<String, Object>> obtenerVentasPorHora(Long cajaId, LocalDateTime desde, LocalDateTime hasta) {
+        return jdbcTemplate.queryForList(
+                "SELECT EXTRACT(HOUR FROM fecha)::int AS hora, forma_pago, " +
+                "COUNT(*) FILTER (WHERE tipo = 'VENTA') - COUNT(*) FILTER (WHERE tipo = 'ANULACION') AS ventas, " +
+                "SUM(monto) AS total FROM caja_movimientos " +
+                "WHERE caja_id = ? AND fecha >= ? AND fecha < ? AND tipo IN ('VENTA', 'ANULACION') " +
+                "GROUP BY 1, 2 ORDER BY 1, 2",
+                cajaId, Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+}
@@ -1,6 +1,9 @@
 package com.tienda.repository;
 
 import com.tienda.model.Caja;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -13,13 +16,25 @@ public interface CajaRepository extends JpaRepository<Caja, Long> {
 
     Optional<Caja> findByCodigo(String codigo);
 
+    // ✅ Listados: sucursal y usuario asignado en la misma consulta, sin una consulta extra por caja
+    @EntityGraph(attributePaths = {"sucursal", "usuarioAsignado"})
+    @Query("SELECT c FROM Caja c")
+    List<Caja> findAllConRelaciones();
+
+    @EntityGraph(attributePaths = {"sucursal", "usuarioAsignado"})
+    @Query(value = "SELECT c FROM Caja c", countQuery = "SELECT count(c) FROM Caja c")
+    Page<Caja> findAllConRelaciones(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"sucursal", "usuarioAsignado"})
     List<Caja> findBySucursalId(Long sucursalId);
 
+    @EntityGraph(attributePaths = {"sucursal", "usuarioAsignado"})
     List<Caja> findByEstado(Caja.EstadoCaja estado);
 
     List<Caja> findByUsuarioAsignadoId(Long usuarioId);
 
     // ✅ Cajas abiertas
+    @EntityGraph(attributePaths = {"sucursal", "usuarioAsignado"})
     @Query("SELECT c FROM Caja c WHERE c.estado = 'ABIERTA'")
     List<Caja> findCajasAbiertas();
 
@@ -0,0 +1,93 @@
+package com.tienda.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Registro de cambios del catálogo para la sincronización incremental de las cajas.
+ * Triggers diferidos anotan en catalogo_cambios cada alta, baja o modificación de
+ * productos y categorías al hacer commit, bajo un bloqueo consultivo de transacción:
+ * así el orden de la secuencia coincide con el orden en que los cambios se hacen
+ * visibles y un lector nunca salta un cambio confirmado más tarde con número menor.
+ * Solo cuentan las columnas que usa la caja; los movimientos de stock no generan cambios.
+ */
+@Repository
+public class CatalogoCambiosRepository {
+
+    private static final int TAMANO_FETCH = 1000;
+
+    private static final String COLUMNAS_PRODUCTO =
+            "p.codigo, p.codigo_barras, p.nombre, p.marca, p.categoria_id, p.unidad_medida, " +
+            "p.permite_decimal, p.tipo_producto, p.precio_venta, p.precio_venta2, p.precio_venta3, p.estado";
+
+    private static final String COLUMNAS_CATEGORIA =
+            "c.nombre, c.categoria_padre_id, c.nivel, c.orden, c.icono, c.estado";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogoCambiosRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(TAMANO_FETCH);
+    }
+
+    // ✅ Última secuencia publicada (no retrocede aunque se purgue el registro)
+    public long obtenerUltimaSecuencia() {
+        return jdbcTemplate.queryForObject(
+                "SELECT GREATEST(COALESCE((SELECT max(secuencia) FROM catalogo_cambios), 0), " +
+                "(SELECT secuencia_purgada FROM catalogo_cambios_estado WHERE id = 1))",
+                Long.class);
+    }
+
+    // ✅ Hasta dónde se purgó el registro; un cliente por debajo necesita la carga completa
+    public long obtenerSecuenciaPurgada() {
+        return jdbcTemplate.queryForObject(
+                "SELECT secuencia_purgada FROM catalogo_cambios_estado WHERE id = 1", Long.class);
+    }
+
+    // ✅ Catálogo completo
+    public void recorrerCategorias(RowCallbackHandler manejador) {
+        jdbcTemplate.query("SELECT c.id, " + COLUMNAS_CATEGORIA + " FROM categorias c ORDER BY c.id", manejador);
+    }
+
+    public void recorrerProductos(RowCallbackHandler manejador) {
+        jdbcTemplate.query("SELECT p.id, " + COLUMNAS_PRODUCTO + " FROM productos p ORDER BY p.id", manejador);
+    }
+
+    // ✅ Estado actual de lo modificado desde la secuencia; sin fila (id NULL) es una baja
+    public void recorrerCategoriasModificadas(long desde, long hasta, RowCallbackHandler manejador) {
+        jdbcTemplate.query(
+                "SELECT x.registro_id, c.id, " + COLUMNAS_CATEGORIA + " FROM (" + cambiosDesde("categoria") + ") x " +
+                "LEFT JOIN categorias c ON c.id = x.registro_id ORDER BY x.secuencia",
+                manejador, desde, hasta);
+    }
+
+    public void recorrerProductosModificados(long desde, long hasta, RowCallbackHandler manejador) {
+        jdbcTemplate.query(
+                "SELECT x.registro_id, p.id, " + COLUMNAS_PRODUCTO + " FROM (" + cambiosDesde("producto") + ") x " +
+                "LEFT JOIN productos p ON p.id = x.registro_id ORDER BY x.secuencia",
+                manejador, desde, hasta);
+    }
+
+    // ✅ Borra un prefijo del registro y recuerda hasta dónde llegó; devuelve las filas borradas
+    public int purgarAnterioresA(LocalDateTime fecha) {
+        Long limite = jdbcTemplate.queryForObject(
+                "SELECT max(secuencia) FROM catalogo_cambios WHERE fecha < ?", Long.class, Timestamp.valueOf(fecha));
+        if (limite == null) {
+            return 0;
+        }
+        jdbcTemplate.update("UPDATE catalogo_cambios_estado SET secuencia_purgada = GREATEST(secuencia_purgada, ?) " +
+                "WHERE id = 1", limite);
+        return jdbcTemplate.update("DELETE FROM catalogo_cambios WHERE secuencia <= ?", limite);
+    }
+
+    // Métodos privados auxiliares
+    private String cambiosDesde(String tabla) {
+        return "SELECT registro_id, max(secuencia) AS secuencia FROM catalogo_cambios " +
+                "WHERE tabla = '" + tabla + "' AND secuencia > ? AND secuencia <= ? GROUP BY registro_id";
+    }
+}
@@ -0,0 +1,183 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabla de clausura del árbol de categorías: una fila por cada par (ancestro, descendiente),
+ * incluida la de cada categoría consigo misma con profundidad 0. Subárboles, ancestros y
+ * detección de ciclos se resuelven con una sola consulta indexada, sin recorrer padres.
+ * Las filas se borran en cascada al eliminar la categoría.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CategoriaArbolRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean hayArchivoVentas;
+
+    // ✅ Categorías sin su fila propia: la tabla no refleja categorias y hay que reconstruirla
+    public int contarCategoriasSinClausura() {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM categorias c WHERE NOT EXISTS (SELECT 1 FROM categoria_arbol a " +
+                "WHERE a.ancestro_id = c.id AND a.descendiente_id = c.id)", Integer.class);
+    }
+
+    // ✅ Reconstrucción completa desde categoria_padre_id; devuelve las filas generadas
+    public int reconstruir() {
+        jdbcTemplate.update("DELETE FROM categoria_arbol");
+        return jdbcTemplate.update(
+                "INSERT INTO categoria_arbol (ancestro_id, descendiente_id, profundidad) " +
+                "WITH RECURSIVE caminos AS (" +
+                "SELECT id AS ancestro_id, id AS descendiente_id, 0 AS profundidad FROM categorias " +
+                "UNION ALL SELECT k.ancestro_id, c.id, k.profundidad + 1 " +
+                "FROM caminos k JOIN categorias c ON c.categoria_padre_id = k.descendiente_id) " +
+                "SELECT ancestro_id, descendiente_id, profundidad FROM caminos");
+    }
+
+    // ✅ Nueva hoja: los caminos del padre más la fila propia
+    public void agregarHoja(Long categoriaId, Long padreId) {
+        jdbcTemplate.update(
+                "INSERT INTO categoria_arbol (ancestro_id, descendiente_id, profundidad) " +
+                "SELECT ancestro_id, ?, profundidad + 1 FROM categoria_arbol WHERE descendiente_id = ? " +
+                "UNION ALL SELECT ?, ?, 0",
+                categoriaId, padreId, categoriaId, categoriaId);
+    }
+
+    // ✅ Mueve el subárbol: corta los caminos desde los ancestros externos y los rehace bajo el nuevo padre
+    public void moverSubarbol(Long categoriaId, Long nuevoPadreId) {
+        jdbcTemplate.update(
+                "DELETE FROM categoria_arbol a " +
+                "WHERE a.descendiente_id IN (SELECT descendiente_id FROM categoria_arbol WHERE ancestro_id = ?) " +
+                "AND a.ancestro_id NOT IN (SELECT descendiente_id FROM categoria_arbol WHERE ancestro_id = ?)",
+                categoriaId, categoriaId);
+        if (nuevoPadreId != null) {
+            jdbcTemplate.update(
+                    "INSERT INTO categoria_arbol (ancestro_id, descendiente_id, profundidad) " +
+                    "SELECT s.ancestro_id, d.descendiente_id, s.profundidad + d.profundidad + 1 " +
+                    "FROM categoria_arbol s CROSS JOIN categoria_arbol d " +
+                    "WHERE s.descendiente_id = ? AND d.ancestro_id = ?",
+                    nuevoPadreId, categoriaId);
+        }
+    }
+
+    // ✅ ¿descendienteId está dentro del subárbol de ancestroId? (incluye la propia categoría)
+    public boolean esDescendiente(Long descendienteId, Long ancestroId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM categoria_arbol WHERE ancestro_id = ? AND descendiente_id = ?)",
+                Boolean.class, ancestroId, descendienteId));
+    }
+
+    // ✅ Subárbol con el nivel de cada categoría (número de ancestros, incluida ella misma)
+    public Map<Long, Integer> obtenerNivelesSubarbol(Long categoriaId) {
+        Map<Long, Integer> niveles = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT d.descendiente_id, (SELECT count(*) FROM categoria_arbol x " +
+                "WHERE x.descendiente_id = d.descendiente_id) AS nivel " +
+                "FROM categoria_arbol d WHERE d.ancestro_id = ? ORDER BY d.profundidad",
+                rs -> {
+                    niveles.put(rs.getLong("descendiente_id"), rs.getInt("nivel"));
+                }, categoriaId);
+        return niveles;
+    }
+
+    // ✅ Productos en el subárbol (la categoría y todas sus descendientes)
+    public long contarProductosSubarbol(Long categoriaId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM productos p JOIN categoria_arbol a ON a.descendiente_id = p.categoria_id " +
+                "WHERE a.ancestro_id = ?", Long.class, categoriaId);
+    }
+
+    // ✅ Productos y valor de stock por categoría: propios y acumulados con todo el subárbol
+    public List<Map<String, Object>> obtenerResumenProductos() {
+        return jdbcTemplate.queryForList(
+                "WITH propio AS (SELECT categoria_id, COUNT(*) AS productos, " +
+                "COUNT(*) FILTER (WHERE estado = 'ACTIVO') AS activos, " +
+                "COALESCE(SUM(stock_actual), 0) AS unidades, " +
+                "COALESCE(SUM(stock_actual * costo_promedio), 0) AS valor_costo, " +
+                "COALESCE(SUM(stock_actual * precio_venta), 0) AS valor_venta " +
+                "FROM productos WHERE categoria_id IS NOT NULL GROUP BY categoria_id) " +
+                "SELECT c.id, c.nombre, c.categoria_padre_id, c.nivel, c.orden, c.estado, " +
+                "COALESCE(SUM(p.productos) FILTER (WHERE a.profundidad = 0), 0) AS productos_propios, " +
+                "COALESCE(SUM(p.productos), 0) AS productos, " +
+                "COALESCE(SUM(p.activos), 0) AS productos_activos, " +
+                "COALESCE(SUM(p.unidades), 0) AS unidades, " +
+                "COALESCE(SUM(p.valor_costo), 0) AS valor_costo, " +
+                "COALESCE(SUM(p.valor_venta), 0) AS valor_venta, " +
+                "COUNT(*) - 1 AS subcategorias " +
+                "FROM categorias c JOIN categoria_arbol a ON a.ancestro_id = c.id " +
+                "LEFT JOIN propio p ON p.categoria_id = a.descendiente_id " +
+                "GROUP BY c.id ORDER BY c.nivel, c.orden, c.id");
+    }
+
+    /**
+     * Ventas completadas del rango por categoría, acumuladas con todo el subárbol. Cada línea
+     * se cuenta una vez por ancestro, así el número de ventas distintas es exacto aunque una
+     * venta tenga productos de varias subcategorías. Si hay ventas archivadas también se leen
+     * ventas_historico y detalle_ventas_historico; el rango de fechas poda sus particiones.
+     */
+    public List<Map<String, Object>> obtenerResumenVentas(LocalDateTime desde, LocalDateTime hasta) {
+        Timestamp inicio = Timestamp.valueOf(desde);
+        Timestamp fin = Timestamp.valueOf(hasta);
+        List<Object> parametros = new ArrayList<>(Arrays.asList(inicio, fin));
+
+        String lineas = "SELECT d.venta_id, d.producto_id, d.cantidad, d.subtotal, d.total, d.costo_unitario " +
+                "FROM detalle_ventas d JOIN ventas v ON v.id = d.venta_id " +
+                "WHERE v.fecha_emision >= ? AND v.fecha_emision < ? AND v.estado = 'COMPLETADA'";
+        if (existeArchivoVentas()) {
+            lineas += " UNION ALL SELECT d.venta_id, d.producto_id, d.cantidad, d.subtotal, d.total, d.costo_unitario " +
+                    "FROM detalle_ventas_historico d JOIN ventas_historico v ON v.id = d.venta_id " +
+                    "WHERE d.fecha_venta >= ? AND d.fecha_venta < ? " +
+                    "AND v.fecha_emision >= ? AND v.fecha_emision < ? AND v.estado = 'COMPLETADA'";
+            parametros.addAll(Arrays.asList(inicio, fin, inicio, fin));
+        }
+
+        return jdbcTemplate.queryForList(
+                "WITH acumulado AS (SELECT a.ancestro_id AS categoria_id, " +
+                "COUNT(DISTINCT d.venta_id) AS ventas, COUNT(DISTINCT d.producto_id) AS productos_vendidos, " +
+                "COALESCE(SUM(d.cantidad), 0) AS unidades, " +
+                "COALESCE(SUM(d.subtotal), 0) AS subtotal, COALESCE(SUM(d.total), 0) AS total, " +
+                "COALESCE(SUM(d.cantidad * d.costo_unitario), 0) AS costo " +
+                "FROM (" + lineas + ") d " +
+                "JOIN productos p ON p.id = d.producto_id " +
+                "JOIN categoria_arbol a ON a.descendiente_id = p.categoria_id " +
+                "GROUP BY a.ancestro_id) " +
+                "SELECT c.id, c.nombre, c.categoria_padre_id, c.nivel, " +
+                "COALESCE(x.ventas, 0) AS ventas, COALESCE(x.productos_vendidos, 0) AS productos_vendidos, " +
+                "COALESCE(x.unidades, 0) AS unidades, COALESCE(x.subtotal, 0) AS subtotal, " +
+                "COALESCE(x.total, 0) AS total, COALESCE(x.costo, 0) AS costo, " +
+                "COALESCE(x.subtotal, 0) - COALESCE(x.costo, 0) AS utilidad " +
+                "FROM categorias c LEFT JOIN acumulado x ON x.categoria_id = c.id " +
+                "ORDER BY c.nivel, c.orden, c.id",
+                parametros.toArray());
+    }
+
+    // ✅ Todas las categorías en una consulta, para el árbol en memoria
+    public List<Map<String, Object>> obtenerCategorias() {
+        return jdbcTemplate.queryForList(
+                "SELECT id, nombre, descripcion, categoria_padre_id, nivel, icono, orden, estado " +
+                "FROM categorias ORDER BY orden, id");
+    }
+
+    // Métodos privados auxiliares
+
+    // Una vez creado el archivo no desaparece: basta con consultarlo hasta encontrarlo
+    private boolean existeArchivoVentas() {
+        if (!hayArchivoVentas) {
+            hayArchivoVentas = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT to_regclass('ventas_historico') IS NOT NULL " +
+                    "AND to_regclass('detalle_ventas_historico') IS NOT NULL", Boolean.class));
+        }
+        return hayArchivoVentas;
+    }
+}
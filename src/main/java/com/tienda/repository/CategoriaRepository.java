@@ -3,17 +3,23 @@ package com.tienda.repository;
 import com.tienda.model.Categoria;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
 public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
 
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Categoria> findByCategoriaPadreIsNull();
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Categoria> findByCategoriaPadreId(Long parentId);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Categoria> findByEstado(String estado);
 
     List<Categoria> findByNivel(Integer nivel);
@@ -23,8 +29,4 @@ public interface CategoriaRepository extends JpaRepository<Categoria, Long> {
 
     @Query("SELECT c FROM Categoria c WHERE c.nivel = ?1 AND c.estado = 'ACTIVO' ORDER BY c.orden")
     List<Categoria> findByNivelAndActivo(Integer nivel);
-
-    // ✅ Contar productos por categoría
-    @Query("SELECT c.nombre, COUNT(p) FROM Categoria c LEFT JOIN c.productos p GROUP BY c.id, c.nombre")
-    List<Object[]> contarProductosPorCategoria();
 }
\ No newline at end of file
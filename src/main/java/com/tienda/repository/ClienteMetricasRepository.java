@@ -0,0 +1,207 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agregados de compra por cliente (cliente_metricas) y su segmentación RFM
+ * (cliente_segmentos). Solo cuentan las ventas COMPLETADAS con cliente identificado.
+ * Las métricas de un cliente se recalculan desde sus propias ventas con la fila del
+ * cliente bloqueada, así una venta y una anulación concurrentes no se pisan.
+ * Las ventas que pasan a ventas_historico dejan su aporte en cliente_metricas_archivo,
+ * que se suma al de las ventas activas.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ClienteMetricasRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private static final String COLUMNAS_METRICAS =
+            "cliente_id, compras, total, ticket_promedio, primera_compra, ultima_compra, frecuencia_dias, actualizado";
+
+    // ✅ ¿Hay clientes con compras y sin métricas? Entonces la tabla no refleja las ventas
+    public boolean faltanMetricas() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM ventas v WHERE v.estado = 'COMPLETADA' AND v.cliente_id IS NOT NULL " +
+                "AND NOT EXISTS (SELECT 1 FROM cliente_metricas m WHERE m.cliente_id = v.cliente_id))",
+                Boolean.class));
+    }
+
+    // ✅ Reconstrucción completa desde ventas (y ventas_historico si existe); devuelve los clientes con métricas
+    public int reconstruir() {
+        boolean hayArchivo = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('ventas_historico') IS NOT NULL", Boolean.class));
+        jdbcTemplate.update("DELETE FROM cliente_metricas_archivo");
+        if (hayArchivo) {
+            jdbcTemplate.update(
+                    "INSERT INTO cliente_metricas_archivo (cliente_id, compras, total, primera_compra, ultima_compra) " +
+                    "SELECT cliente_id, COUNT(*), SUM(total), MIN(fecha_emision), MAX(fecha_emision) " +
+                    "FROM ventas_historico WHERE estado = 'COMPLETADA' AND cliente_id IS NOT NULL " +
+                    "AND cliente_id IN (SELECT id FROM clientes) GROUP BY cliente_id");
+        }
+
+        jdbcTemplate.update("DELETE FROM cliente_metricas");
+        int filas = jdbcTemplate.update(
+                "INSERT INTO cliente_metricas (" + COLUMNAS_METRICAS + ") " + agregado(""));
+        sincronizarClientes(null);
+        return filas;
+    }
+
+    /**
+     * Aporte de las ventas completadas de un periodo que se va a archivar. Debe ejecutarse en
+     * la misma transacción que las mueve a ventas_historico para no contarlas dos veces.
+     */
+    public int acumularArchivo(LocalDateTime desde, LocalDateTime hasta) {
+        return jdbcTemplate.update(
+                "INSERT INTO cliente_metricas_archivo (cliente_id, compras, total, primera_compra, ultima_compra) " +
+                "SELECT cliente_id, COUNT(*), SUM(total), MIN(fecha_emision), MAX(fecha_emision) FROM ventas " +
+                "WHERE estado = 'COMPLETADA' AND cliente_id IS NOT NULL " +
+                "AND fecha_emision >= ? AND fecha_emision < ? GROUP BY cliente_id " +
+                "ON CONFLICT (cliente_id) DO UPDATE SET " +
+                "compras = cliente_metricas_archivo.compras + EXCLUDED.compras, " +
+                "total = cliente_metricas_archivo.total + EXCLUDED.total, " +
+                "primera_compra = LEAST(cliente_metricas_archivo.primera_compra, EXCLUDED.primera_compra), " +
+                "ultima_compra = GREATEST(cliente_metricas_archivo.ultima_compra, EXCLUDED.ultima_compra)",
+                Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+
+    /**
+     * Recalcula las métricas de un cliente desde sus ventas. El bloqueo de la fila del cliente
+     * va en una sentencia aparte para que la lectura de ventas vea todo lo confirmado antes.
+     */
+    public void recalcular(Long clienteId) {
+        jdbcTemplate.queryForList("SELECT id FROM clientes WHERE id = ? FOR UPDATE", clienteId);
+        int filas = jdbcTemplate.update(
+                "INSERT INTO cliente_metricas (" + COLUMNAS_METRICAS + ") " + agregado(" AND cliente_id = ?") +
+                " ON CONFLICT (cliente_id) DO UPDATE SET compras = EXCLUDED.compras, " +
+                "total = EXCLUDED.total, ticket_promedio = EXCLUDED.ticket_promedio, " +
+                "primera_compra = EXCLUDED.primera_compra, ultima_compra = EXCLUDED.ultima_compra, " +
+                "frecuencia_dias = EXCLUDED.frecuencia_dias, actualizado = EXCLUDED.actualizado",
+                clienteId, clienteId);
+        if (filas == 0) {
+            // Sin ventas completadas (p. ej. se anuló la única)
+            jdbcTemplate.update("DELETE FROM cliente_metricas WHERE cliente_id = ?", clienteId);
+        }
+        sincronizarClientes(clienteId);
+    }
+
+    // ✅ Métricas de un cliente (vacío si no tiene compras)
+    public Map<String, Object> obtenerMetricas(Long clienteId) {
+        List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                "SELECT m.cliente_id, m.compras, m.total, m.ticket_promedio, m.primera_compra, m.ultima_compra, " +
+                "m.frecuencia_dias, m.actualizado, s.recencia, s.frecuencia, s.monetario, s.segmento, s.calculado " +
+                "FROM cliente_metricas m LEFT JOIN cliente_segmentos s ON s.cliente_id = m.cliente_id " +
+                "WHERE m.cliente_id = ?", clienteId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    // ✅ Número de compras de varios clientes en una consulta
+    public Map<Long, Integer> obtenerCompras(List<Long> clienteIds) {
+        Map<Long, Integer> compras = new HashMap<>();
+        if (clienteIds.isEmpty()) {
+            return compras;
+        }
+        jdbcTemplate.query(
+                "SELECT cliente_id, compras FROM cliente_metricas WHERE cliente_id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", clienteIds.toArray())),
+                rs -> {
+                    compras.put(rs.getLong("cliente_id"), rs.getInt("compras"));
+                });
+        return compras;
+    }
+
+    /**
+     * Segmentación RFM: cada dimensión se puntúa de 1 a 5 por quintil (CUME_DIST, así los
+     * empates caen en el mismo quintil). Se reemplaza entera en la transacción del llamador;
+     * los lectores siguen viendo la anterior hasta el commit.
+     */
+    public int recalcularSegmentos() {
+        jdbcTemplate.update("DELETE FROM cliente_segmentos");
+        return jdbcTemplate.update(
+                "INSERT INTO cliente_segmentos (cliente_id, recencia, frecuencia, monetario, segmento, calculado) " +
+                "SELECT cliente_id, r, f, m, CASE " +
+                "WHEN r >= 4 AND f >= 4 AND m >= 4 THEN 'CAMPEONES' " +
+                "WHEN r >= 3 AND f >= 4 THEN 'LEALES' " +
+                "WHEN r = 5 AND f = 1 THEN 'NUEVOS' " +
+                "WHEN r >= 4 THEN 'POTENCIALES' " +
+                "WHEN r <= 2 AND f >= 3 THEN 'EN_RIESGO' " +
+                "WHEN r = 1 THEN 'PERDIDOS' " +
+                "WHEN r = 2 THEN 'HIBERNANDO' " +
+                "ELSE 'NECESITAN_ATENCION' END, now() " +
+                "FROM (SELECT cliente_id, " +
+                "CEIL(CUME_DIST() OVER (ORDER BY ultima_compra) * 5)::smallint AS r, " +
+                "CEIL(CUME_DIST() OVER (ORDER BY compras) * 5)::smallint AS f, " +
+                "CEIL(CUME_DIST() OVER (ORDER BY total) * 5)::smallint AS m " +
+                "FROM cliente_metricas) x");
+    }
+
+    // ✅ Clientes, importe y promedios por segmento
+    public List<Map<String, Object>> obtenerResumenSegmentos() {
+        return jdbcTemplate.queryForList(
+                "SELECT s.segmento, COUNT(*) AS clientes, COALESCE(SUM(m.total), 0) AS total, " +
+                "COALESCE(AVG(m.compras), 0) AS compras_promedio, COALESCE(AVG(m.ticket_promedio), 0) AS ticket_promedio, " +
+                "AVG(s.recencia) AS recencia_promedio, AVG(s.frecuencia) AS frecuencia_promedio, " +
+                "AVG(s.monetario) AS monetario_promedio, MAX(s.calculado) AS calculado " +
+                "FROM cliente_segmentos s JOIN cliente_metricas m ON m.cliente_id = s.cliente_id " +
+                "GROUP BY s.segmento ORDER BY total DESC");
+    }
+
+    // ✅ Miembros de un segmento, de mayor a menor importe
+    public List<Map<String, Object>> obtenerClientesSegmento(String segmento, int limite, long desplazamiento) {
+        return jdbcTemplate.queryForList(
+                "SELECT c.id, c.nombre, c.numero_documento, c.email, c.telefono, c.tipo, " +
+                "m.compras, m.total, m.ticket_promedio, m.ultima_compra, m.frecuencia_dias, " +
+                "s.recencia, s.frecuencia, s.monetario " +
+                "FROM cliente_segmentos s JOIN cliente_metricas m ON m.cliente_id = s.cliente_id " +
+                "JOIN clientes c ON c.id = s.cliente_id WHERE s.segmento = ? " +
+                "ORDER BY m.total DESC, c.id LIMIT ? OFFSET ?",
+                segmento, limite, desplazamiento);
+    }
+
+    public long contarClientesSegmento(String segmento) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM cliente_segmentos WHERE segmento = ?", Long.class, segmento);
+    }
+
+    // ✅ Fecha de la última segmentación (null si nunca se calculó)
+    public LocalDateTime obtenerFechaSegmentacion() {
+        Timestamp calculado = jdbcTemplate.queryForObject(
+                "SELECT max(calculado) FROM cliente_segmentos", Timestamp.class);
+        return calculado != null ? calculado.toLocalDateTime() : null;
+    }
+
+    // Métodos privados auxiliares
+
+    // Ventas activas más el aporte archivado, por cliente; el filtro se aplica a ambas partes
+    private String agregado(String filtro) {
+        return "SELECT cliente_id, SUM(compras), SUM(total), ROUND(SUM(total) / SUM(compras), 2), " +
+                "MIN(primera_compra), MAX(ultima_compra), " +
+                "CASE WHEN SUM(compras) > 1 THEN ROUND((EXTRACT(EPOCH FROM MAX(ultima_compra) - MIN(primera_compra)) " +
+                "/ 86400.0 / (SUM(compras) - 1))::numeric, 2) END, now() " +
+                "FROM (SELECT cliente_id, COUNT(*) AS compras, SUM(total) AS total, " +
+                "MIN(fecha_emision) AS primera_compra, MAX(fecha_emision) AS ultima_compra FROM ventas " +
+                "WHERE estado = 'COMPLETADA' AND cliente_id IS NOT NULL" + filtro + " GROUP BY cliente_id " +
+                "UNION ALL SELECT cliente_id, compras, total, primera_compra, ultima_compra " +
+                "FROM cliente_metricas_archivo WHERE true" + filtro + ") x GROUP BY cliente_id";
+    }
+
+    // total_compras y ultima_compra de clientes quedan como copia de las métricas
+    private void sincronizarClientes(Long clienteId) {
+        String filtro = clienteId != null ? " AND c.id = ?" : "";
+        Object[] parametros = clienteId != null ? new Object[]{clienteId} : new Object[0];
+        jdbcTemplate.update(
+                "UPDATE clientes c SET total_compras = COALESCE(m.total, 0), ultima_compra = m.ultima_compra " +
+                "FROM clientes x LEFT JOIN cliente_metricas m ON m.cliente_id = x.id " +
+                "WHERE x.id = c.id AND (c.total_compras IS DISTINCT FROM COALESCE(m.total, 0) " +
+                "OR c.ultima_compra IS DISTINCT FROM m.ultima_compra)" + filtro,
+                parametros);
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,11 +21,15 @@ public interface ClienteRepository extends JpaRepository<Cliente, Long> {
 
     List<Cliente> findByEstado(String estado);
 
+    // La comparación va antes del IS NULL para que Hibernate tipe el parámetro nulo
+    // (si no, PostgreSQL lo recibe como bytea y falla "character varying = bytea")
     @Query("SELECT c FROM Cliente c WHERE " +
             "(?1 IS NULL OR c.nombre LIKE %?1%) AND " +
             "(?2 IS NULL OR c.numeroDocumento LIKE %?2%) AND " +
-            "(?3 IS NULL OR c.tipo = ?3)")
-    Page<Cliente> buscarConFiltros(String nombre, String documento, Cliente.TipoCliente tipo, Pageable pageable);
+            "(c.tipo = ?3 OR ?3 IS NULL) AND " +
+            "(c.estado = ?4 OR ?4 IS NULL)")
+    Page<Cliente> buscarConFiltros(String nombre, String documento, Cliente.TipoCliente tipo,
+                                   String estado, Pageable pageable);
 
     // ✅ Clientes con mayor compra
     @Query("SELECT c FROM Cliente c ORDER BY c.totalCompras DESC")
@@ -36,5 +42,24 @@ public interface ClienteRepository extends JpaRepository<Cliente, Long> {
     @Query("SELECT COUNT(c) FROM Cliente c WHERE c.estado = 'ACTIVO'")
     Long contarClientesActivos();
 
+    // ✅ Conteos y sumas en la base, sin cargar los clientes
+    @Query("SELECT c.tipo, COUNT(c) FROM Cliente c GROUP BY c.tipo")
+    List<Object[]> contarPorTipo();
+
+    @Query("SELECT c.tipo, COUNT(c) FROM Cliente c WHERE c.estado = 'ACTIVO' GROUP BY c.tipo")
+    List<Object[]> contarActivosPorTipo();
+
+    @Query("SELECT COALESCE(SUM(c.totalCompras), 0) FROM Cliente c")
+    BigDecimal sumarTotalCompras();
+
+    @Query("SELECT COUNT(c) FROM Cliente c WHERE c.fechaRegistro >= ?1")
+    long contarRegistradosDesde(LocalDateTime fecha);
+
+    @Query("SELECT COUNT(c) FROM Cliente c WHERE c.estado = 'ACTIVO' AND c.fechaRegistro >= ?1")
+    long contarActivosRegistradosDesde(LocalDateTime fecha);
+
+    @Query("SELECT COUNT(c) FROM Cliente c WHERE c.estado = 'ACTIVO' AND c.ultimaCompra < ?1")
+    long contarActivosSinCompraDesde(LocalDateTime fecha);
+
     boolean existsByNumeroDocumento(String numeroDocumento);
 }
\ No newline at end of file
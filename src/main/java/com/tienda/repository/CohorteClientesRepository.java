@@ -0,0 +1,116 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cohortes mensuales de adquisición: una celda por (mes de la primera compra, mes de actividad)
+ * con los clientes de la cohorte que compraron ese mes. Las celdas de meses cerrados se
+ * guardan una vez en cliente_cohortes y no se vuelven a calcular; el mes en curso (y cualquier
+ * mes aún no cerrado) se calcula al vuelo desde ventas. La cohorte de cada cliente sale de
+ * cliente_metricas.primera_compra, que ya incluye las ventas archivadas.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CohorteClientesRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // ✅ Primer mes que todavía no está guardado (null si nunca se cerró ninguno)
+    public LocalDate obtenerCerradoHasta() {
+        Date fecha = jdbcTemplate.queryForObject(
+                "SELECT cerrado_hasta FROM cliente_cohortes_estado WHERE id = 1", Date.class);
+        return fecha != null ? fecha.toLocalDate() : null;
+    }
+
+    /**
+     * Guarda las celdas de los meses pendientes anteriores a {@code hasta} (primer día de mes).
+     * La fila de estado se bloquea para que dos cierres simultáneos no inserten lo mismo.
+     * La primera vez también lee ventas_historico, si existe, para cubrir los meses archivados.
+     */
+    public int cerrarMeses(LocalDate hasta) {
+        Date cerrado = jdbcTemplate.queryForObject(
+                "SELECT cerrado_hasta FROM cliente_cohortes_estado WHERE id = 1 FOR UPDATE", Date.class);
+        LocalDate desde = cerrado != null ? cerrado.toLocalDate() : LocalDate.of(1900, 1, 1);
+        if (!desde.isBefore(hasta)) {
+            return 0;
+        }
+
+        String origen = "ventas";
+        if (cerrado == null && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('ventas_historico') IS NOT NULL", Boolean.class))) {
+            origen = "(SELECT cliente_id, fecha_emision, total, estado FROM ventas " +
+                    "UNION ALL SELECT cliente_id, fecha_emision, total, estado FROM ventas_historico)";
+        }
+
+        int filas = jdbcTemplate.update(
+                "INSERT INTO cliente_cohortes (cohorte, mes, clientes, ventas, total) " +
+                celdas(origen) + " ON CONFLICT (cohorte, mes) DO NOTHING",
+                Date.valueOf(desde), Date.valueOf(hasta));
+        jdbcTemplate.update("UPDATE cliente_cohortes_estado SET cerrado_hasta = ? WHERE id = 1", Date.valueOf(hasta));
+        return filas;
+    }
+
+    /**
+     * Matriz de retención desde la cohorte indicada: celdas guardadas antes de {@code cerradoHasta}
+     * y calculadas al vuelo desde ahí hasta {@code hasta}. Con funciones de ventana se añade el
+     * tamaño de la cohorte (su primera celda), la retención y el importe acumulado por cohorte.
+     */
+    public List<Map<String, Object>> obtenerMatriz(LocalDate desdeCohorte, LocalDate cerradoHasta, LocalDate hasta) {
+        Date cerrado = Date.valueOf(cerradoHasta);
+        return jdbcTemplate.queryForList(
+                "WITH celdas AS (SELECT cohorte, mes, clientes, ventas, total FROM cliente_cohortes " +
+                "WHERE cohorte >= ? AND mes < ? " +
+                "UNION ALL SELECT * FROM (" + celdas("ventas") + ") abiertas WHERE cohorte >= ?) " +
+                "SELECT cohorte, mes, " +
+                "(EXTRACT(YEAR FROM age(mes, cohorte)) * 12 + EXTRACT(MONTH FROM age(mes, cohorte)))::int AS periodo, " +
+                "clientes, ventas, total, FIRST_VALUE(clientes) OVER w AS tamano_cohorte, " +
+                "ROUND(clientes * 100.0 / FIRST_VALUE(clientes) OVER w, 2) AS retencion, " +
+                "SUM(total) OVER w AS total_acumulado " +
+                "FROM celdas WINDOW w AS (PARTITION BY cohorte ORDER BY mes ROWS UNBOUNDED PRECEDING) " +
+                "ORDER BY cohorte, mes",
+                Date.valueOf(desdeCohorte), cerrado, cerrado, Date.valueOf(hasta), Date.valueOf(desdeCohorte));
+    }
+
+    /**
+     * Retención al mes siguiente de las cohortes guardadas en [desde, hasta): clientes que
+     * volvieron a comprar el mes posterior al de su primera compra, sobre los adquiridos.
+     */
+    public Map<String, Object> obtenerRetencionPrimerMes(LocalDate desde, LocalDate hasta) {
+        return jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(t.clientes), 0) AS adquiridos, COALESCE(SUM(r.clientes), 0) AS retenidos " +
+                "FROM cliente_cohortes t LEFT JOIN cliente_cohortes r " +
+                "ON r.cohorte = t.cohorte AND r.mes = (t.cohorte + interval '1 month')::date " +
+                "WHERE t.mes = t.cohorte AND t.cohorte >= ? AND t.cohorte < ?",
+                Date.valueOf(desde), Date.valueOf(hasta));
+    }
+
+    // ✅ Distribución de clientes por número de compras, con importe y frecuencia media
+    public List<Map<String, Object>> obtenerDistribucionCompras() {
+        return jdbcTemplate.queryForList(
+                "SELECT CASE WHEN compras = 1 THEN '1' WHEN compras = 2 THEN '2' " +
+                "WHEN compras <= 5 THEN '3-5' WHEN compras <= 10 THEN '6-10' ELSE '11+' END AS rango, " +
+                "MIN(compras) AS minimo, COUNT(*) AS clientes, COALESCE(SUM(total), 0) AS total, " +
+                "COALESCE(AVG(ticket_promedio), 0) AS ticket_promedio, AVG(frecuencia_dias) AS frecuencia_dias " +
+                "FROM cliente_metricas GROUP BY 1 ORDER BY minimo");
+    }
+
+    // Métodos privados auxiliares
+
+    // Celdas (cohorte, mes) de las ventas completadas con fecha en [?, ?)
+    private String celdas(String origen) {
+        return "SELECT date_trunc('month', m.primera_compra)::date AS cohorte, " +
+                "date_trunc('month', v.fecha_emision)::date AS mes, " +
+                "COUNT(DISTINCT v.cliente_id)::int AS clientes, COUNT(*)::int AS ventas, " +
+                "COALESCE(SUM(v.total), 0) AS total " +
+                "FROM " + origen + " v JOIN cliente_metricas m ON m.cliente_id = v.cliente_id " +
+                "WHERE v.estado = 'COMPLETADA' AND v.fecha_emision >= ? AND v.fecha_emision < ? " +
+                "GROUP BY 1, 2";
+    }
+}
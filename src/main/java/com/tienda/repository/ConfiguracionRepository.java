@@ -2,14 +2,19 @@ package com.tienda.repository;
 
 import com.tienda.model.Configuracion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ConfiguracionRepository extends JpaRepository<Configuracion, Long> {
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Configuracion> findByClave(String clave);
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Configuracion> findByCategoria(String categoria);
     boolean existsByClave(String clave);
 }
\ No newline at end of file
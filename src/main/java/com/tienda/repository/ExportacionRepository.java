@@ -0,0 +1,91 @@
+package com.tienda.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lecturas para exportación: las filas se entregan una a una a un RowCallbackHandler.
+ * Con fetch size y dentro de una transacción de solo lectura PostgreSQL usa un cursor,
+ * así que ni el resultado completo ni entidades JPA quedan en memoria.
+ */
+@Repository
+public class ExportacionRepository {
+
+    private static final int TAMANO_FETCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExportacionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(TAMANO_FETCH);
+    }
+
+    // ✅ Catálogo con nombres de categoría y proveedor en una sola consulta
+    public void recorrerProductos(RowCallbackHandler manejador) {
+        jdbcTemplate.query(
+                "SELECT p.codigo, p.codigo_barras, p.nombre, p.descripcion, " +
+                "p.categoria_id, c.nombre AS categoria, p.proveedor_id, pr.nombre AS proveedor, " +
+                "p.marca, p.unidad_medida, p.stock_actual, p.stock_disponible, p.stock_minimo, p.stock_maximo, " +
+                "p.costo_promedio, p.precio_venta, p.estado, p.alerta_stock, p.ubicacion " +
+                "FROM productos p " +
+                "LEFT JOIN categorias c ON c.id = p.categoria_id " +
+                "LEFT JOIN proveedores pr ON pr.id = p.proveedor_id " +
+                "ORDER BY p.codigo",
+                manejador);
+    }
+
+    // ✅ Cabeceras de venta del rango
+    public void recorrerVentas(LocalDateTime desde, LocalDateTime hasta, RowCallbackHandler manejador) {
+        jdbcTemplate.query(
+                "SELECT v.numero_factura, v.fecha_emision, v.cliente_nombre, v.cliente_documento, " +
+                "v.vendedor_nombre, v.subtotal, v.descuento_total, v.iva_total, v.total, " +
+                "v.forma_pago, v.estado " +
+                "FROM ventas v " +
+                "WHERE v.fecha_emision >= ? AND v.fecha_emision < ? " +
+                "ORDER BY v.fecha_emision, v.id",
+                manejador, Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+
+    // ✅ Líneas de venta del rango, en el mismo orden que las cabeceras
+    public void recorrerDetallesVenta(LocalDateTime desde, LocalDateTime hasta, RowCallbackHandler manejador) {
+        jdbcTemplate.query(
+                "SELECT v.numero_factura, v.fecha_emision, v.estado, d.codigo_producto, d.nombre_producto, " +
+                "d.cantidad, d.precio_unitario, d.costo_unitario, d.subtotal, d.total " +
+                "FROM detalle_ventas d JOIN ventas v ON v.id = d.venta_id " +
+                "WHERE v.fecha_emision >= ? AND v.fecha_emision < ? " +
+                "ORDER BY v.fecha_emision, v.id, d.id",
+                manejador, Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+
+    // ✅ Totales por día (sin anuladas)
+    public List<Map<String, Object>> obtenerResumenVentasPorDia(LocalDateTime desde, LocalDateTime hasta) {
+        return jdbcTemplate.queryForList(
+                "SELECT CAST(v.fecha_emision AS date) AS fecha, COUNT(*) AS cantidad, " +
+                "COALESCE(SUM(v.subtotal), 0) AS subtotal, COALESCE(SUM(v.descuento_total), 0) AS descuentos, " +
+                "COALESCE(SUM(v.iva_total), 0) AS iva, COALESCE(SUM(v.total), 0) AS total " +
+                "FROM ventas v " +
+                "WHERE v.fecha_emision >= ? AND v.fecha_emision < ? AND v.estado <> 'ANULADA' " +
+                "GROUP BY 1 ORDER BY 1",
+                Timestamp.valueOf(desde), Timestamp.valueOf(hasta));
+    }
+
+    // ✅ Valoración del inventario activo por categoría
+    public List<Map<String, Object>> obtenerResumenInventarioPorCategoria() {
+        return jdbcTemplate.queryForList(
+                "SELECT COALESCE(c.nombre, 'Sin categoría') AS categoria, COUNT(*) AS productos, " +
+                "COALESCE(SUM(p.stock_actual), 0) AS unidades, " +
+                "COALESCE(SUM(p.stock_actual * p.costo_promedio), 0) AS valorCosto, " +
+                "COALESCE(SUM(p.stock_actual * p.precio_venta), 0) AS valorVenta, " +
+                "COUNT(*) FILTER (WHERE p.alerta_stock <> 'NORMAL') AS conAlerta " +
+                "FROM productos p LEFT JOIN categorias c ON c.id = p.categoria_id " +
+                "WHERE p.estado = 'ACTIVO' " +
+                "GROUP BY 1 ORDER BY 1");
+    }
+}
@@ -0,0 +1,106 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Historial de compras por cliente: cabeceras de venta paginadas por clave (fecha_emision, id)
+ * sobre el índice (cliente_id, fecha_emision, id), detalles solo de las ventas pedidas, y los
+ * productos que compra cada cliente (cliente_productos), mantenidos por suma al registrar o
+ * anular cada venta. El historial cubre las ventas activas; las archivadas siguen contando
+ * en los totales de cliente_metricas y en cliente_productos.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HistorialClienteRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean estaVacia() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM cliente_productos)", Boolean.class));
+    }
+
+    // ✅ Reconstrucción desde las ventas activas; devuelve las filas generadas
+    public int reconstruirProductos() {
+        jdbcTemplate.update("DELETE FROM cliente_productos");
+        return jdbcTemplate.update(
+                "INSERT INTO cliente_productos (cliente_id, producto_id, veces, unidades, ultima_compra) " +
+                "SELECT v.cliente_id, d.producto_id, COUNT(DISTINCT v.id), SUM(d.cantidad), MAX(v.fecha_emision) " +
+                "FROM ventas v JOIN detalle_ventas d ON d.venta_id = v.id " +
+                "WHERE v.estado = 'COMPLETADA' AND v.cliente_id IS NOT NULL " +
+                "GROUP BY v.cliente_id, d.producto_id");
+    }
+
+    // ✅ Suma (o resta, si es una anulación) las unidades de una venta, en orden de producto
+    public void registrarProductos(Long clienteId, Map<Long, BigDecimal> unidadesPorProducto, boolean anulacion) {
+        List<Object[]> filas = new ArrayList<>(unidadesPorProducto.size());
+        new TreeMap<>(unidadesPorProducto).forEach((productoId, unidades) ->
+                filas.add(anulacion ? new Object[]{unidades, clienteId, productoId} :
+                        new Object[]{clienteId, productoId, unidades}));
+
+        if (anulacion) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE cliente_productos SET veces = veces - 1, unidades = unidades - ? " +
+                    "WHERE cliente_id = ? AND producto_id = ?",
+                    filas);
+            jdbcTemplate.update("DELETE FROM cliente_productos WHERE cliente_id = ? AND veces <= 0", clienteId);
+        } else {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO cliente_productos (cliente_id, producto_id, veces, unidades, ultima_compra) " +
+                    "VALUES (?, ?, 1, ?, now()) ON CONFLICT (cliente_id, producto_id) DO UPDATE SET " +
+                    "veces = cliente_productos.veces + 1, unidades = cliente_productos.unidades + EXCLUDED.unidades, " +
+                    "ultima_compra = EXCLUDED.ultima_compra",
+                    filas);
+        }
+    }
+
+    // ✅ Productos más comprados por el cliente (por número de compras y unidades)
+    public List<Map<String, Object>> obtenerProductosFavoritos(Long clienteId, int limite) {
+        return jdbcTemplate.queryForList(
+                "SELECT p.id AS producto_id, p.codigo, p.nombre, p.precio_venta, cp.veces, cp.unidades, cp.ultima_compra " +
+                "FROM cliente_productos cp JOIN productos p ON p.id = cp.producto_id " +
+                "WHERE cp.cliente_id = ? ORDER BY cp.veces DESC, cp.unidades DESC, p.id LIMIT ?",
+                clienteId, limite);
+    }
+
+    /**
+     * Una página de cabeceras, de la más reciente a la más antigua. Sin cursor empieza por la
+     * última venta; con cursor continúa estrictamente después de (fecha, id).
+     */
+    public List<Map<String, Object>> obtenerCabeceras(Long clienteId, LocalDateTime fecha, Long id, int limite) {
+        String columnas = "SELECT v.id, v.numero_factura, v.fecha_emision, v.subtotal, v.descuento_total, " +
+                "v.iva_total, v.total, v.forma_pago, v.estado_pago, v.estado, v.vendedor_id, v.vendedor_nombre, " +
+                "v.caja_id, v.sucursal_id, v.cliente_nombre, v.cliente_documento FROM ventas v WHERE v.cliente_id = ? ";
+        String orden = "ORDER BY v.fecha_emision DESC, v.id DESC LIMIT ?";
+
+        if (fecha == null) {
+            return jdbcTemplate.queryForList(columnas + orden, clienteId, limite);
+        }
+        return jdbcTemplate.queryForList(columnas + "AND (v.fecha_emision, v.id) < (?, ?) " + orden,
+                clienteId, Timestamp.valueOf(fecha), id, limite);
+    }
+
+    // ✅ Detalles de varias ventas en una consulta
+    public List<Map<String, Object>> obtenerDetalles(List<Long> ventaIds) {
+        if (ventaIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query(
+                "SELECT d.id, d.venta_id, d.producto_id, d.codigo_producto, d.nombre_producto, d.cantidad, " +
+                "d.precio_unitario, d.descuento_unitario, d.iva_valor, d.subtotal, d.total " +
+                "FROM detalle_ventas d WHERE d.venta_id = ANY (?) ORDER BY d.venta_id, d.id",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ventaIds.toArray())),
+                new ColumnMapRowMapper());
+    }
+}
@@ -0,0 +1,19 @@
+package com.tienda.repository;
+
+import com.tienda.model.HistorialPrecio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HistorialPrecioRepository extends JpaRepository<HistorialPrecio, Long> {
+
+    // ✅ Historial de un producto, más reciente primero
+    @Query("SELECT h FROM HistorialPrecio h LEFT JOIN FETCH h.usuario " +
+            "WHERE h.producto.id = ?1 ORDER BY h.fechaCambio DESC, h.id DESC")
+    List<HistorialPrecio> findByProductoIdOrdenado(Long productoId);
+
+    long countByLote(String lote);
+}
@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface MovimientoInventarioRepository extends JpaRepository<MovimientoInventario, Long> {
+public interface MovimientoInventarioRepository extends JpaRepository<MovimientoInventario, Long>,
+        MovimientoInventarioRepositoryCustom {
 
     List<MovimientoInventario> findByProductoId(Long productoId);
 
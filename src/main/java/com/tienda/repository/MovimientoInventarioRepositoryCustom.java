@@ -0,0 +1,25 @@
+package com.tienda.repository;
+
+import com.tienda.model.MovimientoInventario;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MovimientoInventarioRepositoryCustom {
+
+    // Inserción por lotes JDBC (la estrategia IDENTITY impide el batching de Hibernate)
+    int[][] insertarEnLote(List<MovimientoInventario> movimientos);
+
+    // Kardex: leen también movimientos_inventario_historico cuando hay periodos archivados
+
+    // Variación neta de stock de un producto en (desde, hasta]
+    BigDecimal calcularVariacionStock(Long productoId, LocalDateTime desde, LocalDateTime hasta);
+
+    // Variación desde un saldo de cierre: ids posteriores al saldo con fecha hasta el instante pedido
+    BigDecimal calcularVariacionDesdeSaldo(Long productoId, Long ultimoMovimientoId,
+                                           LocalDateTime fechaSaldo, LocalDateTime hasta);
+
+    // Movimientos de un producto en (desde, hasta] en orden cronológico
+    List<MovimientoInventario> findKardex(Long productoId, LocalDateTime desde, LocalDateTime hasta);
+}
@@ -0,0 +1,163 @@
+package com.tienda.repository;
+
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Usuario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MovimientoInventarioRepositoryImpl implements MovimientoInventarioRepositoryCustom {
+
+    private static final int TAMANO_LOTE = 500;
+
+    private static final String SQL_INSERTAR =
+            "INSERT INTO movimientos_inventario (producto_id, tipo_movimiento, subtipo, " +
+            "documento_id, documento_numero, fecha_movimiento, cantidad, cantidad_anterior, " +
+            "cantidad_nueva, costo_unitario, precio_unitario, motivo, observaciones, " +
+            "usuario_id, creado_en) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String TABLA_HISTORICA = "movimientos_inventario_historico";
+
+    // Tiempo máximo entre que la aplicación fecha un movimiento y lo confirma; acota la
+    // búsqueda por id en la tabla histórica a las particiones cercanas al saldo
+    private static final Duration MARGEN_CONFIRMACION = Duration.ofDays(1);
+
+    private static final String COLUMNAS_KARDEX =
+            "id, fecha_movimiento, tipo_movimiento, subtipo, documento_numero, motivo, " +
+            "cantidad, cantidad_anterior, cantidad_nueva, costo_unitario, usuario_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // La tabla histórica solo se crea (nunca se borra): basta verlo una vez
+    private volatile boolean hayArchivo;
+
+    @Override
+    public int[][] insertarEnLote(List<MovimientoInventario> movimientos) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        return jdbcTemplate.batchUpdate(SQL_INSERTAR, movimientos, TAMANO_LOTE, (ps, m) -> {
+            LocalDateTime fecha = m.getFechaMovimiento() != null ? m.getFechaMovimiento() : ahora;
+
+            ps.setLong(1, m.getProducto().getId());
+            ps.setString(2, m.getTipoMovimiento());
+            ps.setString(3, m.getSubtipo());
+            ps.setObject(4, m.getDocumentoId(), Types.BIGINT);
+            ps.setString(5, m.getDocumentoNumero());
+            ps.setTimestamp(6, Timestamp.valueOf(fecha));
+            ps.setBigDecimal(7, m.getCantidad());
+            ps.setBigDecimal(8, m.getCantidadAnterior());
+            ps.setBigDecimal(9, m.getCantidadNueva());
+            ps.setBigDecimal(10, m.getCostoUnitario());
+            ps.setBigDecimal(11, m.getPrecioUnitario());
+            ps.setString(12, m.getMotivo());
+            ps.setString(13, m.getObservaciones());
+            ps.setObject(14, m.getUsuario() != null ? m.getUsuario().getId() : null, Types.BIGINT);
+            ps.setTimestamp(15, Timestamp.valueOf(ahora));
+        });
+    }
+
+    @Override
+    public BigDecimal calcularVariacionStock(Long productoId, LocalDateTime desde, LocalDateTime hasta) {
+        Object[] parametros = {productoId, Timestamp.valueOf(desde), Timestamp.valueOf(hasta)};
+        String condicion = "producto_id = ? AND fecha_movimiento > ? AND fecha_movimiento <= ?";
+
+        return sumarVariacion(condicion, parametros, condicion, parametros);
+    }
+
+    @Override
+    public BigDecimal calcularVariacionDesdeSaldo(Long productoId, Long ultimoMovimientoId,
+                                                  LocalDateTime fechaSaldo, LocalDateTime hasta) {
+        Object[] parametros = {productoId, ultimoMovimientoId, Timestamp.valueOf(hasta)};
+        String condicion = "producto_id = ? AND id > ? AND fecha_movimiento <= ?";
+
+        // La histórica solo tiene índice BRIN por fecha: sin cota inferior se leerían todas las particiones
+        Object[] parametrosArchivo = {productoId, ultimoMovimientoId, Timestamp.valueOf(hasta),
+                Timestamp.valueOf(fechaSaldo.minus(MARGEN_CONFIRMACION))};
+
+        return sumarVariacion(condicion, parametros,
+                condicion + " AND fecha_movimiento > ?", parametrosArchivo);
+    }
+
+    @Override
+    public List<MovimientoInventario> findKardex(Long productoId, LocalDateTime desde, LocalDateTime hasta) {
+        Object[] parametros = {productoId, Timestamp.valueOf(desde), Timestamp.valueOf(hasta)};
+        String consulta = "SELECT " + COLUMNAS_KARDEX + " FROM %s " +
+                "WHERE producto_id = ? AND fecha_movimiento > ? AND fecha_movimiento <= ?";
+
+        List<Object> valores = new ArrayList<>(Arrays.asList(parametros));
+        String union = String.format(consulta, "movimientos_inventario");
+        if (existeArchivo()) {
+            union += " UNION ALL " + String.format(consulta, TABLA_HISTORICA);
+            valores.addAll(Arrays.asList(parametros));
+        }
+
+        String sql = "SELECT m.*, u.username FROM (" + union + ") m " +
+                "LEFT JOIN usuarios u ON u.id = m.usuario_id " +
+                "ORDER BY m.fecha_movimiento ASC, m.id ASC";
+
+        return jdbcTemplate.query(sql, (rs, i) -> leerMovimientoKardex(rs), valores.toArray());
+    }
+
+    // Métodos privados auxiliares
+
+    // Suma la tabla activa y, si hay periodos archivados, la histórica (poda de particiones por fecha)
+    private BigDecimal sumarVariacion(String condicion, Object[] parametros,
+                                      String condicionArchivo, Object[] parametrosArchivo) {
+        String columnas = "SELECT cantidad_nueva, cantidad_anterior FROM ";
+        List<Object> valores = new ArrayList<>(Arrays.asList(parametros));
+        String union = columnas + "movimientos_inventario WHERE " + condicion;
+
+        if (existeArchivo()) {
+            union += " UNION ALL " + columnas + TABLA_HISTORICA + " WHERE " + condicionArchivo;
+            valores.addAll(Arrays.asList(parametrosArchivo));
+        }
+
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(COALESCE(cantidad_nueva, 0) - COALESCE(cantidad_anterior, 0)), 0) " +
+                "FROM (" + union + ") m", BigDecimal.class, valores.toArray());
+    }
+
+    private boolean existeArchivo() {
+        if (!hayArchivo) {
+            hayArchivo = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL", Boolean.class, TABLA_HISTORICA));
+        }
+        return hayArchivo;
+    }
+
+    private MovimientoInventario leerMovimientoKardex(ResultSet rs) throws SQLException {
+        Usuario usuario = null;
+        long usuarioId = rs.getLong("usuario_id");
+        if (!rs.wasNull()) {
+            usuario = Usuario.builder().username(rs.getString("username")).build();
+            usuario.setId(usuarioId);
+        }
+
+        // Filas de solo lectura: las archivadas no tienen entidad gestionada
+        return MovimientoInventario.builder()
+                .id(rs.getLong("id"))
+                .fechaMovimiento(rs.getTimestamp("fecha_movimiento").toLocalDateTime())
+                .tipoMovimiento(rs.getString("tipo_movimiento"))
+                .subtipo(rs.getString("subtipo"))
+                .documentoNumero(rs.getString("documento_numero"))
+                .motivo(rs.getString("motivo"))
+                .cantidad(rs.getBigDecimal("cantidad"))
+                .cantidadAnterior(rs.getBigDecimal("cantidad_anterior"))
+                .cantidadNueva(rs.getBigDecimal("cantidad_nueva"))
+                .costoUnitario(rs.getBigDecimal("costo_unitario"))
+                .usuario(usuario)
+                .build();
+    }
+}
@@ -3,16 +3,21 @@ package com.tienda.repository;
 import com.tienda.model.Permiso;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PermisoRepository extends JpaRepository<Permiso, Long> {
 
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Permiso> findByCodigo(String codigo);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Permiso> findByModulo(String modulo);
 
     List<Permiso> findByCategoria(String categoria);
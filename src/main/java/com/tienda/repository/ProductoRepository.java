@@ -3,44 +3,78 @@ package com.tienda.repository;
 import com.tienda.model.Producto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
 
     Optional<Producto> findByCodigo(String codigo);
     Optional<Producto> findByCodigoBarras(String codigoBarras);
+    List<Producto> findByCodigoIn(Collection<String> codigos);
+    List<Producto> findByCodigoBarrasIn(Collection<String> codigosBarras);
     List<Producto> findByCategoriaId(Long categoriaId);
     List<Producto> findByProveedorId(Long proveedorId);
     List<Producto> findByEstado(Producto.EstadoProducto estado);
     List<Producto> findByAlertaStock(Producto.AlertaStock alertaStock);
+    long countByEstado(Producto.EstadoProducto estado);
+
+    // ✅ Listados: categoría y proveedor en la misma consulta, sin una consulta extra por producto
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
+    @Query("SELECT p FROM Producto p")
+    List<Producto> findAllConRelaciones();
+
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
+    @Query(value = "SELECT p FROM Producto p", countQuery = "SELECT count(p) FROM Producto p")
+    Page<Producto> findAllConRelaciones(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
+    @Query("SELECT p FROM Producto p WHERE p.id IN :ids")
+    List<Producto> findAllByIdConRelaciones(@Param("ids") Collection<Long> ids);
+
+    // ✅ Productos activos, primero los de mayor rotación (precarga de la caché de escaneo)
+    @Query("SELECT p FROM Producto p LEFT JOIN VelocidadVenta v ON v.producto = p " +
+            "WHERE p.estado = 'ACTIVO' ORDER BY COALESCE(v.velocidadDiaria, 0) DESC, p.id")
+    List<Producto> findActivosPorRotacion(Pageable pageable);
+
+    // ✅ Recorrido por bloques con clave (sin OFFSET) para construir índices en memoria
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 
     // ✅ CORREGIDO: Usando @Param
     @Query("SELECT p FROM Producto p WHERE p.alertaStock IN :alertas")
     List<Producto> findByAlertaStockIn(@Param("alertas") List<Producto.AlertaStock> alertas);
 
+    // Carga inicial del índice de alertas (categoría y proveedor en la misma consulta)
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria LEFT JOIN FETCH p.proveedor " +
+            "WHERE p.alertaStock IN :alertas")
+    List<Producto> findByAlertaStockInConRelaciones(@Param("alertas") List<Producto.AlertaStock> alertas);
+
     @Query("SELECT p FROM Producto p WHERE p.stockActual <= p.stockMinimo")
     List<Producto> findProductosStockBajo();
 
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
     @Query("SELECT p FROM Producto p WHERE p.stockActual <= 0")
     List<Producto> findProductosAgotados();
 
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
     @Query("SELECT p FROM Producto p WHERE p.stockActual <= p.stockMinimo AND p.estado = 'ACTIVO'")
     List<Producto> findProductosParaReorden();
 
     // ✅ CORREGIDO: Usando @Param correctamente
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
     @Query("SELECT p FROM Producto p WHERE " +
             "(:codigo IS NULL OR p.codigo LIKE %:codigo%) AND " +
             "(:nombre IS NULL OR p.nombre LIKE %:nombre%) AND " +
-            "(:categoriaId IS NULL OR p.categoria.id = :categoriaId) AND " +
-            "(:estado IS NULL OR p.estado = :estado)")
+            "(p.categoria.id = :categoriaId OR :categoriaId IS NULL) AND " +
+            "(p.estado = :estado OR :estado IS NULL)")
     Page<Producto> buscarConFiltros(
             @Param("codigo") String codigo,
             @Param("nombre") String nombre,
@@ -48,6 +82,12 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
             @Param("estado") Producto.EstadoProducto estado,
             Pageable pageable);
 
+    // Prefijo ya escapado y en minúsculas sobre código o código de barras, mientras no hay índice en memoria
+    @EntityGraph(attributePaths = {"categoria", "proveedor"})
+    @Query("SELECT p FROM Producto p WHERE LOWER(p.codigo) LIKE :patron ESCAPE '\\' " +
+            "OR LOWER(p.codigoBarras) LIKE :patron ESCAPE '\\' ORDER BY p.codigo")
+    List<Producto> buscarPorPrefijoCodigo(@Param("patron") String patron);
+
     boolean existsByCodigo(String codigo);
     boolean existsByCodigoBarras(String codigoBarras);
 }
\ No newline at end of file
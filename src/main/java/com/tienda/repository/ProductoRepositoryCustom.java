@@ -0,0 +1,11 @@
+package com.tienda.repository;
+
+import com.tienda.dto.request.ActualizacionPreciosRequest;
+
+import java.util.List;
+
+public interface ProductoRepositoryCustom {
+
+    // Actualización de precios en una sola sentencia, con su historial; devuelve los ids modificados
+    List<Long> actualizarPreciosMasivo(ActualizacionPreciosRequest request, String lote);
+}
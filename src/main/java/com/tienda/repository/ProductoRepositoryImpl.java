@@ -0,0 +1,98 @@
+package com.tienda.repository;
+
+import com.tienda.dto.request.ActualizacionPreciosRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
+
+    // Mismo cálculo que Producto.calcularEstadoStock, acotado a la precisión de la columna (5,2)
+    private static final String EXPRESION_MARGEN =
+            "CASE WHEN p.costo_promedio > 0 THEN LEAST(GREATEST(" +
+            "round((o.precio_nuevo - p.costo_promedio) / p.costo_promedio * 100, 2), -999.99), 999.99) " +
+            "ELSE p.margen_ganancia END";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Selecciona y bloquea los productos del alcance (en orden de id), actualiza precio,
+     * margen y versión, e inserta el historial con las filas devueltas por el UPDATE.
+     */
+    @Override
+    public List<Long> actualizarPreciosMasivo(ActualizacionPreciosRequest request, String lote) {
+        List<Object> parametros = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+
+        boolean subarbol = request.getCategoriaId() != null && !Boolean.FALSE.equals(request.getIncluirSubcategorias());
+
+        sql.append("WITH objetivo AS (SELECT p.id, p.precio_venta AS precio_anterior, ")
+                .append("p.margen_ganancia AS margen_anterior, round(").append(expresionPrecio(request.getTipoCambio()))
+                .append(", ?) AS precio_nuevo FROM productos p WHERE 1 = 1");
+        parametros.add(request.getValor());
+        parametros.add(request.getDecimales() != null ? request.getDecimales() : 2);
+
+        if (request.getCategoriaId() != null) {
+            // El subárbol sale de la tabla de clausura (incluye la propia categoría)
+            sql.append(subarbol ?
+                    " AND p.categoria_id IN (SELECT descendiente_id FROM categoria_arbol WHERE ancestro_id = ?)" :
+                    " AND p.categoria_id = ?");
+            parametros.add(request.getCategoriaId());
+        }
+        if (request.getProveedorId() != null) {
+            sql.append(" AND p.proveedor_id = ?");
+            parametros.add(request.getProveedorId());
+        }
+        if (request.getProductoIds() != null && !request.getProductoIds().isEmpty()) {
+            sql.append(" AND p.id IN (")
+                    .append(String.join(", ", Collections.nCopies(request.getProductoIds().size(), "?")))
+                    .append(")");
+            parametros.addAll(request.getProductoIds());
+        }
+        if (!Boolean.FALSE.equals(request.getSoloActivos())) {
+            sql.append(" AND p.estado = 'ACTIVO'");
+        }
+        sql.append(" ORDER BY p.id FOR UPDATE), ");
+
+        sql.append("actualizados AS (UPDATE productos p SET precio_venta = o.precio_nuevo, ")
+                .append("margen_ganancia = ").append(EXPRESION_MARGEN).append(", ")
+                .append("version = p.version + 1, actualizado_en = now() ")
+                .append("FROM objetivo o WHERE p.id = o.id AND o.precio_nuevo > 0 ")
+                .append("AND o.precio_nuevo IS DISTINCT FROM o.precio_anterior ")
+                .append("RETURNING p.id, o.precio_anterior, p.precio_venta, p.costo_promedio, ")
+                .append("o.margen_anterior, p.margen_ganancia) ");
+
+        sql.append("INSERT INTO historial_precios (producto_id, precio_anterior, precio_nuevo, costo_promedio, ")
+                .append("margen_anterior, margen_nuevo, tipo_cambio, lote, motivo, usuario_id, fecha_cambio) ")
+                .append("SELECT id, precio_anterior, precio_venta, costo_promedio, margen_anterior, margen_ganancia, ")
+                .append("?, ?, ?, ?, now() FROM actualizados RETURNING producto_id");
+        parametros.add(request.getTipoCambio());
+        parametros.add(lote);
+        parametros.add(request.getMotivo());
+        parametros.add(request.getUsuarioId());
+
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, parametros.toArray()).stream()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    // Métodos privados auxiliares
+    private String expresionPrecio(String tipoCambio) {
+        switch (tipoCambio) {
+            case "PORCENTAJE":
+                return "p.precio_venta * (1 + CAST(? AS numeric) / 100)";
+            case "MONTO":
+                return "p.precio_venta + CAST(? AS numeric)";
+            case "MARGEN":
+                // Sin costo no hay margen que aplicar: queda NULL y el producto no se actualiza
+                return "CASE WHEN p.costo_promedio > 0 THEN p.costo_promedio * (1 + CAST(? AS numeric) / 100) END";
+            default:
+                throw new IllegalArgumentException("Tipo de cambio no soportado: " + tipoCambio);
+        }
+    }
+}
@@ -5,8 +5,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,12 +19,14 @@ public interface ProveedorRepository extends JpaRepository<Proveedor, Long> {
 
     Optional<Proveedor> findByRuc(String ruc);
 
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Proveedor> findByEstado(Proveedor.EstadoProveedor estado);
 
     @Query("SELECT p FROM Proveedor p WHERE " +
             "(?1 IS NULL OR p.nombre LIKE %?1%) AND " +
             "(?2 IS NULL OR p.ruc LIKE %?2%) AND " +
-            "(?3 IS NULL OR p.estado = ?3)")
+            "(p.estado = ?3 OR ?3 IS NULL)")
     Page<Proveedor> buscarConFiltros(String nombre, String ruc, Proveedor.EstadoProveedor estado, Pageable pageable);
 
     @Query("SELECT COUNT(p) FROM Proveedor p WHERE p.estado = 'ACTIVO'")
@@ -0,0 +1,143 @@
+package com.tienda.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen mensual de cierres de caja: una fila por (mes, caja, estado) con el número de cierres,
+ * ventas, ingresos, egresos y la suma de diferencias. Cada escritura de un cierre recalcula solo
+ * su mes, así que los meses cerrados se guardan una vez y solo se tocan si cambia el estado de
+ * alguno de sus cierres. Estadísticas y reportes leen estas filas, no cierres_caja entera.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ResumenCierresRepository {
+
+    // Serializa los recálculos: dos cierres del mismo mes no deben borrar e insertar a la vez
+    private static final long CLAVE_BLOQUEO = 7245002L;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean estaVacia() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM cierres_caja_mensual)", Boolean.class));
+    }
+
+    // ✅ Reconstrucción completa desde cierres_caja; devuelve las filas generadas
+    public int reconstruir() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", CLAVE_BLOQUEO);
+        jdbcTemplate.update("DELETE FROM cierres_caja_mensual");
+        return jdbcTemplate.update(agregado("TRUE"));
+    }
+
+    // ✅ Recalcula el mes de la fecha indicada; el cierre modificado ya debe estar volcado (flush)
+    public void recalcularMes(LocalDate fecha) {
+        Date desde = Date.valueOf(fecha.withDayOfMonth(1));
+        Date hasta = Date.valueOf(fecha.withDayOfMonth(1).plusMonths(1));
+
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", CLAVE_BLOQUEO);
+        jdbcTemplate.update("DELETE FROM cierres_caja_mensual WHERE mes = ?", desde);
+        jdbcTemplate.update(agregado("c.fecha_cierre >= ? AND c.fecha_cierre < ?"), desde, hasta);
+    }
+
+    /**
+     * Totales generales en el rango de meses [desde, hasta), ambos opcionales: cierres,
+     * ventas y diferencia promedio por cierre.
+     */
+    public Map<String, Object> obtenerTotales(LocalDate desde, LocalDate hasta) {
+        List<Object> parametros = new ArrayList<>();
+        return jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(cierres), 0) AS cierres, COALESCE(SUM(total_ventas), 0) AS total_ventas, " +
+                "COALESCE(SUM(total_ingresos), 0) AS total_ingresos, COALESCE(SUM(total_egresos), 0) AS total_egresos, " +
+                "COALESCE(ROUND(SUM(suma_diferencias) / NULLIF(SUM(cierres), 0), 2), 0) AS diferencia_promedio " +
+                "FROM cierres_caja_mensual WHERE " + rango(desde, hasta, parametros),
+                parametros.toArray());
+    }
+
+    // ✅ Número de cierres por estado en el rango
+    public List<Map<String, Object>> obtenerCierresPorEstado(LocalDate desde, LocalDate hasta) {
+        List<Object> parametros = new ArrayList<>();
+        return jdbcTemplate.queryForList(
+                "SELECT estado, SUM(cierres) AS cierres FROM cierres_caja_mensual " +
+                "WHERE " + rango(desde, hasta, parametros) + " GROUP BY estado ORDER BY estado",
+                parametros.toArray());
+    }
+
+    /**
+     * Totales por caja en el rango, de mayor a menor venta. {@code mesDelAnio} (1-12) limita a ese
+     * mes de cualquier año; con {@code estado} solo cuentan los cierres en ese estado;
+     * {@code limite} null devuelve todas las cajas.
+     */
+    public List<Map<String, Object>> obtenerPorCaja(LocalDate desde, LocalDate hasta, Integer mesDelAnio,
+                                                     String estado, Integer limite) {
+        List<Object> parametros = new ArrayList<>();
+        String filtro = rango(desde, hasta, parametros) + mesDelAnio(mesDelAnio, parametros);
+        if (estado != null) {
+            filtro += " AND r.estado = ?";
+            parametros.add(estado);
+        }
+        String sql = "SELECT r.caja_id, c.codigo, c.nombre, SUM(r.cierres) AS cierres, " +
+                "SUM(r.total_ventas) AS total_ventas, SUM(r.total_egresos) AS total_egresos, " +
+                "ROUND(SUM(r.suma_diferencias) / NULLIF(SUM(r.cierres), 0), 2) AS diferencia_promedio " +
+                "FROM cierres_caja_mensual r JOIN cajas c ON c.id = r.caja_id WHERE " + filtro +
+                " GROUP BY r.caja_id, c.codigo, c.nombre ORDER BY total_ventas DESC, r.caja_id";
+        if (limite != null) {
+            sql += " LIMIT ?";
+            parametros.add(limite);
+        }
+        return jdbcTemplate.queryForList(sql, parametros.toArray());
+    }
+
+    // ✅ Ventas y egresos por mes en el rango, del más reciente al más antiguo
+    public List<Map<String, Object>> obtenerPorMes(LocalDate desde, LocalDate hasta, Integer mesDelAnio, String estado) {
+        List<Object> parametros = new ArrayList<>();
+        String filtro = rango(desde, hasta, parametros) + mesDelAnio(mesDelAnio, parametros) + " AND estado = ?";
+        parametros.add(estado);
+        return jdbcTemplate.queryForList(
+                "SELECT EXTRACT(MONTH FROM mes)::int AS mes, EXTRACT(YEAR FROM mes)::int AS anio, " +
+                "SUM(cierres) AS cierres, SUM(total_ventas) AS total_ventas, SUM(total_egresos) AS total_egresos " +
+                "FROM cierres_caja_mensual WHERE " + filtro + " GROUP BY cierres_caja_mensual.mes " +
+                "ORDER BY cierres_caja_mensual.mes DESC",
+                parametros.toArray());
+    }
+
+    // Métodos privados auxiliares
+
+    private String agregado(String filtro) {
+        return "INSERT INTO cierres_caja_mensual (mes, caja_id, estado, cierres, total_ventas, total_ingresos, " +
+                "total_egresos, suma_diferencias) " +
+                "SELECT date_trunc('month', c.fecha_cierre)::date, c.caja_id, COALESCE(c.estado, 'PENDIENTE'), " +
+                "COUNT(*), COALESCE(SUM(c.total_ventas), 0), COALESCE(SUM(c.total_ingresos), 0), " +
+                "COALESCE(SUM(c.total_egresos), 0), COALESCE(SUM(c.diferencia), 0) " +
+                "FROM cierres_caja c WHERE " + filtro + " GROUP BY 1, 2, 3";
+    }
+
+    // Rango de meses [desde, hasta) sobre la clave primaria; cualquiera de los dos puede faltar
+    private String rango(LocalDate desde, LocalDate hasta, List<Object> parametros) {
+        String filtro = "TRUE";
+        if (desde != null) {
+            filtro += " AND mes >= ?";
+            parametros.add(Date.valueOf(desde));
+        }
+        if (hasta != null) {
+            filtro += " AND mes < ?";
+            parametros.add(Date.valueOf(hasta));
+        }
+        return filtro;
+    }
+
+    private String mesDelAnio(Integer mes, List<Object> parametros) {
+        if (mes == null) {
+            return "";
+        }
+        parametros.add(mes);
+        return " AND EXTRACT(MONTH FROM mes) = ?";
+    }
+}
@@ -3,16 +3,21 @@ package com.tienda.repository;
 import com.tienda.model.Rol;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RolRepository extends JpaRepository<Rol, Long> {
 
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Rol> findByCodigo(String codigo);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Rol> findByEstado(String estado);
 
     List<Rol> findByNivelGreaterThanEqual(Integer nivel);
@@ -0,0 +1,44 @@
+package com.tienda.repository;
+
+import com.tienda.model.SaldoInventario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SaldoInventarioRepository extends JpaRepository<SaldoInventario, Long> {
+
+    List<SaldoInventario> findByProductoIdOrderByFechaCorteDesc(Long productoId);
+
+    boolean existsByFechaCorte(LocalDate fechaCorte);
+
+    // ✅ Último saldo tomado antes (o en) un instante dado
+    Optional<SaldoInventario> findFirstByProductoIdAndFechaSaldoLessThanEqualOrderByFechaSaldoDesc(
+            Long productoId, LocalDateTime fecha);
+
+    // ✅ Espera a que terminen las transacciones que escriben movimientos y frena las nuevas
+    // hasta el commit: así el stock leído y el último id de movimiento son del mismo instante
+    @Modifying
+    @Query(value = "LOCK TABLE movimientos_inventario IN SHARE MODE", nativeQuery = true)
+    void bloquearMovimientos();
+
+    // ✅ Saldo de cierre de todos los productos en una sola sentencia (idempotente por día).
+    // La fecha y el último id salen de la propia sentencia; requiere bloquearMovimientos() antes
+    @Modifying
+    @Query(value = "INSERT INTO saldos_inventario " +
+            "(producto_id, fecha_corte, fecha_saldo, ultimo_movimiento_id, cantidad, costo_promedio, creado_en) " +
+            "SELECT p.id, :fechaCorte, statement_timestamp(), " +
+            "COALESCE(pg_sequence_last_value(pg_get_serial_sequence('movimientos_inventario', 'id')), 0), " +
+            "COALESCE(p.stock_actual, 0), p.costo_promedio, statement_timestamp() " +
+            "FROM productos p " +
+            "ON CONFLICT (producto_id, fecha_corte) DO NOTHING",
+            nativeQuery = true)
+    int generarSaldos(@Param("fechaCorte") LocalDate fechaCorte);
+}
@@ -2,16 +2,21 @@ package com.tienda.repository;
 
 import com.tienda.model.Sucursal;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SucursalRepository extends JpaRepository<Sucursal, Long> {
 
+    // ✅ Caché de consultas: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Sucursal> findByCodigo(String codigo);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Sucursal> findByEstado(String estado);
 
     boolean existsByCodigo(String codigo);
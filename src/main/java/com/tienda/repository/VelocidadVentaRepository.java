@@ -0,0 +1,101 @@
+package com.tienda.repository;
+
+import com.tienda.model.VelocidadVenta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VelocidadVentaRepository extends JpaRepository<VelocidadVenta, Long> {
+
+    // Velocidad vigente (días cerrados incorporados y decaídos) y demanda durante la reposición
+    String SQL_RECALCULAR_PUNTOS = "UPDATE velocidades_venta v SET " +
+            "velocidad_reorden = c.velocidad, " +
+            "stock_seguridad = round(CAST(:factor * sqrt(c.velocidad * c.dias_entrega) AS numeric), 2), " +
+            "punto_reorden = round(CAST(c.velocidad * c.dias_entrega AS numeric), 2) + " +
+            "  round(CAST(:factor * sqrt(c.velocidad * c.dias_entrega) AS numeric), 2), " +
+            "stock_cobertura = round(CAST(c.velocidad * :diasCobertura AS numeric), 2) " +
+            "FROM (SELECT x.id, COALESCE(pr.dias_entrega, :diasEntrega) AS dias_entrega, " +
+            "  CAST(CASE WHEN x.fecha_dia < :hoy THEN " +
+            "    (:alfa * x.unidades_dia + (1 - :alfa) * x.velocidad_diaria) * power(1 - :alfa, (:hoy - x.fecha_dia) - 1) " +
+            "  ELSE GREATEST(x.velocidad_diaria, x.unidades_dia) END AS double precision) AS velocidad " +
+            "  FROM velocidades_venta x JOIN productos p ON p.id = x.producto_id " +
+            "  LEFT JOIN proveedores pr ON pr.id = p.proveedor_id) c " +
+            "WHERE c.id = v.id";
+
+    // ✅ Solo los productos en o bajo su punto de reorden (por velocidad o, sin ventas, por stock mínimo)
+    @Query("SELECT p, v FROM Producto p " +
+            "LEFT JOIN FETCH p.categoria LEFT JOIN FETCH p.proveedor " +
+            "LEFT JOIN VelocidadVenta v ON v.producto = p " +
+            "WHERE p.estado = 'ACTIVO' " +
+            "AND COALESCE(p.stockDisponible, p.stockActual, 0) <= CASE " +
+            "WHEN v.puntoReorden > COALESCE(p.stockMinimo, 0) THEN v.puntoReorden " +
+            "ELSE COALESCE(p.stockMinimo, 0) END")
+    List<Object[]> findBajoPuntoReorden();
+
+    // ✅ Acumula unidades del día; al cambiar de día incorpora el día cerrado a la media
+    //    y decae por los días sin ventas intermedios, todo en una sentencia atómica
+    @Modifying
+    @Query(value = "INSERT INTO velocidades_venta " +
+            "(producto_id, velocidad_diaria, unidades_dia, fecha_dia, actualizado_en) " +
+            "VALUES (:productoId, 0, GREATEST(:cantidad, 0), :hoy, now()) " +
+            "ON CONFLICT (producto_id) DO UPDATE SET " +
+            "velocidad_diaria = CASE WHEN velocidades_venta.fecha_dia < :hoy THEN " +
+            "  (:alfa * velocidades_venta.unidades_dia + (1 - :alfa) * velocidades_venta.velocidad_diaria) " +
+            "  * power(1 - :alfa, (:hoy - velocidades_venta.fecha_dia) - 1) " +
+            "  ELSE velocidades_venta.velocidad_diaria END, " +
+            "unidades_dia = GREATEST(CASE WHEN velocidades_venta.fecha_dia < :hoy THEN 0 " +
+            "  ELSE velocidades_venta.unidades_dia END + :cantidad, 0), " +
+            "fecha_dia = GREATEST(velocidades_venta.fecha_dia, :hoy), " +
+            "actualizado_en = now()",
+            nativeQuery = true)
+    int registrarUnidades(@Param("productoId") Long productoId,
+                          @Param("cantidad") BigDecimal cantidad,
+                          @Param("hoy") LocalDate hoy,
+                          @Param("alfa") double alfa);
+
+    // ✅ Arranque: promedio diario de las ventas de los últimos días para productos sin velocidad
+    @Modifying
+    @Query(value = "INSERT INTO velocidades_venta " +
+            "(producto_id, velocidad_diaria, unidades_dia, fecha_dia, actualizado_en) " +
+            "SELECT d.producto_id, " +
+            "COALESCE(SUM(d.cantidad) FILTER (WHERE v.fecha_emision < :inicioHoy), 0) / :dias, " +
+            "COALESCE(SUM(d.cantidad) FILTER (WHERE v.fecha_emision >= :inicioHoy), 0), " +
+            ":hoy, now() " +
+            "FROM detalle_ventas d JOIN ventas v ON v.id = d.venta_id " +
+            "WHERE v.fecha_emision >= :desde AND v.estado = 'COMPLETADA' " +
+            "GROUP BY d.producto_id " +
+            "ON CONFLICT (producto_id) DO NOTHING",
+            nativeQuery = true)
+    int inicializarDesdeVentas(@Param("desde") LocalDateTime desde,
+                               @Param("inicioHoy") LocalDateTime inicioHoy,
+                               @Param("hoy") LocalDate hoy,
+                               @Param("dias") int dias);
+
+    // ✅ Recalcula los valores de reposición de los productos de una venta
+    @Modifying
+    @Query(value = SQL_RECALCULAR_PUNTOS + " AND v.producto_id IN (:productoIds)", nativeQuery = true)
+    int recalcularPuntos(@Param("productoIds") Collection<Long> productoIds,
+                         @Param("hoy") LocalDate hoy,
+                         @Param("alfa") double alfa,
+                         @Param("factor") double factor,
+                         @Param("diasEntrega") int diasEntrega,
+                         @Param("diasCobertura") int diasCobertura);
+
+    // ✅ Todos los productos: decaimiento diario y cambios de plazo de entrega del proveedor
+    @Modifying
+    @Query(value = SQL_RECALCULAR_PUNTOS, nativeQuery = true)
+    int recalcularTodosLosPuntos(@Param("hoy") LocalDate hoy,
+                                 @Param("alfa") double alfa,
+                                 @Param("factor") double factor,
+                                 @Param("diasEntrega") int diasEntrega,
+                                 @Param("diasCobertura") int diasCobertura);
+}
@@ -19,6 +19,10 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
 
     Optional<Venta> findByNumeroFactura(String numeroFactura);
     List<Venta> findByClienteId(Long clienteId);
+
+    // Últimas ventas del cliente, de la más reciente a la más antigua; el Pageable pone el tope
+    @Query("SELECT v FROM Venta v WHERE v.cliente.id = :clienteId ORDER BY v.fechaEmision DESC, v.id DESC")
+    List<Venta> findUltimasPorCliente(@Param("clienteId") Long clienteId, Pageable pageable);
     List<Venta> findByVendedorId(Long vendedorId);
     List<Venta> findByCajaId(Long cajaId);
     List<Venta> findByEstado(Venta.EstadoVenta estado);
@@ -0,0 +1,22 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.EstadoStockResponse;
+import com.tienda.event.AlertaStockEvent;
+import com.tienda.model.Producto;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+public interface AlertaStockService {
+
+    // Índice en memoria
+    void reconstruirIndice();
+    List<EstadoStockResponse> obtenerProductosEnAlerta(Producto.AlertaStock... niveles);
+    long contarProductosEnAlerta(Producto.AlertaStock... niveles);
+    Map<String, Long> obtenerResumenAlertas();
+
+    // Notificaciones
+    List<AlertaStockEvent> obtenerTransicionesRecientes(int limite);
+    SseEmitter suscribir();
+}
@@ -0,0 +1,16 @@
+package com.tienda.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public interface ArchivoHistoricoService {
+
+    // Archivo de periodos cerrados
+    Map<String, Object> archivarPeriodosCerrados();
+    void archivarPeriodosCerradosProgramado();
+
+    // Consultas de solo lectura sobre el archivo
+    Map<String, Object> obtenerResumenArchivo();
+    List<Map<String, Object>> obtenerVentasArchivadasPorMes(LocalDate fechaDesde, LocalDate fechaHasta);
+}
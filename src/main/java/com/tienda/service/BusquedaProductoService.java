@@ -0,0 +1,22 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BusquedaProductoService {
+
+    // Búsqueda mientras se escribe: nombre, marca, código y código de barras
+    List<ProductoEscaneoResponse> buscar(String texto, int limite, boolean soloActivos);
+    List<Long> buscarIds(String texto, int limite, boolean soloActivos);
+
+    // Solo código y código de barras por prefijo, todos los que coinciden: exactos primero y luego por código
+    List<Long> buscarIdsPorCodigo(String prefijo);
+    // Falso hasta que termina la primera carga: antes de eso el índice está incompleto
+    boolean isIndiceConstruido();
+
+    // Índice en memoria
+    int reconstruirIndice();
+    Map<String, Object> obtenerEstadisticas();
+}
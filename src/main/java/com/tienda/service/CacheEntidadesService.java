@@ -0,0 +1,11 @@
+package com.tienda.service;
+
+import java.util.Map;
+
+public interface CacheEntidadesService {
+
+    // Aciertos, fallos y tamaño por región del caché de segundo nivel y del caché de consultas
+    Map<String, Object> obtenerEstadisticas();
+
+    void vaciar();
+}
@@ -68,4 +68,5 @@ public interface CajaService {
     Caja obtenerEntidadCaja(Long id);
     Caja obtenerCajaAbiertaEntidad(Long cajaId);
     void actualizarSaldoCaja(Long cajaId, BigDecimal monto, String tipoOperacion);
+    Map<String, Object> obtenerMovimientosSesion(Long cajaId);
 }
\ No newline at end of file
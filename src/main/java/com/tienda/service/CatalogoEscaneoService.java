@@ -0,0 +1,17 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+
+import java.util.Map;
+
+public interface CatalogoEscaneoService {
+
+    // Busca por código de barras y, si no existe, por código interno
+    ProductoEscaneoResponse buscarPorCodigoEscaneado(String codigo);
+
+    // Caché
+    int precargar();
+    void invalidar(Long productoId);
+    void invalidarTodo();
+    Map<String, Object> obtenerMetricas();
+}
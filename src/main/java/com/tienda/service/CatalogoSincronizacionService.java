@@ -0,0 +1,16 @@
+package com.tienda.service;
+
+import java.io.OutputStream;
+import java.util.Map;
+
+public interface CatalogoSincronizacionService {
+
+    // Cambios del catálogo posteriores a la secuencia indicada, en NDJSON (0 = catálogo completo)
+    void escribirCambios(long desde, OutputStream salida);
+
+    Map<String, Object> obtenerEstado();
+
+    // Mantenimiento del registro de cambios
+    Map<String, Object> purgarCambios();
+    void purgarCambiosProgramado();
+}
@@ -25,6 +25,8 @@ public interface CategoriaService {
     // Árbol de categorías
     Map<String, Object> obtenerArbolCategorias();
     List<CategoriaResponse> obtenerCategoriasConProductos();
+    // Productos y valor de stock por categoría, acumulados con sus subcategorías
+    List<Map<String, Object>> obtenerResumenCategorias();
 
     // Validaciones
     boolean existeCategoriaPorNombre(String nombre);
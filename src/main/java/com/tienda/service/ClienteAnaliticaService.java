@@ -0,0 +1,30 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.PaginacionResponse;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+public interface ClienteAnaliticaService {
+
+    // Compras, total, ticket promedio, primera/última compra, frecuencia y segmento RFM
+    Map<String, Object> obtenerMetricasCliente(Long clienteId);
+    Map<Long, Integer> obtenerCompras(List<Long> clienteIds);
+
+    // Segmentación RFM precalculada
+    List<Map<String, Object>> obtenerResumenSegmentos();
+    PaginacionResponse<Map<String, Object>> obtenerClientesSegmento(String segmento, int pagina, int tamano);
+
+    // Cohortes mensuales de adquisición y retención
+    List<Map<String, Object>> obtenerCohortes(int meses);
+    BigDecimal obtenerTasaRetencion();
+    Map<String, Object> obtenerFrecuenciaCompra();
+
+    // Mantenimiento
+    Map<String, Object> recalcularSegmentos();
+    void recalcularSegmentosProgramado();
+    Map<String, Object> reconstruirMetricas();
+    Map<String, Object> cerrarCohortes();
+    void cerrarCohortesProgramado();
+}
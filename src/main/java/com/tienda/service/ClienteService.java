@@ -6,7 +6,6 @@ import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.model.Cliente;
 import org.springframework.data.domain.Pageable;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -23,12 +22,12 @@ public interface ClienteService {
 
     // Búsquedas
     List<ClienteResponse> buscarClientesPorNombre(String nombre);
+    PaginacionResponse<ClienteResponse> buscarClientes(String texto, Cliente.TipoCliente tipo, String estado, Pageable pageable);
     List<ClienteResponse> obtenerClientesPorTipo(Cliente.TipoCliente tipo);
     List<ClienteResponse> obtenerClientesPorEstado(String estado);
 
-    // Gestión
-    void actualizarTotalCompras(Long clienteId, BigDecimal monto);
-    void registrarUltimaCompra(Long clienteId);
+    // Gestión: total_compras y ultima_compra se mantienen desde las ventas (cliente_metricas)
+    void recalcularMetricas(Long clienteId);
 
     // Reportes
     List<ClienteResponse> obtenerTopClientes(int limite);
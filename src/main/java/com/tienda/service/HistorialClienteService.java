@@ -0,0 +1,15 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.HistorialClienteResponse;
+
+import java.util.Map;
+
+public interface HistorialClienteService {
+
+    // Compras del cliente de la más reciente a la más antigua, paginadas por cursor
+    HistorialClienteResponse obtenerHistorial(Long clienteId, String cursor, int tamano, boolean incluirDetalles);
+
+    // Totales de toda la vida y productos favoritos (en caché, se refresca con cada venta)
+    Map<String, Object> obtenerResumen(Long clienteId);
+    Map<String, Object> obtenerMetricasCache();
+}
@@ -1,5 +1,6 @@
 package com.tienda.service;
 
+import com.tienda.dto.request.AjusteStockMasivoRequest;
 import com.tienda.dto.response.EstadoStockResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.model.Producto;
@@ -29,6 +30,7 @@ public interface InventarioService {
                                          String motivo, Long usuarioId);
     EstadoStockResponse decrementarStock(Long productoId, BigDecimal cantidad,
                                          String motivo, Long usuarioId);
+    Map<String, Object> ajustarStockMasivo(AjusteStockMasivoRequest request);
 
     // Gestión de stock
     void reservarStock(Long productoId, BigDecimal cantidad);
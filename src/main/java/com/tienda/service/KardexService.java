@@ -0,0 +1,20 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.KardexResponse;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public interface KardexService {
+
+    // Consultas puntuales
+    BigDecimal calcularStockEnFecha(Long productoId, LocalDateTime fecha);
+    Map<String, Object> obtenerStockEnFecha(Long productoId, LocalDateTime fecha);
+    KardexResponse obtenerKardex(Long productoId, LocalDateTime fechaDesde, LocalDateTime fechaHasta);
+
+    // Saldos de cierre
+    int generarSaldos(LocalDate fechaCorte);
+    void generarSaldosDiarios();
+}
@@ -1,5 +1,6 @@
 package com.tienda.service;
 
+import com.tienda.dto.request.ActualizacionPreciosRequest;
 import com.tienda.dto.request.ProductoRequest;
 import com.tienda.dto.response.ProductoResponse;
 import com.tienda.dto.response.PaginacionResponse;
@@ -7,6 +8,7 @@ import com.tienda.model.Producto;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -35,9 +37,13 @@ public interface ProductoService {
     ProductoResponse decrementarStock(Long productoId, BigDecimal cantidad, String motivo);
     ProductoResponse actualizarPrecio(Long productoId, BigDecimal nuevoPrecio);
 
+    // Precios
+    Map<String, Object> actualizarPreciosMasivo(ActualizacionPreciosRequest request);
+    List<Map<String, Object>> obtenerHistorialPrecios(Long productoId);
+
     // Importación/Exportación
     Map<String, Object> importarProductosDesdeExcel(MultipartFile archivo);
-    byte[] exportarProductosAExcel();
+    void exportarProductosAExcel(OutputStream salida);
 
     // Validaciones
     boolean existeProductoPorCodigo(String codigo);
@@ -23,6 +23,7 @@ public interface ProveedorService {
 
     // Búsquedas
     List<ProveedorResponse> buscarProveedoresPorNombre(String nombre);
+    PaginacionResponse<ProveedorResponse> buscarProveedores(String texto, Proveedor.EstadoProveedor estado, Pageable pageable);
     List<ProveedorResponse> obtenerProveedoresPorEstado(Proveedor.EstadoProveedor estado);
 
     // Gestión de estado
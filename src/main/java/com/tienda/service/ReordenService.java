@@ -0,0 +1,16 @@
+package com.tienda.service;
+
+import com.tienda.dto.response.SugerenciaCompraResponse;
+import com.tienda.model.Producto;
+
+import java.util.List;
+
+public interface ReordenService {
+
+    // Sugerencias de compra
+    List<SugerenciaCompraResponse> obtenerSugerenciaCompra();
+    List<Producto> obtenerProductosBajoPuntoReorden();
+
+    // Mantenimiento de velocidades
+    int inicializarVelocidades();
+}
@@ -1,9 +1,11 @@
 package com.tienda.service;
 
+import com.tienda.dto.request.FiltroReporteRequest;
 import com.tienda.dto.response.CierreCajaResponse;
 import com.tienda.dto.response.ReporteInventarioResponse;
 import com.tienda.dto.response.ReporteVentaResponse;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -20,14 +22,25 @@ public interface ReporteService {
     CierreCajaResponse conciliarCierreCaja(Long id, Long usuarioId, String observaciones);
 
     // ============ REPORTES DE VENTAS ============
+    // Reportes pesados: se ejecutan como trabajos en segundo plano (ReporteTrabajoService)
+    ReporteVentaResponse generarReporteVentas(FiltroReporteRequest filtro);
+    Map<String, Object> generarEstadisticasVentas(LocalDate fechaInicio, LocalDate fechaFin);
     ReporteVentaResponse generarReporteVentasDiario(LocalDate fecha);
     ReporteVentaResponse generarReporteVentasMensual(int mes, int año);
     ReporteVentaResponse generarReporteVentasRango(LocalDate fechaDesde, LocalDate fechaHasta);
     List<Map<String, Object>> generarReporteVentasPorVendedor(LocalDate fechaDesde, LocalDate fechaHasta);
     List<Map<String, Object>> generarReporteVentasPorProducto(LocalDate fechaDesde, LocalDate fechaHasta);
     List<Map<String, Object>> generarReporteVentasPorCliente(LocalDate fechaDesde, LocalDate fechaHasta);
+    // Cada categoría acumula las ventas de todas sus subcategorías
+    List<Map<String, Object>> generarReporteVentasPorCategoria(LocalDate fechaDesde, LocalDate fechaHasta);
+
+    // ============ REPORTES DE CLIENTES ============
+    // Distribución por número de compras, tasas de recompra y retención, y cohortes recientes
+    Map<String, Object> generarReporteFrecuenciaClientes();
+    List<Map<String, Object>> generarReporteCohortesClientes(int meses);
 
     // ============ REPORTES DE INVENTARIO ============
+    ReporteInventarioResponse generarReporteInventario();
     ReporteInventarioResponse generarReporteInventarioEstado();
     List<Map<String, Object>> generarReporteMovimientosInventario(LocalDate fechaDesde, LocalDate fechaHasta, Long productoId, String tipoMovimiento);
     Map<String, Object> generarReporteValoracionInventario();
@@ -40,8 +53,8 @@ public interface ReporteService {
     List<Map<String, Object>> generarReporteGastos(LocalDate fechaDesde, LocalDate fechaHasta);
 
     // ============ EXPORTACIÓN ============
-    byte[] exportarReporteVentasExcel(LocalDate fechaDesde, LocalDate fechaHasta);
-    byte[] exportarReporteInventarioExcel();
+    void exportarReporteVentasExcel(LocalDate fechaDesde, LocalDate fechaHasta, OutputStream salida);
+    void exportarReporteInventarioExcel(OutputStream salida);
     byte[] exportarCierreCajaPDF(Long id);
     byte[] exportarFacturaPDF(Long ventaId);
 
@@ -0,0 +1,22 @@
+package com.tienda.service;
+
+import com.tienda.dto.request.FiltroReporteRequest;
+import com.tienda.dto.response.TrabajoReporteResponse;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public interface ReporteTrabajoService {
+
+    // Encola el reporte (VENTAS, ESTADISTICAS o INVENTARIO); una solicitud idéntica en curso devuelve el mismo trabajo
+    TrabajoReporteResponse solicitarReporte(FiltroReporteRequest filtro, String prioridad);
+
+    // Consultas de estado y resultado
+    TrabajoReporteResponse obtenerTrabajo(String id);
+    List<TrabajoReporteResponse> obtenerTrabajos();
+    Path obtenerResultado(String id);
+
+    // Mantenimiento
+    int limpiarTrabajosVencidos();
+    void limpiarTrabajosVencidosProgramado();
+}
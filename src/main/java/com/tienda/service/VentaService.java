@@ -13,6 +13,9 @@ import java.util.Map;
 
 public interface VentaService {
 
+    // Tope del listado plano de ventas de un cliente
+    int MAX_VENTAS_POR_CLIENTE = 100;
+
     // CRUD
     VentaResponse crearVenta(VentaRequest request);
     VentaResponse obtenerVentaPorId(Long id);
@@ -30,6 +33,8 @@ public interface VentaService {
 
     // Consultas específicas
     List<VentaResponse> obtenerVentasDelDia();
+    // Solo las MAX_VENTAS_POR_CLIENTE más recientes; el historial completo va por HistorialClienteService
+    @Deprecated
     List<VentaResponse> obtenerVentasPorCliente(Long clienteId);
     List<VentaResponse> obtenerVentasPorVendedor(Long vendedorId);
     List<VentaResponse> obtenerVentasPorRangoFecha(LocalDateTime fechaInicio, LocalDateTime fechaFin);
@@ -0,0 +1,264 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.EstadoStockResponse;
+import com.tienda.event.AlertaStockEvent;
+import com.tienda.event.PreciosActualizadosEvent;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.service.AlertaStockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AlertaStockServiceImpl implements AlertaStockService {
+
+    private static final int MAX_TRANSICIONES = 200;
+    private static final long TIMEOUT_SSE = 30 * 60 * 1000L;
+
+    private final ProductoRepository productoRepository;
+
+    // Se reemplaza completo al reconstruir: los lectores nunca ven un índice a medio llenar
+    private volatile IndiceAlertas indice = new IndiceAlertas();
+
+    private final Deque<AlertaStockEvent> transiciones = new ConcurrentLinkedDeque<>();
+    private final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void inicializarIndice() {
+        reconstruirIndice();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public synchronized void reconstruirIndice() {
+        indice = cargarIndice();
+        log.info("Índice de alertas de stock reconstruido: {}", obtenerResumenAlertas());
+    }
+
+    /**
+     * Los eventos pueden llegar desordenados tras el commit y las escrituras JDBC no pasan
+     * por el listener de la entidad; se contrasta el índice con la BD y se corrige la deriva.
+     */
+    @Scheduled(fixedDelayString = "${inventario.alertas.reconciliacion-ms:600000}",
+            initialDelayString = "${inventario.alertas.reconciliacion-ms:600000}")
+    @Transactional(readOnly = true)
+    public synchronized void reconciliarIndice() {
+        try {
+            IndiceAlertas nuevo = cargarIndice();
+            long corregidos = nuevo.contarDiferencias(indice);
+            indice = nuevo;
+
+            if (corregidos > 0) {
+                log.warn("Índice de alertas reconciliado: {} productos corregidos", corregidos);
+            }
+        } catch (Exception e) {
+            log.error("Error reconciliando el índice de alertas: {}", e.getMessage(), e);
+        }
+    }
+
+    // Se aplica tras el commit para que un rollback no deje el índice adelantado
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarEstadoStock(AlertaStockEvent evento) {
+        synchronized (this) {
+            indice.indexar(evento);
+        }
+
+        if (evento.esTransicion()) {
+            transiciones.addFirst(evento);
+            while (transiciones.size() > MAX_TRANSICIONES) {
+                transiciones.pollLast();
+            }
+
+            log.info("Transición de alerta de stock: {} {} -> {}",
+                    evento.getCodigo(), evento.getAlertaAnterior(), evento.getAlertaNueva());
+            notificarSuscriptores(evento);
+        }
+    }
+
+    // Los estados indexados guardan el precio: se reconstruye si el lote tocó productos en alerta
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alActualizarPrecios(PreciosActualizadosEvent evento) {
+        if (evento.getProductoIds().stream().anyMatch(indice.estados::containsKey)) {
+            reconstruirIndice();
+        }
+    }
+
+    @Override
+    public List<EstadoStockResponse> obtenerProductosEnAlerta(Producto.AlertaStock... niveles) {
+        IndiceAlertas actual = indice;
+        return Arrays.stream(niveles)
+                .flatMap(nivel -> actual.porNivel.get(nivel).stream())
+                .map(actual.estados::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparing(AlertaStockEvent::getNombre,
+                        Comparator.nullsLast(String::compareToIgnoreCase)))
+                .map(this::convertirAEstadoStockResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long contarProductosEnAlerta(Producto.AlertaStock... niveles) {
+        IndiceAlertas actual = indice;
+        return Arrays.stream(niveles)
+                .mapToLong(nivel -> actual.porNivel.get(nivel).size())
+                .sum();
+    }
+
+    @Override
+    public Map<String, Long> obtenerResumenAlertas() {
+        Map<String, Long> resumen = new LinkedHashMap<>();
+        indice.porNivel.forEach((nivel, ids) -> {
+            if (nivel != Producto.AlertaStock.NORMAL) {
+                resumen.put(nivel.name(), (long) ids.size());
+            }
+        });
+        return resumen;
+    }
+
+    @Override
+    public List<AlertaStockEvent> obtenerTransicionesRecientes(int limite) {
+        return transiciones.stream()
+                .limit(limite)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public SseEmitter suscribir() {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_SSE);
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(() -> suscriptores.remove(emitter));
+        emitter.onError(e -> suscriptores.remove(emitter));
+        suscriptores.add(emitter);
+        return emitter;
+    }
+
+    // Métodos privados auxiliares
+    private IndiceAlertas cargarIndice() {
+        List<Producto> productos = productoRepository.findByAlertaStockInConRelaciones(Arrays.asList(
+                Producto.AlertaStock.BAJO,
+                Producto.AlertaStock.CRITICO,
+                Producto.AlertaStock.AGOTADO,
+                Producto.AlertaStock.SOBRE));
+
+        IndiceAlertas nuevo = new IndiceAlertas();
+        productos.forEach(p -> nuevo.indexar(AlertaStockEvent.de(p, p.getAlertaStock())));
+        return nuevo;
+    }
+
+    private void notificarSuscriptores(AlertaStockEvent evento) {
+        for (SseEmitter emitter : suscriptores) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("alerta-stock")
+                        .data(convertirAEstadoStockResponse(evento)));
+            } catch (IOException | IllegalStateException e) {
+                suscriptores.remove(emitter);
+                log.debug("Suscriptor de alertas desconectado: {}", e.getMessage());
+            }
+        }
+    }
+
+    private EstadoStockResponse convertirAEstadoStockResponse(AlertaStockEvent evento) {
+        BigDecimal stockActual = evento.getStockActual() != null ? evento.getStockActual() : BigDecimal.ZERO;
+        BigDecimal costo = evento.getCostoPromedio() != null ? evento.getCostoPromedio() : BigDecimal.ZERO;
+        BigDecimal precio = evento.getPrecioVenta() != null ? evento.getPrecioVenta() : BigDecimal.ZERO;
+        BigDecimal valorCosto = stockActual.multiply(costo);
+        BigDecimal valorVenta = stockActual.multiply(precio);
+
+        return EstadoStockResponse.builder()
+                .id(evento.getProductoId())
+                .codigo(evento.getCodigo())
+                .nombre(evento.getNombre())
+                .categoria(evento.getCategoria())
+                .stockActual(evento.getStockActual())
+                .stockDisponible(evento.getStockDisponible())
+                .stockMinimo(evento.getStockMinimo())
+                .stockMaximo(evento.getStockMaximo())
+                .estadoProducto(evento.getEstadoProducto())
+                .alertaStock(evento.getAlertaNueva().name())
+                .estadoCalculado(evento.getAlertaNueva() == Producto.AlertaStock.CRITICO ?
+                        "CRÍTICO" : evento.getAlertaNueva().name())
+                .costoPromedio(evento.getCostoPromedio())
+                .precioVenta(evento.getPrecioVenta())
+                .valorCosto(valorCosto)
+                .valorVenta(valorVenta)
+                .utilidadPotencial(valorVenta.subtract(valorCosto))
+                .unidadMedida(evento.getUnidadMedida())
+                .proveedor(evento.getProveedor())
+                .necesitaReorden(evento.getStockMinimo() != null &&
+                        stockActual.compareTo(evento.getStockMinimo()) <= 0)
+                .actualizadoEn(evento.getFecha())
+                .build();
+    }
+
+    /**
+     * Último estado conocido de cada producto fuera de NORMAL e ids agrupados por nivel.
+     */
+    private static class IndiceAlertas {
+        private final Map<Long, AlertaStockEvent> estados = new ConcurrentHashMap<>();
+        private final Map<Producto.AlertaStock, Set<Long>> porNivel = new EnumMap<>(Producto.AlertaStock.class);
+
+        private IndiceAlertas() {
+            for (Producto.AlertaStock nivel : Producto.AlertaStock.values()) {
+                porNivel.put(nivel, ConcurrentHashMap.newKeySet());
+            }
+        }
+
+        private void indexar(AlertaStockEvent evento) {
+            Long productoId = evento.getProductoId();
+            AlertaStockEvent anterior = estados.get(productoId);
+
+            if (anterior != null) {
+                porNivel.get(anterior.getAlertaNueva()).remove(productoId);
+            }
+
+            if (evento.getAlertaNueva() == Producto.AlertaStock.NORMAL) {
+                estados.remove(productoId);
+                return;
+            }
+
+            // Las relaciones pueden venir vacías si no estaban cargadas al escribir
+            if (anterior != null && (evento.getCategoria() == null || evento.getProveedor() == null)) {
+                evento = evento.toBuilder()
+                        .categoria(evento.getCategoria() != null ? evento.getCategoria() : anterior.getCategoria())
+                        .proveedor(evento.getProveedor() != null ? evento.getProveedor() : anterior.getProveedor())
+                        .build();
+            }
+
+            estados.put(productoId, evento);
+            porNivel.get(evento.getAlertaNueva()).add(productoId);
+        }
+
+        // Productos cuyo nivel difiere entre los dos índices (incluye los que solo están en uno)
+        private long contarDiferencias(IndiceAlertas otro) {
+            Set<Long> ids = new HashSet<>(estados.keySet());
+            ids.addAll(otro.estados.keySet());
+            return ids.stream()
+                    .filter(id -> nivel(id) != otro.nivel(id))
+                    .count();
+        }
+
+        private Producto.AlertaStock nivel(Long productoId) {
+            AlertaStockEvent estado = estados.get(productoId);
+            return estado != null ? estado.getAlertaNueva() : Producto.AlertaStock.NORMAL;
+        }
+    }
+}
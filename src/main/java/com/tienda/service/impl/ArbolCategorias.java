@@ -0,0 +1,168 @@
+package com.tienda.service.impl;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instantánea inmutable del árbol de categorías. Se construye completa a partir de una
+ * sola lectura y se reemplaza entera al cambiar el árbol, así que los lectores nunca ven
+ * un árbol a medio actualizar ni necesitan sincronización.
+ */
+public final class ArbolCategorias {
+
+    @Getter
+    public static final class Nodo {
+        private final Long id;
+        private final String nombre;
+        private final String descripcion;
+        private final Long padreId;
+        private final Integer nivel;
+        private final String icono;
+        private final Integer orden;
+        private final String estado;
+        private List<Long> hijos = Collections.emptyList();
+
+        Nodo(Long id, String nombre, String descripcion, Long padreId,
+             Integer nivel, String icono, Integer orden, String estado) {
+            this.id = id;
+            this.nombre = nombre;
+            this.descripcion = descripcion;
+            this.padreId = padreId;
+            this.nivel = nivel;
+            this.icono = icono;
+            this.orden = orden != null ? orden : 0;
+            this.estado = estado;
+        }
+    }
+
+    private final Map<Long, Nodo> nodos;
+    private final List<Long> raices;
+    @Getter
+    private final int profundidadMaxima;
+
+    private ArbolCategorias(Map<Long, Nodo> nodos, List<Long> raices, int profundidadMaxima) {
+        this.nodos = nodos;
+        this.raices = raices;
+        this.profundidadMaxima = profundidadMaxima;
+    }
+
+    public static ArbolCategorias construir(List<Map<String, Object>> filas) {
+        Map<Long, Nodo> nodos = new HashMap<>(filas.size() * 2);
+        for (Map<String, Object> fila : filas) {
+            Long id = ((Number) fila.get("id")).longValue();
+            Number padre = (Number) fila.get("categoria_padre_id");
+            Number nivel = (Number) fila.get("nivel");
+            Number orden = (Number) fila.get("orden");
+            nodos.put(id, new Nodo(id, (String) fila.get("nombre"), (String) fila.get("descripcion"),
+                    padre != null ? padre.longValue() : null, nivel != null ? nivel.intValue() : null,
+                    (String) fila.get("icono"), orden != null ? orden.intValue() : null, (String) fila.get("estado")));
+        }
+
+        Map<Long, List<Long>> hijosPorPadre = new HashMap<>();
+        List<Long> raices = new ArrayList<>();
+        for (Nodo nodo : nodos.values()) {
+            // Un padre inexistente deja a la categoría como raíz en lugar de perderla
+            if (nodo.padreId == null || !nodos.containsKey(nodo.padreId)) {
+                raices.add(nodo.id);
+            } else {
+                hijosPorPadre.computeIfAbsent(nodo.padreId, k -> new ArrayList<>()).add(nodo.id);
+            }
+        }
+
+        Comparator<Long> porOrden = Comparator.comparing((Long id) -> nodos.get(id).orden).thenComparing(id -> id);
+        hijosPorPadre.forEach((padreId, hijos) -> {
+            hijos.sort(porOrden);
+            nodos.get(padreId).hijos = Collections.unmodifiableList(hijos);
+        });
+        raices.sort(porOrden);
+
+        int profundidad = 0;
+        for (Nodo nodo : nodos.values()) {
+            if (nodo.nivel != null) {
+                profundidad = Math.max(profundidad, nodo.nivel);
+            }
+        }
+        return new ArbolCategorias(Collections.unmodifiableMap(nodos), Collections.unmodifiableList(raices), profundidad);
+    }
+
+    public Nodo obtener(Long id) {
+        return nodos.get(id);
+    }
+
+    public int getTotal() {
+        return nodos.size();
+    }
+
+    public List<Nodo> todas() {
+        return new ArrayList<>(nodos.values());
+    }
+
+    public List<Nodo> raices() {
+        return nodos(raices);
+    }
+
+    public List<Nodo> hijos(Long id) {
+        Nodo nodo = nodos.get(id);
+        return nodo != null ? nodos(nodo.hijos) : Collections.emptyList();
+    }
+
+    // La categoría y todos sus descendientes, en preorden
+    public List<Long> subarbol(Long id) {
+        List<Long> resultado = new ArrayList<>();
+        if (!nodos.containsKey(id)) {
+            return resultado;
+        }
+        List<Long> pendientes = new ArrayList<>();
+        pendientes.add(id);
+        while (!pendientes.isEmpty()) {
+            Long actual = pendientes.remove(pendientes.size() - 1);
+            resultado.add(actual);
+            List<Long> hijos = nodos.get(actual).hijos;
+            for (int i = hijos.size() - 1; i >= 0; i--) {
+                pendientes.add(hijos.get(i));
+            }
+        }
+        return resultado;
+    }
+
+    // Desde el padre hasta la raíz
+    public List<Nodo> ancestros(Long id) {
+        List<Nodo> resultado = new ArrayList<>();
+        Nodo nodo = nodos.get(id);
+        // El límite protege de un ciclo en datos inconsistentes
+        while (nodo != null && nodo.padreId != null && resultado.size() < nodos.size()) {
+            nodo = nodos.get(nodo.padreId);
+            if (nodo != null) {
+                resultado.add(nodo);
+            }
+        }
+        return resultado;
+    }
+
+    public boolean esDescendiente(Long id, Long ancestroId) {
+        if (id.equals(ancestroId)) {
+            return true;
+        }
+        for (Nodo ancestro : ancestros(id)) {
+            if (ancestro.id.equals(ancestroId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Métodos privados auxiliares
+    private List<Nodo> nodos(List<Long> ids) {
+        List<Nodo> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            resultado.add(nodos.get(id));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,67 @@
+package com.tienda.service.impl;
+
+import com.tienda.event.CategoriasModificadasEvent;
+import com.tienda.repository.CategoriaArbolRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Mantiene la instantánea del árbol de categorías. Se reconstruye tras el commit de cada
+ * cambio y, como respaldo ante escrituras de otra instancia, de forma periódica.
+ * Al arrancar también verifica la tabla de clausura y la regenera si no refleja categorias.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ArbolCategoriasCache {
+
+    private final CategoriaArbolRepository categoriaArbolRepository;
+
+    private volatile ArbolCategorias arbol;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void prepararAlArrancar() {
+        int sinClausura = categoriaArbolRepository.contarCategoriasSinClausura();
+        if (sinClausura > 0) {
+            int filas = categoriaArbolRepository.reconstruir();
+            log.info("Tabla de clausura de categorías reconstruida: {} filas ({} categorías sin registrar)",
+                    filas, sinClausura);
+        }
+        recargar();
+    }
+
+    public ArbolCategorias obtener() {
+        ArbolCategorias actual = arbol;
+        return actual != null ? actual : recargar();
+    }
+
+    // Serializado: la última reconstrucción lee siempre el estado más reciente confirmado
+    public synchronized ArbolCategorias recargar() {
+        ArbolCategorias nuevo = ArbolCategorias.construir(categoriaArbolRepository.obtenerCategorias());
+        arbol = nuevo;
+        log.debug("Árbol de categorías recargado: {} categorías", nuevo.getTotal());
+        return nuevo;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarCategorias(CategoriasModificadasEvent evento) {
+        recargar();
+    }
+
+    @Scheduled(fixedDelayString = "${categorias.arbol.refresco-ms:300000}",
+            initialDelayString = "${categorias.arbol.refresco-ms:300000}")
+    public void refrescarProgramado() {
+        try {
+            recargar();
+        } catch (Exception e) {
+            log.error("Error recargando el árbol de categorías: {}", e.getMessage(), e);
+        }
+    }
+}
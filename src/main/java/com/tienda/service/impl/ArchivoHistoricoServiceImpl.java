@@ -0,0 +1,122 @@
+package com.tienda.service.impl;
+
+import com.tienda.exception.ValidacionException;
+import com.tienda.repository.ArchivoHistoricoRepository;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.repository.ClienteMetricasRepository;
+import com.tienda.repository.CohorteClientesRepository;
+import com.tienda.service.ArchivoHistoricoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArchivoHistoricoServiceImpl implements ArchivoHistoricoService {
+
+    private final ArchivoHistoricoRepository archivoHistoricoRepository;
+    private final ClienteMetricasRepository clienteMetricasRepository;
+    private final CohorteClientesRepository cohorteClientesRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${archivo.meses-activos:12}")
+    private int mesesActivos;
+
+    @Override
+    public synchronized Map<String, Object> archivarPeriodosCerrados() {
+        YearMonth primerMesActivo = YearMonth.now().minusMonths(mesesActivos);
+        LocalDateTime corte = primerMesActivo.atDay(1).atStartOfDay();
+
+        Map<String, Integer> filasPorTabla = new LinkedHashMap<>();
+        Set<YearMonth> periodos = new TreeSet<>();
+
+        for (TablaArchivable tabla : TablaArchivable.values()) {
+            archivoHistoricoRepository.prepararTablaHistorica(tabla);
+            filasPorTabla.put(tabla.getTabla(), 0);
+
+            LocalDateTime masAntigua = archivoHistoricoRepository.obtenerFechaMasAntigua(tabla, corte);
+            if (masAntigua != null) {
+                for (YearMonth p = YearMonth.from(masAntigua); p.isBefore(primerMesActivo); p = p.plusMonths(1)) {
+                    periodos.add(p);
+                }
+            }
+        }
+
+        // Un periodo por transacción: si falla un mes, los anteriores quedan archivados
+        for (YearMonth periodo : periodos) {
+            Map<String, Integer> movidas = transactionTemplate.execute(status -> {
+                // Antes de mover las ventas: su aporte a las métricas y cohortes de clientes
+                clienteMetricasRepository.acumularArchivo(periodo.atDay(1).atStartOfDay(),
+                        periodo.plusMonths(1).atDay(1).atStartOfDay());
+                cohorteClientesRepository.cerrarMeses(periodo.plusMonths(1).atDay(1));
+
+                Map<String, Integer> filas = new LinkedHashMap<>();
+                for (TablaArchivable tabla : TablaArchivable.values()) {
+                    archivoHistoricoRepository.crearParticion(tabla, periodo);
+                    filas.put(tabla.getTabla(), archivoHistoricoRepository.moverPeriodo(tabla, periodo));
+                }
+                return filas;
+            });
+
+            movidas.forEach((tabla, filas) -> filasPorTabla.merge(tabla, filas, Integer::sum));
+            log.info("Periodo {} archivado: {}", periodo, movidas);
+        }
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("fechaCorte", corte.toLocalDate());
+        resultado.put("mesesActivos", mesesActivos);
+        resultado.put("periodosArchivados", periodos.size());
+        resultado.put("filasArchivadas", filasPorTabla);
+        resultado.put("fecha", LocalDateTime.now());
+
+        return resultado;
+    }
+
+    @Override
+    @Scheduled(cron = "${archivo.cron:0 30 2 1 * *}")
+    public void archivarPeriodosCerradosProgramado() {
+        try {
+            archivarPeriodosCerrados();
+        } catch (Exception e) {
+            log.error("Error archivando periodos cerrados: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> obtenerResumenArchivo() {
+        Map<String, Object> tablas = new LinkedHashMap<>();
+        for (TablaArchivable tabla : TablaArchivable.values()) {
+            tablas.put(tabla.getTablaHistorica(), archivoHistoricoRepository.existeTablaHistorica(tabla) ?
+                    archivoHistoricoRepository.obtenerParticiones(tabla) : Collections.emptyList());
+        }
+
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("mesesActivos", mesesActivos);
+        resumen.put("primerMesActivo", YearMonth.now().minusMonths(mesesActivos).toString());
+        resumen.put("tablas", tablas);
+
+        return resumen;
+    }
+
+    @Override
+    public List<Map<String, Object>> obtenerVentasArchivadasPorMes(LocalDate fechaDesde, LocalDate fechaHasta) {
+        if (fechaDesde.isAfter(fechaHasta)) {
+            throw new ValidacionException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+        if (!archivoHistoricoRepository.existeTablaHistorica(TablaArchivable.VENTAS)) {
+            return Collections.emptyList();
+        }
+
+        return archivoHistoricoRepository.obtenerVentasArchivadasPorMes(
+                fechaDesde.atStartOfDay(), fechaHasta.plusDays(1).atStartOfDay());
+    }
+}
@@ -0,0 +1,418 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import com.tienda.event.PreciosActualizadosEvent;
+import com.tienda.event.ProductoModificadoEvent;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.service.BusquedaProductoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Índice en memoria para la búsqueda mientras se escribe. Cada producto se indexa por
+ * trigramas de sus palabras (nombre, marca, código, código de barras) y por los prefijos
+ * de una y dos letras; el texto se normaliza sin tildes ni mayúsculas. Una consulta toma
+ * la lista de candidatos más corta, verifica el resto de términos y devuelve los N mejores.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BusquedaProductoServiceImpl implements BusquedaProductoService {
+
+    private static final int TAMANO_BLOQUE_CARGA = 2000;
+    private static final int LIMITE_MAXIMO = 100;
+    private static final int MIN_MUERTOS_COMPACTAR = 1000;
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+
+    private final ProductoRepository productoRepository;
+
+    // Posición -> documento (null si fue reemplazado); producto -> posición vigente
+    private final List<Documento> documentos = new ArrayList<>();
+    private final Map<Long, Integer> posicionPorProducto = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int muertos;
+    private volatile boolean construido;
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlArrancar() {
+        reconstruirIndice();
+    }
+
+    @Override
+    public int reconstruirIndice() {
+        long inicio = System.currentTimeMillis();
+        int cargados = 0;
+        Long ultimoId = 0L;
+
+        // Bloques por clave, cada uno en su propia consulta: no se acumulan entidades
+        List<Producto> bloque;
+        do {
+            bloque = productoRepository.findByIdGreaterThanOrderByIdAsc(
+                    ultimoId, PageRequest.of(0, TAMANO_BLOQUE_CARGA));
+            List<ProductoEscaneoResponse> vistas = bloque.stream()
+                    .map(ProductoEscaneoResponse::de)
+                    .collect(Collectors.toList());
+
+            candado.writeLock().lock();
+            try {
+                vistas.forEach(this::indexar);
+            } finally {
+                candado.writeLock().unlock();
+            }
+
+            cargados += bloque.size();
+            if (!bloque.isEmpty()) {
+                ultimoId = bloque.get(bloque.size() - 1).getId();
+            }
+        } while (bloque.size() == TAMANO_BLOQUE_CARGA);
+
+        // Una reconstrucción sobre un índice existente deja reemplazadas todas las posiciones previas
+        candado.writeLock().lock();
+        try {
+            if (muertos > 0) {
+                compactar();
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+
+        construido = true;
+        log.info("Índice de búsqueda de productos construido: {} productos en {} ms",
+                cargados, System.currentTimeMillis() - inicio);
+        return cargados;
+    }
+
+    // Tras el commit: el índice nunca muestra cambios revertidos
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        candado.writeLock().lock();
+        try {
+            if (evento.isEliminado()) {
+                retirar(evento.getProductoId());
+            } else {
+                indexar(evento.getProducto());
+            }
+            if (muertos > MIN_MUERTOS_COMPACTAR && muertos > posicionPorProducto.size() / 4) {
+                compactar();
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    // Los resultados llevan precios: se recargan las vistas de los productos del lote
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alActualizarPrecios(PreciosActualizadosEvent evento) {
+        List<Long> ids = evento.getProductoIds();
+        for (int i = 0; i < ids.size(); i += TAMANO_BLOQUE_CARGA) {
+            List<ProductoEscaneoResponse> vistas = productoRepository
+                    .findAllById(ids.subList(i, Math.min(i + TAMANO_BLOQUE_CARGA, ids.size()))).stream()
+                    .map(ProductoEscaneoResponse::de)
+                    .collect(Collectors.toList());
+
+            candado.writeLock().lock();
+            try {
+                vistas.forEach(this::indexar);
+            } finally {
+                candado.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<ProductoEscaneoResponse> buscar(String texto, int limite, boolean soloActivos) {
+        return buscarDocumentos(texto, limite, soloActivos).stream()
+                .map(d -> d.producto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> buscarIds(String texto, int limite, boolean soloActivos) {
+        return buscarDocumentos(texto, limite, soloActivos).stream()
+                .map(d -> d.producto.getId())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> buscarIdsPorCodigo(String prefijo) {
+        String consulta = normalizar(prefijo);
+        if (consulta.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Documento> encontrados = new ArrayList<>();
+        candado.readLock().lock();
+        try {
+            Postings candidatos = menoresCandidatos(consulta.split(" "));
+            for (int i = 0; candidatos != null && i < candidatos.tamano; i++) {
+                Documento documento = documentos.get(candidatos.posiciones[i]);
+                if (documento != null &&
+                        (documento.codigo.startsWith(consulta) || documento.codigoBarras.startsWith(consulta))) {
+                    encontrados.add(documento);
+                }
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+
+        return encontrados.stream()
+                .sorted(Comparator.comparing((Documento d) -> !consulta.equals(d.codigo) && !consulta.equals(d.codigoBarras))
+                        .thenComparing(d -> d.codigo))
+                .map(d -> d.producto.getId())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isIndiceConstruido() {
+        return construido;
+    }
+
+    @Override
+    public Map<String, Object> obtenerEstadisticas() {
+        candado.readLock().lock();
+        try {
+            Map<String, Object> estadisticas = new LinkedHashMap<>();
+            estadisticas.put("construido", construido);
+            estadisticas.put("productos", posicionPorProducto.size());
+            estadisticas.put("gramas", postings.size());
+            estadisticas.put("posicionesMuertas", muertos);
+            return estadisticas;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    // Métodos privados auxiliares
+    private List<Documento> buscarDocumentos(String texto, int limite, boolean soloActivos) {
+        String consulta = normalizar(texto);
+        if (consulta.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String[] terminos = consulta.split(" ");
+        int maximo = Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+
+        // Montículo de mínimos con los N mejores hasta el momento
+        Comparator<Resultado> orden = Comparator.comparingInt((Resultado r) -> r.puntos)
+                .thenComparing((Resultado r) -> r.documento.nombre.length(), Comparator.reverseOrder())
+                .thenComparing((Resultado r) -> r.documento.nombre, Comparator.reverseOrder());
+        PriorityQueue<Resultado> mejores = new PriorityQueue<>(maximo + 1, orden);
+
+        candado.readLock().lock();
+        try {
+            Postings candidatos = menoresCandidatos(terminos);
+            if (candidatos == null) {
+                return Collections.emptyList();
+            }
+
+            for (int i = 0; i < candidatos.tamano; i++) {
+                Documento documento = documentos.get(candidatos.posiciones[i]);
+                if (documento == null || (soloActivos && !"ACTIVO".equals(documento.producto.getEstado()))) {
+                    continue;
+                }
+
+                int puntos = puntuar(documento, consulta, terminos);
+                if (puntos < 0) {
+                    continue;
+                }
+
+                mejores.add(new Resultado(documento, puntos));
+                if (mejores.size() > maximo) {
+                    mejores.poll();
+                }
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+
+        List<Documento> resultado = new ArrayList<>(mejores.size());
+        while (!mejores.isEmpty()) {
+            resultado.add(mejores.poll().documento);
+        }
+        Collections.reverse(resultado);
+        return resultado;
+    }
+
+    // La lista más corta entre las de todos los términos; null si alguno no aparece
+    private Postings menoresCandidatos(String[] terminos) {
+        Postings candidatos = null;
+        for (String termino : terminos) {
+            Postings lista = candidatosPara(termino);
+            if (lista == null) {
+                return null;
+            }
+            if (candidatos == null || lista.tamano < candidatos.tamano) {
+                candidatos = lista;
+            }
+        }
+        return candidatos;
+    }
+
+    // Término corto: prefijo de palabra; a partir de tres letras: su trigrama más selectivo
+    private Postings candidatosPara(String termino) {
+        if (termino.length() < 3) {
+            return postings.get("^" + termino);
+        }
+
+        Postings menor = null;
+        for (int i = 0; i + 3 <= termino.length(); i++) {
+            Postings lista = postings.get(termino.substring(i, i + 3));
+            if (lista == null) {
+                return null;
+            }
+            if (menor == null || lista.tamano < menor.tamano) {
+                menor = lista;
+            }
+        }
+        return menor;
+    }
+
+    private int puntuar(Documento documento, String consulta, String[] terminos) {
+        int puntos = 0;
+
+        if (consulta.equals(documento.codigo) || consulta.equals(documento.codigoBarras)) {
+            puntos += 1000;
+        } else if (documento.codigo.startsWith(consulta) || documento.codigoBarras.startsWith(consulta)) {
+            puntos += 500;
+        }
+        if (documento.nombre.startsWith(consulta)) {
+            puntos += 300;
+        }
+
+        for (String termino : terminos) {
+            if (documento.texto.contains(" " + termino)) {
+                puntos += 100;
+            } else if (termino.length() >= 3 && documento.texto.contains(termino)) {
+                puntos += 20;
+            } else {
+                return -1;
+            }
+        }
+        return puntos;
+    }
+
+    private void indexar(ProductoEscaneoResponse producto) {
+        Integer anterior = posicionPorProducto.get(producto.getId());
+        if (anterior != null) {
+            // Un evento tardío no reemplaza una versión más nueva
+            if (documentos.get(anterior).producto.getVersion() > producto.getVersion()) {
+                return;
+            }
+            documentos.set(anterior, null);
+            muertos++;
+        }
+
+        Documento documento = new Documento(producto);
+        int posicion = documentos.size();
+        documentos.add(documento);
+        posicionPorProducto.put(producto.getId(), posicion);
+
+        for (String grama : gramas(documento.texto)) {
+            postings.computeIfAbsent(grama, k -> new Postings()).agregar(posicion);
+        }
+    }
+
+    private void retirar(Long productoId) {
+        Integer posicion = posicionPorProducto.remove(productoId);
+        if (posicion != null) {
+            documentos.set(posicion, null);
+            muertos++;
+        }
+    }
+
+    // Reasigna posiciones consecutivas y rehace las listas sin los documentos reemplazados
+    private void compactar() {
+        List<Documento> vivos = documentos.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        documentos.clear();
+        posicionPorProducto.clear();
+        postings.clear();
+        muertos = 0;
+        vivos.forEach(d -> indexar(d.producto));
+
+        log.debug("Índice de búsqueda compactado: {} productos", vivos.size());
+    }
+
+    private static Set<String> gramas(String texto) {
+        Set<String> gramas = new HashSet<>();
+        for (String palabra : texto.trim().split(" ")) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            gramas.add("^" + palabra.substring(0, 1));
+            if (palabra.length() >= 2) {
+                gramas.add("^" + palabra.substring(0, 2));
+            }
+            for (int i = 0; i + 3 <= palabra.length(); i++) {
+                gramas.add(palabra.substring(i, i + 3));
+            }
+        }
+        return gramas;
+    }
+
+    // Minúsculas, sin tildes (ñ -> n) y con un único espacio entre palabras
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinTildes = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinTildes.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static final class Documento {
+        private final ProductoEscaneoResponse producto;
+        private final String nombre;
+        private final String codigo;
+        private final String codigoBarras;
+        // " nombre marca codigo codigoBarras": el espacio inicial marca el comienzo de palabra
+        private final String texto;
+
+        private Documento(ProductoEscaneoResponse producto) {
+            this.producto = producto;
+            this.nombre = normalizar(producto.getNombre());
+            this.codigo = normalizar(producto.getCodigo());
+            this.codigoBarras = normalizar(producto.getCodigoBarras());
+            this.texto = " " + String.join(" ", nombre, normalizar(producto.getMarca()), codigo, codigoBarras);
+        }
+    }
+
+    private static final class Postings {
+        private int[] posiciones = new int[4];
+        private int tamano;
+
+        private void agregar(int posicion) {
+            if (tamano == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, tamano * 2);
+            }
+            posiciones[tamano++] = posicion;
+        }
+    }
+
+    private static final class Resultado {
+        private final Documento documento;
+        private final int puntos;
+
+        private Resultado(Documento documento, int puntos) {
+            this.documento = documento;
+            this.puntos = puntos;
+        }
+    }
+}
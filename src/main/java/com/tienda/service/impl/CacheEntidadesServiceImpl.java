@@ -0,0 +1,83 @@
+package com.tienda.service.impl;
+
+import com.tienda.service.CacheEntidadesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheEntidadesServiceImpl implements CacheEntidadesService {
+
+    // Regiones declaradas en las entidades (@Cache) y en ehcache.xml
+    private static final List<String> REGIONES = Arrays.asList(
+            "tienda.categorias", "tienda.proveedores", "tienda.sucursales",
+            "tienda.roles", "tienda.roles.permisos", "tienda.permisos", "tienda.configuraciones");
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public Map<String, Object> obtenerEstadisticas() {
+        Statistics estadisticas = sessionFactory().getStatistics();
+
+        Map<String, Object> regiones = new LinkedHashMap<>();
+        for (String region : REGIONES) {
+            CacheRegionStatistics r = estadisticas.getDomainDataRegionStatistics(region);
+            if (r != null) {
+                regiones.put(region, metricas(r.getHitCount(), r.getMissCount(), r.getPutCount(),
+                        r.getElementCountInMemory()));
+            }
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("habilitadas", estadisticas.isStatisticsEnabled());
+        resultado.put("segundoNivel", metricas(estadisticas.getSecondLevelCacheHitCount(),
+                estadisticas.getSecondLevelCacheMissCount(), estadisticas.getSecondLevelCachePutCount(), -1));
+        resultado.put("consultas", metricas(estadisticas.getQueryCacheHitCount(),
+                estadisticas.getQueryCacheMissCount(), estadisticas.getQueryCachePutCount(), -1));
+        resultado.put("regiones", regiones);
+        resultado.put("desde", estadisticas.getStartTime());
+        return resultado;
+    }
+
+    @Override
+    public void vaciar() {
+        SessionFactory sessionFactory = sessionFactory();
+        sessionFactory.getCache().evictAllRegions();
+        sessionFactory.getStatistics().clear();
+        log.info("Caché de segundo nivel vaciado");
+    }
+
+    // Métodos privados auxiliares
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    private Map<String, Object> metricas(long aciertos, long fallos, long escrituras, long elementos) {
+        long lecturas = aciertos + fallos;
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("aciertos", aciertos);
+        metricas.put("fallos", fallos);
+        metricas.put("escrituras", escrituras);
+        if (elementos >= 0) {
+            metricas.put("elementos", elementos);
+        }
+        metricas.put("tasaAciertos", lecturas > 0 ?
+                BigDecimal.valueOf(aciertos * 100.0 / lecturas).setScale(2, RoundingMode.HALF_UP) :
+                BigDecimal.ZERO);
+        return metricas;
+    }
+}
@@ -5,6 +5,7 @@ import com.tienda.dto.request.CierreCajaRequest;
 import com.tienda.dto.response.CajaResponse;
 import com.tienda.dto.response.CierreCajaResponse;
 import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.event.CajaEstadoCambiadoEvent;
 import com.tienda.exception.CajaAbiertaException;
 import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
@@ -13,6 +14,9 @@ import com.tienda.repository.*;
 import com.tienda.service.CajaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -34,7 +38,27 @@ public class CajaServiceImpl implements CajaService {
     private final CierreCajaRepository cierreCajaRepository;
     private final UsuarioRepository usuarioRepository;
     private final SucursalRepository sucursalRepository;
-    private final VentaRepository ventaRepository;
+    private final CajaMovimientoRepository cajaMovimientoRepository;
+    private final MaquinaEstadosCaja maquinaEstadosCaja;
+    private final RegistroSesionesCaja registroSesionesCaja;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ResumenCierresRepository resumenCierresRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void prepararLibroCajas() {
+        int migradas = cajaMovimientoRepository.migrarCajasAbiertas();
+        if (migradas > 0) {
+            log.info("Cajas abiertas incorporadas al libro de movimientos: {}", migradas);
+        }
+
+        if (resumenCierresRepository.estaVacia()) {
+            int filas = resumenCierresRepository.reconstruir();
+            if (filas > 0) {
+                log.info("Resumen mensual de cierres reconstruido: {} filas", filas);
+            }
+        }
+    }
 
     // ============ CRUD CAJAS ============
 
@@ -66,6 +90,9 @@ public class CajaServiceImpl implements CajaService {
                 throw new ValidacionException("Estado de caja inválido");
             }
         }
+        if (estado == Caja.EstadoCaja.ABIERTA) {
+            throw new ValidacionException("Las cajas se crean cerradas; se abren con la apertura de caja");
+        }
 
         // Crear caja
         Caja caja = Caja.builder()
@@ -120,23 +147,34 @@ public class CajaServiceImpl implements CajaService {
             caja.setSaldoActual(request.getSaldoInicial());
         }
 
-        // Actualizar estado
+        // Actualizar estado (abrir y cerrar solo pasan por la apertura y el cierre de caja)
         if (request.getEstado() != null) {
+            Caja.EstadoCaja estado;
             try {
-                caja.setEstado(Caja.EstadoCaja.valueOf(request.getEstado().toUpperCase()));
+                estado = Caja.EstadoCaja.valueOf(request.getEstado().toUpperCase());
             } catch (IllegalArgumentException e) {
                 throw new ValidacionException("Estado de caja inválido");
             }
+            if (estado != caja.getEstado() &&
+                    (estado == Caja.EstadoCaja.ABIERTA || caja.estaAbierta())) {
+                throw new ValidacionException("Una caja se abre y se cierra con la apertura y el cierre de caja");
+            }
+            caja.setEstado(estado);
         }
 
         // Actualizar usuario asignado
         if (request.getUsuarioAsignadoId() != null) {
+            if (caja.estaAbierta() && (caja.getUsuarioAsignado() == null ||
+                    !caja.getUsuarioAsignado().getId().equals(request.getUsuarioAsignadoId()))) {
+                throw new ValidacionException("No se puede cambiar el usuario de una caja abierta");
+            }
             Usuario usuario = usuarioRepository.findById(request.getUsuarioAsignadoId())
                     .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
             caja.setUsuarioAsignado(usuario);
         }
 
         caja = cajaRepository.save(caja);
+        eventPublisher.publishEvent(new CajaEstadoCambiadoEvent(caja.getId()));
 
         return convertirAResponse(caja);
     }
@@ -179,19 +217,15 @@ public class CajaServiceImpl implements CajaService {
     @Override
     @Transactional(readOnly = true)
     public List<CajaResponse> obtenerTodasCajas() {
-        return cajaRepository.findAll().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodas(cajaRepository.findAllConRelaciones());
     }
 
     @Override
     @Transactional(readOnly = true)
     public PaginacionResponse<CajaResponse> obtenerCajasPaginadas(Pageable pageable) {
-        Page<Caja> cajasPage = cajaRepository.findAll(pageable);
+        Page<Caja> cajasPage = cajaRepository.findAllConRelaciones(pageable);
 
-        List<CajaResponse> cajasResponse = cajasPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        List<CajaResponse> cajasResponse = convertirTodas(cajasPage.getContent());
 
         return PaginacionResponse.<CajaResponse>builder()
                 .content(cajasResponse)
@@ -218,28 +252,16 @@ public class CajaServiceImpl implements CajaService {
                             caja.getUsuarioAsignado().getNombreCompleto() : "Desconocido");
         }
 
-        // Validar que el usuario no tenga otra caja abierta
-        if (verificarUsuarioTieneCajaAbierta(usuarioId)) {
-            Optional<Caja> cajaUsuario = cajaRepository.findCajaAbiertaPorUsuario(usuarioId);
-            if (cajaUsuario.isPresent()) {
-                throw new ValidacionException("El usuario ya tiene la caja " +
-                        cajaUsuario.get().getNombre() + " abierta");
-            }
+        // Validar que el usuario no tenga otra caja abierta (el índice único lo garantiza igualmente)
+        Optional<Long> cajaUsuario = registroSesionesCaja.obtenerCajaAbiertaPorUsuario(usuarioId);
+        if (cajaUsuario.isPresent() && !cajaUsuario.get().equals(cajaId)) {
+            throw new ValidacionException("El usuario ya tiene la caja " +
+                    obtenerEntidadCaja(cajaUsuario.get()).getNombre() + " abierta");
         }
 
-        // Actualizar caja
-        caja.setEstado(Caja.EstadoCaja.ABIERTA);
-        caja.setUsuarioAsignado(usuario);
-        caja.setFechaApertura(LocalDateTime.now());
-        caja.setFechaCierre(null);
-
-        // Actualizar saldos
-        if (saldoInicial != null) {
-            caja.setSaldoInicial(saldoInicial);
-            caja.setSaldoActual(saldoInicial);
-        }
-
-        caja = cajaRepository.save(caja);
+        // Transición condicional CERRADA -> ABIERTA con usuario, fechas y saldos
+        maquinaEstadosCaja.abrir(caja, usuario, saldoInicial);
+        cajaMovimientoRepository.abrirSesion(caja.getId(), caja.getSaldoInicial(), usuarioId);
 
         log.info("Caja abierta: {} por usuario: {}", caja.getNombre(), usuario.getNombreCompleto());
 
@@ -258,40 +280,19 @@ public class CajaServiceImpl implements CajaService {
             throw new ValidacionException("Solo el usuario asignado puede cerrar la caja");
         }
 
-        // Calcular total de ventas del día
-        BigDecimal totalVentasDia = ventaRepository.calcularVentasDelDia(LocalDate.now());
-        if (totalVentasDia == null) {
-            totalVentasDia = BigDecimal.ZERO;
-        }
-
-        // Calcular saldo final teórico
-        BigDecimal saldoFinalTeorico = caja.getSaldoInicial().add(totalVentasDia);
+        // Primero la transición: espera a las ventas en curso y las siguientes ya ven la caja cerrada
+        LocalTime horaApertura = caja.getFechaApertura() != null ? caja.getFechaApertura().toLocalTime() : LocalTime.now();
+        maquinaEstadosCaja.cerrar(caja);
 
-        // Crear cierre de caja
-        CierreCaja cierre = CierreCaja.builder()
-                .caja(caja)
-                .fechaCierre(LocalDate.now())
-                .horaApertura(caja.getFechaApertura() != null ?
-                        caja.getFechaApertura().toLocalTime() : LocalTime.now())
-                .horaCierre(LocalTime.now())
-                .usuario(usuario)
-                .saldoInicial(caja.getSaldoInicial())
-                .saldoFinalTeorico(saldoFinalTeorico)
-                .saldoFinalReal(saldoFinalReal != null ? saldoFinalReal : saldoFinalTeorico)
-                .totalVentas(totalVentasDia)
-                .efectivo(saldoFinalReal != null ? saldoFinalReal : BigDecimal.ZERO) // Simplificado
-                .estado(CierreCaja.EstadoCierre.PENDIENTE)
-                .observaciones(observaciones)
-                .creadoEn(LocalDateTime.now())
-                .build();
+        // Totales de la sesión según el libro de la caja
+        CierreCaja cierre = construirCierre(caja, usuario, LocalDate.now(), horaApertura,
+                LocalTime.now(), saldoFinalReal, observaciones);
 
         // Guardar cierre
-        cierre = cierreCajaRepository.save(cierre);
+        cierre = guardarCierre(cierre);
 
-        // Cerrar caja
-        caja.setEstado(Caja.EstadoCaja.CERRADA);
-        caja.setFechaCierre(LocalDateTime.now());
-        caja.setSaldoActual(saldoFinalReal != null ? saldoFinalReal : saldoFinalTeorico);
+        // Saldo final de la caja cerrada
+        caja.setSaldoActual(cierre.getSaldoFinalReal());
         cajaRepository.save(caja);
 
         log.info("Caja cerrada: {} - Diferencia: {}",
@@ -306,13 +307,12 @@ public class CajaServiceImpl implements CajaService {
         Caja caja = obtenerEntidadCaja(cajaId);
         Usuario usuario = obtenerUsuario(usuarioId);
 
-        // Validar que la caja no esté abierta
+        // Solo con la caja sin abrir; la condición se comprueba de nuevo en la actualización
         if (caja.estaAbierta()) {
             throw new ValidacionException("No se puede asignar usuario a una caja abierta");
         }
 
-        caja.setUsuarioAsignado(usuario);
-        caja = cajaRepository.save(caja);
+        maquinaEstadosCaja.asignarUsuario(caja, usuario);
 
         log.info("Usuario asignado a caja: {} -> {}",
                 usuario.getNombreCompleto(), caja.getNombre());
@@ -330,8 +330,7 @@ public class CajaServiceImpl implements CajaService {
             throw new ValidacionException("No se puede desasignar usuario de una caja abierta");
         }
 
-        caja.setUsuarioAsignado(null);
-        caja = cajaRepository.save(caja);
+        maquinaEstadosCaja.asignarUsuario(caja, null);
 
         return convertirAResponse(caja);
     }
@@ -341,8 +340,7 @@ public class CajaServiceImpl implements CajaService {
     public CajaResponse bloquearCaja(Long cajaId, String motivo) {
         Caja caja = obtenerEntidadCaja(cajaId);
 
-        caja.setEstado(Caja.EstadoCaja.BLOQUEADA);
-        caja = cajaRepository.save(caja);
+        maquinaEstadosCaja.bloquear(caja);
 
         log.info("Caja bloqueada: {} - Motivo: {}", caja.getNombre(), motivo);
 
@@ -354,8 +352,7 @@ public class CajaServiceImpl implements CajaService {
     public CajaResponse desbloquearCaja(Long cajaId) {
         Caja caja = obtenerEntidadCaja(cajaId);
 
-        caja.setEstado(Caja.EstadoCaja.CERRADA);
-        caja = cajaRepository.save(caja);
+        maquinaEstadosCaja.desbloquear(caja);
 
         return convertirAResponse(caja);
     }
@@ -365,41 +362,33 @@ public class CajaServiceImpl implements CajaService {
     @Override
     @Transactional(readOnly = true)
     public List<CajaResponse> obtenerCajasPorSucursal(Long sucursalId) {
-        return cajaRepository.findBySucursalId(sucursalId).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodas(cajaRepository.findBySucursalId(sucursalId));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<CajaResponse> obtenerCajasPorEstado(Caja.EstadoCaja estado) {
-        return cajaRepository.findByEstado(estado).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodas(cajaRepository.findByEstado(estado));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<CajaResponse> obtenerCajasAbiertas() {
-        return cajaRepository.findCajasAbiertas().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodas(cajaRepository.findCajasAbiertas());
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<CajaResponse> obtenerCajasDisponibles() {
-        return cajaRepository.findByEstado(Caja.EstadoCaja.CERRADA).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodas(cajaRepository.findByEstado(Caja.EstadoCaja.CERRADA));
     }
 
     @Override
     @Transactional(readOnly = true)
     public CajaResponse obtenerCajaAbiertaPorUsuario(Long usuarioId) {
-        Caja caja = cajaRepository.findCajaAbiertaPorUsuario(usuarioId)
+        Long cajaId = registroSesionesCaja.obtenerCajaAbiertaPorUsuario(usuarioId)
                 .orElseThrow(() -> new ResourceNotFoundException("El usuario no tiene caja abierta"));
-        return convertirAResponse(caja);
+        return convertirAResponse(obtenerEntidadCaja(cajaId));
     }
 
     // ============ CIERRE DE CAJA ============
@@ -421,49 +410,19 @@ public class CajaServiceImpl implements CajaService {
             throw new ValidacionException("La caja no tiene usuario asignado");
         }
 
-        // Calcular total de ventas del día
-        BigDecimal totalVentas = ventaRepository.calcularVentasDelDia(request.getFechaCierre());
-        if (totalVentas == null) {
-            totalVentas = BigDecimal.ZERO;
-        }
-
-        // Calcular saldo final teórico
-        BigDecimal saldoFinalTeorico = caja.getSaldoInicial().add(totalVentas);
+        // Primero la transición: espera a las ventas en curso y las siguientes ya ven la caja cerrada
+        maquinaEstadosCaja.cerrar(caja);
 
-        // Si no se proporciona saldo final real, usar el teórico
-        BigDecimal saldoFinalReal = request.getSaldoFinalReal() != null ?
-                request.getSaldoFinalReal() : saldoFinalTeorico;
-
-        // Crear cierre de caja
-        CierreCaja cierre = CierreCaja.builder()
-                .caja(caja)
-                .fechaCierre(request.getFechaCierre())
-                .horaApertura(request.getHoraApertura())
-                .horaCierre(request.getHoraCierre())
-                .usuario(usuario)
-                .saldoInicial(caja.getSaldoInicial())
-                .saldoFinalTeorico(saldoFinalTeorico)
-                .saldoFinalReal(saldoFinalReal)
-                .totalVentas(totalVentas)
-                .efectivo(request.getEfectivo() != null ? request.getEfectivo() : saldoFinalReal)
-                .tarjetas(request.getTarjetas())
-                .transferencias(request.getTransferencias())
-                .otrosMedios(request.getOtrosMedios())
-                .estado(CierreCaja.EstadoCierre.PENDIENTE)
-                .observaciones(request.getObservaciones())
-                .creadoEn(LocalDateTime.now())
-                .build();
-
-        // Calcular diferencia
-        cierre.setDiferencia(cierre.getDiferencia());
+        // Totales de la sesión según el libro; si no se proporciona saldo final real, se usa el teórico
+        CierreCaja cierre = construirCierre(caja, usuario, request.getFechaCierre(),
+                request.getHoraApertura(), request.getHoraCierre(),
+                request.getSaldoFinalReal(), request.getObservaciones());
 
         // Guardar cierre
-        cierre = cierreCajaRepository.save(cierre);
+        cierre = guardarCierre(cierre);
 
-        // Cerrar la caja
-        caja.setEstado(Caja.EstadoCaja.CERRADA);
-        caja.setFechaCierre(LocalDateTime.now());
-        caja.setSaldoActual(saldoFinalReal);
+        // Saldo final de la caja cerrada
+        caja.setSaldoActual(cierre.getSaldoFinalReal());
         cajaRepository.save(caja);
 
         log.info("Cierre diario realizado para caja {}: Diferencia: {}",
@@ -534,7 +493,7 @@ public class CajaServiceImpl implements CajaService {
             cierre.setObservaciones(cierre.getObservaciones() + "\nConciliación: " + observaciones);
         }
 
-        cierre = cierreCajaRepository.save(cierre);
+        cierre = guardarCierre(cierre);
 
         log.info("Cierre conciliado: {} - Usuario: {}", cierreId, usuario.getNombreCompleto());
 
@@ -556,7 +515,7 @@ public class CajaServiceImpl implements CajaService {
         cierre.setConciliadoPor(usuario);
         cierre.setFechaConciliacion(LocalDateTime.now());
 
-        cierre = cierreCajaRepository.save(cierre);
+        cierre = guardarCierre(cierre);
 
         return convertirCierreAResponse(cierre);
     }
@@ -575,14 +534,12 @@ public class CajaServiceImpl implements CajaService {
             cierre.setObservaciones(cierre.getObservaciones() + "\nRechazado: " + motivo);
         }
 
-        cierre = cierreCajaRepository.save(cierre);
+        cierre = guardarCierre(cierre);
 
-        // Reabrir la caja si está cerrada
+        // Reabrir la caja si está cerrada (misma sesión del libro)
         Caja caja = cierre.getCaja();
         if (caja.estaCerrada()) {
-            caja.setEstado(Caja.EstadoCaja.ABIERTA);
-            caja.setFechaCierre(null);
-            cajaRepository.save(caja);
+            maquinaEstadosCaja.reabrir(caja);
         }
 
         return convertirCierreAResponse(cierre);
@@ -613,6 +570,7 @@ public class CajaServiceImpl implements CajaService {
         estado.put("cajasCerradas", cajasCerradas);
         estado.put("cajasBloqueadas", cajasBloqueadas);
         estado.put("cajasDisponibles", cajasCerradas);
+        estado.put("abiertasPorSucursal", registroSesionesCaja.contarAbiertasPorSucursal());
         estado.put("fechaConsulta", LocalDateTime.now());
 
         return estado;
@@ -627,28 +585,35 @@ public class CajaServiceImpl implements CajaService {
         CierreCaja cierre = cierreCajaRepository.findByCajaAndFecha(cajaId, fecha)
                 .orElseThrow(() -> new ResourceNotFoundException("No hay cierre para esa fecha"));
 
-        // Obtener ventas del día
-        List<Venta> ventas = ventaRepository.findByFecha(fecha);
+        // Ventas de esta caja en el día, desde su libro de movimientos
+        List<Map<String, Object>> filas = cajaMovimientoRepository.obtenerVentasPorHora(
+                cajaId, fecha.atStartOfDay(), fecha.plusDays(1).atStartOfDay());
 
         // Calcular estadísticas
-        BigDecimal totalVentasEfectivo = ventas.stream()
-                .filter(v -> "EFECTIVO".equals(v.getFormaPago()))
-                .map(Venta::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalVentasTarjeta = ventas.stream()
-                .filter(v -> v.getFormaPago() != null && v.getFormaPago().contains("TARJETA"))
-                .map(Venta::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long numeroVentas = 0;
+        BigDecimal totalVentasEfectivo = BigDecimal.ZERO;
+        BigDecimal totalVentasTarjeta = BigDecimal.ZERO;
+        Map<String, BigDecimal> ventasPorHora = new TreeMap<>();
+        for (Map<String, Object> fila : filas) {
+            String formaPago = (String) fila.get("forma_pago");
+            BigDecimal total = (BigDecimal) fila.get("total");
+            numeroVentas += ((Number) fila.get("ventas")).longValue();
+            if ("EFECTIVO".equals(formaPago)) {
+                totalVentasEfectivo = totalVentasEfectivo.add(total);
+            } else if (formaPago.contains("TARJETA")) {
+                totalVentasTarjeta = totalVentasTarjeta.add(total);
+            }
+            ventasPorHora.merge(fila.get("hora") + ":00", total, BigDecimal::add);
+        }
 
         // Construir reporte
         reporte.put("cierre", convertirCierreAResponse(cierre));
-        reporte.put("totalVentas", ventas.size());
+        reporte.put("totalVentas", numeroVentas);
         reporte.put("ventasEfectivo", totalVentasEfectivo);
         reporte.put("ventasTarjeta", totalVentasTarjeta);
-        reporte.put("promedioTicket", ventas.isEmpty() ? BigDecimal.ZERO :
-                cierre.getTotalVentas().divide(new BigDecimal(ventas.size()), 2, java.math.RoundingMode.HALF_UP));
-        reporte.put("ventasPorHora", calcularVentasPorHora(ventas));
+        reporte.put("promedioTicket", numeroVentas <= 0 ? BigDecimal.ZERO :
+                cierre.getTotalVentas().divide(new BigDecimal(numeroVentas), 2, java.math.RoundingMode.HALF_UP));
+        reporte.put("ventasPorHora", ventasPorHora);
         reporte.put("fechaGeneracion", LocalDateTime.now());
 
         return reporte;
@@ -657,43 +622,43 @@ public class CajaServiceImpl implements CajaService {
     @Override
     @Transactional(readOnly = true)
     public Map<String, Object> generarReporteMensual(Integer mes, Integer año) {
+        if (mes != null && (mes < 1 || mes > 12)) {
+            throw new ValidacionException("El mes debe estar entre 1 y 12");
+        }
         Map<String, Object> reporte = new HashMap<>();
 
-        // Obtener resumen mensual del repositorio
-        List<Object[]> resumen = cierreCajaRepository.resumenMensual();
+        // Con año se consulta su rango de meses; un mes sin año vale para todos los años
+        LocalDate desde = null;
+        LocalDate hasta = null;
+        Integer mesDelAnio = mes;
+        if (año != null) {
+            desde = LocalDate.of(año, mes != null ? mes : 1, 1);
+            hasta = mes != null ? desde.plusMonths(1) : desde.plusYears(1);
+            mesDelAnio = null;
+        }
 
-        // Filtrar por mes y año solicitados
+        // Resumen mensual de los cierres aprobados
         List<Map<String, Object>> datosMensuales = new ArrayList<>();
         BigDecimal totalVentasMensual = BigDecimal.ZERO;
         BigDecimal totalEgresosMensual = BigDecimal.ZERO;
 
-        for (Object[] fila : resumen) {
-            Integer mesDato = (Integer) fila[0];
-            Integer añoDato = (Integer) fila[1];
-
-            if ((mes == null || mesDato.equals(mes)) &&
-                    (año == null || añoDato.equals(año))) {
+        for (Map<String, Object> fila : resumenCierresRepository.obtenerPorMes(desde, hasta, mesDelAnio, "APROBADO")) {
+            Map<String, Object> mesData = new HashMap<>();
+            mesData.put("mes", fila.get("mes"));
+            mesData.put("año", fila.get("anio"));
+            mesData.put("totalVentas", fila.get("total_ventas"));
+            mesData.put("totalEgresos", fila.get("total_egresos"));
 
-                Map<String, Object> mesData = new HashMap<>();
-                mesData.put("mes", mesDato);
-                mesData.put("año", añoDato);
-                mesData.put("totalVentas", fila[2]);
-                mesData.put("totalEgresos", fila[3]);
+            datosMensuales.add(mesData);
 
-                datosMensuales.add(mesData);
-
-                if (fila[2] != null) {
-                    totalVentasMensual = totalVentasMensual.add((BigDecimal) fila[2]);
-                }
-                if (fila[3] != null) {
-                    totalEgresosMensual = totalEgresosMensual.add((BigDecimal) fila[3]);
-                }
-            }
+            totalVentasMensual = totalVentasMensual.add((BigDecimal) fila.get("total_ventas"));
+            totalEgresosMensual = totalEgresosMensual.add((BigDecimal) fila.get("total_egresos"));
         }
 
         reporte.put("mes", mes);
         reporte.put("año", año);
         reporte.put("datosMensuales", datosMensuales);
+        reporte.put("porCaja", resumenCierresRepository.obtenerPorCaja(desde, hasta, mesDelAnio, "APROBADO", null));
         reporte.put("totalVentasMensual", totalVentasMensual);
         reporte.put("totalEgresosMensual", totalEgresosMensual);
         reporte.put("utilidadNeta", totalVentasMensual.subtract(totalEgresosMensual));
@@ -707,56 +672,34 @@ public class CajaServiceImpl implements CajaService {
     public Map<String, Object> obtenerEstadisticasCajas() {
         Map<String, Object> estadisticas = new HashMap<>();
 
-        List<Caja> cajas = cajaRepository.findAll();
-        List<CierreCaja> cierres = cierreCajaRepository.findAll();
+        // Totales históricos desde el resumen mensual (una fila por mes, caja y estado)
+        Map<String, Object> totales = resumenCierresRepository.obtenerTotales(null, null);
 
         // Estadísticas básicas
-        estadisticas.put("totalCajas", cajas.size());
-        estadisticas.put("totalCierres", cierres.size());
+        estadisticas.put("totalCajas", cajaRepository.count());
+        estadisticas.put("totalCierres", ((Number) totales.get("cierres")).longValue());
 
         // Ventas totales históricas
-        BigDecimal ventasTotalesHistoricas = cierres.stream()
-                .map(CierreCaja::getTotalVentas)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        estadisticas.put("ventasTotalesHistoricas", ventasTotalesHistoricas);
+        estadisticas.put("ventasTotalesHistoricas", totales.get("total_ventas"));
 
         // Caja con más ventas
-        Map<Long, BigDecimal> ventasPorCaja = new HashMap<>();
-        for (CierreCaja cierre : cierres) {
-            Long cajaId = cierre.getCaja().getId();
-            BigDecimal ventas = cierre.getTotalVentas() != null ? cierre.getTotalVentas() : BigDecimal.ZERO;
-            ventasPorCaja.put(cajaId, ventasPorCaja.getOrDefault(cajaId, BigDecimal.ZERO).add(ventas));
-        }
-
-        if (!ventasPorCaja.isEmpty()) {
-            Map.Entry<Long, BigDecimal> maxEntry = Collections.max(
-                    ventasPorCaja.entrySet(), Map.Entry.comparingByValue());
-
-            Caja cajaTop = cajaRepository.findById(maxEntry.getKey()).orElse(null);
-            if (cajaTop != null) {
-                Map<String, Object> cajaTopInfo = new HashMap<>();
-                cajaTopInfo.put("cajaId", cajaTop.getId());
-                cajaTopInfo.put("cajaNombre", cajaTop.getNombre());
-                cajaTopInfo.put("totalVentas", maxEntry.getValue());
-                estadisticas.put("cajaTopVentas", cajaTopInfo);
-            }
+        List<Map<String, Object>> top = resumenCierresRepository.obtenerPorCaja(null, null, null, null, 1);
+        if (!top.isEmpty()) {
+            Map<String, Object> cajaTopInfo = new HashMap<>();
+            cajaTopInfo.put("cajaId", top.get(0).get("caja_id"));
+            cajaTopInfo.put("cajaNombre", top.get(0).get("nombre"));
+            cajaTopInfo.put("totalVentas", top.get(0).get("total_ventas"));
+            estadisticas.put("cajaTopVentas", cajaTopInfo);
         }
 
         // Diferencias promedio
-        BigDecimal diferenciaPromedio = cierres.stream()
-                .map(CierreCaja::getDiferencia)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(new BigDecimal(cierres.size()), 2, java.math.RoundingMode.HALF_UP);
-        estadisticas.put("diferenciaPromedio", diferenciaPromedio);
+        estadisticas.put("diferenciaPromedio", totales.get("diferencia_promedio"));
 
         // Cierres por estado
-        Map<String, Long> cierresPorEstado = cierres.stream()
-                .collect(Collectors.groupingBy(
-                        c -> c.getEstado().name(),
-                        Collectors.counting()
-                ));
+        Map<String, Long> cierresPorEstado = new HashMap<>();
+        for (Map<String, Object> fila : resumenCierresRepository.obtenerCierresPorEstado(null, null)) {
+            cierresPorEstado.put((String) fila.get("estado"), ((Number) fila.get("cierres")).longValue());
+        }
         estadisticas.put("cierresPorEstado", cierresPorEstado);
 
         estadisticas.put("fechaActualizacion", LocalDateTime.now());
@@ -775,14 +718,12 @@ public class CajaServiceImpl implements CajaService {
     @Override
     @Transactional(readOnly = true)
     public boolean verificarCajaAbierta(Long cajaId) {
-        Caja caja = obtenerEntidadCaja(cajaId);
-        return caja.estaAbierta();
+        return registroSesionesCaja.estaAbierta(cajaId);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public boolean verificarUsuarioTieneCajaAbierta(Long usuarioId) {
-        return cajaRepository.findCajaAbiertaPorUsuario(usuarioId).isPresent();
+        return registroSesionesCaja.obtenerCajaAbiertaPorUsuario(usuarioId).isPresent();
     }
 
     // ============ MÉTODOS INTERNOS ============
@@ -807,23 +748,57 @@ public class CajaServiceImpl implements CajaService {
     @Override
     @Transactional
     public void actualizarSaldoCaja(Long cajaId, BigDecimal monto, String tipoOperacion) {
-        Caja caja = obtenerCajaAbiertaEntidad(cajaId);
+        // Bloqueo compartido: el cierre no puede colarse entre la comprobación y el movimiento
+        maquinaEstadosCaja.bloquearAbierta(cajaId);
+        Caja caja = obtenerEntidadCaja(cajaId);
 
-        switch (tipoOperacion.toUpperCase()) {
+        // Se anota en el libro; el saldo corriente se suma en la misma sentencia
+        String tipo = tipoOperacion.toUpperCase();
+        BigDecimal importe;
+        switch (tipo) {
             case "VENTA":
-                caja.setSaldoActual(caja.getSaldoActual().add(monto));
+            case "INGRESO":
+                importe = monto;
                 break;
             case "EGRESO":
-                caja.setSaldoActual(caja.getSaldoActual().subtract(monto));
+                importe = monto.negate();
                 break;
             default:
                 throw new ValidacionException("Tipo de operación no válido: " + tipoOperacion);
         }
 
-        cajaRepository.save(caja);
+        BigDecimal saldo = cajaMovimientoRepository.registrar(cajaId, tipo, "EFECTIVO", importe, null,
+                caja.getUsuarioAsignado() != null ? caja.getUsuarioAsignado().getId() : null, null);
+        if (saldo == null) {
+            throw new ValidacionException("La caja no tiene una sesión abierta en el libro de movimientos");
+        }
 
-        log.debug("Saldo actualizado caja {}: {} - Nuevo saldo: {}",
-                caja.getNombre(), tipoOperacion, caja.getSaldoActual());
+        log.debug("Saldo actualizado caja {}: {} - Nuevo saldo: {}", caja.getNombre(), tipo, saldo);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerMovimientosSesion(Long cajaId) {
+        Caja caja = obtenerEntidadCaja(cajaId);
+        Map<String, Object> saldo = cajaMovimientoRepository.obtenerSaldo(cajaId);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("cajaId", caja.getId());
+        resultado.put("cajaNombre", caja.getNombre());
+        resultado.put("estado", caja.getEstado().name());
+        if (saldo == null) {
+            resultado.put("sesion", null);
+            resultado.put("movimientos", Collections.emptyList());
+            return resultado;
+        }
+
+        int sesion = ((Number) saldo.get("sesion")).intValue();
+        resultado.put("sesion", sesion);
+        resultado.put("saldo", saldo.get("saldo"));
+        resultado.put("abiertaEn", saldo.get("abierta_en"));
+        resultado.put("totales", cajaMovimientoRepository.obtenerTotalesSesion(cajaId, sesion));
+        resultado.put("movimientos", cajaMovimientoRepository.obtenerMovimientosSesion(cajaId, sesion));
+        return resultado;
     }
 
     // ============ MÉTODOS PRIVADOS AUXILIARES ============
@@ -833,32 +808,80 @@ public class CajaServiceImpl implements CajaService {
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
     }
 
+    // Guarda el cierre y recalcula su mes en el resumen, en la misma transacción
+    private CierreCaja guardarCierre(CierreCaja cierre) {
+        cierre = cierreCajaRepository.saveAndFlush(cierre);
+        resumenCierresRepository.recalcularMes(cierre.getFechaCierre());
+        return cierre;
+    }
+
     private CierreCaja obtenerCierre(Long cierreId) {
         return cierreCajaRepository.findById(cierreId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cierre de caja no encontrado"));
     }
 
+    // Totales de la sesión en curso según el libro, con la sesión bloqueada hasta el commit
+    private CierreCaja construirCierre(Caja caja, Usuario usuario, LocalDate fechaCierre, LocalTime horaApertura,
+                                       LocalTime horaCierre, BigDecimal saldoFinalReal, String observaciones) {
+        Integer sesion = cajaMovimientoRepository.bloquearSesion(caja.getId());
+        if (sesion == null) {
+            // Caja marcada como abierta sin pasar por la apertura: su sesión empieza ahora
+            log.warn("Caja {} abierta sin sesión en el libro de movimientos", caja.getNombre());
+            sesion = cajaMovimientoRepository.abrirSesion(caja.getId(), caja.getSaldoInicial(), usuario.getId());
+        }
+        Map<String, Object> totales = cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), sesion);
+        BigDecimal saldoFinalTeorico = (BigDecimal) totales.get("saldo");
+
+        return CierreCaja.builder()
+                .caja(caja)
+                .fechaCierre(fechaCierre)
+                .horaApertura(horaApertura)
+                .horaCierre(horaCierre)
+                .usuario(usuario)
+                .saldoInicial((BigDecimal) totales.get("saldo_inicial"))
+                .saldoFinalTeorico(saldoFinalTeorico)
+                .saldoFinalReal(saldoFinalReal != null ? saldoFinalReal : saldoFinalTeorico)
+                .totalVentas((BigDecimal) totales.get("ventas"))
+                .totalIngresos((BigDecimal) totales.get("ingresos"))
+                .totalEgresos((BigDecimal) totales.get("egresos"))
+                .efectivo((BigDecimal) totales.get("efectivo"))
+                .tarjetas((BigDecimal) totales.get("tarjetas"))
+                .transferencias((BigDecimal) totales.get("transferencias"))
+                .otrosMedios((BigDecimal) totales.get("otros_medios"))
+                .estado(CierreCaja.EstadoCierre.PENDIENTE)
+                .observaciones(observaciones)
+                .creadoEn(LocalDateTime.now())
+                .build();
+    }
+
     private CajaResponse convertirAResponse(Caja caja) {
-        // Calcular estadísticas
-        Integer totalVentasHoy = 0;
-        BigDecimal totalVentasHoyMonto = BigDecimal.ZERO;
-        if (caja.estaAbierta()) {
-            List<Venta> ventasHoy = ventaRepository.findByFecha(LocalDate.now());
-            ventasHoy = ventasHoy.stream()
-                    .filter(v -> v.getCaja() != null && v.getCaja().getId().equals(caja.getId()))
-                    .collect(Collectors.toList());
+        return convertirTodas(Collections.singletonList(caja)).get(0);
+    }
 
-            totalVentasHoy = ventasHoy.size();
-            totalVentasHoyMonto = ventasHoy.stream()
-                    .map(Venta::getTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // Ventas de hoy, saldo y cierres de todas las cajas en una sola consulta agregada
+    private List<CajaResponse> convertirTodas(List<Caja> cajas) {
+        List<Long> ids = cajas.stream().map(Caja::getId).collect(Collectors.toList());
+        Map<Long, Map<String, Object>> resumenes =
+                cajaMovimientoRepository.obtenerResumenCajas(ids, LocalDate.now().atStartOfDay());
+
+        List<CajaResponse> respuestas = new ArrayList<>(cajas.size());
+        for (Caja caja : cajas) {
+            respuestas.add(convertirAResponse(caja, resumenes.get(caja.getId())));
         }
+        return respuestas;
+    }
 
-        // Obtener último cierre
-        LocalDateTime ultimoCierre = null;
-        List<CierreCaja> cierres = cierreCajaRepository.findByCajaId(caja.getId());
-        if (!cierres.isEmpty()) {
-            ultimoCierre = cierres.get(cierres.size() - 1).getCreadoEn();
+    private CajaResponse convertirAResponse(Caja caja, Map<String, Object> resumen) {
+        // Ventas del día y saldo del libro solo mientras la caja está abierta
+        Integer totalVentasHoy = 0;
+        BigDecimal totalVentasHoyMonto = BigDecimal.ZERO;
+        BigDecimal saldoActual = caja.getSaldoActual();
+        if (caja.estaAbierta()) {
+            totalVentasHoy = (Integer) resumen.get("ventasHoy");
+            totalVentasHoyMonto = (BigDecimal) resumen.get("totalHoy");
+            if (resumen.get("saldo") != null) {
+                saldoActual = (BigDecimal) resumen.get("saldo");
+            }
         }
 
         return CajaResponse.builder()
@@ -869,7 +892,7 @@ public class CajaServiceImpl implements CajaService {
                 .sucursalId(caja.getSucursal() != null ? caja.getSucursal().getId() : null)
                 .sucursalNombre(caja.getSucursal() != null ? caja.getSucursal().getNombre() : null)
                 .saldoInicial(caja.getSaldoInicial())
-                .saldoActual(caja.getSaldoActual())
+                .saldoActual(saldoActual)
                 .estado(caja.getEstado().name())
                 .fechaApertura(caja.getFechaApertura())
                 .fechaCierre(caja.getFechaCierre())
@@ -878,8 +901,8 @@ public class CajaServiceImpl implements CajaService {
                         caja.getUsuarioAsignado().getNombreCompleto() : null)
                 .totalVentasHoy(totalVentasHoy)
                 .totalVentasHoyMonto(totalVentasHoyMonto)
-                .totalCierres(cierres.size())
-                .ultimoCierre(ultimoCierre)
+                .totalCierres((Integer) resumen.get("cierres"))
+                .ultimoCierre((LocalDateTime) resumen.get("ultimoCierre"))
                 .creadoEn(caja.getCreadoEn())
                 .actualizadoEn(caja.getActualizadoEn())
                 .build();
@@ -918,18 +941,4 @@ public class CajaServiceImpl implements CajaService {
                 .creadoEn(cierre.getCreadoEn())
                 .build();
     }
-
-    private Map<String, BigDecimal> calcularVentasPorHora(List<Venta> ventas) {
-        Map<String, BigDecimal> ventasPorHora = new HashMap<>();
-
-        for (Venta venta : ventas) {
-            String hora = venta.getFechaEmision().getHour() + ":00";
-            BigDecimal total = venta.getTotal() != null ? venta.getTotal() : BigDecimal.ZERO;
-
-            ventasPorHora.put(hora,
-                    ventasPorHora.getOrDefault(hora, BigDecimal.ZERO).add(total));
-        }
-
-        return ventasPorHora;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import com.tienda.event.PreciosActualizadosEvent;
+import com.tienda.event.ProductoModificadoEvent;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.service.CatalogoEscaneoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Caché de lectura para el escaneo en caja: vistas compactas de producto por código de
+ * barras y código interno, acotada en tamaño (LRU). Un acierto no abre transacción ni
+ * toma conexión. Las escrituras de productos reemplazan la vista tras el commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogoEscaneoServiceImpl implements CatalogoEscaneoService {
+
+    private final ProductoRepository productoRepository;
+
+    private static final int TAMANO_BLOQUE_RECARGA = 1000;
+
+    @Value("${escaneo.cache.max-entradas:20000}")
+    private int maxEntradas;
+
+    // Orden de acceso: el primero es el menos usado. Los índices por código apuntan al id.
+    private final LinkedHashMap<Long, ProductoEscaneoResponse> porId = new LinkedHashMap<Long, ProductoEscaneoResponse>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ProductoEscaneoResponse> eldest) {
+            if (size() <= maxEntradas) {
+                return false;
+            }
+            quitarCodigos(eldest.getValue());
+            desalojos.increment();
+            return true;
+        }
+    };
+    private final Map<String, Long> idPorCodigoBarras = new HashMap<>();
+    private final Map<String, Long> idPorCodigo = new HashMap<>();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder noEncontrados = new LongAdder();
+    private final LongAdder actualizaciones = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void precargarAlArrancar() {
+        precargar();
+    }
+
+    @Override
+    public ProductoEscaneoResponse buscarPorCodigoEscaneado(String codigo) {
+        if (codigo == null || codigo.trim().isEmpty()) {
+            throw new ValidacionException("El código es requerido");
+        }
+        String clave = codigo.trim();
+
+        ProductoEscaneoResponse enCache = buscarEnCache(clave);
+        if (enCache != null) {
+            aciertos.increment();
+            return enCache;
+        }
+
+        fallos.increment();
+        Optional<Producto> producto = productoRepository.findByCodigoBarras(clave);
+        if (!producto.isPresent()) {
+            producto = productoRepository.findByCodigo(clave);
+        }
+        if (!producto.isPresent()) {
+            noEncontrados.increment();
+            throw new ResourceNotFoundException("Producto no encontrado: " + clave);
+        }
+
+        ProductoEscaneoResponse vista = ProductoEscaneoResponse.de(producto.get());
+        almacenar(vista);
+        return vista;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public int precargar() {
+        // Primero los de mayor rotación, hasta llenar la mitad de la capacidad
+        int cargados = 0;
+        for (Producto producto : productoRepository.findActivosPorRotacion(PageRequest.of(0, Math.max(1, maxEntradas / 2)))) {
+            almacenar(ProductoEscaneoResponse.de(producto));
+            cargados++;
+        }
+        log.info("Caché de escaneo precargada: {} productos", cargados);
+        return cargados;
+    }
+
+    // Tras el commit para no publicar datos de una transacción que puede revertirse
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        if (evento.isEliminado()) {
+            invalidar(evento.getProductoId());
+        } else {
+            almacenar(evento.getProducto());
+            actualizaciones.increment();
+        }
+    }
+
+    // Cambio de precios por SQL: se recargan solo las vistas que estaban en caché
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alActualizarPrecios(PreciosActualizadosEvent evento) {
+        List<Long> enCache;
+        synchronized (porId) {
+            enCache = evento.getProductoIds().stream()
+                    .filter(porId::containsKey)
+                    .collect(Collectors.toList());
+        }
+
+        for (int i = 0; i < enCache.size(); i += TAMANO_BLOQUE_RECARGA) {
+            productoRepository.findAllById(enCache.subList(i, Math.min(i + TAMANO_BLOQUE_RECARGA, enCache.size())))
+                    .forEach(p -> almacenar(ProductoEscaneoResponse.de(p)));
+        }
+        actualizaciones.add(enCache.size());
+        log.debug("Caché de escaneo: {} vistas recargadas por el lote de precios {}",
+                enCache.size(), evento.getLote());
+    }
+
+    @Override
+    public void invalidar(Long productoId) {
+        synchronized (porId) {
+            ProductoEscaneoResponse anterior = porId.remove(productoId);
+            if (anterior != null) {
+                quitarCodigos(anterior);
+            }
+        }
+    }
+
+    @Override
+    public void invalidarTodo() {
+        synchronized (porId) {
+            porId.clear();
+            idPorCodigoBarras.clear();
+            idPorCodigo.clear();
+        }
+        log.info("Caché de escaneo vaciada");
+    }
+
+    @Override
+    public Map<String, Object> obtenerMetricas() {
+        long totalAciertos = aciertos.sum();
+        long totalFallos = fallos.sum();
+        long consultas = totalAciertos + totalFallos;
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        synchronized (porId) {
+            metricas.put("entradas", porId.size());
+        }
+        metricas.put("maxEntradas", maxEntradas);
+        metricas.put("aciertos", totalAciertos);
+        metricas.put("fallos", totalFallos);
+        metricas.put("noEncontrados", noEncontrados.sum());
+        metricas.put("actualizaciones", actualizaciones.sum());
+        metricas.put("desalojos", desalojos.sum());
+        metricas.put("tasaAciertos", consultas > 0 ?
+                BigDecimal.valueOf(totalAciertos * 100.0 / consultas).setScale(2, RoundingMode.HALF_UP) :
+                BigDecimal.ZERO);
+        return metricas;
+    }
+
+    // Métodos privados auxiliares
+    private ProductoEscaneoResponse buscarEnCache(String clave) {
+        synchronized (porId) {
+            Long id = idPorCodigoBarras.get(clave);
+            if (id == null) {
+                id = idPorCodigo.get(clave);
+            }
+            return id != null ? porId.get(id) : null;
+        }
+    }
+
+    private void almacenar(ProductoEscaneoResponse vista) {
+        synchronized (porId) {
+            ProductoEscaneoResponse actual = porId.get(vista.getId());
+            if (actual != null) {
+                // Una lectura lenta o un evento tardío no pisa una versión más nueva
+                if (actual.getVersion() > vista.getVersion()) {
+                    return;
+                }
+                quitarCodigos(actual);
+            }
+
+            porId.put(vista.getId(), vista);
+            if (vista.getCodigoBarras() != null && !vista.getCodigoBarras().isEmpty()) {
+                idPorCodigoBarras.put(vista.getCodigoBarras(), vista.getId());
+            }
+            if (vista.getCodigo() != null) {
+                idPorCodigo.put(vista.getCodigo(), vista.getId());
+            }
+        }
+    }
+
+    // Solo quita los códigos si siguen apuntando a este producto (pueden haberse reasignado)
+    private void quitarCodigos(ProductoEscaneoResponse vista) {
+        if (vista.getCodigoBarras() != null) {
+            idPorCodigoBarras.remove(vista.getCodigoBarras(), vista.getId());
+        }
+        if (vista.getCodigo() != null) {
+            idPorCodigo.remove(vista.getCodigo(), vista.getId());
+        }
+    }
+}
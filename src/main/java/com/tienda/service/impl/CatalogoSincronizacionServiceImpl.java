@@ -0,0 +1,232 @@
+package com.tienda.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tienda.config.EsquemaBaseDatos;
+import com.tienda.repository.CatalogoCambiosRepository;
+import com.tienda.service.CatalogoSincronizacionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Feed de sincronización del catálogo para las cajas: NDJSON comprimido con gzip, una
+ * línea por categoría o producto y una línea de baja por cada registro eliminado.
+ * La primera línea indica el rango (desde, hasta) y la última cierra el lote; la caja
+ * solo guarda "hasta" como nueva secuencia si recibió la línea final.
+ * Todo se lee en una misma instantánea (REPEATABLE READ), así que las filas y la
+ * secuencia devuelta son coherentes entre sí.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogoSincronizacionServiceImpl implements CatalogoSincronizacionService {
+
+    private final CatalogoCambiosRepository catalogoCambiosRepository;
+    private final EsquemaBaseDatos esquemaBaseDatos;
+    private final ObjectMapper objectMapper;
+
+    @Value("${catalogo.cambios.dias-retencion:30}")
+    private int diasRetencion;
+
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void escribirCambios(long desde, OutputStream salida) {
+        boolean registroDisponible = esquemaBaseDatos.isRegistroCambiosDisponible();
+        long hasta = registroDisponible ? catalogoCambiosRepository.obtenerUltimaSecuencia() : 0L;
+
+        // Sin secuencia previa, con el rango ya purgado o con una secuencia que la base no conoce
+        boolean completo = !registroDisponible || desde <= 0 || desde > hasta
+                || desde < catalogoCambiosRepository.obtenerSecuenciaPurgada();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida, 8192);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(gzip)) {
+            // NDJSON: cada objeto termina en '\n' y sin el espacio que Jackson pone entre valores raíz
+            json.setRootValueSeparator(null);
+            json.writeStartObject();
+            json.writeStringField("tipo", "inicio");
+            json.writeNumberField("desde", completo ? 0L : desde);
+            json.writeNumberField("hasta", hasta);
+            json.writeBooleanField("completo", completo);
+            json.writeEndObject();
+            json.writeRaw('\n');
+
+            Contadores contadores = new Contadores();
+            if (completo) {
+                catalogoCambiosRepository.recorrerCategorias(rs -> escribirCategoria(json, rs, contadores));
+                catalogoCambiosRepository.recorrerProductos(rs -> escribirProducto(json, rs, contadores));
+            } else if (desde < hasta) {
+                catalogoCambiosRepository.recorrerCategoriasModificadas(desde, hasta, rs -> {
+                    if (rs.getObject("id") == null) {
+                        escribirBaja(json, "categoria", rs.getLong("registro_id"), contadores);
+                    } else {
+                        escribirCategoria(json, rs, contadores);
+                    }
+                });
+                catalogoCambiosRepository.recorrerProductosModificados(desde, hasta, rs -> {
+                    if (rs.getObject("id") == null) {
+                        escribirBaja(json, "producto", rs.getLong("registro_id"), contadores);
+                    } else {
+                        escribirProducto(json, rs, contadores);
+                    }
+                });
+            }
+
+            json.writeStartObject();
+            json.writeStringField("tipo", "fin");
+            json.writeNumberField("hasta", hasta);
+            json.writeNumberField("categorias", contadores.categorias);
+            json.writeNumberField("productos", contadores.productos);
+            json.writeNumberField("bajas", contadores.bajas);
+            json.writeEndObject();
+            json.writeRaw('\n');
+            json.flush();
+            gzip.finish();
+
+            log.debug("Feed de catálogo {} -> {} ({}): {} categorías, {} productos, {} bajas",
+                    desde, hasta, completo ? "completo" : "incremental",
+                    contadores.categorias, contadores.productos, contadores.bajas);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo el feed del catálogo", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerEstado() {
+        boolean registroDisponible = esquemaBaseDatos.isRegistroCambiosDisponible();
+        Map<String, Object> estado = new HashMap<>();
+        estado.put("disponible", registroDisponible);
+        if (registroDisponible) {
+            estado.put("ultimaSecuencia", catalogoCambiosRepository.obtenerUltimaSecuencia());
+            estado.put("secuenciaPurgada", catalogoCambiosRepository.obtenerSecuenciaPurgada());
+        }
+        estado.put("diasRetencion", diasRetencion);
+        return estado;
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Object> purgarCambios() {
+        LocalDateTime corte = LocalDateTime.now().minusDays(diasRetencion);
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("fechaCorte", corte);
+        resultado.put("filasPurgadas", esquemaBaseDatos.isRegistroCambiosDisponible()
+                ? catalogoCambiosRepository.purgarAnterioresA(corte) : 0);
+        return resultado;
+    }
+
+    @Override
+    @Scheduled(cron = "${catalogo.cambios.purga-cron:0 15 3 * * *}")
+    public void purgarCambiosProgramado() {
+        try {
+            Map<String, Object> resultado = purgarCambios();
+            log.info("Registro de cambios del catálogo purgado: {}", resultado);
+        } catch (Exception e) {
+            log.error("Error purgando el registro de cambios del catálogo: {}", e.getMessage(), e);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private void escribirCategoria(JsonGenerator json, ResultSet rs, Contadores contadores) throws SQLException {
+        try {
+            json.writeStartObject();
+            json.writeStringField("tipo", "categoria");
+            json.writeNumberField("id", rs.getLong("id"));
+            json.writeStringField("nombre", rs.getString("nombre"));
+            escribirEntero(json, "padreId", rs, "categoria_padre_id");
+            escribirEntero(json, "nivel", rs, "nivel");
+            escribirEntero(json, "orden", rs, "orden");
+            escribirTexto(json, "icono", rs.getString("icono"));
+            escribirTexto(json, "estado", rs.getString("estado"));
+            json.writeEndObject();
+            json.writeRaw('\n');
+            contadores.categorias++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribirProducto(JsonGenerator json, ResultSet rs, Contadores contadores) throws SQLException {
+        try {
+            json.writeStartObject();
+            json.writeStringField("tipo", "producto");
+            json.writeNumberField("id", rs.getLong("id"));
+            json.writeStringField("codigo", rs.getString("codigo"));
+            escribirTexto(json, "codigoBarras", rs.getString("codigo_barras"));
+            json.writeStringField("nombre", rs.getString("nombre"));
+            escribirTexto(json, "marca", rs.getString("marca"));
+            escribirEntero(json, "categoriaId", rs, "categoria_id");
+            escribirTexto(json, "unidadMedida", rs.getString("unidad_medida"));
+            json.writeBooleanField("permiteDecimal", rs.getBoolean("permite_decimal"));
+            escribirTexto(json, "tipoProducto", rs.getString("tipo_producto"));
+            escribirDecimal(json, "precioVenta", rs.getBigDecimal("precio_venta"));
+            escribirDecimal(json, "precioVenta2", rs.getBigDecimal("precio_venta2"));
+            escribirDecimal(json, "precioVenta3", rs.getBigDecimal("precio_venta3"));
+            escribirTexto(json, "estado", rs.getString("estado"));
+            json.writeEndObject();
+            json.writeRaw('\n');
+            contadores.productos++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribirBaja(JsonGenerator json, String entidad, long id, Contadores contadores) {
+        try {
+            json.writeStartObject();
+            json.writeStringField("tipo", "baja");
+            json.writeStringField("entidad", entidad);
+            json.writeNumberField("id", id);
+            json.writeEndObject();
+            json.writeRaw('\n');
+            contadores.bajas++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Los nulos se omiten para no repetir claves vacías en cada línea
+    private void escribirTexto(JsonGenerator json, String campo, String valor) throws IOException {
+        if (valor != null) {
+            json.writeStringField(campo, valor);
+        }
+    }
+
+    private void escribirDecimal(JsonGenerator json, String campo, BigDecimal valor) throws IOException {
+        if (valor != null) {
+            json.writeNumberField(campo, valor);
+        }
+    }
+
+    private void escribirEntero(JsonGenerator json, String campo, ResultSet rs, String columna)
+            throws IOException, SQLException {
+        long valor = rs.getLong(columna);
+        if (!rs.wasNull()) {
+            json.writeNumberField(campo, valor);
+        }
+    }
+
+    private static class Contadores {
+        private long categorias;
+        private long productos;
+        private long bajas;
+    }
+}
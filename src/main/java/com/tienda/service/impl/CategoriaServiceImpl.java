@@ -2,15 +2,16 @@ package com.tienda.service.impl;
 
 import com.tienda.dto.request.CategoriaRequest;
 import com.tienda.dto.response.CategoriaResponse;
+import com.tienda.event.CategoriasModificadasEvent;
 import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.Categoria;
-import com.tienda.model.Producto;
+import com.tienda.repository.CategoriaArbolRepository;
 import com.tienda.repository.CategoriaRepository;
-import com.tienda.repository.ProductoRepository;
 import com.tienda.service.CategoriaService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +24,9 @@ import java.util.stream.Collectors;
 public class CategoriaServiceImpl implements CategoriaService {
 
     private final CategoriaRepository categoriaRepository;
-    private final ProductoRepository productoRepository;
+    private final CategoriaArbolRepository categoriaArbolRepository;
+    private final ArbolCategoriasCache arbolCategoriasCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -58,6 +61,8 @@ public class CategoriaServiceImpl implements CategoriaService {
                 .build();
 
         categoria = categoriaRepository.save(categoria);
+        categoriaArbolRepository.agregarHoja(categoria.getId(), categoriaPadre != null ? categoriaPadre.getId() : null);
+        eventPublisher.publishEvent(new CategoriasModificadasEvent(categoria.getId()));
         log.info("Categoría creada: {} - Nivel: {}", categoria.getNombre(), categoria.getNivel());
 
         return convertirAResponse(categoria);
@@ -96,22 +101,26 @@ public class CategoriaServiceImpl implements CategoriaService {
                 throw new ValidacionException("Una categoría no puede ser padre de sí misma");
             }
 
-            Categoria nuevaCategoriaPadre = categoriaRepository.findById(request.getCategoriaPadreId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Categoría padre no encontrada"));
+            Long padreActualId = categoria.getCategoriaPadre() != null ? categoria.getCategoriaPadre().getId() : null;
+            if (!request.getCategoriaPadreId().equals(padreActualId)) {
+                Categoria nuevaCategoriaPadre = categoriaRepository.findById(request.getCategoriaPadreId())
+                        .orElseThrow(() -> new ResourceNotFoundException("Categoría padre no encontrada"));
 
-            // Validar que no se cree un ciclo
-            if (esDescendiente(nuevaCategoriaPadre, id)) {
-                throw new ValidacionException("No se puede asignar una categoría descendiente como padre");
-            }
+                // Validar que no se cree un ciclo (una consulta a la tabla de clausura)
+                if (categoriaArbolRepository.esDescendiente(nuevaCategoriaPadre.getId(), id)) {
+                    throw new ValidacionException("No se puede asignar una categoría descendiente como padre");
+                }
 
-            categoria.setCategoriaPadre(nuevaCategoriaPadre);
-            categoria.setNivel(nuevaCategoriaPadre.getNivel() + 1);
+                categoria.setCategoriaPadre(nuevaCategoriaPadre);
+                categoriaArbolRepository.moverSubarbol(id, nuevaCategoriaPadre.getId());
 
-            // Actualizar niveles de subcategorías
-            actualizarNivelesSubcategorias(categoria);
+                // Actualizar niveles de la categoría y su subárbol
+                actualizarNivelesSubarbol(id);
+            }
         }
 
         categoria = categoriaRepository.save(categoria);
+        eventPublisher.publishEvent(new CategoriasModificadasEvent(categoria.getId()));
 
         return convertirAResponse(categoria);
     }
@@ -121,60 +130,69 @@ public class CategoriaServiceImpl implements CategoriaService {
     public void eliminarCategoria(Long id) {
         Categoria categoria = obtenerEntidadCategoria(id);
 
-        // Verificar si tiene productos asociados
-        List<Producto> productos = productoRepository.findByCategoriaId(id);
-        if (!productos.isEmpty()) {
+        // Verificar si la categoría o alguna subcategoría tiene productos asociados
+        long productos = categoriaArbolRepository.contarProductosSubarbol(id);
+        if (productos > 0) {
             throw new ValidacionException(
-                    "No se puede eliminar la categoría porque tiene " + productos.size() + " productos asociados");
+                    "No se puede eliminar la categoría porque tiene " + productos + " productos asociados");
         }
 
-        // Verificar si tiene subcategorías
-        List<Categoria> subcategorias = categoriaRepository.findByCategoriaPadreId(id);
-        if (!subcategorias.isEmpty()) {
-            // Opción 1: Eliminar subcategorías también
-            for (Categoria subcategoria : subcategorias) {
-                eliminarCategoria(subcategoria.getId());
+        // Se eliminan también las subcategorías, de las hojas hacia la raíz
+        List<Long> subarbol = new ArrayList<>(categoriaArbolRepository.obtenerNivelesSubarbol(id).keySet());
+        Collections.reverse(subarbol);
+        Map<Long, Categoria> porId = categoriaRepository.findAllById(subarbol).stream()
+                .collect(Collectors.toMap(Categoria::getId, c -> c));
+        for (Long categoriaId : subarbol) {
+            Categoria eliminada = porId.get(categoriaId);
+            if (eliminada != null) {
+                categoriaRepository.delete(eliminada);
             }
-            // Opción 2: O lanzar error
-            // throw new ValidacionException("No se puede eliminar porque tiene subcategorías");
         }
 
-        categoriaRepository.delete(categoria);
-        log.info("Categoría eliminada: {}", categoria.getNombre());
+        eventPublisher.publishEvent(new CategoriasModificadasEvent(id));
+        log.info("Categoría eliminada: {} ({} categorías en total)", categoria.getNombre(), subarbol.size());
     }
 
+    // Lecturas del árbol: se sirven desde la instantánea en memoria, sin consultas
     @Override
-    @Transactional(readOnly = true)
     public CategoriaResponse obtenerCategoriaPorId(Long id) {
-        Categoria categoria = obtenerEntidadCategoria(id);
-        return convertirAResponseConSubcategorias(categoria);
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
+        ArbolCategorias.Nodo nodo = arbol.obtener(id);
+        if (nodo == null) {
+            throw new ResourceNotFoundException("Categoría no encontrada con ID: " + id);
+        }
+
+        CategoriaResponse response = convertirAResponse(nodo, arbol);
+        response.setSubcategorias(arbol.hijos(id).stream()
+                .map(hijo -> convertirAResponse(hijo, arbol))
+                .collect(Collectors.toList()));
+        return response;
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoriaResponse> obtenerTodasCategorias() {
-        return categoriaRepository.findAll().stream()
-                .map(this::convertirAResponse)
-                .sorted(Comparator.comparing(CategoriaResponse::getNivel)
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
+        return arbol.todas().stream()
+                .map(nodo -> convertirAResponse(nodo, arbol))
+                .sorted(Comparator.comparing(CategoriaResponse::getNivel, Comparator.nullsLast(Comparator.naturalOrder()))
                         .thenComparing(CategoriaResponse::getOrden))
                 .collect(Collectors.toList());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoriaResponse> obtenerCategoriasPadre() {
-        return categoriaRepository.findByCategoriaPadreIsNull().stream()
-                .map(this::convertirAResponse)
-                .sorted(Comparator.comparing(CategoriaResponse::getOrden))
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
+        return arbol.raices().stream()
+                .filter(nodo -> nodo.getPadreId() == null)
+                .map(nodo -> convertirAResponse(nodo, arbol))
                 .collect(Collectors.toList());
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<CategoriaResponse> obtenerSubcategorias(Long categoriaPadreId) {
-        return categoriaRepository.findByCategoriaPadreId(categoriaPadreId).stream()
-                .map(this::convertirAResponse)
-                .sorted(Comparator.comparing(CategoriaResponse::getOrden))
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
+        return arbol.hijos(categoriaPadreId).stream()
+                .map(nodo -> convertirAResponse(nodo, arbol))
                 .collect(Collectors.toList());
     }
 
@@ -195,19 +213,17 @@ public class CategoriaServiceImpl implements CategoriaService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Map<String, Object> obtenerArbolCategorias() {
-        List<Categoria> categoriasPadre = categoriaRepository.findByCategoriaPadreIsNull();
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
 
-        List<CategoriaResponse> arbol = categoriasPadre.stream()
-                .map(this::convertirAResponseConSubcategoriasRecursivo)
-                .sorted(Comparator.comparing(CategoriaResponse::getOrden))
+        List<CategoriaResponse> categorias = arbol.raices().stream()
+                .map(nodo -> convertirAResponseConSubcategoriasRecursivo(nodo, arbol))
                 .collect(Collectors.toList());
 
         Map<String, Object> resultado = new HashMap<>();
-        resultado.put("categorias", arbol);
-        resultado.put("totalCategorias", categoriaRepository.count());
-        resultado.put("totalNiveles", calcularMaximoNivel());
+        resultado.put("categorias", categorias);
+        resultado.put("totalCategorias", arbol.getTotal());
+        resultado.put("totalNiveles", arbol.getProfundidadMaxima());
 
         return resultado;
     }
@@ -215,19 +231,46 @@ public class CategoriaServiceImpl implements CategoriaService {
     @Override
     @Transactional(readOnly = true)
     public List<CategoriaResponse> obtenerCategoriasConProductos() {
-        List<Categoria> categorias = categoriaRepository.findAll();
-
-        return categorias.stream()
-                .map(categoria -> {
-                    CategoriaResponse response = convertirAResponse(categoria);
-                    // Contar productos en esta categoría
-                    List<Producto> productos = productoRepository.findByCategoriaId(categoria.getId());
-                    response.setTotalProductos(productos.size());
+        ArbolCategorias arbol = arbolCategoriasCache.obtener();
+
+        // Una consulta agregada; el total incluye los productos de todas las subcategorías
+        return categoriaArbolRepository.obtenerResumenProductos().stream()
+                .map(fila -> {
+                    ArbolCategorias.Nodo nodo = arbol.obtener(((Number) fila.get("id")).longValue());
+                    CategoriaResponse response = nodo != null ? convertirAResponse(nodo, arbol) :
+                            CategoriaResponse.builder()
+                                    .id(((Number) fila.get("id")).longValue())
+                                    .nombre((String) fila.get("nombre"))
+                                    .build();
+                    response.setTotalProductos(((Number) fila.get("productos")).intValue());
                     return response;
                 })
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerResumenCategorias() {
+        List<Map<String, Object>> resumen = new ArrayList<>();
+        for (Map<String, Object> fila : categoriaArbolRepository.obtenerResumenProductos()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("categoriaId", ((Number) fila.get("id")).longValue());
+            item.put("nombre", fila.get("nombre"));
+            item.put("categoriaPadreId", fila.get("categoria_padre_id"));
+            item.put("nivel", fila.get("nivel"));
+            item.put("estado", fila.get("estado"));
+            item.put("subcategorias", ((Number) fila.get("subcategorias")).longValue());
+            item.put("productosPropios", ((Number) fila.get("productos_propios")).longValue());
+            item.put("productos", ((Number) fila.get("productos")).longValue());
+            item.put("productosActivos", ((Number) fila.get("productos_activos")).longValue());
+            item.put("unidades", fila.get("unidades"));
+            item.put("valorCosto", fila.get("valor_costo"));
+            item.put("valorVenta", fila.get("valor_venta"));
+            resumen.add(item);
+        }
+        return resumen;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public boolean existeCategoriaPorNombre(String nombre) {
@@ -259,63 +302,34 @@ public class CategoriaServiceImpl implements CategoriaService {
                 .build();
     }
 
-    private CategoriaResponse convertirAResponseConSubcategorias(Categoria categoria) {
-        CategoriaResponse response = convertirAResponse(categoria);
-
-        // Obtener subcategorías directas
-        List<Categoria> subcategorias = categoriaRepository.findByCategoriaPadreId(categoria.getId());
-        List<CategoriaResponse> subcategoriasResponse = subcategorias.stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
-
-        response.setSubcategorias(subcategoriasResponse);
-
-        return response;
+    private CategoriaResponse convertirAResponse(ArbolCategorias.Nodo nodo, ArbolCategorias arbol) {
+        ArbolCategorias.Nodo padre = nodo.getPadreId() != null ? arbol.obtener(nodo.getPadreId()) : null;
+        return CategoriaResponse.builder()
+                .id(nodo.getId())
+                .nombre(nodo.getNombre())
+                .descripcion(nodo.getDescripcion())
+                .categoriaPadreId(nodo.getPadreId())
+                .categoriaPadreNombre(padre != null ? padre.getNombre() : null)
+                .nivel(nodo.getNivel())
+                .icono(nodo.getIcono())
+                .orden(nodo.getOrden())
+                .estado(nodo.getEstado())
+                .build();
     }
 
-    private CategoriaResponse convertirAResponseConSubcategoriasRecursivo(Categoria categoria) {
-        CategoriaResponse response = convertirAResponse(categoria);
-
-        // Obtener subcategorías recursivamente
-        List<Categoria> subcategorias = categoriaRepository.findByCategoriaPadreId(categoria.getId());
-        List<CategoriaResponse> subcategoriasResponse = subcategorias.stream()
-                .map(this::convertirAResponseConSubcategoriasRecursivo)
-                .sorted(Comparator.comparing(CategoriaResponse::getOrden))
-                .collect(Collectors.toList());
-
-        response.setSubcategorias(subcategoriasResponse);
-
+    private CategoriaResponse convertirAResponseConSubcategoriasRecursivo(ArbolCategorias.Nodo nodo, ArbolCategorias arbol) {
+        CategoriaResponse response = convertirAResponse(nodo, arbol);
+        response.setSubcategorias(arbol.hijos(nodo.getId()).stream()
+                .map(hijo -> convertirAResponseConSubcategoriasRecursivo(hijo, arbol))
+                .collect(Collectors.toList()));
         return response;
     }
 
-    private boolean esDescendiente(Categoria categoria, Long idCategoria) {
-        if (categoria.getId().equals(idCategoria)) {
-            return true;
+    // Nivel = número de ancestros según la tabla de clausura; un solo SELECT y updates en lote
+    private void actualizarNivelesSubarbol(Long categoriaId) {
+        Map<Long, Integer> niveles = categoriaArbolRepository.obtenerNivelesSubarbol(categoriaId);
+        for (Categoria categoria : categoriaRepository.findAllById(niveles.keySet())) {
+            categoria.setNivel(niveles.get(categoria.getId()));
         }
-
-        if (categoria.getCategoriaPadre() == null) {
-            return false;
-        }
-
-        return esDescendiente(categoria.getCategoriaPadre(), idCategoria);
-    }
-
-    private void actualizarNivelesSubcategorias(Categoria categoria) {
-        List<Categoria> subcategorias = categoriaRepository.findByCategoriaPadreId(categoria.getId());
-
-        for (Categoria subcategoria : subcategorias) {
-            subcategoria.setNivel(categoria.getNivel() + 1);
-            categoriaRepository.save(subcategoria);
-
-            // Actualizar recursivamente
-            actualizarNivelesSubcategorias(subcategoria);
-        }
-    }
-
-    private Integer calcularMaximoNivel() {
-        return categoriaRepository.findAll().stream()
-                .map(Categoria::getNivel)
-                .max(Integer::compare)
-                .orElse(0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,293 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.event.VentaRegistradaEvent;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.repository.ClienteMetricasRepository;
+import com.tienda.repository.ClienteRepository;
+import com.tienda.repository.CohorteClientesRepository;
+import com.tienda.service.ClienteAnaliticaService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analítica de clientes: las métricas de compra se mantienen por cliente al registrar o
+ * anular cada venta, y la segmentación RFM se recalcula en lote de forma programada.
+ * Las cohortes de meses cerrados se guardan una vez al empezar cada mes; solo el mes en
+ * curso se calcula al vuelo. Las consultas leen las tablas precalculadas, nunca recorren
+ * todos los clientes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClienteAnaliticaServiceImpl implements ClienteAnaliticaService {
+
+    private static final int TAMANO_MAXIMO_PAGINA = 200;
+    private static final int MAXIMO_MESES_COHORTES = 36;
+
+    // Cohortes que promedia la tasa de retención del dashboard
+    private static final int MESES_TASA_RETENCION = 12;
+
+    private final ClienteMetricasRepository clienteMetricasRepository;
+    private final CohorteClientesRepository cohorteClientesRepository;
+    private final ClienteRepository clienteRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void prepararAlArrancar() {
+        if (clienteMetricasRepository.faltanMetricas()) {
+            log.info("Métricas de clientes reconstruidas: {} clientes con compras",
+                    clienteMetricasRepository.reconstruir());
+        }
+        if (clienteMetricasRepository.obtenerFechaSegmentacion() == null) {
+            log.info("Segmentación RFM inicial: {} clientes", clienteMetricasRepository.recalcularSegmentos());
+        }
+
+        int celdas = cohorteClientesRepository.cerrarMeses(inicioMesActual());
+        if (celdas > 0) {
+            log.info("Cohortes de clientes: {} celdas de meses cerrados guardadas", celdas);
+        }
+    }
+
+    // Tras el commit de la venta o de la anulación; las ventas sin cliente no cuentan.
+    // Antes que la recarga del resumen del cliente, que lee estas métricas
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void alRegistrarVenta(VentaRegistradaEvent evento) {
+        if (evento.getClienteId() != null) {
+            clienteMetricasRepository.recalcular(evento.getClienteId());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerMetricasCliente(Long clienteId) {
+        if (!clienteRepository.existsById(clienteId)) {
+            throw new ResourceNotFoundException("Cliente no encontrado con ID: " + clienteId);
+        }
+
+        Map<String, Object> metricas = clienteMetricasRepository.obtenerMetricas(clienteId);
+        if (metricas == null) {
+            metricas = new LinkedHashMap<>();
+            metricas.put("cliente_id", clienteId);
+            metricas.put("compras", 0);
+        }
+        return metricas;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> obtenerCompras(List<Long> clienteIds) {
+        return clienteMetricasRepository.obtenerCompras(clienteIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerResumenSegmentos() {
+        return clienteMetricasRepository.obtenerResumenSegmentos();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginacionResponse<Map<String, Object>> obtenerClientesSegmento(String segmento, int pagina, int tamano) {
+        if (pagina < 0 || tamano < 1 || tamano > TAMANO_MAXIMO_PAGINA) {
+            throw new ValidacionException("Página o tamaño de página inválidos (máximo " + TAMANO_MAXIMO_PAGINA + ")");
+        }
+
+        String clave = segmento.toUpperCase();
+        long total = clienteMetricasRepository.contarClientesSegmento(clave);
+        List<Map<String, Object>> clientes =
+                clienteMetricasRepository.obtenerClientesSegmento(clave, tamano, (long) pagina * tamano);
+        int totalPaginas = (int) ((total + tamano - 1) / tamano);
+
+        return PaginacionResponse.<Map<String, Object>>builder()
+                .content(clientes)
+                .pageNumber(pagina)
+                .pageSize(tamano)
+                .totalElements(total)
+                .totalPages(totalPaginas)
+                .last(pagina + 1 >= totalPaginas)
+                .first(pagina == 0)
+                .empty(clientes.isEmpty())
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerCohortes(int meses) {
+        if (meses < 1 || meses > MAXIMO_MESES_COHORTES) {
+            throw new ValidacionException("El número de meses debe estar entre 1 y " + MAXIMO_MESES_COHORTES);
+        }
+
+        LocalDate mesActual = inicioMesActual();
+        LocalDate desde = mesActual.minusMonths(meses - 1L);
+        LocalDate cerradoHasta = cohorteClientesRepository.obtenerCerradoHasta();
+        List<Map<String, Object>> filas = cohorteClientesRepository.obtenerMatriz(
+                desde, cerradoHasta != null ? cerradoHasta : desde, mesActual.plusMonths(1));
+
+        // Una entrada por cohorte con sus periodos (0 = mes de adquisición)
+        List<Map<String, Object>> cohortes = new ArrayList<>();
+        Map<String, Object> actual = null;
+        List<Map<String, Object>> periodos = null;
+        for (Map<String, Object> fila : filas) {
+            String cohorte = YearMonth.from(((Date) fila.get("cohorte")).toLocalDate()).toString();
+            if (actual == null || !cohorte.equals(actual.get("cohorte"))) {
+                periodos = new ArrayList<>();
+                actual = new LinkedHashMap<>();
+                actual.put("cohorte", cohorte);
+                actual.put("clientes", ((Number) fila.get("tamano_cohorte")).intValue());
+                actual.put("periodos", periodos);
+                cohortes.add(actual);
+            }
+
+            Map<String, Object> periodo = new LinkedHashMap<>();
+            periodo.put("periodo", ((Number) fila.get("periodo")).intValue());
+            periodo.put("mes", YearMonth.from(((Date) fila.get("mes")).toLocalDate()).toString());
+            periodo.put("clientes", ((Number) fila.get("clientes")).intValue());
+            periodo.put("retencion", fila.get("retencion"));
+            periodo.put("ventas", ((Number) fila.get("ventas")).intValue());
+            periodo.put("total", fila.get("total"));
+            periodo.put("totalAcumulado", fila.get("total_acumulado"));
+            periodos.add(periodo);
+        }
+        return cohortes;
+    }
+
+    // Retención al mes siguiente de las últimas cohortes cuyo mes siguiente ya cerró
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal obtenerTasaRetencion() {
+        LocalDate cerradoHasta = cohorteClientesRepository.obtenerCerradoHasta();
+        if (cerradoHasta == null) {
+            return BigDecimal.ZERO;
+        }
+
+        LocalDate hasta = cerradoHasta.minusMonths(1);
+        Map<String, Object> retencion = cohorteClientesRepository.obtenerRetencionPrimerMes(
+                hasta.minusMonths(MESES_TASA_RETENCION), hasta);
+        long adquiridos = ((Number) retencion.get("adquiridos")).longValue();
+        long retenidos = ((Number) retencion.get("retenidos")).longValue();
+
+        return adquiridos > 0 ?
+                BigDecimal.valueOf(retenidos * 100).divide(BigDecimal.valueOf(adquiridos), 2, RoundingMode.HALF_UP) :
+                BigDecimal.ZERO;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerFrecuenciaCompra() {
+        List<Map<String, Object>> distribucion = cohorteClientesRepository.obtenerDistribucionCompras();
+
+        long clientesConCompras = 0;
+        long recurrentes = 0;
+        for (Map<String, Object> rango : distribucion) {
+            long clientes = ((Number) rango.get("clientes")).longValue();
+            clientesConCompras += clientes;
+            if (((Number) rango.get("minimo")).intValue() > 1) {
+                recurrentes += clientes;
+            }
+        }
+
+        Map<String, Object> frecuencia = new LinkedHashMap<>();
+        frecuencia.put("clientesConCompras", clientesConCompras);
+        frecuencia.put("clientesRecurrentes", recurrentes);
+        frecuencia.put("tasaRecompra", clientesConCompras > 0 ?
+                BigDecimal.valueOf(recurrentes * 100).divide(BigDecimal.valueOf(clientesConCompras), 2, RoundingMode.HALF_UP) :
+                BigDecimal.ZERO);
+        frecuencia.put("tasaRetencionPrimerMes", obtenerTasaRetencion());
+        frecuencia.put("distribucion", distribucion);
+        return frecuencia;
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Object> recalcularSegmentos() {
+        long inicio = System.currentTimeMillis();
+        int clientes = clienteMetricasRepository.recalcularSegmentos();
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("clientes", clientes);
+        resultado.put("duracionMs", System.currentTimeMillis() - inicio);
+        resultado.put("fechaCalculo", LocalDateTime.now());
+        return resultado;
+    }
+
+    // Transaccional aquí porque la llamada interna no pasa por el proxy
+    @Override
+    @Scheduled(cron = "${clientes.rfm.cron:0 45 3 * * *}")
+    @Transactional
+    public void recalcularSegmentosProgramado() {
+        try {
+            Map<String, Object> resultado = recalcularSegmentos();
+            log.info("Segmentación RFM recalculada: {}", resultado);
+        } catch (Exception e) {
+            log.error("Error recalculando la segmentación RFM: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Object> reconstruirMetricas() {
+        long inicio = System.currentTimeMillis();
+        int clientes = clienteMetricasRepository.reconstruir();
+        int segmentados = clienteMetricasRepository.recalcularSegmentos();
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("clientesConMetricas", clientes);
+        resultado.put("clientesSegmentados", segmentados);
+        resultado.put("duracionMs", System.currentTimeMillis() - inicio);
+        log.info("Métricas de clientes reconstruidas: {}", resultado);
+        return resultado;
+    }
+
+    @Override
+    @Transactional
+    public Map<String, Object> cerrarCohortes() {
+        LocalDate hasta = inicioMesActual();
+        int celdas = cohorteClientesRepository.cerrarMeses(hasta);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("cerradoHasta", hasta);
+        resultado.put("celdasGuardadas", celdas);
+        return resultado;
+    }
+
+    // Transaccional aquí porque la llamada interna no pasa por el proxy
+    @Override
+    @Scheduled(cron = "${clientes.cohortes.cron:0 15 4 1 * *}")
+    @Transactional
+    public void cerrarCohortesProgramado() {
+        try {
+            Map<String, Object> resultado = cerrarCohortes();
+            log.info("Cohortes de clientes cerradas: {}", resultado);
+        } catch (Exception e) {
+            log.error("Error cerrando las cohortes de clientes: {}", e.getMessage(), e);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private LocalDate inicioMesActual() {
+        return LocalDate.now().withDayOfMonth(1);
+    }
+}
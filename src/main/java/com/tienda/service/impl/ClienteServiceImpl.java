@@ -1,16 +1,21 @@
 package com.tienda.service.impl;
 
+import com.tienda.config.EsquemaBaseDatos;
 import com.tienda.dto.request.ClienteRequest;
 import com.tienda.dto.response.ClienteResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.Cliente;
+import com.tienda.repository.BusquedaTextoRepository;
+import com.tienda.repository.BusquedaTextoRepository.TablaBusqueda;
+import com.tienda.repository.ClienteMetricasRepository;
 import com.tienda.repository.ClienteRepository;
 import com.tienda.service.ClienteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,9 +24,12 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,7 +37,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ClienteServiceImpl implements ClienteService {
 
+    private static final int LIMITE_BUSQUEDA = 50;
+
     private final ClienteRepository clienteRepository;
+    private final BusquedaTextoRepository busquedaTextoRepository;
+    private final EsquemaBaseDatos esquemaBaseDatos;
+    private final ClienteMetricasRepository clienteMetricasRepository;
 
     @Override
     @Transactional
@@ -143,9 +156,7 @@ public class ClienteServiceImpl implements ClienteService {
     @Override
     @Transactional(readOnly = true)
     public List<ClienteResponse> obtenerTodosClientes() {
-        return clienteRepository.findAll().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodos(clienteRepository.findAll());
     }
 
     @Override
@@ -153,9 +164,7 @@ public class ClienteServiceImpl implements ClienteService {
     public PaginacionResponse<ClienteResponse> obtenerClientesPaginados(Pageable pageable) {
         Page<Cliente> clientesPage = clienteRepository.findAll(pageable);
 
-        List<ClienteResponse> clientesResponse = clientesPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        List<ClienteResponse> clientesResponse = convertirTodos(clientesPage.getContent());
 
         return PaginacionResponse.<ClienteResponse>builder()
                 .content(clientesResponse)
@@ -170,49 +179,50 @@ public class ClienteServiceImpl implements ClienteService {
     @Override
     @Transactional(readOnly = true)
     public List<ClienteResponse> buscarClientesPorNombre(String nombre) {
-        Page<Cliente> clientesPage = clienteRepository.buscarConFiltros(
-                nombre, null, null, Pageable.unpaged());
-        return clientesPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return buscarClientes(nombre, null, null, PageRequest.of(0, LIMITE_BUSQUEDA)).getContent();
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ClienteResponse> obtenerClientesPorTipo(Cliente.TipoCliente tipo) {
-        return clienteRepository.findByTipo(tipo).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+    public PaginacionResponse<ClienteResponse> buscarClientes(String texto, Cliente.TipoCliente tipo,
+                                                              String estado, Pageable pageable) {
+        if (!esquemaBaseDatos.isBusquedaTextoDisponible()) {
+            Page<Cliente> clientesPage = clienteRepository.buscarConFiltros(texto, null, tipo, estado, pageable);
+            return construirPagina(clientesPage, clientesPage.getContent());
+        }
+
+        Map<String, Object> filtros = new LinkedHashMap<>();
+        filtros.put("tipo", tipo != null ? tipo.name() : null);
+        filtros.put("estado", estado);
+
+        Page<Long> ids = busquedaTextoRepository.buscar(TablaBusqueda.CLIENTES, texto, filtros, pageable);
+        Map<Long, Cliente> porId = clienteRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Cliente::getId, c -> c));
+
+        return construirPagina(ids, ids.getContent().stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ClienteResponse> obtenerClientesPorEstado(String estado) {
-        return clienteRepository.findByEstado(estado).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+    public List<ClienteResponse> obtenerClientesPorTipo(Cliente.TipoCliente tipo) {
+        return convertirTodos(clienteRepository.findByTipo(tipo));
     }
 
     @Override
-    @Transactional
-    public void actualizarTotalCompras(Long clienteId, BigDecimal monto) {
-        Cliente cliente = obtenerEntidadCliente(clienteId);
-
-        BigDecimal nuevoTotal = cliente.getTotalCompras().add(monto);
-        cliente.setTotalCompras(nuevoTotal);
-
-        clienteRepository.save(cliente);
-
-        log.debug("Total de compras actualizado para cliente {}: {}",
-                cliente.getNombre(), nuevoTotal);
+    @Transactional(readOnly = true)
+    public List<ClienteResponse> obtenerClientesPorEstado(String estado) {
+        return convertirTodos(clienteRepository.findByEstado(estado));
     }
 
     @Override
     @Transactional
-    public void registrarUltimaCompra(Long clienteId) {
-        Cliente cliente = obtenerEntidadCliente(clienteId);
-        cliente.setUltimaCompra(LocalDateTime.now());
-        clienteRepository.save(cliente);
+    public void recalcularMetricas(Long clienteId) {
+        obtenerEntidadCliente(clienteId);
+        clienteMetricasRepository.recalcular(clienteId);
+        log.debug("Métricas recalculadas para cliente {}", clienteId);
     }
 
     @Override
@@ -221,18 +231,14 @@ public class ClienteServiceImpl implements ClienteService {
         Page<Cliente> clientesPage = clienteRepository.findTopClientes(
                 Pageable.ofSize(limite));
 
-        return clientesPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodos(clientesPage.getContent());
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ClienteResponse> obtenerClientesInactivos(int diasInactividad) {
         LocalDateTime fechaLimite = LocalDateTime.now().minusDays(diasInactividad);
-        return clienteRepository.findClientesInactivos(fechaLimite).stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return convertirTodos(clienteRepository.findClientesInactivos(fechaLimite));
     }
 
     @Override
@@ -240,19 +246,17 @@ public class ClienteServiceImpl implements ClienteService {
     public Map<String, Object> obtenerEstadisticasClientes() {
         Map<String, Object> estadisticas = new HashMap<>();
 
-        List<Cliente> clientes = clienteRepository.findAll();
-
-        long totalClientes = clientes.size();
+        long totalClientes = clienteRepository.count();
         long clientesActivos = clienteRepository.contarClientesActivos();
 
         // Calcular por tipo
-        Map<Cliente.TipoCliente, Long> clientesPorTipo = clientes.stream()
-                .collect(Collectors.groupingBy(Cliente::getTipo, Collectors.counting()));
+        Map<Cliente.TipoCliente, Long> clientesPorTipo = new LinkedHashMap<>();
+        for (Object[] fila : clienteRepository.contarPorTipo()) {
+            clientesPorTipo.put((Cliente.TipoCliente) fila[0], (Long) fila[1]);
+        }
 
         // Calcular ventas totales
-        BigDecimal ventasTotales = clientes.stream()
-                .map(Cliente::getTotalCompras)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal ventasTotales = clienteRepository.sumarTotalCompras();
 
         // Calcular promedio de compras
         BigDecimal promedioCompras = totalClientes > 0 ?
@@ -269,6 +273,7 @@ public class ClienteServiceImpl implements ClienteService {
         estadisticas.put("ventasTotales", ventasTotales);
         estadisticas.put("promedioComprasPorCliente", promedioCompras);
         estadisticas.put("topClientes", topClientes);
+        estadisticas.put("segmentos", clienteMetricasRepository.obtenerResumenSegmentos());
         estadisticas.put("fechaActualizacion", LocalDateTime.now());
 
         return estadisticas;
@@ -289,6 +294,22 @@ public class ClienteServiceImpl implements ClienteService {
 
     // Métodos privados auxiliares
     private ClienteResponse convertirAResponse(Cliente cliente) {
+        Integer compras = cliente.getId() != null ?
+                clienteMetricasRepository.obtenerCompras(Collections.singletonList(cliente.getId())).get(cliente.getId()) :
+                null;
+        return convertirAResponse(cliente, compras != null ? compras : 0);
+    }
+
+    // El número de compras sale de cliente_metricas en una sola consulta para toda la lista
+    private List<ClienteResponse> convertirTodos(List<Cliente> clientes) {
+        Map<Long, Integer> compras = clienteMetricasRepository.obtenerCompras(
+                clientes.stream().map(Cliente::getId).collect(Collectors.toList()));
+        return clientes.stream()
+                .map(c -> convertirAResponse(c, compras.getOrDefault(c.getId(), 0)))
+                .collect(Collectors.toList());
+    }
+
+    private ClienteResponse convertirAResponse(Cliente cliente, int totalVentas) {
         // Calcular días desde última compra
         Integer diasUltimaCompra = null;
         if (cliente.getUltimaCompra() != null) {
@@ -298,7 +319,6 @@ public class ClienteServiceImpl implements ClienteService {
 
         // Calcular promedio del ticket
         BigDecimal promedioTicket = BigDecimal.ZERO;
-        Integer totalVentas = cliente.getVentas().size();
         if (totalVentas > 0 && cliente.getTotalCompras().compareTo(BigDecimal.ZERO) > 0) {
             promedioTicket = cliente.getTotalCompras()
                     .divide(new BigDecimal(totalVentas), 2, RoundingMode.HALF_UP);
@@ -322,4 +342,15 @@ public class ClienteServiceImpl implements ClienteService {
                 .diasUltimaCompra(diasUltimaCompra)
                 .build();
     }
-}
\ No newline at end of file
+
+    private PaginacionResponse<ClienteResponse> construirPagina(Page<?> pagina, List<Cliente> clientes) {
+        return PaginacionResponse.<ClienteResponse>builder()
+                .content(convertirTodos(clientes))
+                .pageNumber(pagina.getNumber())
+                .pageSize(pagina.getSize())
+                .totalElements(pagina.getTotalElements())
+                .totalPages(pagina.getTotalPages())
+                .last(pagina.isLast())
+                .build();
+    }
+}
@@ -2,8 +2,11 @@ package com.tienda.service.impl;
 
 import com.tienda.dto.EstadisticasDTO;
 import com.tienda.dto.response.DashboardResponse;
+import com.tienda.dto.response.EstadoStockResponse;
 import com.tienda.model.*;
 import com.tienda.repository.*;
+import com.tienda.service.AlertaStockService;
+import com.tienda.service.ClienteAnaliticaService;
 import com.tienda.service.DashboardService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,10 +31,13 @@ public class DashboardServiceImpl implements DashboardService {
     private final VentaRepository ventaRepository;
     private final ProductoRepository productoRepository;
     private final ClienteRepository clienteRepository;
+    private final ClienteMetricasRepository clienteMetricasRepository;
     private final UsuarioRepository usuarioRepository;
     private final DetalleVentaRepository detalleVentaRepository;
     private final CierreCajaRepository cierreCajaRepository;
     private final MovimientoInventarioRepository movimientoInventarioRepository;
+    private final AlertaStockService alertaStockService;
+    private final ClienteAnaliticaService clienteAnaliticaService;
 
     @Override
     @Transactional(readOnly = true)
@@ -213,42 +219,33 @@ public class DashboardServiceImpl implements DashboardService {
     public Map<String, Object> obtenerMetricasClientes() {
         Map<String, Object> metricas = new HashMap<>();
 
-        List<Cliente> clientes = clienteRepository.findAll();
-        List<Cliente> clientesActivos = clientes.stream()
-                .filter(c -> "ACTIVO".equals(c.getEstado()))
-                .collect(Collectors.toList());
+        long totalActivos = clienteRepository.contarClientesActivos();
 
         // Nuevos clientes este mes
         LocalDate inicioMes = LocalDate.now().with(TemporalAdjusters.firstDayOfMonth());
-        long nuevosClientesMes = clientesActivos.stream()
-                .filter(c -> c.getFechaRegistro() != null &&
-                        c.getFechaRegistro().toLocalDate().isAfter(inicioMes.minusDays(1)))
-                .count();
+        long nuevosClientesMes = clienteRepository.contarActivosRegistradosDesde(inicioMes.atStartOfDay());
 
         // Clientes inactivos (sin compras en 60 días)
         LocalDate fechaLimiteInactivos = LocalDate.now().minusDays(60);
-        long clientesInactivos = clientesActivos.stream()
-                .filter(c -> c.getUltimaCompra() != null &&
-                        c.getUltimaCompra().toLocalDate().isBefore(fechaLimiteInactivos))
-                .count();
+        long clientesInactivos = clienteRepository.contarActivosSinCompraDesde(fechaLimiteInactivos.atStartOfDay());
 
         // Segmentación por tipo
-        Map<String, Long> clientesPorTipo = clientesActivos.stream()
-                .collect(Collectors.groupingBy(
-                        c -> c.getTipo() != null ? c.getTipo().name() : "SIN_TIPO",
-                        Collectors.counting()
-                ));
+        Map<String, Long> clientesPorTipo = new HashMap<>();
+        for (Object[] fila : clienteRepository.contarActivosPorTipo()) {
+            clientesPorTipo.put(fila[0] != null ? ((Cliente.TipoCliente) fila[0]).name() : "SIN_TIPO", (Long) fila[1]);
+        }
 
         // Top clientes por compras
         // ✅ CORREGIDO: Usar PageRequest correctamente
         PageRequest pageRequest = PageRequest.of(0, 10);
         List<Cliente> topClientes = clienteRepository.findTopClientes(pageRequest).getContent();
 
-        metricas.put("totalClientes", clientesActivos.size());
+        metricas.put("totalClientes", (int) totalActivos);
         metricas.put("nuevosClientesMes", nuevosClientesMes);
         metricas.put("clientesInactivos", clientesInactivos);
         metricas.put("clientesPorTipo", clientesPorTipo);
         metricas.put("tasaRetencion", calcularTasaRetencion());
+        metricas.put("segmentos", clienteMetricasRepository.obtenerResumenSegmentos());
         metricas.put("topClientes", topClientes.stream()
                 .map(this::convertirClienteAMapa)
                 .collect(Collectors.toList()));
@@ -524,7 +521,8 @@ public class DashboardServiceImpl implements DashboardService {
     public Map<String, Object> obtenerProductosBajoStock(int limite) {
         Map<String, Object> resultado = new HashMap<>();
 
-        List<Producto> productosBajoStock = productoRepository.findProductosStockBajo();
+        List<EstadoStockResponse> productosBajoStock = alertaStockService.obtenerProductosEnAlerta(
+                Producto.AlertaStock.BAJO, Producto.AlertaStock.CRITICO, Producto.AlertaStock.AGOTADO);
 
         List<Map<String, Object>> productos = productosBajoStock.stream()
                 .limit(limite)
@@ -535,9 +533,8 @@ public class DashboardServiceImpl implements DashboardService {
                     productoMap.put("nombre", p.getNombre());
                     productoMap.put("stockActual", p.getStockActual());
                     productoMap.put("stockMinimo", p.getStockMinimo());
-                    productoMap.put("alertaStock", p.getAlertaStock().name());
-                    productoMap.put("necesitaReorden",
-                            p.getStockActual().compareTo(p.getStockMinimo()) <= 0);
+                    productoMap.put("alertaStock", p.getAlertaStock());
+                    productoMap.put("necesitaReorden", p.getNecesitaReorden());
                     return productoMap;
                 })
                 .collect(Collectors.toList());
@@ -556,11 +553,11 @@ public class DashboardServiceImpl implements DashboardService {
         List<Map<String, Object>> listaAlertas = new ArrayList<>();
 
         // Alertas de inventario
-        List<Producto> productosCriticos = productoRepository.findByAlertaStock(
+        List<EstadoStockResponse> productosCriticos = alertaStockService.obtenerProductosEnAlerta(
                 Producto.AlertaStock.CRITICO
         );
 
-        for (Producto producto : productosCriticos) {
+        for (EstadoStockResponse producto : productosCriticos) {
             Map<String, Object> alerta = new HashMap<>();
             alerta.put("tipo", "INVENTARIO");
             alerta.put("prioridad", "ALTA");
@@ -682,8 +679,10 @@ public class DashboardServiceImpl implements DashboardService {
                 .ticketPromedio(estadisticas.getTicketPromedio())
                 .transaccionesTotales(estadisticas.getCantidadVentas())
                 .totalProductos((int) productoRepository.count())
-                .productosBajoStock(productoRepository.findProductosStockBajo().size())
-                .productosAgotados(productoRepository.findProductosAgotados().size())
+                .productosBajoStock((int) alertaStockService.contarProductosEnAlerta(
+                        Producto.AlertaStock.BAJO, Producto.AlertaStock.CRITICO, Producto.AlertaStock.AGOTADO))
+                .productosAgotados((int) alertaStockService.contarProductosEnAlerta(
+                        Producto.AlertaStock.AGOTADO))
                 .valorInventario(calcularValorInventario())
                 .totalClientes((int) clienteRepository.count())
                 .nuevosClientes(calcularNuevosClientesMes())
@@ -737,7 +736,7 @@ public class DashboardServiceImpl implements DashboardService {
         List<DashboardResponse.AlertaDashboard> alertas = new ArrayList<>();
 
         // Alertas de stock crítico
-        productoRepository.findByAlertaStock(Producto.AlertaStock.CRITICO)
+        alertaStockService.obtenerProductosEnAlerta(Producto.AlertaStock.CRITICO)
                 .forEach(producto -> {
                     alertas.add(DashboardResponse.AlertaDashboard.builder()
                             .tipo("INVENTARIO")
@@ -751,7 +750,7 @@ public class DashboardServiceImpl implements DashboardService {
                 });
 
         // Alertas de productos agotados
-        productoRepository.findProductosAgotados().stream()
+        alertaStockService.obtenerProductosEnAlerta(Producto.AlertaStock.AGOTADO).stream()
                 .limit(5)
                 .forEach(producto -> {
                     alertas.add(DashboardResponse.AlertaDashboard.builder()
@@ -829,18 +828,12 @@ public class DashboardServiceImpl implements DashboardService {
 
     private Integer calcularNuevosClientesMes() {
         LocalDate inicioMes = LocalDate.now().with(TemporalAdjusters.firstDayOfMonth());
-        return (int) clienteRepository.findAll().stream()
-                .filter(c -> c.getFechaRegistro() != null &&
-                        c.getFechaRegistro().toLocalDate().isAfter(inicioMes.minusDays(1)))
-                .count();
+        return (int) clienteRepository.contarRegistradosDesde(inicioMes.atStartOfDay());
     }
 
     private Integer calcularNuevosClientesHoy() {
         LocalDate hoy = LocalDate.now();
-        return (int) clienteRepository.findAll().stream()
-                .filter(c -> c.getFechaRegistro() != null &&
-                        c.getFechaRegistro().toLocalDate().equals(hoy))
-                .count();
+        return (int) clienteRepository.contarRegistradosDesde(hoy.atStartOfDay());
     }
 
     private Integer calcularProductosVendidosHoy() {
@@ -852,19 +845,9 @@ public class DashboardServiceImpl implements DashboardService {
                 .intValue();
     }
 
+    // Retención al mes siguiente de las cohortes recientes, desde las cohortes ya cerradas
     private BigDecimal calcularTasaRetencion() {
-        long totalClientes = clienteRepository.count();
-        long clientesConMasDeUnaCompra = clienteRepository.findAll().stream()
-                .filter(c -> c.getTotalCompras() != null &&
-                        c.getTotalCompras().compareTo(new BigDecimal("0")) > 0)
-                .count();
-
-        if (totalClientes > 0) {
-            return new BigDecimal(clientesConMasDeUnaCompra)
-                    .divide(new BigDecimal(totalClientes), 4, RoundingMode.HALF_UP)
-                    .multiply(new BigDecimal("100"));
-        }
-        return BigDecimal.ZERO;
+        return clienteAnaliticaService.obtenerTasaRetencion();
     }
 
     private Map<String, BigDecimal> calcularVentasPorMedioPago(List<Venta> ventas) {
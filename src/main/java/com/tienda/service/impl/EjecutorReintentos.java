@@ -0,0 +1,120 @@
+package com.tienda.service.impl;
+
+import com.tienda.exception.ConflictoConcurrenciaException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta operaciones de stock y saldo en su propia transacción y las repite cuando
+ * otra escritura concurrente gana la carrera de versión (@Version), con espera
+ * exponencial acotada y jitter. Las escrituras sin conflicto no toman bloqueos.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EjecutorReintentos {
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${reintentos.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${reintentos.espera-base-ms:20}")
+    private long esperaBaseMs;
+
+    @Value("${reintentos.espera-maxima-ms:500}")
+    private long esperaMaximaMs;
+
+    private final Map<String, MetricaOperacion> metricas = new ConcurrentHashMap<>();
+
+    public <T> T ejecutar(String operacion, Supplier<T> accion) {
+        MetricaOperacion metrica = metricas.computeIfAbsent(operacion, k -> new MetricaOperacion());
+        metrica.ejecuciones.increment();
+
+        // Dentro de una transacción del llamador no se puede repetir: el conflicto se propaga
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return accion.get();
+        }
+
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> accion.get());
+            } catch (OptimisticLockingFailureException e) {
+                metrica.conflictos.increment();
+
+                if (intento >= maxIntentos) {
+                    metrica.agotados.increment();
+                    log.warn("Conflicto de concurrencia en {} tras {} intentos", operacion, intento);
+                    throw new ConflictoConcurrenciaException(
+                            "El registro fue modificado por otra operación, intente nuevamente", e);
+                }
+
+                metrica.reintentos.increment();
+                log.debug("Conflicto de versión en {} (intento {}), reintentando", operacion, intento);
+                esperar(intento);
+            }
+        }
+    }
+
+    public void ejecutarSinResultado(String operacion, Runnable accion) {
+        ejecutar(operacion, () -> {
+            accion.run();
+            return null;
+        });
+    }
+
+    public Map<String, Object> obtenerMetricas() {
+        Map<String, Object> resultado = new TreeMap<>();
+        metricas.forEach((operacion, metrica) -> {
+            long ejecuciones = metrica.ejecuciones.sum();
+            long conflictos = metrica.conflictos.sum();
+
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("ejecuciones", ejecuciones);
+            datos.put("conflictos", conflictos);
+            datos.put("reintentos", metrica.reintentos.sum());
+            datos.put("agotados", metrica.agotados.sum());
+            datos.put("tasaConflicto", ejecuciones > 0 ?
+                    BigDecimal.valueOf(conflictos * 100.0 / ejecuciones).setScale(2, RoundingMode.HALF_UP) :
+                    BigDecimal.ZERO);
+            resultado.put(operacion, datos);
+        });
+        return resultado;
+    }
+
+    // Métodos privados auxiliares
+    private void esperar(int intento) {
+        // Techo exponencial acotado; la mitad fija y la otra mitad aleatoria para dispersar reintentos
+        long techo = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intento - 1, 20));
+        long espera = techo / 2 + ThreadLocalRandom.current().nextLong(techo / 2 + 1);
+
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictoConcurrenciaException("Operación interrumpida durante el reintento", e);
+        }
+    }
+
+    private static class MetricaOperacion {
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder conflictos = new LongAdder();
+        private final LongAdder reintentos = new LongAdder();
+        private final LongAdder agotados = new LongAdder();
+    }
+}
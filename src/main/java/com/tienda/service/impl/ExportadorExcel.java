@@ -0,0 +1,244 @@
+package com.tienda.service.impl;
+
+import com.tienda.repository.ExportacionRepository;
+import com.tienda.service.impl.LibroExcelStreaming.Formato;
+import com.tienda.service.impl.LibroExcelStreaming.Hoja;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Exportación a .xlsx en streaming: las filas salen de un cursor JDBC directo a un libro
+ * SXSSF y el libro se escribe sobre la respuesta HTTP, sin pasar por entidades ni por un
+ * byte[] intermedio.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ExportadorExcel {
+
+    private final ExportacionRepository exportacionRepository;
+
+    @Transactional(readOnly = true)
+    public void exportarProductos(OutputStream salida) {
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            int filas = escribirHojaProductos(libro);
+            libro.escribir(salida);
+            log.info("Exportación de productos: {} filas", filas);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo el archivo Excel", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarVentas(LocalDate fechaDesde, LocalDate fechaHasta, OutputStream salida) {
+        LocalDateTime desde = fechaDesde.atStartOfDay();
+        LocalDateTime hasta = fechaHasta.plusDays(1).atStartOfDay();
+
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            Hoja ventas = libro.crearHoja("Ventas")
+                    .columna("Factura", Formato.TEXTO, 16)
+                    .columna("Fecha", Formato.FECHA_HORA, 18)
+                    .columna("Cliente", Formato.TEXTO, 30)
+                    .columna("Documento", Formato.TEXTO, 16)
+                    .columna("Vendedor", Formato.TEXTO, 24)
+                    .columna("Subtotal", Formato.MONEDA, 14)
+                    .columna("Descuento", Formato.MONEDA, 14)
+                    .columna("IVA", Formato.MONEDA, 14)
+                    .columna("Total", Formato.MONEDA, 14)
+                    .columna("Forma de pago", Formato.TEXTO, 16)
+                    .columna("Estado", Formato.TEXTO, 14);
+            exportacionRepository.recorrerVentas(desde, hasta, rs -> ventas.fila(
+                    rs.getString("numero_factura"), rs.getTimestamp("fecha_emision"),
+                    rs.getString("cliente_nombre"), rs.getString("cliente_documento"),
+                    rs.getString("vendedor_nombre"), rs.getBigDecimal("subtotal"),
+                    rs.getBigDecimal("descuento_total"), rs.getBigDecimal("iva_total"),
+                    rs.getBigDecimal("total"), rs.getString("forma_pago"), rs.getString("estado")));
+
+            Hoja detalle = libro.crearHoja("Detalle")
+                    .columna("Factura", Formato.TEXTO, 16)
+                    .columna("Fecha", Formato.FECHA_HORA, 18)
+                    .columna("Estado venta", Formato.TEXTO, 14)
+                    .columna("Código", Formato.TEXTO, 16)
+                    .columna("Producto", Formato.TEXTO, 36)
+                    .columna("Cantidad", Formato.DECIMAL, 12)
+                    .columna("Precio unitario", Formato.MONEDA, 14)
+                    .columna("Costo unitario", Formato.MONEDA, 14)
+                    .columna("Subtotal", Formato.MONEDA, 14)
+                    .columna("Total", Formato.MONEDA, 14);
+            exportacionRepository.recorrerDetallesVenta(desde, hasta, rs -> detalle.fila(
+                    rs.getString("numero_factura"), rs.getTimestamp("fecha_emision"),
+                    rs.getString("estado"), rs.getString("codigo_producto"), rs.getString("nombre_producto"),
+                    rs.getBigDecimal("cantidad"), rs.getBigDecimal("precio_unitario"),
+                    rs.getBigDecimal("costo_unitario"), rs.getBigDecimal("subtotal"), rs.getBigDecimal("total")));
+
+            Hoja resumen = libro.crearHoja("Resumen diario")
+                    .columna("Fecha", Formato.FECHA, 12)
+                    .columna("Ventas", Formato.ENTERO, 10)
+                    .columna("Subtotal", Formato.MONEDA, 14)
+                    .columna("Descuentos", Formato.MONEDA, 14)
+                    .columna("IVA", Formato.MONEDA, 14)
+                    .columna("Total", Formato.MONEDA, 14);
+            for (Map<String, Object> dia : exportacionRepository.obtenerResumenVentasPorDia(desde, hasta)) {
+                resumen.fila(dia.get("fecha"), dia.get("cantidad"), dia.get("subtotal"),
+                        dia.get("descuentos"), dia.get("iva"), dia.get("total"));
+            }
+
+            libro.escribir(salida);
+            log.info("Exportación de ventas {} - {}: {} ventas, {} líneas",
+                    fechaDesde, fechaHasta, ventas.getFilasEscritas(), detalle.getFilasEscritas());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo el archivo Excel", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarInventario(OutputStream salida) {
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            int filas = escribirHojaProductos(libro);
+
+            Hoja categorias = libro.crearHoja("Por categoría")
+                    .columna("Categoría", Formato.TEXTO, 28)
+                    .columna("Productos", Formato.ENTERO, 10)
+                    .columna("Unidades", Formato.DECIMAL, 14)
+                    .columna("Valor costo", Formato.MONEDA, 16)
+                    .columna("Valor venta", Formato.MONEDA, 16)
+                    .columna("Con alerta", Formato.ENTERO, 10);
+            for (Map<String, Object> fila : exportacionRepository.obtenerResumenInventarioPorCategoria()) {
+                categorias.fila(fila.get("categoria"), fila.get("productos"), fila.get("unidades"),
+                        fila.get("valorcosto"), fila.get("valorventa"), fila.get("conalerta"));
+            }
+
+            libro.escribir(salida);
+            log.info("Exportación de inventario: {} productos", filas);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo el archivo Excel", e);
+        }
+    }
+
+    /**
+     * Datos ya calculados de un reporte: cada lista de mapas va a su propia hoja y los
+     * valores simples a una hoja "Resumen".
+     */
+    public byte[] exportarDatos(Map<String, Object> datos, String tipoReporte) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            Hoja resumen = libro.crearHoja("Resumen")
+                    .columna("Concepto", Formato.TEXTO, 30)
+                    .columna("Valor", Formato.DECIMAL, 24);
+            resumen.fila("Reporte", tipoReporte);
+
+            for (Map.Entry<String, Object> entrada : datos.entrySet()) {
+                Object valor = entrada.getValue();
+                if (valor instanceof Collection) {
+                    escribirHojaDatos(libro, entrada.getKey(), (Collection<?>) valor);
+                } else if (!(valor instanceof Map)) {
+                    resumen.fila(entrada.getKey(), valor);
+                }
+            }
+
+            libro.escribir(salida);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo el archivo Excel", e);
+        }
+
+        return salida.toByteArray();
+    }
+
+    // Métodos privados auxiliares
+
+    // Los encabezados coinciden con los que acepta la importación de productos
+    private int escribirHojaProductos(LibroExcelStreaming libro) {
+        Hoja hoja = libro.crearHoja("Productos")
+                .columna("Código", Formato.TEXTO, 16)
+                .columna("Código de barras", Formato.TEXTO, 18)
+                .columna("Nombre", Formato.TEXTO, 36)
+                .columna("Descripción", Formato.TEXTO, 30)
+                .columna("Categoría ID", Formato.ENTERO, 12)
+                .columna("Categoría", Formato.TEXTO, 22)
+                .columna("Proveedor ID", Formato.ENTERO, 12)
+                .columna("Proveedor", Formato.TEXTO, 24)
+                .columna("Marca", Formato.TEXTO, 16)
+                .columna("Unidad medida", Formato.TEXTO, 14)
+                .columna("Stock actual", Formato.DECIMAL, 12)
+                .columna("Stock disponible", Formato.DECIMAL, 12)
+                .columna("Stock mínimo", Formato.DECIMAL, 12)
+                .columna("Stock máximo", Formato.DECIMAL, 12)
+                .columna("Costo promedio", Formato.MONEDA, 14)
+                .columna("Precio venta", Formato.MONEDA, 14)
+                .columna("Estado", Formato.TEXTO, 12)
+                .columna("Alerta stock", Formato.TEXTO, 14)
+                .columna("Ubicación", Formato.TEXTO, 16);
+
+        exportacionRepository.recorrerProductos(rs -> hoja.fila(
+                rs.getString("codigo"), rs.getString("codigo_barras"), rs.getString("nombre"),
+                rs.getString("descripcion"), rs.getObject("categoria_id"), rs.getString("categoria"),
+                rs.getObject("proveedor_id"), rs.getString("proveedor"), rs.getString("marca"),
+                rs.getString("unidad_medida"), rs.getBigDecimal("stock_actual"),
+                rs.getBigDecimal("stock_disponible"), rs.getBigDecimal("stock_minimo"),
+                rs.getBigDecimal("stock_maximo"), rs.getBigDecimal("costo_promedio"),
+                rs.getBigDecimal("precio_venta"), rs.getString("estado"), rs.getString("alerta_stock"),
+                rs.getString("ubicacion")));
+
+        return hoja.getFilasEscritas();
+    }
+
+    private void escribirHojaDatos(LibroExcelStreaming libro, String nombre, Collection<?> filas) {
+        // Nombre de hoja: máximo 31 caracteres y sin caracteres reservados
+        String nombreHoja = nombre.replaceAll("[\\\\/?*\\[\\]:]", " ");
+        Hoja hoja = libro.crearHoja(nombreHoja.length() > 31 ? nombreHoja.substring(0, 31) : nombreHoja);
+
+        List<String> columnas = null;
+        for (Object fila : filas) {
+            if (!(fila instanceof Map)) {
+                if (columnas == null) {
+                    hoja.columna(nombre, Formato.TEXTO, 30);
+                    columnas = Collections.emptyList();
+                }
+                hoja.fila(fila);
+                continue;
+            }
+
+            Map<?, ?> registro = (Map<?, ?>) fila;
+            if (columnas == null) {
+                columnas = new ArrayList<>();
+                for (Map.Entry<?, ?> celda : registro.entrySet()) {
+                    columnas.add(String.valueOf(celda.getKey()));
+                    hoja.columna(String.valueOf(celda.getKey()), formatoPara(celda.getValue()), 18);
+                }
+            }
+
+            Object[] valores = new Object[columnas.size()];
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = registro.get(columnas.get(i));
+            }
+            hoja.fila(valores);
+        }
+    }
+
+    private Formato formatoPara(Object valor) {
+        if (valor instanceof Integer || valor instanceof Long) {
+            return Formato.ENTERO;
+        }
+        if (valor instanceof Number) {
+            return Formato.DECIMAL;
+        }
+        if (valor instanceof LocalDateTime || valor instanceof java.util.Date) {
+            return Formato.FECHA_HORA;
+        }
+        if (valor instanceof LocalDate) {
+            return Formato.FECHA;
+        }
+        return Formato.TEXTO;
+    }
+}
@@ -0,0 +1,313 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.DetalleVentaResponse;
+import com.tienda.dto.response.HistorialClienteResponse;
+import com.tienda.dto.response.VentaResponse;
+import com.tienda.event.VentaRegistradaEvent;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.repository.ClienteMetricasRepository;
+import com.tienda.repository.ClienteRepository;
+import com.tienda.repository.HistorialClienteRepository;
+import com.tienda.service.HistorialClienteService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Historial de compras por cliente y resumen para la ficha de caja. El historial se pagina
+ * por clave (fecha_emision, id): cada página cuesta lo mismo sin importar cuántas ventas
+ * tenga el cliente. El resumen (totales y productos favoritos) se guarda en una caché LRU
+ * acotada y se recarga tras el commit de cada venta del cliente que esté en caché.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HistorialClienteServiceImpl implements HistorialClienteService {
+
+    private static final int TAMANO_MAXIMO_PAGINA = 100;
+    private static final int PRODUCTOS_FAVORITOS = 5;
+
+    private final HistorialClienteRepository historialClienteRepository;
+    private final ClienteMetricasRepository clienteMetricasRepository;
+    private final ClienteRepository clienteRepository;
+
+    @Value("${clientes.resumen.max-entradas:5000}")
+    private int maxEntradas;
+
+    // Orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<Long, Map<String, Object>> resumenes =
+            new LinkedHashMap<Long, Map<String, Object>>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Object>> eldest) {
+                    return size() > maxEntradas;
+                }
+            };
+
+    // Cambia con cada venta: una carga que empezó antes no se guarda (podría ser anterior al commit)
+    private long generacion;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder recargas = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void prepararAlArrancar() {
+        if (historialClienteRepository.estaVacia()) {
+            int filas = historialClienteRepository.reconstruirProductos();
+            if (filas > 0) {
+                log.info("Productos por cliente reconstruidos: {} filas", filas);
+            }
+        }
+    }
+
+    // Antes que la recarga del resumen, que debe leer ya las unidades de esta venta
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void alRegistrarVenta(VentaRegistradaEvent evento) {
+        if (evento.getClienteId() != null) {
+            historialClienteRepository.registrarProductos(evento.getClienteId(),
+                    evento.getUnidadesPorProducto(), evento.isAnulacion());
+        }
+    }
+
+    // Última: las métricas y los productos del cliente ya están confirmados
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void refrescarResumen(VentaRegistradaEvent evento) {
+        if (evento.getClienteId() == null) {
+            return;
+        }
+
+        boolean estaba;
+        long actual;
+        synchronized (resumenes) {
+            generacion++;
+            actual = generacion;
+            estaba = resumenes.remove(evento.getClienteId()) != null;
+        }
+        // Solo se recargan los clientes que alguien está consultando
+        if (estaba) {
+            almacenar(evento.getClienteId(), cargarResumen(evento.getClienteId()), actual);
+            recargas.increment();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public HistorialClienteResponse obtenerHistorial(Long clienteId, String cursor, int tamano, boolean incluirDetalles) {
+        if (tamano < 1 || tamano > TAMANO_MAXIMO_PAGINA) {
+            throw new ValidacionException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO_PAGINA);
+        }
+        if (!clienteRepository.existsById(clienteId)) {
+            throw new ResourceNotFoundException("Cliente no encontrado con ID: " + clienteId);
+        }
+
+        LocalDateTime fecha = null;
+        Long id = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] partes = decodificarCursor(cursor);
+            fecha = LocalDateTime.parse(partes[0]);
+            id = Long.valueOf(partes[1]);
+        }
+
+        // Una fila de más indica si hay página siguiente
+        List<Map<String, Object>> filas = historialClienteRepository.obtenerCabeceras(clienteId, fecha, id, tamano + 1);
+        boolean hayMas = filas.size() > tamano;
+        if (hayMas) {
+            filas = filas.subList(0, tamano);
+        }
+
+        List<VentaResponse> ventas = new ArrayList<>(filas.size());
+        for (Map<String, Object> fila : filas) {
+            ventas.add(convertirACabecera(clienteId, fila));
+        }
+
+        if (incluirDetalles && !ventas.isEmpty()) {
+            Map<Long, VentaResponse> porId = new HashMap<>();
+            List<Long> ids = new ArrayList<>(ventas.size());
+            for (VentaResponse venta : ventas) {
+                venta.setDetalles(new ArrayList<>());
+                porId.put(venta.getId(), venta);
+                ids.add(venta.getId());
+            }
+            for (Map<String, Object> detalle : historialClienteRepository.obtenerDetalles(ids)) {
+                porId.get(((Number) detalle.get("venta_id")).longValue()).getDetalles().add(convertirADetalle(detalle));
+            }
+        }
+
+        VentaResponse ultima = ventas.isEmpty() ? null : ventas.get(ventas.size() - 1);
+        return HistorialClienteResponse.builder()
+                .clienteId(clienteId)
+                .ventas(ventas)
+                .siguienteCursor(hayMas ? codificarCursor(ultima.getFechaEmision(), ultima.getId()) : null)
+                .hayMas(hayMas)
+                .tamano(tamano)
+                .build();
+    }
+
+    @Override
+    public Map<String, Object> obtenerResumen(Long clienteId) {
+        long inicio;
+        synchronized (resumenes) {
+            Map<String, Object> enCache = resumenes.get(clienteId);
+            if (enCache != null) {
+                aciertos.increment();
+                return enCache;
+            }
+            inicio = generacion;
+        }
+
+        fallos.increment();
+        if (!clienteRepository.existsById(clienteId)) {
+            throw new ResourceNotFoundException("Cliente no encontrado con ID: " + clienteId);
+        }
+        Map<String, Object> resumen = cargarResumen(clienteId);
+        almacenar(clienteId, resumen, inicio);
+        return resumen;
+    }
+
+    @Override
+    public Map<String, Object> obtenerMetricasCache() {
+        long totalAciertos = aciertos.sum();
+        long consultas = totalAciertos + fallos.sum();
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        synchronized (resumenes) {
+            metricas.put("entradas", resumenes.size());
+        }
+        metricas.put("maxEntradas", maxEntradas);
+        metricas.put("aciertos", totalAciertos);
+        metricas.put("fallos", fallos.sum());
+        metricas.put("recargas", recargas.sum());
+        metricas.put("tasaAciertos", consultas > 0 ?
+                BigDecimal.valueOf(totalAciertos * 100.0 / consultas).setScale(2, RoundingMode.HALF_UP) :
+                BigDecimal.ZERO);
+        return metricas;
+    }
+
+    // Métodos privados auxiliares
+    private Map<String, Object> cargarResumen(Long clienteId) {
+        Map<String, Object> metricas = clienteMetricasRepository.obtenerMetricas(clienteId);
+
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("clienteId", clienteId);
+        resumen.put("compras", metricas != null ? metricas.get("compras") : 0);
+        resumen.put("totalCompras", metricas != null ? metricas.get("total") : BigDecimal.ZERO);
+        resumen.put("ticketPromedio", metricas != null ? metricas.get("ticket_promedio") : BigDecimal.ZERO);
+        resumen.put("primeraCompra", metricas != null ? fecha(metricas.get("primera_compra")) : null);
+        resumen.put("ultimaCompra", metricas != null ? fecha(metricas.get("ultima_compra")) : null);
+        resumen.put("frecuenciaDias", metricas != null ? metricas.get("frecuencia_dias") : null);
+        resumen.put("segmento", metricas != null ? metricas.get("segmento") : null);
+
+        List<Map<String, Object>> favoritos = new ArrayList<>();
+        for (Map<String, Object> fila : historialClienteRepository.obtenerProductosFavoritos(clienteId, PRODUCTOS_FAVORITOS)) {
+            Map<String, Object> producto = new LinkedHashMap<>();
+            producto.put("productoId", fila.get("producto_id"));
+            producto.put("codigo", fila.get("codigo"));
+            producto.put("nombre", fila.get("nombre"));
+            producto.put("precioVenta", fila.get("precio_venta"));
+            producto.put("veces", fila.get("veces"));
+            producto.put("unidades", fila.get("unidades"));
+            producto.put("ultimaCompra", fecha(fila.get("ultima_compra")));
+            favoritos.add(Collections.unmodifiableMap(producto));
+        }
+        resumen.put("productosFavoritos", Collections.unmodifiableList(favoritos));
+        resumen.put("fechaActualizacion", LocalDateTime.now());
+        return Collections.unmodifiableMap(resumen);
+    }
+
+    private void almacenar(Long clienteId, Map<String, Object> resumen, long generacionLeida) {
+        synchronized (resumenes) {
+            if (generacion == generacionLeida) {
+                resumenes.put(clienteId, resumen);
+            }
+        }
+    }
+
+    private VentaResponse convertirACabecera(Long clienteId, Map<String, Object> fila) {
+        return VentaResponse.builder()
+                .id(((Number) fila.get("id")).longValue())
+                .numeroFactura((String) fila.get("numero_factura"))
+                .clienteId(clienteId)
+                .clienteNombre((String) fila.get("cliente_nombre"))
+                .clienteDocumento((String) fila.get("cliente_documento"))
+                .vendedorId(fila.get("vendedor_id") != null ? ((Number) fila.get("vendedor_id")).longValue() : null)
+                .vendedorNombre((String) fila.get("vendedor_nombre"))
+                .cajaId(fila.get("caja_id") != null ? ((Number) fila.get("caja_id")).longValue() : null)
+                .sucursalId(fila.get("sucursal_id") != null ? ((Number) fila.get("sucursal_id")).longValue() : null)
+                .fechaEmision(fecha(fila.get("fecha_emision")))
+                .subtotal((BigDecimal) fila.get("subtotal"))
+                .descuentoTotal((BigDecimal) fila.get("descuento_total"))
+                .ivaTotal((BigDecimal) fila.get("iva_total"))
+                .total((BigDecimal) fila.get("total"))
+                .formaPago((String) fila.get("forma_pago"))
+                .estadoPago((String) fila.get("estado_pago"))
+                .estado((String) fila.get("estado"))
+                .build();
+    }
+
+    private DetalleVentaResponse convertirADetalle(Map<String, Object> fila) {
+        return DetalleVentaResponse.builder()
+                .id(((Number) fila.get("id")).longValue())
+                .productoId(((Number) fila.get("producto_id")).longValue())
+                .codigoProducto((String) fila.get("codigo_producto"))
+                .nombreProducto((String) fila.get("nombre_producto"))
+                .cantidad((BigDecimal) fila.get("cantidad"))
+                .precioUnitario((BigDecimal) fila.get("precio_unitario"))
+                .descuentoUnitario((BigDecimal) fila.get("descuento_unitario"))
+                .ivaValor((BigDecimal) fila.get("iva_valor"))
+                .subtotal((BigDecimal) fila.get("subtotal"))
+                .total((BigDecimal) fila.get("total"))
+                .build();
+    }
+
+    private LocalDateTime fecha(Object valor) {
+        return valor != null ? ((Timestamp) valor).toLocalDateTime() : null;
+    }
+
+    // El cursor es opaco para el cliente: "fecha|id" en Base64 URL
+    private String codificarCursor(LocalDateTime fecha, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((fecha + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodificarCursor(String cursor) {
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            LocalDateTime.parse(partes[0]);
+            Long.parseLong(partes[1]);
+            return partes;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidacionException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.request.ProductoRequest;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Categoria;
+import com.tienda.model.Producto;
+import com.tienda.model.Proveedor;
+import com.tienda.repository.CategoriaRepository;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.repository.ProveedorRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importación de productos desde .xlsx en streaming: la hoja se recorre con el modelo
+ * SAX de POI (sin cargar el libro en memoria) y las filas se aplican en lotes, cada uno
+ * en su propia transacción, resolviendo los códigos existentes con una consulta por lote.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ImportadorProductosExcel {
+
+    private static final int TAMANO_LOTE = 500;
+    private static final int MAX_ERRORES_REPORTE = 1000;
+
+    // Encabezado normalizado (minúsculas, sin tildes ni separadores) -> campo de ProductoRequest
+    private static final Map<String, String> COLUMNAS = new HashMap<>();
+
+    static {
+        for (String campo : Arrays.asList("codigo", "codigoBarras", "nombre", "descripcion", "categoriaId",
+                "subcategoria", "marca", "modelo", "stockActual", "stockMinimo", "stockMaximo", "precioVenta",
+                "costoPromedio", "precioVenta2", "precioVenta3", "unidadMedida", "tipoProducto",
+                "permiteDecimal", "proveedorId", "ubicacion", "estado")) {
+            COLUMNAS.put(normalizar(campo), campo);
+        }
+        COLUMNAS.put("codigodebarras", "codigoBarras");
+        COLUMNAS.put("ean", "codigoBarras");
+        COLUMNAS.put("precio", "precioVenta");
+        COLUMNAS.put("costo", "costoPromedio");
+        COLUMNAS.put("stock", "stockActual");
+    }
+
+    private final ProductoRepository productoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final ProveedorRepository proveedorRepository;
+    private final EjecutorReintentos ejecutorReintentos;
+    private final Validator validator;
+
+    public Map<String, Object> importar(MultipartFile archivo) {
+        String nombreArchivo = archivo.getOriginalFilename();
+        if (archivo.isEmpty() || nombreArchivo == null || !nombreArchivo.toLowerCase().endsWith(".xlsx")) {
+            throw new ValidacionException("Debe adjuntar un archivo Excel (.xlsx)");
+        }
+
+        long inicio = System.currentTimeMillis();
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        File temporal = null;
+
+        // Desde un archivo en disco POI lee el paquete sin descomprimirlo entero en memoria
+        try {
+            temporal = File.createTempFile("importacion-productos-", ".xlsx");
+            archivo.transferTo(temporal);
+
+            try (OPCPackage paquete = OPCPackage.open(temporal, PackageAccess.READ)) {
+                XSSFReader lector = new XSSFReader(paquete);
+                ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(paquete);
+                StylesTable estilos = lector.getStylesTable();
+
+                Iterator<InputStream> hojas = lector.getSheetsData();
+                if (!hojas.hasNext()) {
+                    throw new ValidacionException("El archivo no contiene hojas");
+                }
+
+                // Solo se importa la primera hoja
+                try (InputStream hoja = hojas.next()) {
+                    ManejadorFilas manejador = new ManejadorFilas(resultado);
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            estilos, textos, manejador, new FormatoValoresCrudos(), false));
+                    parser.parse(new InputSource(hoja));
+                    manejador.procesarPendientes();
+                }
+            }
+        } catch (ValidacionException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error leyendo archivo de importación {}: {}", nombreArchivo, e.getMessage());
+            throw new ValidacionException("No se pudo leer el archivo Excel: " + e.getMessage());
+        } finally {
+            if (temporal != null) {
+                try {
+                    Files.deleteIfExists(temporal.toPath());
+                } catch (Exception e) {
+                    log.warn("No se pudo eliminar el temporal {}", temporal);
+                }
+            }
+        }
+
+        log.info("Importación {}: {} filas, {} creados, {} actualizados, {} con error",
+                nombreArchivo, resultado.totalFilas, resultado.creados, resultado.actualizados, resultado.conErrores);
+
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("archivo", nombreArchivo);
+        respuesta.put("totalFilas", resultado.totalFilas);
+        respuesta.put("creados", resultado.creados);
+        respuesta.put("actualizados", resultado.actualizados);
+        respuesta.put("conErrores", resultado.conErrores);
+        respuesta.put("errores", resultado.errores);
+        respuesta.put("erroresNoListados", Math.max(0, resultado.conErrores - resultado.errores.size()));
+        respuesta.put("tiempoMs", System.currentTimeMillis() - inicio);
+
+        return respuesta;
+    }
+
+    // ============ PROCESAMIENTO POR LOTES ============
+
+    private void procesarLote(List<FilaImportacion> filas, ResultadoImportacion resultado) {
+        List<FilaImportacion> validas = new ArrayList<>(filas.size());
+        for (FilaImportacion fila : filas) {
+            if (fila.errores.isEmpty()) {
+                validas.add(fila);
+            } else {
+                resultado.registrarError(fila);
+            }
+        }
+        if (validas.isEmpty()) {
+            return;
+        }
+
+        try {
+            ResultadoLote lote = ejecutorReintentos.ejecutar("producto.importarLote", () -> aplicarLote(validas));
+            resultado.creados += lote.creados;
+            resultado.actualizados += lote.actualizados;
+            lote.rechazadas.forEach((fila, errores) -> {
+                fila.errores.addAll(errores);
+                resultado.registrarError(fila);
+            });
+        } catch (Exception e) {
+            log.warn("Lote de importación rechazado: {}", e.getMessage());
+            for (FilaImportacion fila : validas) {
+                fila.errores.add("Lote rechazado por la base de datos: " + e.getMessage());
+                resultado.registrarError(fila);
+            }
+        }
+    }
+
+    private ResultadoLote aplicarLote(List<FilaImportacion> filas) {
+        ResultadoLote lote = new ResultadoLote();
+
+        // Existentes por código y por código de barras, categorías y proveedores: una consulta cada uno
+        Map<String, Producto> porCodigo = productoRepository.findByCodigoIn(
+                filas.stream().map(f -> f.request.getCodigo()).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Producto::getCodigo, Function.identity()));
+
+        Set<String> codigosBarras = filas.stream()
+                .map(f -> f.request.getCodigoBarras())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Producto> porCodigoBarras = codigosBarras.isEmpty() ? new HashMap<>() :
+                productoRepository.findByCodigoBarrasIn(codigosBarras).stream()
+                        .collect(Collectors.toMap(Producto::getCodigoBarras, Function.identity(), (a, b) -> a));
+
+        Map<Long, Categoria> categorias = categoriaRepository.findAllById(filas.stream()
+                .map(f -> f.request.getCategoriaId()).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Categoria::getId, Function.identity()));
+        Map<Long, Proveedor> proveedores = proveedorRepository.findAllById(filas.stream()
+                .map(f -> f.request.getProveedorId()).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Proveedor::getId, Function.identity()));
+
+        List<Producto> aGuardar = new ArrayList<>(filas.size());
+        for (FilaImportacion fila : filas) {
+            ProductoRequest request = fila.request;
+            Producto existente = porCodigo.get(request.getCodigo());
+
+            // Los errores se acumulan aparte: si el lote se reintenta, la fila se evalúa de nuevo
+            List<String> errores = new ArrayList<>();
+            if (request.getCategoriaId() != null && !categorias.containsKey(request.getCategoriaId())) {
+                errores.add("Categoría no encontrada: " + request.getCategoriaId());
+            }
+            if (request.getProveedorId() != null && !proveedores.containsKey(request.getProveedorId())) {
+                errores.add("Proveedor no encontrado: " + request.getProveedorId());
+            }
+            if (request.getCodigoBarras() != null) {
+                Producto conBarras = porCodigoBarras.get(request.getCodigoBarras());
+                if (conBarras != null && !conBarras.getCodigo().equals(request.getCodigo())) {
+                    errores.add("El código de barras ya pertenece al producto " + conBarras.getCodigo());
+                }
+            }
+            if (!errores.isEmpty()) {
+                lote.rechazadas.put(fila, errores);
+                continue;
+            }
+
+            Categoria categoria = categorias.get(request.getCategoriaId());
+            Proveedor proveedor = proveedores.get(request.getProveedorId());
+
+            Producto producto;
+            if (existente != null) {
+                producto = existente;
+                actualizar(producto, request, categoria, proveedor);
+                lote.actualizados++;
+            } else {
+                producto = crear(request, categoria, proveedor);
+                lote.creados++;
+            }
+            producto.calcularEstadoStock();
+            aGuardar.add(producto);
+
+            // Filas posteriores del mismo lote con el mismo código actualizan este producto
+            porCodigo.put(producto.getCodigo(), producto);
+            if (producto.getCodigoBarras() != null) {
+                porCodigoBarras.put(producto.getCodigoBarras(), producto);
+            }
+        }
+
+        productoRepository.saveAll(aGuardar);
+        return lote;
+    }
+
+    private Producto crear(ProductoRequest request, Categoria categoria, Proveedor proveedor) {
+        return Producto.builder()
+                .codigo(request.getCodigo())
+                .codigoBarras(request.getCodigoBarras())
+                .nombre(request.getNombre())
+                .descripcion(request.getDescripcion())
+                .categoria(categoria)
+                .subcategoria(request.getSubcategoria())
+                .marca(request.getMarca())
+                .modelo(request.getModelo())
+                .stockActual(request.getStockActual() != null ? request.getStockActual() : BigDecimal.ZERO)
+                .stockMinimo(request.getStockMinimo() != null ? request.getStockMinimo() : new BigDecimal("5"))
+                .stockMaximo(request.getStockMaximo())
+                .precioVenta(request.getPrecioVenta())
+                .costoPromedio(request.getCostoPromedio() != null ? request.getCostoPromedio() : BigDecimal.ZERO)
+                .precioVenta2(request.getPrecioVenta2())
+                .precioVenta3(request.getPrecioVenta3())
+                .unidadMedida(request.getUnidadMedida() != null ? request.getUnidadMedida() : "UNIDAD")
+                .tipoProducto(request.getTipoProducto() != null ?
+                        Producto.TipoProducto.valueOf(request.getTipoProducto()) : Producto.TipoProducto.NORMAL)
+                .permiteDecimal(request.getPermiteDecimal() != null ? request.getPermiteDecimal() : false)
+                .proveedor(proveedor)
+                .ubicacion(request.getUbicacion())
+                .estado(request.getEstado() != null ?
+                        Producto.EstadoProducto.valueOf(request.getEstado()) : Producto.EstadoProducto.ACTIVO)
+                .build();
+    }
+
+    // El stock actual de un producto existente no se toca: sus cambios pasan por el kardex
+    private void actualizar(Producto producto, ProductoRequest request, Categoria categoria, Proveedor proveedor) {
+        producto.setNombre(request.getNombre());
+        producto.setPrecioVenta(request.getPrecioVenta());
+        if (request.getCodigoBarras() != null) producto.setCodigoBarras(request.getCodigoBarras());
+        if (request.getDescripcion() != null) producto.setDescripcion(request.getDescripcion());
+        if (categoria != null) producto.setCategoria(categoria);
+        if (request.getSubcategoria() != null) producto.setSubcategoria(request.getSubcategoria());
+        if (request.getMarca() != null) producto.setMarca(request.getMarca());
+        if (request.getModelo() != null) producto.setModelo(request.getModelo());
+        if (request.getStockMinimo() != null) producto.setStockMinimo(request.getStockMinimo());
+        if (request.getStockMaximo() != null) producto.setStockMaximo(request.getStockMaximo());
+        if (request.getCostoPromedio() != null) producto.setCostoPromedio(request.getCostoPromedio());
+        if (request.getPrecioVenta2() != null) producto.setPrecioVenta2(request.getPrecioVenta2());
+        if (request.getPrecioVenta3() != null) producto.setPrecioVenta3(request.getPrecioVenta3());
+        if (request.getUnidadMedida() != null) producto.setUnidadMedida(request.getUnidadMedida());
+        if (request.getTipoProducto() != null) {
+            producto.setTipoProducto(Producto.TipoProducto.valueOf(request.getTipoProducto()));
+        }
+        if (request.getPermiteDecimal() != null) producto.setPermiteDecimal(request.getPermiteDecimal());
+        if (proveedor != null) producto.setProveedor(proveedor);
+        if (request.getUbicacion() != null) producto.setUbicacion(request.getUbicacion());
+        if (request.getEstado() != null) {
+            producto.setEstado(Producto.EstadoProducto.valueOf(request.getEstado()));
+        }
+    }
+
+    // ============ LECTURA DE FILAS ============
+
+    private FilaImportacion convertirFila(int numeroFila, Map<Integer, String> celdas, Map<Integer, String> encabezados) {
+        FilaImportacion fila = new FilaImportacion(numeroFila);
+        ProductoRequest request = fila.request;
+
+        encabezados.forEach((columna, campo) -> {
+            String valor = celdas.get(columna);
+            if (valor == null || valor.trim().isEmpty()) {
+                return;
+            }
+            try {
+                asignarCampo(request, campo, valor.trim());
+            } catch (IllegalArgumentException e) {
+                fila.errores.add(campo + ": valor inválido '" + valor.trim() + "'");
+            }
+        });
+
+        for (ConstraintViolation<ProductoRequest> violacion : validator.validate(request)) {
+            fila.errores.add(violacion.getMessage());
+        }
+        if (request.getPrecioVenta() != null && request.getPrecioVenta().signum() <= 0) {
+            fila.errores.add("El precio de venta debe ser mayor a cero");
+        }
+
+        return fila;
+    }
+
+    private void asignarCampo(ProductoRequest request, String campo, String valor) {
+        switch (campo) {
+            case "codigo": request.setCodigo(valor); break;
+            case "codigoBarras": request.setCodigoBarras(valor); break;
+            case "nombre": request.setNombre(valor); break;
+            case "descripcion": request.setDescripcion(valor); break;
+            case "categoriaId": request.setCategoriaId(entero(valor)); break;
+            case "subcategoria": request.setSubcategoria(valor); break;
+            case "marca": request.setMarca(valor); break;
+            case "modelo": request.setModelo(valor); break;
+            case "stockActual": request.setStockActual(decimal(valor)); break;
+            case "stockMinimo": request.setStockMinimo(decimal(valor)); break;
+            case "stockMaximo": request.setStockMaximo(decimal(valor)); break;
+            case "precioVenta": request.setPrecioVenta(decimal(valor)); break;
+            case "costoPromedio": request.setCostoPromedio(decimal(valor)); break;
+            case "precioVenta2": request.setPrecioVenta2(decimal(valor)); break;
+            case "precioVenta3": request.setPrecioVenta3(decimal(valor)); break;
+            case "unidadMedida": request.setUnidadMedida(valor.toUpperCase()); break;
+            case "tipoProducto":
+                request.setTipoProducto(Producto.TipoProducto.valueOf(valor.toUpperCase()).name());
+                break;
+            case "permiteDecimal": request.setPermiteDecimal(booleano(valor)); break;
+            case "proveedorId": request.setProveedorId(entero(valor)); break;
+            case "ubicacion": request.setUbicacion(valor); break;
+            case "estado":
+                request.setEstado(Producto.EstadoProducto.valueOf(valor.toUpperCase()).name());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static BigDecimal decimal(String valor) {
+        String limpio = valor.replace(" ", "");
+        if (limpio.indexOf(',') >= 0 && limpio.indexOf('.') < 0) {
+            limpio = limpio.replace(',', '.');
+        }
+        return new BigDecimal(limpio);
+    }
+
+    // "1.5" no es un id: se informa como error de la fila, no como excepción aritmética
+    private static Long entero(String valor) {
+        try {
+            return decimal(valor).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(valor, e);
+        }
+    }
+
+    private static Boolean booleano(String valor) {
+        String v = normalizar(valor);
+        if (Arrays.asList("si", "s", "true", "verdadero", "1", "x").contains(v)) return true;
+        if (Arrays.asList("no", "n", "false", "falso", "0").contains(v)) return false;
+        throw new IllegalArgumentException(valor);
+    }
+
+    private static String normalizar(String texto) {
+        return Normalizer.normalize(texto, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replaceAll("[^A-Za-z0-9]", "")
+                .toLowerCase();
+    }
+
+    /**
+     * Recibe las celdas de la hoja fila por fila; solo retiene el lote en curso.
+     */
+    private class ManejadorFilas implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final ResultadoImportacion resultado;
+        private final Map<Integer, String> encabezados = new HashMap<>();
+        private final Map<Integer, String> celdas = new HashMap<>();
+        private final List<FilaImportacion> lote = new ArrayList<>(TAMANO_LOTE);
+        private final Set<String> codigosLote = new HashSet<>();
+        private boolean encabezadoLeido;
+        private int columnaActual;
+
+        private ManejadorFilas(ResultadoImportacion resultado) {
+            this.resultado = resultado;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            celdas.clear();
+            columnaActual = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            columnaActual = cellReference != null ? new CellReference(cellReference).getCol() : columnaActual + 1;
+            celdas.put(columnaActual, formattedValue);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (celdas.values().stream().allMatch(v -> v == null || v.trim().isEmpty())) {
+                return;
+            }
+
+            if (!encabezadoLeido) {
+                celdas.forEach((columna, titulo) -> {
+                    String campo = titulo != null ? COLUMNAS.get(normalizar(titulo)) : null;
+                    if (campo != null) {
+                        encabezados.put(columna, campo);
+                    }
+                });
+                if (!encabezados.containsValue("codigo") || !encabezados.containsValue("nombre")
+                        || !encabezados.containsValue("precioVenta")) {
+                    throw new ValidacionException(
+                            "El encabezado debe incluir al menos las columnas codigo, nombre y precioVenta");
+                }
+                encabezadoLeido = true;
+                return;
+            }
+
+            resultado.totalFilas++;
+            FilaImportacion fila = convertirFila(rowNum + 1, celdas, encabezados);
+            if (fila.request.getCodigo() != null && !codigosLote.add(fila.request.getCodigo())) {
+                // Mismo código repetido dentro del lote: se aplica en el siguiente para que no se pisen
+                procesarPendientes();
+                codigosLote.add(fila.request.getCodigo());
+            }
+            lote.add(fila);
+
+            if (lote.size() >= TAMANO_LOTE) {
+                procesarPendientes();
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            // Sin uso
+        }
+
+        private void procesarPendientes() {
+            if (!lote.isEmpty()) {
+                procesarLote(new ArrayList<>(lote), resultado);
+                lote.clear();
+                codigosLote.clear();
+            }
+        }
+    }
+
+    /**
+     * Devuelve los números sin formato de presentación (miles, moneda) para poder
+     * convertirlos a BigDecimal; las fechas conservan su formato.
+     */
+    private static class FormatoValoresCrudos extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString,
+                                            boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString)) {
+                return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+            }
+            return NumberToTextConverter.toText(value);
+        }
+    }
+
+    private static class FilaImportacion {
+        private final int numeroFila;
+        private final ProductoRequest request = new ProductoRequest();
+        private final List<String> errores = new ArrayList<>();
+
+        private FilaImportacion(int numeroFila) {
+            this.numeroFila = numeroFila;
+        }
+    }
+
+    private static class ResultadoLote {
+        private int creados;
+        private int actualizados;
+        private final Map<FilaImportacion, List<String>> rechazadas = new LinkedHashMap<>();
+    }
+
+    private static class ResultadoImportacion {
+        private int totalFilas;
+        private int creados;
+        private int actualizados;
+        private int conErrores;
+        private final List<Map<String, Object>> errores = new ArrayList<>();
+
+        private void registrarError(FilaImportacion fila) {
+            conErrores++;
+            if (errores.size() < MAX_ERRORES_REPORTE) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("fila", fila.numeroFila);
+                error.put("codigo", fila.request.getCodigo());
+                error.put("errores", new ArrayList<>(fila.errores));
+                errores.add(error);
+            }
+        }
+    }
+}
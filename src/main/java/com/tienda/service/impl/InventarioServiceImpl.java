@@ -1,5 +1,6 @@
 package com.tienda.service.impl;
 
+import com.tienda.dto.request.AjusteStockMasivoRequest;
 import com.tienda.dto.response.EstadoStockResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.exception.ResourceNotFoundException;
@@ -7,7 +8,9 @@ import com.tienda.exception.StockInsuficienteException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.*;
 import com.tienda.repository.*;
+import com.tienda.service.AlertaStockService;
 import com.tienda.service.InventarioService;
+import com.tienda.service.ReordenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -30,11 +33,14 @@ public class InventarioServiceImpl implements InventarioService {
     private final MovimientoInventarioRepository movimientoInventarioRepository;
     private final UsuarioRepository usuarioRepository;
     private final CategoriaRepository categoriaRepository;
+    private final AlertaStockService alertaStockService;
+    private final ReordenService reordenService;
+    private final EjecutorReintentos ejecutorReintentos;
 
     @Override
     @Transactional(readOnly = true)
     public List<EstadoStockResponse> obtenerInventarioConEstados() {
-        List<Producto> productos = productoRepository.findAll();
+        List<Producto> productos = productoRepository.findAllConRelaciones();
         return productos.stream()
                 .map(this::convertirAEstadoStockResponse)
                 .collect(Collectors.toList());
@@ -43,7 +49,7 @@ public class InventarioServiceImpl implements InventarioService {
     @Override
     @Transactional(readOnly = true)
     public PaginacionResponse<EstadoStockResponse> obtenerInventarioPaginado(Pageable pageable) {
-        Page<Producto> productosPage = productoRepository.findAll(pageable);
+        Page<Producto> productosPage = productoRepository.findAllConRelaciones(pageable);
 
         List<EstadoStockResponse> estados = productosPage.getContent().stream()
                 .map(this::convertirAEstadoStockResponse)
@@ -60,20 +66,13 @@ public class InventarioServiceImpl implements InventarioService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<EstadoStockResponse> obtenerAlertasStock() {
-        // ✅ CORREGIDO: Usando Arrays.asList() para Java 8
-        List<Producto.AlertaStock> alertas = Arrays.asList(
+        // Se sirve desde el índice en memoria, mantenido por las transiciones de alerta
+        return alertaStockService.obtenerProductosEnAlerta(
                 Producto.AlertaStock.BAJO,
                 Producto.AlertaStock.CRITICO,
                 Producto.AlertaStock.AGOTADO
         );
-
-        List<Producto> productos = productoRepository.findByAlertaStockIn(alertas);
-
-        return productos.stream()
-                .map(this::convertirAEstadoStockResponse)
-                .collect(Collectors.toList());
     }
 
     @Override
@@ -181,99 +180,186 @@ public class InventarioServiceImpl implements InventarioService {
     }
 
     @Override
-    @Transactional
     public EstadoStockResponse ajustarStock(Long productoId, BigDecimal cantidad,
                                             String motivo, String tipoAjuste, Long usuarioId) {
 
-        Producto producto = obtenerProducto(productoId);
-        Usuario usuario = obtenerUsuario(usuarioId);
+        return ejecutorReintentos.ejecutar("inventario.ajustarStock", () -> {
+            Producto producto = obtenerProducto(productoId);
+            Usuario usuario = obtenerUsuario(usuarioId);
 
-        BigDecimal cantidadAnterior = producto.getStockActual();
-        BigDecimal cantidadNueva;
+            BigDecimal cantidadAnterior = producto.getStockActual();
+            String tipoUpper = tipoAjuste != null ? tipoAjuste.toUpperCase() : "";
+            BigDecimal cantidadNueva = calcularCantidadAjustada(cantidadAnterior, cantidad, tipoUpper);
 
-        String tipoUpper = tipoAjuste != null ? tipoAjuste.toUpperCase() : "";
+            producto.setStockActual(cantidadNueva);
+            producto.calcularEstadoStock();
 
-        switch (tipoUpper) {
-            case "INCREMENTO":
-                cantidadNueva = cantidadAnterior.add(cantidad);
-                break;
-            case "DECREMENTO":
-                if (cantidadAnterior.compareTo(cantidad) < 0) {
-                    throw new StockInsuficienteException(
-                            "No hay suficiente stock para decrementar. Disponible: " +
-                                    cantidadAnterior + ", Requerido: " + cantidad);
-                }
-                cantidadNueva = cantidadAnterior.subtract(cantidad);
-                break;
-            case "FIJO":
-                cantidadNueva = cantidad;
-                break;
-            default:
-                throw new ValidacionException("Tipo de ajuste inválido: " + tipoAjuste);
-        }
+            // Registrar movimiento
+            registrarMovimientoInventario(producto, tipoUpper, cantidad,
+                    cantidadAnterior, cantidadNueva, motivo, usuario);
 
-        producto.setStockActual(cantidadNueva);
-        producto.calcularEstadoStock();
+            Producto productoActualizado = productoRepository.save(producto);
 
-        // Registrar movimiento
-        registrarMovimientoInventario(producto, tipoUpper, cantidad,
-                cantidadAnterior, cantidadNueva, motivo, usuario);
-
-        Producto productoActualizado = productoRepository.save(producto);
-
-        return convertirAEstadoStockResponse(productoActualizado);
+            return convertirAEstadoStockResponse(productoActualizado);
+        });
     }
 
     @Override
-    @Transactional
     public EstadoStockResponse incrementarStock(Long productoId, BigDecimal cantidad,
                                                 String motivo, Long usuarioId) {
         return ajustarStock(productoId, cantidad, motivo, "INCREMENTO", usuarioId);
     }
 
     @Override
-    @Transactional
     public EstadoStockResponse decrementarStock(Long productoId, BigDecimal cantidad,
                                                 String motivo, Long usuarioId) {
         return ajustarStock(productoId, cantidad, motivo, "DECREMENTO", usuarioId);
     }
 
     @Override
-    @Transactional
-    public void reservarStock(Long productoId, BigDecimal cantidad) {
-        Producto producto = obtenerProducto(productoId);
+    public Map<String, Object> ajustarStockMasivo(AjusteStockMasivoRequest request) {
+        return ejecutorReintentos.ejecutar("inventario.ajustarStockMasivo", () -> aplicarAjusteMasivo(request));
+    }
 
-        if (!producto.tieneStockSuficiente(cantidad)) {
-            throw new StockInsuficienteException(
-                    "Stock insuficiente para reservar. Disponible: " +
-                            producto.getStockDisponible() + ", Requerido: " + cantidad);
+    private Map<String, Object> aplicarAjusteMasivo(AjusteStockMasivoRequest request) {
+        Usuario usuario = obtenerUsuario(request.getUsuarioId());
+        List<AjusteStockMasivoRequest.ItemAjusteRequest> ajustes = request.getAjustes();
+
+        // Cargar todos los productos del lote en una sola consulta
+        Set<Long> ids = ajustes.stream()
+                .map(AjusteStockMasivoRequest.ItemAjusteRequest::getProductoId)
+                .collect(Collectors.toSet());
+        Map<Long, Producto> productos = productoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, p -> p));
+
+        if (productos.size() != ids.size()) {
+            List<Long> faltantes = ids.stream()
+                    .filter(id -> !productos.containsKey(id))
+                    .sorted()
+                    .collect(Collectors.toList());
+            throw new ResourceNotFoundException("Productos no encontrados: " + faltantes);
         }
 
-        producto.reservarStock(cantidad);
-        productoRepository.save(producto);
+        // Estado previo de cada producto, para recalcular alertas y valoración una sola vez
+        Map<Long, Producto.AlertaStock> alertasAnteriores = new HashMap<>();
+        Map<Long, BigDecimal> stockInicial = new HashMap<>();
+        productos.values().forEach(p -> {
+            alertasAnteriores.put(p.getId(), p.getAlertaStock());
+            stockInicial.put(p.getId(), p.getStockActual());
+        });
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<MovimientoInventario> movimientos = new ArrayList<>(ajustes.size());
+
+        // Aplicar los ajustes en memoria; un mismo producto puede repetirse en el lote
+        for (AjusteStockMasivoRequest.ItemAjusteRequest item : ajustes) {
+            Producto producto = productos.get(item.getProductoId());
+            String tipoUpper = item.getTipoAjuste().toUpperCase();
+
+            BigDecimal cantidadAnterior = producto.getStockActual();
+            BigDecimal cantidadNueva = calcularCantidadAjustada(
+                    cantidadAnterior, item.getCantidad(), tipoUpper);
+            producto.setStockActual(cantidadNueva);
+
+            movimientos.add(MovimientoInventario.builder()
+                    .producto(producto)
+                    .tipoMovimiento(tipoUpper)
+                    .subtipo("MASIVO")
+                    .documentoNumero(request.getDocumentoNumero())
+                    .cantidad(item.getCantidad())
+                    .cantidadAnterior(cantidadAnterior)
+                    .cantidadNueva(cantidadNueva)
+                    .costoUnitario(producto.getCostoPromedio())
+                    .precioUnitario(producto.getPrecioVenta())
+                    .motivo(item.getMotivo())
+                    .usuario(usuario)
+                    .fechaMovimiento(ahora)
+                    .build());
+        }
 
-        log.info("Stock reservado: Producto {}, Cantidad: {}",
-                producto.getCodigo(), cantidad);
+        // Recalcular estado de stock una vez por producto y acumular la variación de valoración
+        BigDecimal variacionValorCosto = BigDecimal.ZERO;
+        BigDecimal variacionValorVenta = BigDecimal.ZERO;
+        List<Map<String, Object>> cambiosAlerta = new ArrayList<>();
+
+        for (Producto producto : productos.values()) {
+            producto.calcularEstadoStock();
+
+            BigDecimal diferencia = producto.getStockActual().subtract(stockInicial.get(producto.getId()));
+            variacionValorCosto = variacionValorCosto.add(diferencia.multiply(
+                    producto.getCostoPromedio() != null ? producto.getCostoPromedio() : BigDecimal.ZERO));
+            variacionValorVenta = variacionValorVenta.add(diferencia.multiply(producto.getPrecioVenta()));
+
+            Producto.AlertaStock alertaAnterior = alertasAnteriores.get(producto.getId());
+            if (alertaAnterior != producto.getAlertaStock()) {
+                Map<String, Object> cambio = new HashMap<>();
+                cambio.put("productoId", producto.getId());
+                cambio.put("codigo", producto.getCodigo());
+                cambio.put("alertaAnterior", alertaAnterior != null ? alertaAnterior.name() : null);
+                cambio.put("alertaNueva", producto.getAlertaStock().name());
+                cambiosAlerta.add(cambio);
+            }
+        }
+
+        // Actualizaciones de productos en lotes JDBC (hibernate.jdbc.batch_size) y movimientos por lote
+        productoRepository.saveAll(productos.values());
+        productoRepository.flush();
+        movimientoInventarioRepository.insertarEnLote(movimientos);
+
+        log.info("Ajuste masivo de stock: {} líneas, {} productos, {} cambios de alerta - Usuario: {}",
+                ajustes.size(), productos.size(), cambiosAlerta.size(), usuario.getUsername());
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("lineasProcesadas", ajustes.size());
+        resultado.put("productosAfectados", productos.size());
+        resultado.put("movimientosRegistrados", movimientos.size());
+        resultado.put("variacionValorCosto", variacionValorCosto);
+        resultado.put("variacionValorVenta", variacionValorVenta);
+        resultado.put("cambiosAlerta", cambiosAlerta);
+        resultado.put("documentoNumero", request.getDocumentoNumero());
+        resultado.put("fecha", ahora);
+
+        return resultado;
+    }
+
+    @Override
+    public void reservarStock(Long productoId, BigDecimal cantidad) {
+        ejecutorReintentos.ejecutarSinResultado("inventario.reservarStock", () -> {
+            Producto producto = obtenerProducto(productoId);
+
+            if (!producto.tieneStockSuficiente(cantidad)) {
+                throw new StockInsuficienteException(
+                        "Stock insuficiente para reservar. Disponible: " +
+                                producto.getStockDisponible() + ", Requerido: " + cantidad);
+            }
+
+            producto.reservarStock(cantidad);
+            productoRepository.save(producto);
+
+            log.info("Stock reservado: Producto {}, Cantidad: {}",
+                    producto.getCodigo(), cantidad);
+        });
     }
 
     @Override
-    @Transactional
     public void liberarStock(Long productoId, BigDecimal cantidad) {
-        Producto producto = obtenerProducto(productoId);
+        ejecutorReintentos.ejecutarSinResultado("inventario.liberarStock", () -> {
+            Producto producto = obtenerProducto(productoId);
 
-        BigDecimal stockReservado = producto.getStockReservado() != null ?
-                producto.getStockReservado() : BigDecimal.ZERO;
+            BigDecimal stockReservado = producto.getStockReservado() != null ?
+                    producto.getStockReservado() : BigDecimal.ZERO;
 
-        if (stockReservado.compareTo(cantidad) < 0) {
-            throw new ValidacionException(
-                    "No hay suficiente stock reservado para liberar");
-        }
+            if (stockReservado.compareTo(cantidad) < 0) {
+                throw new ValidacionException(
+                        "No hay suficiente stock reservado para liberar");
+            }
 
-        producto.liberarStock(cantidad);
-        productoRepository.save(producto);
+            producto.liberarStock(cantidad);
+            productoRepository.save(producto);
 
-        log.info("Stock liberado: Producto {}, Cantidad: {}",
-                producto.getCodigo(), cantidad);
+            log.info("Stock liberado: Producto {}, Cantidad: {}",
+                    producto.getCodigo(), cantidad);
+        });
     }
 
     @Override
@@ -286,7 +372,8 @@ public class InventarioServiceImpl implements InventarioService {
     @Override
     @Transactional(readOnly = true)
     public List<EstadoStockResponse> obtenerProductosParaReorden() {
-        List<Producto> productos = productoRepository.findProductosParaReorden();
+        // Punto de reorden dinámico según la velocidad de venta de cada producto
+        List<Producto> productos = reordenService.obtenerProductosBajoPuntoReorden();
         return productos.stream()
                 .map(this::convertirAEstadoStockResponse)
                 .collect(Collectors.toList());
@@ -357,6 +444,29 @@ public class InventarioServiceImpl implements InventarioService {
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
     }
 
+    private BigDecimal calcularCantidadAjustada(BigDecimal cantidadAnterior, BigDecimal cantidad,
+                                                String tipoAjuste) {
+        // Una cantidad negativa saltaría la comprobación de stock o dejaría el stock bajo cero
+        if (cantidad == null || cantidad.signum() < 0) {
+            throw new ValidacionException("La cantidad del ajuste no puede ser negativa");
+        }
+        switch (tipoAjuste) {
+            case "INCREMENTO":
+                return cantidadAnterior.add(cantidad);
+            case "DECREMENTO":
+                if (cantidadAnterior.compareTo(cantidad) < 0) {
+                    throw new StockInsuficienteException(
+                            "No hay suficiente stock para decrementar. Disponible: " +
+                                    cantidadAnterior + ", Requerido: " + cantidad);
+                }
+                return cantidadAnterior.subtract(cantidad);
+            case "FIJO":
+                return cantidad;
+            default:
+                throw new ValidacionException("Tipo de ajuste inválido: " + tipoAjuste);
+        }
+    }
+
     private EstadoStockResponse convertirAEstadoStockResponse(Producto producto) {
         return EstadoStockResponse.builder()
                 .id(producto.getId())
@@ -0,0 +1,194 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.KardexResponse;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Producto;
+import com.tienda.model.SaldoInventario;
+import com.tienda.repository.MovimientoInventarioRepository;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.repository.SaldoInventarioRepository;
+import com.tienda.service.KardexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KardexServiceImpl implements KardexService {
+
+    private final ProductoRepository productoRepository;
+    private final MovimientoInventarioRepository movimientoInventarioRepository;
+    private final SaldoInventarioRepository saldoInventarioRepository;
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public BigDecimal calcularStockEnFecha(Long productoId, LocalDateTime fecha) {
+        return resolverSaldo(obtenerProducto(productoId), fecha).cantidad;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<String, Object> obtenerStockEnFecha(Long productoId, LocalDateTime fecha) {
+        Producto producto = obtenerProducto(productoId);
+        SaldoCalculado saldo = resolverSaldo(producto, fecha);
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("productoId", producto.getId());
+        resultado.put("codigo", producto.getCodigo());
+        resultado.put("nombre", producto.getNombre());
+        resultado.put("fecha", fecha);
+        resultado.put("stock", saldo.cantidad);
+        resultado.put("origen", saldo.origen);
+        resultado.put("fechaSaldoBase", saldo.fechaBase);
+
+        return resultado;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public KardexResponse obtenerKardex(Long productoId, LocalDateTime fechaDesde, LocalDateTime fechaHasta) {
+        if (fechaDesde.isAfter(fechaHasta)) {
+            throw new ValidacionException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+
+        Producto producto = obtenerProducto(productoId);
+        SaldoCalculado saldoInicial = resolverSaldo(producto, fechaDesde);
+
+        List<MovimientoInventario> movimientos =
+                movimientoInventarioRepository.findKardex(productoId, fechaDesde, fechaHasta);
+
+        BigDecimal saldo = saldoInicial.cantidad;
+        BigDecimal totalEntradas = BigDecimal.ZERO;
+        BigDecimal totalSalidas = BigDecimal.ZERO;
+        List<KardexResponse.MovimientoKardex> lineas = new ArrayList<>(movimientos.size());
+
+        for (MovimientoInventario movimiento : movimientos) {
+            BigDecimal variacion = variacion(movimiento);
+            BigDecimal entrada = variacion.signum() > 0 ? variacion : BigDecimal.ZERO;
+            BigDecimal salida = variacion.signum() < 0 ? variacion.negate() : BigDecimal.ZERO;
+
+            saldo = saldo.add(variacion);
+            totalEntradas = totalEntradas.add(entrada);
+            totalSalidas = totalSalidas.add(salida);
+
+            lineas.add(KardexResponse.MovimientoKardex.builder()
+                    .id(movimiento.getId())
+                    .fecha(movimiento.getFechaMovimiento())
+                    .tipoMovimiento(movimiento.getTipoMovimiento())
+                    .subtipo(movimiento.getSubtipo())
+                    .documentoNumero(movimiento.getDocumentoNumero())
+                    .motivo(movimiento.getMotivo())
+                    .entrada(entrada)
+                    .salida(salida)
+                    .saldo(saldo)
+                    .costoUnitario(movimiento.getCostoUnitario())
+                    .usuario(movimiento.getUsuario() != null ? movimiento.getUsuario().getUsername() : null)
+                    .build());
+        }
+
+        return KardexResponse.builder()
+                .productoId(producto.getId())
+                .codigo(producto.getCodigo())
+                .nombre(producto.getNombre())
+                .fechaDesde(fechaDesde)
+                .fechaHasta(fechaHasta)
+                .saldoInicial(saldoInicial.cantidad)
+                .saldoFinal(saldo)
+                .totalEntradas(totalEntradas)
+                .totalSalidas(totalSalidas)
+                .fechaSaldoBase(saldoInicial.fechaBase)
+                .movimientos(lineas)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public int generarSaldos(LocalDate fechaCorte) {
+        // El saldo es el stock actual: guardarlo bajo otro día falsearía el kardex de ese día
+        if (!fechaCorte.equals(LocalDate.now())) {
+            throw new ValidacionException("Solo se puede generar el saldo del día actual (" +
+                    LocalDate.now() + "); la fecha de corte recibida fue " + fechaCorte);
+        }
+
+        saldoInventarioRepository.bloquearMovimientos();
+        int generados = saldoInventarioRepository.generarSaldos(fechaCorte);
+        log.info("Saldos de inventario generados para {}: {}", fechaCorte, generados);
+        return generados;
+    }
+
+    @Override
+    @Scheduled(cron = "${inventario.saldos.cron:0 55 23 * * *}")
+    @Transactional
+    public void generarSaldosDiarios() {
+        generarSaldos(LocalDate.now());
+    }
+
+    // Métodos privados auxiliares
+    private Producto obtenerProducto(Long productoId) {
+        return productoRepository.findById(productoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
+    }
+
+    /**
+     * Stock en un instante: último saldo de cierre anterior más el delta de movimientos
+     * desde entonces. Sin saldo previo se parte del stock actual y se descuenta hacia atrás;
+     * REPEATABLE_READ hace que el stock y los movimientos se lean de la misma instantánea.
+     */
+    private SaldoCalculado resolverSaldo(Producto producto, LocalDateTime fecha) {
+        Optional<SaldoInventario> saldoBase = saldoInventarioRepository
+                .findFirstByProductoIdAndFechaSaldoLessThanEqualOrderByFechaSaldoDesc(producto.getId(), fecha);
+
+        if (saldoBase.isPresent()) {
+            SaldoInventario base = saldoBase.get();
+            // Saldos anteriores al ancla por id solo se pueden continuar por fecha
+            BigDecimal variacion = base.getUltimoMovimientoId() != null ?
+                    movimientoInventarioRepository.calcularVariacionDesdeSaldo(
+                            producto.getId(), base.getUltimoMovimientoId(), base.getFechaSaldo(), fecha) :
+                    movimientoInventarioRepository.calcularVariacionStock(
+                            producto.getId(), base.getFechaSaldo(), fecha);
+            return new SaldoCalculado(base.getCantidad().add(variacion), base.getFechaSaldo(), "SALDO_CIERRE");
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (!fecha.isBefore(ahora)) {
+            return new SaldoCalculado(producto.getStockActual(), ahora, "STOCK_ACTUAL");
+        }
+
+        BigDecimal variacion = movimientoInventarioRepository.calcularVariacionStock(
+                producto.getId(), fecha, ahora);
+        return new SaldoCalculado(producto.getStockActual().subtract(variacion), ahora, "STOCK_ACTUAL");
+    }
+
+    private BigDecimal variacion(MovimientoInventario movimiento) {
+        BigDecimal nueva = movimiento.getCantidadNueva() != null ? movimiento.getCantidadNueva() : BigDecimal.ZERO;
+        BigDecimal anterior = movimiento.getCantidadAnterior() != null ? movimiento.getCantidadAnterior() : BigDecimal.ZERO;
+        return nueva.subtract(anterior);
+    }
+
+    private static class SaldoCalculado {
+        private final BigDecimal cantidad;
+        private final LocalDateTime fechaBase;
+        private final String origen;
+
+        private SaldoCalculado(BigDecimal cantidad, LocalDateTime fechaBase, String origen) {
+            this.cantidad = cantidad;
+            this.fechaBase = fechaBase;
+            this.origen = origen;
+        }
+    }
+}
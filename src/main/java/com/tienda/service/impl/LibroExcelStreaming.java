@@ -0,0 +1,167 @@
+package com.tienda.service.impl;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Libro .xlsx en streaming (SXSSF): solo las últimas filas de cada hoja viven en memoria,
+ * el resto se vuelca a temporales comprimidos. Los estilos se crean una vez por libro y
+ * se comparten entre hojas.
+ */
+public class LibroExcelStreaming implements AutoCloseable {
+
+    private static final int VENTANA_FILAS = 100;
+
+    public enum Formato {
+        TEXTO, ENTERO, DECIMAL, MONEDA, FECHA, FECHA_HORA
+    }
+
+    private final SXSSFWorkbook libro;
+    private final CellStyle estiloEncabezado;
+    private final Map<Formato, CellStyle> estilos = new EnumMap<>(Formato.class);
+    private final List<Hoja> hojas = new ArrayList<>();
+
+    public LibroExcelStreaming() {
+        libro = new SXSSFWorkbook(VENTANA_FILAS);
+        libro.setCompressTempFiles(true);
+
+        DataFormat formatos = libro.createDataFormat();
+        Font negrita = libro.createFont();
+        negrita.setBold(true);
+
+        estiloEncabezado = libro.createCellStyle();
+        estiloEncabezado.setFont(negrita);
+        estiloEncabezado.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        estiloEncabezado.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        estiloEncabezado.setBorderBottom(BorderStyle.THIN);
+
+        estilos.put(Formato.TEXTO, null);
+        estilos.put(Formato.ENTERO, crearEstilo(formatos, "#,##0"));
+        estilos.put(Formato.DECIMAL, crearEstilo(formatos, "#,##0.###"));
+        estilos.put(Formato.MONEDA, crearEstilo(formatos, "#,##0.00"));
+        estilos.put(Formato.FECHA, crearEstilo(formatos, "yyyy-mm-dd"));
+        estilos.put(Formato.FECHA_HORA, crearEstilo(formatos, "yyyy-mm-dd hh:mm"));
+    }
+
+    public Hoja crearHoja(String nombre) {
+        Hoja hoja = new Hoja(libro.createSheet(nombre));
+        hojas.add(hoja);
+        return hoja;
+    }
+
+    public void escribir(OutputStream salida) throws IOException {
+        for (Hoja hoja : hojas) {
+            hoja.finalizar();
+        }
+        libro.write(salida);
+        salida.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Elimina los temporales de las hojas
+        libro.dispose();
+        libro.close();
+    }
+
+    private CellStyle crearEstilo(DataFormat formatos, String patron) {
+        CellStyle estilo = libro.createCellStyle();
+        estilo.setDataFormat(formatos.getFormat(patron));
+        return estilo;
+    }
+
+    public class Hoja {
+
+        private final SXSSFSheet hoja;
+        private final List<String> titulos = new ArrayList<>();
+        private final List<Formato> formatos = new ArrayList<>();
+        private boolean encabezadoEscrito;
+        private int filaActual;
+
+        private Hoja(SXSSFSheet hoja) {
+            this.hoja = hoja;
+        }
+
+        public Hoja columna(String titulo, Formato formato, int anchoCaracteres) {
+            hoja.setColumnWidth(titulos.size(), anchoCaracteres * 256);
+            titulos.add(titulo);
+            formatos.add(formato);
+            return this;
+        }
+
+        public void fila(Object... valores) {
+            escribirEncabezado();
+            Row fila = hoja.createRow(filaActual++);
+
+            for (int i = 0; i < valores.length; i++) {
+                Object valor = valores[i];
+                if (valor == null) {
+                    continue;
+                }
+
+                Cell celda = fila.createCell(i);
+                Formato formato = i < formatos.size() ? formatos.get(i) : Formato.TEXTO;
+
+                if (valor instanceof Number) {
+                    celda.setCellValue(((Number) valor).doubleValue());
+                } else if (valor instanceof Timestamp) {
+                    celda.setCellValue(((Timestamp) valor).toLocalDateTime());
+                } else if (valor instanceof java.sql.Date) {
+                    celda.setCellValue(((java.sql.Date) valor).toLocalDate());
+                } else if (valor instanceof LocalDateTime) {
+                    celda.setCellValue((LocalDateTime) valor);
+                } else if (valor instanceof LocalDate) {
+                    celda.setCellValue((LocalDate) valor);
+                } else if (valor instanceof Boolean) {
+                    celda.setCellValue((Boolean) valor ? "SI" : "NO");
+                    continue;
+                } else {
+                    celda.setCellValue(valor.toString());
+                    continue;
+                }
+
+                CellStyle estilo = estilos.get(formato);
+                if (estilo != null) {
+                    celda.setCellStyle(estilo);
+                }
+            }
+        }
+
+        public int getFilasEscritas() {
+            return Math.max(0, filaActual - 1);
+        }
+
+        private void escribirEncabezado() {
+            if (encabezadoEscrito || titulos.isEmpty()) {
+                return;
+            }
+            Row encabezado = hoja.createRow(filaActual++);
+            for (int i = 0; i < titulos.size(); i++) {
+                Cell celda = encabezado.createCell(i);
+                celda.setCellValue(titulos.get(i));
+                celda.setCellStyle(estiloEncabezado);
+            }
+            hoja.createFreezePane(0, 1);
+            encabezadoEscrito = true;
+        }
+
+        private void finalizar() {
+            escribirEncabezado();
+            if (!titulos.isEmpty() && filaActual > 1) {
+                hoja.setAutoFilter(new CellRangeAddress(0, filaActual - 1, 0, titulos.size() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.tienda.service.impl;
+
+import com.tienda.event.CajaEstadoCambiadoEvent;
+import com.tienda.exception.ConflictoConcurrenciaException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Caja;
+import com.tienda.model.Usuario;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Transiciones de estado de las cajas como actualizaciones condicionales: cada UPDATE exige el
+ * estado y la versión que se leyeron, así que de dos operaciones simultáneas sobre la misma caja
+ * solo una se aplica y la otra recibe un conflicto con el estado actual, sin reintentos. Un
+ * índice único parcial impide que un usuario tenga dos cajas abiertas. Las ventas y movimientos
+ * toman un bloqueo compartido sobre la caja abierta, de modo que el cierre espera a los que están
+ * en curso y los que llegan después ven la caja ya cerrada.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MaquinaEstadosCaja {
+
+    private static final Set<Caja.EstadoCaja> NO_ABIERTA =
+            EnumSet.of(Caja.EstadoCaja.CERRADA, Caja.EstadoCaja.BLOQUEADA, Caja.EstadoCaja.EN_AUDITORIA);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public void abrir(Caja caja, Usuario usuario, BigDecimal saldoInicial) {
+        try {
+            transicion(caja, "abrir", EnumSet.of(Caja.EstadoCaja.CERRADA), Caja.EstadoCaja.ABIERTA,
+                    ", usuario_asignado_id = ?, fecha_apertura = now(), fecha_cierre = NULL, " +
+                    "saldo_inicial = COALESCE(?, saldo_inicial), saldo_actual = COALESCE(?, saldo_actual)",
+                    usuario.getId(), saldoInicial, saldoInicial);
+        } catch (DuplicateKeyException e) {
+            throw new ValidacionException("El usuario " + usuario.getNombreCompleto() + " ya tiene otra caja abierta");
+        }
+    }
+
+    public void cerrar(Caja caja) {
+        transicion(caja, "cerrar", EnumSet.of(Caja.EstadoCaja.ABIERTA), Caja.EstadoCaja.CERRADA,
+                ", fecha_cierre = now()");
+    }
+
+    // Rechazo de un cierre: la caja vuelve a abrirse con el mismo usuario y la misma sesión
+    public void reabrir(Caja caja) {
+        try {
+            transicion(caja, "reabrir", EnumSet.of(Caja.EstadoCaja.CERRADA), Caja.EstadoCaja.ABIERTA,
+                    ", fecha_cierre = NULL");
+        } catch (DuplicateKeyException e) {
+            throw new ValidacionException("El usuario de la caja " + caja.getNombre() + " ya tiene otra caja abierta");
+        }
+    }
+
+    public void bloquear(Caja caja) {
+        transicion(caja, "bloquear",
+                EnumSet.of(Caja.EstadoCaja.CERRADA, Caja.EstadoCaja.ABIERTA, Caja.EstadoCaja.EN_AUDITORIA),
+                Caja.EstadoCaja.BLOQUEADA, "");
+    }
+
+    public void desbloquear(Caja caja) {
+        transicion(caja, "desbloquear", EnumSet.of(Caja.EstadoCaja.BLOQUEADA), Caja.EstadoCaja.CERRADA, "");
+    }
+
+    // El usuario asignado solo cambia con la caja sin abrir; usuario null lo desasigna
+    public void asignarUsuario(Caja caja, Usuario usuario) {
+        transicion(caja, usuario != null ? "asignar usuario a" : "desasignar usuario de", NO_ABIERTA,
+                caja.getEstado(), ", usuario_asignado_id = ?", usuario != null ? usuario.getId() : null);
+    }
+
+    /**
+     * Comprueba que la caja está abierta y la bloquea en modo compartido hasta el final de la
+     * transacción: varias ventas conviven, pero ninguna transición puede aplicarse mientras tanto.
+     */
+    public void bloquearAbierta(Long cajaId) {
+        List<String> estado = jdbcTemplate.queryForList(
+                "SELECT estado FROM cajas WHERE id = ? FOR SHARE", String.class, cajaId);
+        if (estado.isEmpty() || !Caja.EstadoCaja.ABIERTA.name().equals(estado.get(0))) {
+            throw new ValidacionException("La caja no está abierta");
+        }
+    }
+
+    // Métodos privados auxiliares
+    private void transicion(Caja caja, String operacion, Set<Caja.EstadoCaja> origen, Caja.EstadoCaja destino,
+                            String asignaciones, Object... valores) {
+        if (!origen.contains(caja.getEstado())) {
+            throw new ValidacionException("No se puede " + operacion + " la caja " + caja.getNombre() +
+                    " en estado " + caja.getEstado());
+        }
+
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(destino.name());
+        parametros.addAll(Arrays.asList(valores));
+        parametros.add(caja.getId());
+        parametros.add(caja.getEstado().name());
+        parametros.add(caja.getVersion());
+
+        int filas = jdbcTemplate.update("UPDATE cajas SET estado = ?, version = version + 1, actualizado_en = now()" +
+                asignaciones + " WHERE id = ? AND estado = ? AND version = ?", parametros.toArray());
+        if (filas == 0) {
+            List<String> actual = jdbcTemplate.queryForList(
+                    "SELECT estado FROM cajas WHERE id = ?", String.class, caja.getId());
+            throw new ConflictoConcurrenciaException("No se pudo " + operacion + " la caja " + caja.getNombre() +
+                    ": otra operación la dejó en estado " + (actual.isEmpty() ? "ELIMINADA" : actual.get(0)));
+        }
+
+        // La entidad en memoria toma el estado y la versión nuevos
+        entityManager.refresh(caja);
+        eventPublisher.publishEvent(new CajaEstadoCambiadoEvent(caja.getId()));
+        log.debug("Caja {}: {} -> {}", caja.getNombre(), operacion, destino);
+    }
+}
@@ -1,21 +1,29 @@
 package com.tienda.service.impl;
 
+import com.tienda.config.EsquemaBaseDatos;
+import com.tienda.dto.request.ActualizacionPreciosRequest;
 import com.tienda.dto.request.ProductoRequest;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.dto.response.ProductoResponse;
 import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.event.PreciosActualizadosEvent;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.*;
 import com.tienda.repository.*;
+import com.tienda.repository.BusquedaTextoRepository.TablaBusqueda;
+import com.tienda.service.AlertaStockService;
+import com.tienda.service.BusquedaProductoService;
 import com.tienda.service.ProductoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -26,11 +34,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProductoServiceImpl implements ProductoService {
 
+    private static final int LIMITE_BUSQUEDA = 50;
+
     private final ProductoRepository productoRepository;
     private final CategoriaRepository categoriaRepository;
     private final ProveedorRepository proveedorRepository;
     private final MovimientoInventarioRepository movimientoInventarioRepository;
     private final UsuarioRepository usuarioRepository;
+    private final HistorialPrecioRepository historialPrecioRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AlertaStockService alertaStockService;
+    private final EjecutorReintentos ejecutorReintentos;
+    private final ImportadorProductosExcel importadorProductosExcel;
+    private final ExportadorExcel exportadorExcel;
+    private final BusquedaProductoService busquedaProductoService;
+    private final BusquedaTextoRepository busquedaTextoRepository;
+    private final EsquemaBaseDatos esquemaBaseDatos;
 
     @Override
     @Transactional
@@ -233,7 +252,7 @@ public class ProductoServiceImpl implements ProductoService {
     @Override
     @Transactional(readOnly = true)
     public List<ProductoResponse> obtenerTodosProductos() {
-        return productoRepository.findAll().stream()
+        return productoRepository.findAllConRelaciones().stream()
                 .map(this::convertirAResponse)
                 .collect(Collectors.toList());
     }
@@ -241,7 +260,7 @@ public class ProductoServiceImpl implements ProductoService {
     @Override
     @Transactional(readOnly = true)
     public PaginacionResponse<ProductoResponse> obtenerProductosPaginados(Pageable pageable) {
-        Page<Producto> productosPage = productoRepository.findAll(pageable);
+        Page<Producto> productosPage = productoRepository.findAllConRelaciones(pageable);
 
         List<ProductoResponse> productosResponse = productosPage.getContent().stream()
                 .map(this::convertirAResponse)
@@ -262,19 +281,22 @@ public class ProductoServiceImpl implements ProductoService {
     @Override
     @Transactional(readOnly = true)
     public List<ProductoResponse> buscarProductosPorNombre(String nombre) {
-        Page<Producto> productos = productoRepository.buscarConFiltros(
-                null, nombre, null, null, Pageable.unpaged());
-        return productos.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return obtenerEnOrden(busquedaProductoService.buscarIds(nombre, LIMITE_BUSQUEDA, false));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProductoResponse> buscarProductosPorCodigo(String codigo) {
-        Page<Producto> productos = productoRepository.buscarConFiltros(
-                codigo, null, null, null, Pageable.unpaged());
-        return productos.getContent().stream()
+        // Solo código y código de barras, por prefijo; mientras el índice se carga responde la base de datos
+        if (busquedaProductoService.isIndiceConstruido()) {
+            return obtenerEnOrden(busquedaProductoService.buscarIdsPorCodigo(codigo));
+        }
+        if (codigo == null || codigo.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        String patron = codigo.trim().toLowerCase()
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return productoRepository.buscarPorPrefijoCodigo(patron).stream()
                 .map(this::convertirAResponse)
                 .collect(Collectors.toList());
     }
@@ -285,12 +307,27 @@ public class ProductoServiceImpl implements ProductoService {
             String codigo, String nombre, Long categoriaId,
             Producto.EstadoProducto estado, Pageable pageable) {
 
-        Page<Producto> productosPage = productoRepository.buscarConFiltros(
-                codigo, nombre, categoriaId, estado, pageable);
+        Page<?> productosPage;
+        List<ProductoResponse> productosResponse;
 
-        List<ProductoResponse> productosResponse = productosPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        if (esquemaBaseDatos.isBusquedaTextoDisponible()) {
+            // Texto completo + trigramas sobre el nombre; el código es un filtro por prefijo
+            Map<String, Object> filtros = new LinkedHashMap<>();
+            filtros.put("categoria_id", categoriaId);
+            filtros.put("estado", estado != null ? estado.name() : null);
+
+            Page<Long> ids = busquedaTextoRepository.buscar(
+                    TablaBusqueda.PRODUCTOS, nombre, codigo, filtros, pageable);
+            productosPage = ids;
+            productosResponse = obtenerEnOrden(ids.getContent());
+        } else {
+            Page<Producto> pagina = productoRepository.buscarConFiltros(
+                    codigo, nombre, categoriaId, estado, pageable);
+            productosPage = pagina;
+            productosResponse = pagina.getContent().stream()
+                    .map(this::convertirAResponse)
+                    .collect(Collectors.toList());
+        }
 
         return PaginacionResponse.<ProductoResponse>builder()
                 .content(productosResponse)
@@ -303,64 +340,67 @@ public class ProductoServiceImpl implements ProductoService {
     }
 
     @Override
-    @Transactional
     public ProductoResponse ajustarStock(Long productoId, BigDecimal cantidad, String motivo) {
-        Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
-        BigDecimal cantidadAnterior = producto.getStockActual();
-        BigDecimal cantidadNueva = cantidad;
+        return ejecutorReintentos.ejecutar("producto.ajustarStock", () -> {
+            Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
+            BigDecimal cantidadAnterior = producto.getStockActual();
+            BigDecimal cantidadNueva = cantidad;
 
-        producto.setStockActual(cantidadNueva);
-        producto.calcularEstadoStock();
+            producto.setStockActual(cantidadNueva);
+            producto.calcularEstadoStock();
 
-        // Registrar movimiento
-        registrarMovimiento(producto, "AJUSTE", cantidad, cantidadAnterior,
-                cantidadNueva, motivo, 1L);
+            // Registrar movimiento
+            registrarMovimiento(producto, "AJUSTE", cantidad, cantidadAnterior,
+                    cantidadNueva, motivo, 1L);
 
-        producto = productoRepository.save(producto);
+            producto = productoRepository.save(producto);
 
-        return convertirAResponse(producto);
+            return convertirAResponse(producto);
+        });
     }
 
     @Override
-    @Transactional
     public ProductoResponse incrementarStock(Long productoId, BigDecimal cantidad, String motivo) {
-        Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
-        BigDecimal cantidadAnterior = producto.getStockActual();
-        BigDecimal cantidadNueva = cantidadAnterior.add(cantidad);
+        return ejecutorReintentos.ejecutar("producto.incrementarStock", () -> {
+            Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
+            BigDecimal cantidadAnterior = producto.getStockActual();
+            BigDecimal cantidadNueva = cantidadAnterior.add(cantidad);
 
-        producto.setStockActual(cantidadNueva);
-        producto.calcularEstadoStock();
+            producto.setStockActual(cantidadNueva);
+            producto.calcularEstadoStock();
 
-        registrarMovimiento(producto, "ENTRADA", cantidad, cantidadAnterior,
-                cantidadNueva, motivo, 1L);
+            registrarMovimiento(producto, "ENTRADA", cantidad, cantidadAnterior,
+                    cantidadNueva, motivo, 1L);
 
-        producto = productoRepository.save(producto);
+            producto = productoRepository.save(producto);
 
-        return convertirAResponse(producto);
+            return convertirAResponse(producto);
+        });
     }
 
     @Override
-    @Transactional
     public ProductoResponse decrementarStock(Long productoId, BigDecimal cantidad, String motivo) {
-        Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
+        return ejecutorReintentos.ejecutar("producto.decrementarStock", () -> {
+            Producto producto = obtenerEntidadProducto(productoId); // ✅ Cambié 'id' por 'productoId'
 
-        if (!producto.tieneStockSuficiente(cantidad)) {
-            throw new ValidacionException("Stock insuficiente. Disponible: " +
-                    producto.getStockDisponible());
-        }
+            if (!producto.tieneStockSuficiente(cantidad)) {
+                throw new ValidacionException("Stock insuficiente. Disponible: " +
+                        producto.getStockDisponible());
+            }
 
-        BigDecimal cantidadAnterior = producto.getStockActual();
-        BigDecimal cantidadNueva = cantidadAnterior.subtract(cantidad);
+            BigDecimal cantidadAnterior = producto.getStockActual();
+            BigDecimal cantidadNueva = cantidadAnterior.subtract(cantidad);
 
-        producto.setStockActual(cantidadNueva);
-        producto.calcularEstadoStock();
+            producto.setStockActual(cantidadNueva);
+            producto.calcularEstadoStock();
 
-        registrarMovimiento(producto, "SALIDA", cantidad, cantidadAnterior,
-                cantidadNueva, motivo, 1L);
+            registrarMovimiento(producto, "SALIDA", cantidad, cantidadAnterior,
+                    cantidadNueva, motivo, 1L);
 
-        producto = productoRepository.save(producto);
+            producto = productoRepository.save(producto);
 
-        return convertirAResponse(producto);
+            return convertirAResponse(producto);
+        });
     }
 
     @Override
@@ -373,10 +413,20 @@ public class ProductoServiceImpl implements ProductoService {
         }
 
         BigDecimal precioAnterior = producto.getPrecioVenta();
+        BigDecimal margenAnterior = producto.getMargenGanancia();
         producto.setPrecioVenta(nuevoPrecio);
         producto.calcularEstadoStock();
 
         producto = productoRepository.save(producto);
+        historialPrecioRepository.save(HistorialPrecio.builder()
+                .producto(producto)
+                .precioAnterior(precioAnterior)
+                .precioNuevo(nuevoPrecio)
+                .costoPromedio(producto.getCostoPromedio())
+                .margenAnterior(margenAnterior)
+                .margenNuevo(producto.getMargenGanancia())
+                .tipoCambio("MANUAL")
+                .build());
         log.info("Precio actualizado para producto {}: {} -> {}",
                 producto.getCodigo(), precioAnterior, nuevoPrecio);
 
@@ -384,18 +434,67 @@ public class ProductoServiceImpl implements ProductoService {
     }
 
     @Override
-    public Map<String, Object> importarProductosDesdeExcel(MultipartFile archivo) {
-        // Implementación básica - en producción usarías Apache POI
+    @Transactional
+    public Map<String, Object> actualizarPreciosMasivo(ActualizacionPreciosRequest request) {
+        validarActualizacionPrecios(request);
+
+        if (request.getUsuarioId() != null && !usuarioRepository.existsById(request.getUsuarioId())) {
+            throw new ResourceNotFoundException("Usuario no encontrado");
+        }
+
+        String lote = UUID.randomUUID().toString();
+        List<Long> actualizados = productoRepository.actualizarPreciosMasivo(request, lote);
+
+        // Las cachés se refrescan una vez, tras el commit
+        if (!actualizados.isEmpty()) {
+            eventPublisher.publishEvent(new PreciosActualizadosEvent(lote, actualizados));
+        }
+
+        log.info("Actualización masiva de precios {} ({} {}): {} productos",
+                lote, request.getTipoCambio(), request.getValor(), actualizados.size());
+
         Map<String, Object> resultado = new HashMap<>();
-        resultado.put("mensaje", "Importación de Excel pendiente de implementar");
-        resultado.put("archivo", archivo.getOriginalFilename());
+        resultado.put("lote", lote);
+        resultado.put("tipoCambio", request.getTipoCambio());
+        resultado.put("valor", request.getValor());
+        resultado.put("productosActualizados", actualizados.size());
+        resultado.put("fecha", LocalDateTime.now());
         return resultado;
     }
 
     @Override
-    public byte[] exportarProductosAExcel() {
-        // Implementación básica - en producción usarías Apache POI
-        return new byte[0];
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenerHistorialPrecios(Long productoId) {
+        obtenerEntidadProducto(productoId);
+
+        return historialPrecioRepository.findByProductoIdOrdenado(productoId).stream()
+                .map(h -> {
+                    Map<String, Object> fila = new LinkedHashMap<>();
+                    fila.put("id", h.getId());
+                    fila.put("fechaCambio", h.getFechaCambio());
+                    fila.put("precioAnterior", h.getPrecioAnterior());
+                    fila.put("precioNuevo", h.getPrecioNuevo());
+                    fila.put("costoPromedio", h.getCostoPromedio());
+                    fila.put("margenAnterior", h.getMargenAnterior());
+                    fila.put("margenNuevo", h.getMargenNuevo());
+                    fila.put("tipoCambio", h.getTipoCambio());
+                    fila.put("lote", h.getLote());
+                    fila.put("motivo", h.getMotivo());
+                    fila.put("usuario", h.getUsuario() != null ? h.getUsuario().getUsername() : null);
+                    return fila;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Object> importarProductosDesdeExcel(MultipartFile archivo) {
+        // Lectura en streaming y escritura por lotes; cada lote tiene su propia transacción
+        return importadorProductosExcel.importar(archivo);
+    }
+
+    @Override
+    public void exportarProductosAExcel(OutputStream salida) {
+        exportadorExcel.exportarProductos(salida);
     }
 
     @Override
@@ -427,18 +526,50 @@ public class ProductoServiceImpl implements ProductoService {
     @Override
     @Transactional(readOnly = true)
     public Long contarProductosActivos() {
-        return productoRepository.findAll().stream()
-                .filter(p -> p.getEstado() == Producto.EstadoProducto.ACTIVO)
-                .count();
+        return productoRepository.countByEstado(Producto.EstadoProducto.ACTIVO);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Long contarProductosBajoStock() {
-        return (long) productoRepository.findProductosStockBajo().size();
+        return alertaStockService.contarProductosEnAlerta(
+                Producto.AlertaStock.BAJO, Producto.AlertaStock.CRITICO, Producto.AlertaStock.AGOTADO);
     }
 
     // Métodos privados auxiliares
+    private void validarActualizacionPrecios(ActualizacionPreciosRequest request) {
+        List<String> tipos = Arrays.asList("PORCENTAJE", "MONTO", "MARGEN");
+        if (!tipos.contains(request.getTipoCambio())) {
+            throw new ValidacionException("Tipo de cambio inválido. Use: " + String.join(", ", tipos));
+        }
+
+        boolean conAlcance = request.getCategoriaId() != null || request.getProveedorId() != null ||
+                (request.getProductoIds() != null && !request.getProductoIds().isEmpty());
+        if (!conAlcance) {
+            throw new ValidacionException("Indique una categoría, un proveedor o una lista de productos");
+        }
+
+        if ("PORCENTAJE".equals(request.getTipoCambio()) && request.getValor().compareTo(new BigDecimal("-100")) <= 0) {
+            throw new ValidacionException("El porcentaje debe ser mayor a -100");
+        }
+        if ("MARGEN".equals(request.getTipoCambio()) && request.getValor().signum() < 0) {
+            throw new ValidacionException("El margen objetivo no puede ser negativo");
+        }
+    }
+
+    // Carga los productos de la búsqueda en memoria conservando el orden de relevancia
+    private List<ProductoResponse> obtenerEnOrden(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Producto> porId = productoRepository.findAllByIdConRelaciones(ids).stream()
+                .collect(Collectors.toMap(Producto::getId, p -> p));
+        return ids.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .map(this::convertirAResponse)
+                .collect(Collectors.toList());
+    }
+
     private ProductoResponse convertirAResponse(Producto producto) {
         return ProductoResponse.builder()
                 .id(producto.getId())
@@ -1,24 +1,30 @@
 package com.tienda.service.impl;
 
+import com.tienda.config.EsquemaBaseDatos;
 import com.tienda.dto.request.ProveedorRequest;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.dto.response.ProveedorResponse;
 import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.Proveedor;
+import com.tienda.repository.BusquedaTextoRepository;
+import com.tienda.repository.BusquedaTextoRepository.TablaBusqueda;
 import com.tienda.repository.ProveedorRepository;
 import com.tienda.service.ProveedorService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,7 +32,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ProveedorServiceImpl implements ProveedorService {
 
+    private static final int LIMITE_BUSQUEDA = 50;
+
     private final ProveedorRepository proveedorRepository;
+    private final BusquedaTextoRepository busquedaTextoRepository;
+    private final EsquemaBaseDatos esquemaBaseDatos;
 
     @Override
     @Transactional
@@ -65,6 +75,7 @@ public class ProveedorServiceImpl implements ProveedorService {
                 .observaciones(request.getObservaciones())
                 .estado(estado)
                 .diasCredito(request.getDiasCredito() != null ? request.getDiasCredito() : 0)
+                .diasEntrega(request.getDiasEntrega())
                 .limiteCredito(request.getLimiteCredito())
                 .build();
 
@@ -103,6 +114,7 @@ public class ProveedorServiceImpl implements ProveedorService {
         if (request.getDireccion() != null) proveedor.setDireccion(request.getDireccion());
         if (request.getObservaciones() != null) proveedor.setObservaciones(request.getObservaciones());
         if (request.getDiasCredito() != null) proveedor.setDiasCredito(request.getDiasCredito());
+        if (request.getDiasEntrega() != null) proveedor.setDiasEntrega(request.getDiasEntrega());
         if (request.getLimiteCredito() != null) proveedor.setLimiteCredito(request.getLimiteCredito());
 
         // Actualizar estado
@@ -190,11 +202,27 @@ public class ProveedorServiceImpl implements ProveedorService {
     @Override
     @Transactional(readOnly = true)
     public List<ProveedorResponse> buscarProveedoresPorNombre(String nombre) {
-        Page<Proveedor> proveedoresPage = proveedorRepository.buscarConFiltros(
-                nombre, null, null, Pageable.unpaged());
-        return proveedoresPage.getContent().stream()
-                .map(this::convertirAResponse)
-                .collect(Collectors.toList());
+        return buscarProveedores(nombre, null, PageRequest.of(0, LIMITE_BUSQUEDA)).getContent();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginacionResponse<ProveedorResponse> buscarProveedores(String texto, Proveedor.EstadoProveedor estado,
+                                                                   Pageable pageable) {
+        if (!esquemaBaseDatos.isBusquedaTextoDisponible()) {
+            Page<Proveedor> proveedoresPage = proveedorRepository.buscarConFiltros(texto, null, estado, pageable);
+            return construirPagina(proveedoresPage, proveedoresPage.getContent());
+        }
+
+        Page<Long> ids = busquedaTextoRepository.buscar(TablaBusqueda.PROVEEDORES, texto,
+                Collections.singletonMap("estado", estado != null ? estado.name() : null), pageable);
+        Map<Long, Proveedor> porId = proveedorRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Proveedor::getId, p -> p));
+
+        return construirPagina(ids, ids.getContent().stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
     }
 
     @Override
@@ -300,6 +328,7 @@ public class ProveedorServiceImpl implements ProveedorService {
                 .observaciones(proveedor.getObservaciones())
                 .estado(proveedor.getEstado().name())
                 .diasCredito(proveedor.getDiasCredito())
+                .diasEntrega(proveedor.getDiasEntrega())
                 .limiteCredito(proveedor.getLimiteCredito())
                 .totalProductos(proveedor.getProductos().size())
                 .build();
@@ -316,4 +345,15 @@ public class ProveedorServiceImpl implements ProveedorService {
 
         return (double) totalProductos / proveedores.size();
     }
-}
\ No newline at end of file
+
+    private PaginacionResponse<ProveedorResponse> construirPagina(Page<?> pagina, List<Proveedor> proveedores) {
+        return PaginacionResponse.<ProveedorResponse>builder()
+                .content(proveedores.stream().map(this::convertirAResponse).collect(Collectors.toList()))
+                .pageNumber(pagina.getNumber())
+                .pageSize(pagina.getSize())
+                .totalElements(pagina.getTotalElements())
+                .totalPages(pagina.getTotalPages())
+                .last(pagina.isLast())
+                .build();
+    }
+}
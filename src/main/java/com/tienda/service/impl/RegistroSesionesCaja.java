@@ -0,0 +1,135 @@
+package com.tienda.service.impl;
+
+import com.tienda.event.CajaEstadoCambiadoEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sesiones de caja abiertas en memoria, por caja, por usuario y por sucursal, para que las
+ * consultas de "¿qué caja tiene abierta este usuario?" no vayan a la base de datos. Tras el
+ * commit de cada transición se relee la caja afectada y, como respaldo ante escrituras de otra
+ * instancia, todo el registro se recarga de forma periódica. Cada cambio publica una
+ * instantánea nueva: los lectores nunca ven los índices a medio actualizar.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistroSesionesCaja {
+
+    private static final String CONSULTA = "SELECT id, usuario_asignado_id, sucursal_id FROM cajas WHERE estado = 'ABIERTA'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Instantanea instantanea = new Instantanea(Collections.emptyMap());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        recargar();
+    }
+
+    public Optional<Long> obtenerCajaAbiertaPorUsuario(Long usuarioId) {
+        return Optional.ofNullable(instantanea.cajaPorUsuario.get(usuarioId));
+    }
+
+    public boolean estaAbierta(Long cajaId) {
+        return instantanea.sesiones.containsKey(cajaId);
+    }
+
+    public List<Long> obtenerCajasAbiertasPorSucursal(Long sucursalId) {
+        return instantanea.cajasPorSucursal.getOrDefault(sucursalId, Collections.emptyList());
+    }
+
+    public Map<Long, Integer> contarAbiertasPorSucursal() {
+        Map<Long, Integer> conteo = new HashMap<>();
+        instantanea.cajasPorSucursal.forEach((sucursalId, cajas) -> conteo.put(sucursalId, cajas.size()));
+        return conteo;
+    }
+
+    // Serializado con las actualizaciones: la última lectura es siempre la más reciente confirmada
+    public synchronized void recargar() {
+        Map<Long, Sesion> sesiones = new HashMap<>();
+        jdbcTemplate.query(CONSULTA, rs -> {
+            Sesion sesion = leerSesion(rs);
+            sesiones.put(sesion.cajaId, sesion);
+        });
+        instantanea = new Instantanea(sesiones);
+        log.debug("Registro de sesiones de caja recargado: {} abiertas", sesiones.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarEstado(CajaEstadoCambiadoEvent evento) {
+        // Se relee la caja en vez de confiar en el evento: dos commits pueden notificarse en otro orden
+        List<Sesion> filas = jdbcTemplate.query(CONSULTA + " AND id = ?",
+                (rs, i) -> leerSesion(rs), evento.getCajaId());
+
+        Map<Long, Sesion> sesiones = new HashMap<>(instantanea.sesiones);
+        if (filas.isEmpty()) {
+            sesiones.remove(evento.getCajaId());
+        } else {
+            sesiones.put(evento.getCajaId(), filas.get(0));
+        }
+        instantanea = new Instantanea(sesiones);
+    }
+
+    @Scheduled(fixedDelayString = "${cajas.sesiones.refresco-ms:60000}",
+            initialDelayString = "${cajas.sesiones.refresco-ms:60000}")
+    public void refrescarProgramado() {
+        try {
+            recargar();
+        } catch (Exception e) {
+            log.error("Error recargando el registro de sesiones de caja: {}", e.getMessage(), e);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private Sesion leerSesion(ResultSet rs) throws SQLException {
+        long usuarioId = rs.getLong("usuario_asignado_id");
+        Long usuario = rs.wasNull() ? null : usuarioId;
+        return new Sesion(rs.getLong("id"), usuario, rs.getLong("sucursal_id"));
+    }
+
+    private static final class Sesion {
+        private final Long cajaId;
+        private final Long usuarioId;
+        private final Long sucursalId;
+
+        private Sesion(Long cajaId, Long usuarioId, Long sucursalId) {
+            this.cajaId = cajaId;
+            this.usuarioId = usuarioId;
+            this.sucursalId = sucursalId;
+        }
+    }
+
+    // Índices inmutables construidos a partir de las sesiones abiertas
+    private static final class Instantanea {
+        private final Map<Long, Sesion> sesiones;
+        private final Map<Long, Long> cajaPorUsuario = new HashMap<>();
+        private final Map<Long, List<Long>> cajasPorSucursal = new HashMap<>();
+
+        private Instantanea(Map<Long, Sesion> sesiones) {
+            this.sesiones = sesiones;
+            for (Sesion sesion : sesiones.values()) {
+                if (sesion.usuarioId != null) {
+                    cajaPorUsuario.put(sesion.usuarioId, sesion.cajaId);
+                }
+                cajasPorSucursal.computeIfAbsent(sesion.sucursalId, k -> new ArrayList<>()).add(sesion.cajaId);
+            }
+            cajasPorSucursal.replaceAll((sucursalId, cajas) -> Collections.unmodifiableList(cajas));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.SugerenciaCompraResponse;
+import com.tienda.event.VentaRegistradaEvent;
+import com.tienda.model.Producto;
+import com.tienda.model.Proveedor;
+import com.tienda.model.VelocidadVenta;
+import com.tienda.repository.VelocidadVentaRepository;
+import com.tienda.service.ReordenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReordenServiceImpl implements ReordenService {
+
+    private final VelocidadVentaRepository velocidadVentaRepository;
+
+    // Peso del último día en la media exponencial (0.2 ≈ ventana efectiva de 9 días)
+    @Value("${reorden.alfa:0.2}")
+    private double alfa;
+
+    @Value("${reorden.dias-entrega:7}")
+    private int diasEntregaPorDefecto;
+
+    @Value("${reorden.dias-cobertura:14}")
+    private int diasCobertura;
+
+    // Factor z del nivel de servicio (1.65 ≈ 95%)
+    @Value("${reorden.nivel-servicio:1.65}")
+    private double factorServicio;
+
+    @Value("${reorden.dias-arranque:28}")
+    private int diasArranque;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializarAlArrancar() {
+        if (velocidadVentaRepository.count() == 0) {
+            inicializarVelocidades();
+        } else {
+            recalcularPuntos();
+        }
+    }
+
+    @Override
+    @Transactional
+    public int inicializarVelocidades() {
+        LocalDate hoy = LocalDate.now();
+        int inicializados = velocidadVentaRepository.inicializarDesdeVentas(
+                hoy.minusDays(diasArranque).atStartOfDay(), hoy.atStartOfDay(), hoy, diasArranque);
+        log.info("Velocidades de venta inicializadas con {} días de historial: {} productos",
+                diasArranque, inicializados);
+        recalcularPuntos();
+        return inicializados;
+    }
+
+    // Cada noche: la velocidad decae en los productos sin ventas y se aplican cambios de plazo de entrega
+    @Scheduled(cron = "${reorden.cron:0 10 0 * * *}")
+    @Transactional
+    public void recalcularPuntosProgramado() {
+        try {
+            log.info("Puntos de reorden recalculados: {} productos", recalcularPuntos());
+        } catch (Exception e) {
+            log.error("Error recalculando puntos de reorden: {}", e.getMessage(), e);
+        }
+    }
+
+    // Tras el commit de la venta; en orden de id para no cruzar bloqueos entre ventas concurrentes
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void alRegistrarVenta(VentaRegistradaEvent evento) {
+        LocalDate hoy = LocalDate.now();
+
+        // Una anulación de días anteriores ya quedó incorporada a la media; solo se corrige el día en curso
+        if (evento.isAnulacion() && !hoy.equals(evento.getFechaVenta())) {
+            return;
+        }
+
+        Map<Long, BigDecimal> unidades = new TreeMap<>(evento.getUnidadesPorProducto());
+        unidades.forEach((productoId, cantidad) ->
+                velocidadVentaRepository.registrarUnidades(productoId,
+                        evento.isAnulacion() ? cantidad.negate() : cantidad, hoy, alfa));
+
+        // La sugerencia de compra lee estos valores: se mantienen al día con cada venta
+        velocidadVentaRepository.recalcularPuntos(unidades.keySet(), hoy, alfa, factorServicio,
+                diasEntregaPorDefecto, diasCobertura);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SugerenciaCompraResponse> obtenerSugerenciaCompra() {
+        // Dentro de la transacción cada proveedor es una única instancia, válida como clave
+        Map<Proveedor, List<SugerenciaCompraResponse.ItemSugerido>> porProveedor = new LinkedHashMap<>();
+
+        for (CalculoReorden calculo : calcularReorden()) {
+            if (calculo.item.getCantidadSugerida().signum() > 0) {
+                porProveedor.computeIfAbsent(calculo.producto.getProveedor(), k -> new ArrayList<>())
+                        .add(calculo.item);
+            }
+        }
+
+        return porProveedor.entrySet().stream()
+                .map(e -> convertirASugerencia(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparing(SugerenciaCompraResponse::getCostoEstimado).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Producto> obtenerProductosBajoPuntoReorden() {
+        return calcularReorden().stream()
+                .map(c -> c.producto)
+                .collect(Collectors.toList());
+    }
+
+    // Métodos privados auxiliares
+    private int recalcularPuntos() {
+        return velocidadVentaRepository.recalcularTodosLosPuntos(LocalDate.now(), alfa, factorServicio,
+                diasEntregaPorDefecto, diasCobertura);
+    }
+
+    private List<CalculoReorden> calcularReorden() {
+        List<CalculoReorden> calculos = new ArrayList<>();
+
+        for (Object[] fila : velocidadVentaRepository.findBajoPuntoReorden()) {
+            CalculoReorden calculo = calcular((Producto) fila[0], (VelocidadVenta) fila[1]);
+            if (calculo != null) {
+                calculos.add(calculo);
+            }
+        }
+
+        calculos.sort(Comparator.comparing((CalculoReorden c) -> c.item.getDiasCobertura(),
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return calculos;
+    }
+
+    // Sin velocidad (producto sin ventas) rige solo el stock mínimo
+    private CalculoReorden calcular(Producto producto, VelocidadVenta velocidadVenta) {
+        double velocidad = valor(velocidadVenta != null ? velocidadVenta.getVelocidadReorden() : null).doubleValue();
+        BigDecimal stockSeguridad = valor(velocidadVenta != null ? velocidadVenta.getStockSeguridad() : null);
+        BigDecimal stockMinimo = valor(producto.getStockMinimo());
+        BigDecimal puntoReorden = valor(velocidadVenta != null ? velocidadVenta.getPuntoReorden() : null)
+                .max(stockMinimo);
+
+        BigDecimal disponible = producto.getStockDisponible() != null ?
+                producto.getStockDisponible() : producto.getStockActual();
+        if (disponible == null) {
+            disponible = BigDecimal.ZERO;
+        }
+        if (disponible.compareTo(puntoReorden) > 0) {
+            return null;
+        }
+
+        BigDecimal objetivo = puntoReorden.add(
+                valor(velocidadVenta != null ? velocidadVenta.getStockCobertura() : null));
+        if (producto.getStockMaximo() != null && producto.getStockMaximo().signum() > 0) {
+            objetivo = objetivo.min(producto.getStockMaximo()).max(puntoReorden);
+        }
+
+        BigDecimal cantidad = objetivo.subtract(disponible).max(BigDecimal.ZERO);
+        cantidad = Boolean.TRUE.equals(producto.getPermiteDecimal()) ?
+                cantidad.setScale(2, RoundingMode.UP) : cantidad.setScale(0, RoundingMode.CEILING);
+
+        BigDecimal costoUnitario = producto.getCostoPromedio() != null ? producto.getCostoPromedio() : BigDecimal.ZERO;
+
+        SugerenciaCompraResponse.ItemSugerido item = SugerenciaCompraResponse.ItemSugerido.builder()
+                .productoId(producto.getId())
+                .codigo(producto.getCodigo())
+                .nombre(producto.getNombre())
+                .unidadMedida(producto.getUnidadMedida())
+                .stockDisponible(disponible)
+                .stockMinimo(producto.getStockMinimo())
+                .stockMaximo(producto.getStockMaximo())
+                .velocidadDiaria(BigDecimal.valueOf(velocidad).setScale(4, RoundingMode.HALF_UP))
+                .diasCobertura(velocidad > 0 ? escala(disponible.doubleValue() / velocidad) : null)
+                .stockSeguridad(stockSeguridad)
+                .puntoReorden(puntoReorden)
+                .cantidadSugerida(cantidad)
+                .costoUnitario(costoUnitario)
+                .costoTotal(cantidad.multiply(costoUnitario).setScale(2, RoundingMode.HALF_UP))
+                .build();
+
+        return new CalculoReorden(producto, item);
+    }
+
+    private SugerenciaCompraResponse convertirASugerencia(Proveedor proveedor,
+                                                          List<SugerenciaCompraResponse.ItemSugerido> items) {
+        BigDecimal costoEstimado = items.stream()
+                .map(SugerenciaCompraResponse.ItemSugerido::getCostoTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        return SugerenciaCompraResponse.builder()
+                .proveedorId(proveedor != null ? proveedor.getId() : null)
+                .proveedorCodigo(proveedor != null ? proveedor.getCodigo() : null)
+                .proveedorNombre(proveedor != null ? proveedor.getNombre() : "Sin proveedor")
+                .proveedorEmail(proveedor != null ? proveedor.getEmail() : null)
+                .diasEntrega(proveedor != null && proveedor.getDiasEntrega() != null ?
+                        proveedor.getDiasEntrega() : diasEntregaPorDefecto)
+                .totalItems(items.size())
+                .costoEstimado(costoEstimado)
+                .items(items)
+                .build();
+    }
+
+    private BigDecimal escala(double valor) {
+        return BigDecimal.valueOf(valor).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+
+    private static class CalculoReorden {
+        private final Producto producto;
+        private final SugerenciaCompraResponse.ItemSugerido item;
+
+        private CalculoReorden(Producto producto, SugerenciaCompraResponse.ItemSugerido item) {
+            this.producto = producto;
+            this.item = item;
+        }
+    }
+}
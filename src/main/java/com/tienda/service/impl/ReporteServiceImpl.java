@@ -6,6 +6,7 @@ import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.model.*;
 import com.tienda.repository.*;
+import com.tienda.service.ClienteAnaliticaService;
 import com.tienda.service.ReporteService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +15,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -38,6 +40,11 @@ public class ReporteServiceImpl implements ReporteService {
     private final CajaRepository cajaRepository;
     private final MovimientoInventarioRepository movimientoInventarioRepository;
     private final CategoriaRepository categoriaRepository;
+    private final CategoriaArbolRepository categoriaArbolRepository;
+    private final ExportadorExcel exportadorExcel;
+    private final ClienteAnaliticaService clienteAnaliticaService;
+
+    private static final int MESES_REPORTE_COHORTES = 12;
 
     // ============ CIERRE DIARIO ============
 
@@ -467,10 +474,23 @@ public class ReporteServiceImpl implements ReporteService {
         return new byte[0];
     }
 
+    @Override
+    public void exportarReporteVentasExcel(LocalDate fechaDesde, LocalDate fechaHasta, OutputStream salida) {
+        if (fechaDesde.isAfter(fechaHasta)) {
+            throw new ValidacionException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+        exportadorExcel.exportarVentas(fechaDesde, fechaHasta, salida);
+    }
+
+    @Override
+    public void exportarReporteInventarioExcel(OutputStream salida) {
+        exportadorExcel.exportarInventario(salida);
+    }
+
     @Override
     public byte[] exportarReporteExcel(Map<String, Object> datos, String tipoReporte) {
         log.info("Exportando reporte {} a Excel", tipoReporte);
-        return new byte[0];
+        return exportadorExcel.exportarDatos(datos, tipoReporte);
     }
 
     @Override
@@ -596,9 +616,49 @@ public class ReporteServiceImpl implements ReporteService {
     }
 
     @Override
-    public List<ReporteVentaResponse> generarReporteVentasPorCategoria(LocalDate fechaInicio, LocalDate fechaFin) {
-        // Implementación simplificada
-        return new ArrayList<>();
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> generarReporteVentasPorCategoria(LocalDate fechaDesde, LocalDate fechaHasta) {
+        if (fechaDesde.isAfter(fechaHasta)) {
+            throw new ValidacionException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+
+        // Una consulta: cada categoría acumula las ventas de todo su subárbol
+        List<Map<String, Object>> filas = categoriaArbolRepository.obtenerResumenVentas(
+                fechaDesde.atStartOfDay(), fechaHasta.plusDays(1).atStartOfDay());
+
+        // La participación se mide contra el total de las categorías raíz (sin contar dos veces)
+        BigDecimal totalGeneral = filas.stream()
+                .filter(f -> f.get("categoria_padre_id") == null)
+                .map(f -> (BigDecimal) f.get("total"))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        List<Map<String, Object>> reporte = new ArrayList<>();
+        for (Map<String, Object> fila : filas) {
+            BigDecimal subtotal = (BigDecimal) fila.get("subtotal");
+            BigDecimal total = (BigDecimal) fila.get("total");
+            BigDecimal utilidad = (BigDecimal) fila.get("utilidad");
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("categoriaId", fila.get("id"));
+            item.put("categoria", fila.get("nombre"));
+            item.put("categoriaPadreId", fila.get("categoria_padre_id"));
+            item.put("nivel", fila.get("nivel"));
+            item.put("ventas", ((Number) fila.get("ventas")).longValue());
+            item.put("productosVendidos", ((Number) fila.get("productos_vendidos")).longValue());
+            item.put("unidades", fila.get("unidades"));
+            item.put("subtotal", subtotal);
+            item.put("total", total);
+            item.put("costo", fila.get("costo"));
+            item.put("utilidad", utilidad);
+            item.put("margen", subtotal.signum() > 0 ?
+                    utilidad.multiply(BigDecimal.valueOf(100)).divide(subtotal, 2, RoundingMode.HALF_UP) :
+                    BigDecimal.ZERO);
+            item.put("participacion", totalGeneral.signum() > 0 ?
+                    total.multiply(BigDecimal.valueOf(100)).divide(totalGeneral, 2, RoundingMode.HALF_UP) :
+                    BigDecimal.ZERO);
+            reporte.add(item);
+        }
+        return reporte;
     }
 
     @Override
@@ -644,9 +704,18 @@ public class ReporteServiceImpl implements ReporteService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, Object> generarReporteFrecuenciaClientes() {
-        // Implementación simplificada
-        return new HashMap<>();
+        Map<String, Object> reporte = new LinkedHashMap<>(clienteAnaliticaService.obtenerFrecuenciaCompra());
+        reporte.put("cohortes", clienteAnaliticaService.obtenerCohortes(MESES_REPORTE_COHORTES));
+        reporte.put("fechaGeneracion", LocalDateTime.now());
+        return reporte;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> generarReporteCohortesClientes(int meses) {
+        return clienteAnaliticaService.obtenerCohortes(meses);
     }
 
     @Override
@@ -0,0 +1,499 @@
+package com.tienda.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tienda.dto.request.FiltroReporteRequest;
+import com.tienda.dto.response.TrabajoReporteResponse;
+import com.tienda.exception.ColaReportesLlenaException;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.service.ReporteService;
+import com.tienda.service.ReporteTrabajoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reportes pesados como trabajos en segundo plano: la petición solo encola y devuelve el id, y un
+ * pool propio y acotado los ejecuta por prioridad sin ocupar hilos de Tomcat. El estado y el
+ * resultado de cada trabajo se escriben en disco ({id}.json y {id}-resultado.json), se consultan
+ * por id y se borran al vencer. Dos solicitudes con el mismo filtro normalizado mientras la
+ * primera sigue pendiente o en curso comparten una única ejecución.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReporteTrabajoServiceImpl implements ReporteTrabajoService {
+
+    private static final String SUFIJO_RESULTADO = "-resultado.json";
+    private static final String SUFIJO_TEMPORAL = ".tmp";
+
+    private enum Prioridad { ALTA, NORMAL, BAJA }
+
+    private final ReporteService reporteService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${reportes.trabajos.directorio:${java.io.tmpdir}/tienda-reportes}")
+    private String directorio;
+
+    @Value("${reportes.trabajos.hilos:2}")
+    private int hilos;
+
+    // Pendientes más en curso; por encima se rechazan nuevas solicitudes
+    @Value("${reportes.trabajos.max-pendientes:20}")
+    private int maxPendientes;
+
+    // Espera sugerida en Retry-After cuando la cola está llena
+    @Value("${reportes.trabajos.reintentar-en-segundos:60}")
+    private long reintentarEnSegundos;
+
+    @Value("${reportes.trabajos.ttl-horas:24}")
+    private long ttlHoras;
+
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+    // Trabajos pendientes o en curso por clave de filtro; protegido por this
+    private final Map<String, Trabajo> activos = new HashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    private Path raiz;
+    private ThreadPoolExecutor ejecutor;
+
+    @PostConstruct
+    public void prepararTrabajos() {
+        raiz = Paths.get(directorio);
+        try {
+            Files.createDirectories(raiz);
+            cargarTrabajosGuardados();
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo preparar el directorio de reportes " + raiz, e);
+        }
+
+        AtomicInteger numeroHilo = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), tarea -> {
+                    Thread hilo = new Thread(tarea, "reporte-trabajo-" + numeroHilo.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        log.info("Trabajos de reporte en {}: {} hilos, {} trabajos conservados", raiz, hilos, trabajos.size());
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public TrabajoReporteResponse solicitarReporte(FiltroReporteRequest filtro, String prioridad) {
+        FiltroReporteRequest normalizado = normalizar(filtro);
+        Prioridad nivel = convertirPrioridad(prioridad);
+        String clave = calcularClave(normalizado);
+
+        synchronized (this) {
+            Trabajo existente = activos.get(clave);
+            if (existente != null) {
+                existente.solicitudes.incrementAndGet();
+                log.debug("Reporte {} ya en curso, se reutiliza el trabajo {}", normalizado.getTipoReporte(), existente.id);
+                return existente.instantanea();
+            }
+            if (activos.size() >= maxPendientes) {
+                throw new ColaReportesLlenaException("Hay " + activos.size() +
+                        " reportes pendientes; vuelva a intentarlo en unos minutos", reintentarEnSegundos);
+            }
+
+            Trabajo trabajo = new Trabajo(UUID.randomUUID().toString(), clave, nivel, normalizado);
+            trabajos.put(trabajo.id, trabajo);
+            activos.put(clave, trabajo);
+            guardar(trabajo);
+            ejecutor.execute(new Tarea(trabajo, secuencia.incrementAndGet()));
+
+            log.info("Reporte {} encolado como trabajo {} (prioridad {})",
+                    normalizado.getTipoReporte(), trabajo.id, nivel);
+            return trabajo.instantanea();
+        }
+    }
+
+    @Override
+    public TrabajoReporteResponse obtenerTrabajo(String id) {
+        return obtenerEntidadTrabajo(id).instantanea();
+    }
+
+    @Override
+    public List<TrabajoReporteResponse> obtenerTrabajos() {
+        return trabajos.values().stream()
+                .map(Trabajo::instantanea)
+                .sorted(Comparator.comparing(TrabajoReporteResponse::getCreadoEn,
+                        Comparator.nullsLast(Comparator.reverseOrder())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Path obtenerResultado(String id) {
+        TrabajoReporteResponse trabajo = obtenerTrabajo(id);
+        if (!"COMPLETADO".equals(trabajo.getEstado())) {
+            throw new ValidacionException("El reporte no está disponible: estado " + trabajo.getEstado());
+        }
+
+        Path resultado = rutaResultado(id);
+        if (!Files.exists(resultado)) {
+            throw new ResourceNotFoundException("El resultado del reporte ya no está disponible");
+        }
+        return resultado;
+    }
+
+    @Override
+    public int limpiarTrabajosVencidos() {
+        LocalDateTime ahora = LocalDateTime.now();
+        int eliminados = 0;
+
+        for (Trabajo trabajo : trabajos.values()) {
+            if (!trabajo.vencido(ahora)) {
+                continue;
+            }
+            trabajos.remove(trabajo.id);
+            try {
+                Files.deleteIfExists(rutaResultado(trabajo.id));
+                Files.deleteIfExists(rutaTrabajo(trabajo.id));
+            } catch (IOException e) {
+                log.warn("No se pudieron borrar los archivos del trabajo {}: {}", trabajo.id, e.getMessage());
+            }
+            eliminados++;
+        }
+
+        if (eliminados > 0) {
+            log.info("Trabajos de reporte vencidos eliminados: {}", eliminados);
+        }
+        return eliminados;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${reportes.trabajos.limpieza-ms:900000}",
+            initialDelayString = "${reportes.trabajos.limpieza-ms:900000}")
+    public void limpiarTrabajosVencidosProgramado() {
+        try {
+            limpiarTrabajosVencidos();
+        } catch (Exception e) {
+            log.error("Error limpiando trabajos de reporte: {}", e.getMessage(), e);
+        }
+    }
+
+    // Métodos privados auxiliares
+
+    private void ejecutar(Trabajo trabajo) {
+        trabajo.iniciar();
+        guardar(trabajo);
+
+        try {
+            Object resultado = generar(trabajo.filtro);
+
+            trabajo.avanzar(90, "Guardando resultado");
+            guardar(trabajo);
+
+            Path temporal = raiz.resolve(trabajo.id + SUFIJO_RESULTADO + SUFIJO_TEMPORAL);
+            objectMapper.writeValue(temporal.toFile(), resultado);
+            Path destino = Files.move(temporal, rutaResultado(trabajo.id),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            trabajo.completar(Files.size(destino), LocalDateTime.now().plusHours(ttlHoras));
+            log.info("Trabajo de reporte {} completado en {} ({} bytes)",
+                    trabajo.id, trabajo.duracion(), trabajo.tamanoResultado);
+        } catch (Exception e) {
+            log.error("Error generando el reporte del trabajo {}: {}", trabajo.id, e.getMessage(), e);
+            trabajo.fallar(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(),
+                    LocalDateTime.now().plusHours(ttlHoras));
+        } finally {
+            synchronized (this) {
+                activos.remove(trabajo.clave, trabajo);
+            }
+            guardar(trabajo);
+        }
+    }
+
+    // Cada método abre su propia transacción de solo lectura a través del proxy del servicio
+    private Object generar(FiltroReporteRequest filtro) {
+        switch (filtro.getTipoReporte()) {
+            case "VENTAS":
+                return reporteService.generarReporteVentas(filtro);
+            case "ESTADISTICAS":
+                return reporteService.generarEstadisticasVentas(filtro.getFechaInicio(), filtro.getFechaFin());
+            case "INVENTARIO":
+                return reporteService.generarReporteInventario();
+            default:
+                throw new ValidacionException("Tipo de reporte no soportado: " + filtro.getTipoReporte());
+        }
+    }
+
+    /**
+     * Deja en el filtro solo los campos que usa cada reporte, con las fechas por defecto ya
+     * resueltas, para que dos solicitudes equivalentes produzcan la misma clave.
+     */
+    private FiltroReporteRequest normalizar(FiltroReporteRequest filtro) {
+        if (filtro == null || filtro.getTipoReporte() == null) {
+            throw new ValidacionException("El tipo de reporte es obligatorio");
+        }
+
+        FiltroReporteRequest normalizado = new FiltroReporteRequest();
+        normalizado.setTipoReporte(filtro.getTipoReporte().trim().toUpperCase());
+
+        switch (normalizado.getTipoReporte()) {
+            case "VENTAS":
+                normalizado.setSucursalId(filtro.getSucursalId());
+                normalizado.setVendedorId(filtro.getVendedorId());
+                asignarFechas(filtro, normalizado);
+                break;
+            case "ESTADISTICAS":
+                asignarFechas(filtro, normalizado);
+                break;
+            case "INVENTARIO":
+                break;
+            default:
+                throw new ValidacionException("Tipo de reporte no soportado: " + filtro.getTipoReporte() +
+                        " (VENTAS, ESTADISTICAS o INVENTARIO)");
+        }
+        return normalizado;
+    }
+
+    // Mismo periodo por defecto que generarReporteVentas: los últimos 30 días
+    private void asignarFechas(FiltroReporteRequest filtro, FiltroReporteRequest normalizado) {
+        LocalDate fechaFin = filtro.getFechaFin() != null ? filtro.getFechaFin() : LocalDate.now();
+        LocalDate fechaInicio = filtro.getFechaInicio() != null ? filtro.getFechaInicio() : LocalDate.now().minusDays(30);
+        if (fechaInicio.isAfter(fechaFin)) {
+            throw new ValidacionException("La fecha de inicio no puede ser posterior a la fecha de fin");
+        }
+        normalizado.setFechaInicio(fechaInicio);
+        normalizado.setFechaFin(fechaFin);
+    }
+
+    private String calcularClave(FiltroReporteRequest normalizado) {
+        try {
+            return objectMapper.writeValueAsString(normalizado);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo serializar el filtro del reporte", e);
+        }
+    }
+
+    private Prioridad convertirPrioridad(String prioridad) {
+        if (prioridad == null) {
+            return Prioridad.NORMAL;
+        }
+        try {
+            return Prioridad.valueOf(prioridad.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidacionException("Prioridad inválida: " + prioridad + " (ALTA, NORMAL o BAJA)");
+        }
+    }
+
+    private Trabajo obtenerEntidadTrabajo(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null) {
+            throw new ResourceNotFoundException("Trabajo de reporte no encontrado: " + id);
+        }
+        return trabajo;
+    }
+
+    // Escritura atómica: quien consulta el archivo nunca ve un JSON a medias
+    private void guardar(Trabajo trabajo) {
+        Path temporal = raiz.resolve(trabajo.id + ".json" + SUFIJO_TEMPORAL);
+        try {
+            objectMapper.writeValue(temporal.toFile(), trabajo.instantanea());
+            Files.move(temporal, rutaTrabajo(trabajo.id),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("No se pudo guardar el estado del trabajo {}: {}", trabajo.id, e.getMessage());
+        }
+    }
+
+    /**
+     * Recupera los trabajos de una ejecución anterior para seguir sirviendo sus resultados hasta
+     * que venzan. Los que quedaron pendientes o en curso se dan por fallidos.
+     */
+    private void cargarTrabajosGuardados() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(raiz)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.endsWith(SUFIJO_TEMPORAL)) {
+                    Files.deleteIfExists(archivo);
+                    continue;
+                }
+                if (!nombre.endsWith(".json") || nombre.endsWith(SUFIJO_RESULTADO)) {
+                    continue;
+                }
+
+                try {
+                    Trabajo trabajo = new Trabajo(objectMapper.readValue(archivo.toFile(), TrabajoReporteResponse.class));
+                    trabajos.put(trabajo.id, trabajo);
+                    if (!trabajo.terminado()) {
+                        trabajo.fallar("Interrumpido por un reinicio del servidor", LocalDateTime.now().plusHours(ttlHoras));
+                        guardar(trabajo);
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Estado de trabajo ilegible, se descarta {}: {}", archivo, e.getMessage());
+                    Files.deleteIfExists(archivo);
+                }
+            }
+        }
+    }
+
+    private Path rutaTrabajo(String id) {
+        return raiz.resolve(id + ".json");
+    }
+
+    private Path rutaResultado(String id) {
+        return raiz.resolve(id + SUFIJO_RESULTADO);
+    }
+
+    // Elemento de la cola del pool: primero la prioridad y, a igual prioridad, el orden de llegada
+    private final class Tarea implements Runnable, Comparable<Tarea> {
+        private final Trabajo trabajo;
+        private final long orden;
+
+        private Tarea(Trabajo trabajo, long orden) {
+            this.trabajo = trabajo;
+            this.orden = orden;
+        }
+
+        @Override
+        public void run() {
+            ejecutar(trabajo);
+        }
+
+        @Override
+        public int compareTo(Tarea otra) {
+            int porPrioridad = trabajo.prioridad.compareTo(otra.trabajo.prioridad);
+            return porPrioridad != 0 ? porPrioridad : Long.compare(orden, otra.orden);
+        }
+    }
+
+    private static final class Trabajo {
+        private final String id;
+        private final String clave;
+        private final Prioridad prioridad;
+        private final FiltroReporteRequest filtro;
+        private final LocalDateTime creadoEn;
+        private final AtomicInteger solicitudes;
+
+        private String estado = "PENDIENTE";
+        private int progreso;
+        private String fase = "En cola";
+        private LocalDateTime iniciadoEn;
+        private LocalDateTime finalizadoEn;
+        private LocalDateTime expiraEn;
+        private Long tamanoResultado;
+        private String error;
+
+        private Trabajo(String id, String clave, Prioridad prioridad, FiltroReporteRequest filtro) {
+            this.id = id;
+            this.clave = clave;
+            this.prioridad = prioridad;
+            this.filtro = filtro;
+            this.creadoEn = LocalDateTime.now();
+            this.solicitudes = new AtomicInteger(1);
+        }
+
+        // Trabajo de una ejecución anterior, leído de disco; ya no participa en la deduplicación
+        private Trabajo(TrabajoReporteResponse guardado) {
+            this.id = guardado.getId();
+            this.clave = null;
+            this.prioridad = Prioridad.valueOf(guardado.getPrioridad());
+            this.filtro = guardado.getFiltro();
+            this.creadoEn = guardado.getCreadoEn();
+            this.solicitudes = new AtomicInteger(guardado.getSolicitudes() != null ? guardado.getSolicitudes() : 1);
+            this.estado = guardado.getEstado();
+            this.progreso = guardado.getProgreso() != null ? guardado.getProgreso() : 0;
+            this.fase = guardado.getFase();
+            this.iniciadoEn = guardado.getIniciadoEn();
+            this.finalizadoEn = guardado.getFinalizadoEn();
+            this.expiraEn = guardado.getExpiraEn();
+            this.tamanoResultado = guardado.getTamanoResultado();
+            this.error = guardado.getError();
+        }
+
+        private synchronized void iniciar() {
+            estado = "EN_CURSO";
+            progreso = 10;
+            fase = "Generando reporte";
+            iniciadoEn = LocalDateTime.now();
+        }
+
+        private synchronized void avanzar(int progreso, String fase) {
+            this.progreso = progreso;
+            this.fase = fase;
+        }
+
+        private synchronized void completar(long tamano, LocalDateTime expira) {
+            estado = "COMPLETADO";
+            progreso = 100;
+            fase = "Listo para descargar";
+            tamanoResultado = tamano;
+            finalizadoEn = LocalDateTime.now();
+            expiraEn = expira;
+        }
+
+        private synchronized void fallar(String mensaje, LocalDateTime expira) {
+            estado = "FALLIDO";
+            fase = "Con errores";
+            error = mensaje;
+            finalizadoEn = LocalDateTime.now();
+            expiraEn = expira;
+        }
+
+        private synchronized boolean terminado() {
+            return "COMPLETADO".equals(estado) || "FALLIDO".equals(estado);
+        }
+
+        private synchronized boolean vencido(LocalDateTime ahora) {
+            return terminado() && (expiraEn == null || expiraEn.isBefore(ahora));
+        }
+
+        private synchronized String duracion() {
+            return iniciadoEn != null && finalizadoEn != null ?
+                    Duration.between(iniciadoEn, finalizadoEn).toMillis() + " ms" : "-";
+        }
+
+        private synchronized TrabajoReporteResponse instantanea() {
+            return TrabajoReporteResponse.builder()
+                    .id(id)
+                    .tipoReporte(filtro != null ? filtro.getTipoReporte() : null)
+                    .prioridad(prioridad.name())
+                    .estado(estado)
+                    .progreso(progreso)
+                    .fase(fase)
+                    .filtro(filtro)
+                    .solicitudes(solicitudes.get())
+                    .creadoEn(creadoEn)
+                    .iniciadoEn(iniciadoEn)
+                    .finalizadoEn(finalizadoEn)
+                    .expiraEn(expiraEn)
+                    .tamanoResultado(tamanoResultado)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.tienda.dto.request.VentaRequest;
 import com.tienda.dto.response.VentaResponse;
 import com.tienda.dto.response.PaginacionResponse;
 import com.tienda.dto.response.DetalleVentaResponse;
+import com.tienda.event.VentaRegistradaEvent;
 import com.tienda.exception.ResourceNotFoundException;
 import com.tienda.exception.ValidacionException;
 import com.tienda.exception.StockInsuficienteException;
@@ -13,7 +14,9 @@ import com.tienda.service.VentaService;
 import com.tienda.service.InventarioService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,11 +39,20 @@ public class VentaServiceImpl implements VentaService {
     private final ClienteRepository clienteRepository;
     private final UsuarioRepository usuarioRepository;
     private final CajaRepository cajaRepository;
+    private final CajaMovimientoRepository cajaMovimientoRepository;
+    private final MovimientoInventarioRepository movimientoInventarioRepository;
     private final InventarioService inventarioService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EjecutorReintentos ejecutorReintentos;
+    private final MaquinaEstadosCaja maquinaEstadosCaja;
 
     @Override
-    @Transactional
     public VentaResponse crearVenta(VentaRequest request) {
+        // Si el stock de algún producto cambió entre la lectura y el commit, la venta se recalcula
+        return ejecutorReintentos.ejecutar("venta.crear", () -> registrarVenta(request));
+    }
+
+    private VentaResponse registrarVenta(VentaRequest request) {
         // Validar cliente
         Cliente cliente = null;
         if (request.getClienteId() != null) {
@@ -56,10 +68,8 @@ public class VentaServiceImpl implements VentaService {
         Caja caja = cajaRepository.findById(request.getCajaId())
                 .orElseThrow(() -> new ResourceNotFoundException("Caja no encontrada"));
 
-        // Verificar que la caja esté abierta
-        if (!caja.estaAbierta()) {
-            throw new ValidacionException("La caja no está abierta");
-        }
+        // Verificar que la caja esté abierta y retenerla así hasta el commit: el cierre espera a la venta
+        maquinaEstadosCaja.bloquearAbierta(caja.getId());
 
         // Generar número de factura
         String numeroFactura = generarNumeroFactura();
@@ -139,14 +149,23 @@ public class VentaServiceImpl implements VentaService {
         // Guardar venta
         Venta ventaGuardada = ventaRepository.save(venta);
 
-        // Actualizar stock (liberar reserva y decrementar)
+        // Actualizar stock (liberar reserva y decrementar) y registrar la salida en el kardex
+        List<MovimientoInventario> movimientos = new ArrayList<>();
         for (DetalleVenta detalle : ventaGuardada.getDetalles()) {
             Producto producto = detalle.getProducto();
+            BigDecimal cantidadAnterior = producto.getStockActual();
             producto.liberarStock(detalle.getCantidad());
             producto.setStockActual(producto.getStockActual().subtract(detalle.getCantidad()));
             producto.calcularEstadoStock();
             productoRepository.save(producto);
+
+            movimientos.add(crearMovimientoVenta(ventaGuardada, detalle, "SALIDA", "VENTA",
+                    cantidadAnterior, producto.getStockActual(), vendedor));
         }
+        movimientoInventarioRepository.insertarEnLote(movimientos);
+        cajaMovimientoRepository.registrar(caja.getId(), "VENTA", ventaGuardada.getFormaPago(),
+                ventaGuardada.getTotal(), ventaGuardada.getId(), vendedor.getId(), numeroFactura);
+        publicarVentaRegistrada(ventaGuardada, false);
 
         log.info("Venta creada: {} - Total: {}", numeroFactura, ventaGuardada.getTotal());
 
@@ -226,8 +245,11 @@ public class VentaServiceImpl implements VentaService {
     }
 
     @Override
-    @Transactional
     public void anularVenta(Long id, String motivo) {
+        ejecutorReintentos.ejecutarSinResultado("venta.anular", () -> registrarAnulacion(id, motivo));
+    }
+
+    private void registrarAnulacion(Long id, String motivo) {
         Venta venta = ventaRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Venta no encontrada"));
 
@@ -235,17 +257,37 @@ public class VentaServiceImpl implements VentaService {
             throw new ValidacionException("La venta no puede ser anulada en su estado actual");
         }
 
+        // La devolución se anota en la sesión en curso de la caja: debe estar abierta y seguir así
+        // hasta el commit, con el mismo bloqueo compartido que las ventas (el cierre espera)
+        if (venta.getCaja() != null) {
+            maquinaEstadosCaja.bloquearAbierta(venta.getCaja().getId());
+        }
+
         venta.setEstado(Venta.EstadoVenta.ANULADA);
         venta.setMotivoAnulacion(motivo);
         venta.setFechaAnulacion(LocalDateTime.now());
 
-        // Restaurar stock de productos
+        // Restaurar stock de productos y registrar la devolución en el kardex
+        List<MovimientoInventario> movimientos = new ArrayList<>();
         for (DetalleVenta detalle : venta.getDetalles()) {
             Producto producto = detalle.getProducto();
+            BigDecimal cantidadAnterior = producto.getStockActual();
             producto.setStockActual(producto.getStockActual().add(detalle.getCantidad()));
             producto.calcularEstadoStock();
             productoRepository.save(producto);
+
+            movimientos.add(crearMovimientoVenta(venta, detalle, "DEVOLUCION", "ANULACION_VENTA",
+                    cantidadAnterior, producto.getStockActual(), venta.getVendedor()));
         }
+        movimientoInventarioRepository.insertarEnLote(movimientos);
+
+        // La devolución sale de la sesión en curso de la caja donde se cobró, aunque la venta sea de otra
+        if (venta.getCaja() != null) {
+            cajaMovimientoRepository.registrar(venta.getCaja().getId(), "ANULACION", venta.getFormaPago(),
+                    venta.getTotal().negate(), venta.getId(),
+                    venta.getVendedor() != null ? venta.getVendedor().getId() : null, venta.getNumeroFactura());
+        }
+        publicarVentaRegistrada(venta, true);
 
         ventaRepository.save(venta);
         log.info("Venta anulada: {} - Motivo: {}", venta.getNumeroFactura(), motivo);
@@ -277,9 +319,11 @@ public class VentaServiceImpl implements VentaService {
     }
 
     @Override
+    @Deprecated
     @Transactional(readOnly = true)
     public List<VentaResponse> obtenerVentasPorCliente(Long clienteId) {
-        List<Venta> ventas = ventaRepository.findByClienteId(clienteId);
+        List<Venta> ventas = ventaRepository.findUltimasPorCliente(clienteId,
+                PageRequest.of(0, MAX_VENTAS_POR_CLIENTE));
 
         return ventas.stream()
                 .map(this::convertirAResponse)
@@ -478,6 +522,38 @@ public class VentaServiceImpl implements VentaService {
     }
 
     // Métodos privados auxiliares
+    private void publicarVentaRegistrada(Venta venta, boolean anulacion) {
+        Map<Long, BigDecimal> unidades = new HashMap<>();
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            unidades.merge(detalle.getProducto().getId(), detalle.getCantidad(), BigDecimal::add);
+        }
+
+        LocalDate fechaVenta = venta.getFechaEmision() != null ?
+                venta.getFechaEmision().toLocalDate() : LocalDate.now();
+        eventPublisher.publishEvent(new VentaRegistradaEvent(venta.getId(),
+                venta.getCliente() != null ? venta.getCliente().getId() : null, fechaVenta, unidades, anulacion));
+    }
+
+    private MovimientoInventario crearMovimientoVenta(Venta venta, DetalleVenta detalle,
+                                                      String tipo, String subtipo,
+                                                      BigDecimal cantidadAnterior, BigDecimal cantidadNueva,
+                                                      Usuario usuario) {
+        return MovimientoInventario.builder()
+                .producto(detalle.getProducto())
+                .tipoMovimiento(tipo)
+                .subtipo(subtipo)
+                .documentoId(venta.getId())
+                .documentoNumero(venta.getNumeroFactura())
+                .cantidad(detalle.getCantidad())
+                .cantidadAnterior(cantidadAnterior)
+                .cantidadNueva(cantidadNueva)
+                .costoUnitario(detalle.getProducto().getCostoPromedio())
+                .precioUnitario(detalle.getPrecioUnitario())
+                .usuario(usuario)
+                .fechaMovimiento(LocalDateTime.now())
+                .build();
+    }
+
     private VentaResponse convertirAResponse(Venta venta) {
         List<DetalleVentaResponse> detallesResponse = venta.getDetalles().stream()
                 .map(detalle -> DetalleVentaResponse.builder()
@@ -0,0 +1,45 @@
+package com.tienda.config;
+
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+class EsquemaBaseDatosTest {
+
+    @Autowired
+    private EsquemaBaseDatos esquemaBaseDatos;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void alLevantarElContextoElEsquemaYaEstaCompleto() {
+        assertThat(jdbcTemplate.queryForList("SELECT tablename FROM pg_tables WHERE schemaname = 'public'",
+                String.class))
+                .contains("caja_saldos", "caja_movimientos", "cierres_caja_mensual", "categoria_arbol",
+                        "cliente_metricas", "cliente_segmentos", "cliente_cohortes", "cliente_productos",
+                        "catalogo_cambios");
+        assertThat(esquemaBaseDatos.isBusquedaTextoDisponible()).isTrue();
+        assertThat(esquemaBaseDatos.isRegistroCambiosDisponible()).isTrue();
+    }
+
+    @Test
+    void volverAPrepararloNoCambiaNada() {
+        int indices = contarIndices();
+
+        esquemaBaseDatos.afterSingletonsInstantiated();
+
+        assertThat(contarIndices()).isEqualTo(indices);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM cliente_cohortes_estado", Integer.class))
+                .isEqualTo(1);
+    }
+
+    // Métodos privados auxiliares
+    private int contarIndices() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_indexes WHERE schemaname = 'public'",
+                Integer.class);
+    }
+}
@@ -0,0 +1,106 @@
+package com.tienda.controller;
+
+import com.tienda.exception.ConflictoConcurrenciaException;
+import com.tienda.exception.GlobalExceptionHandler;
+import com.tienda.exception.ValidacionException;
+import com.tienda.service.AlertaStockService;
+import com.tienda.service.HistorialClienteService;
+import com.tienda.service.InventarioService;
+import com.tienda.service.KardexService;
+import com.tienda.service.ReordenService;
+import com.tienda.service.VentaService;
+import com.tienda.service.impl.EjecutorReintentos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Los controladores con captura genérica deben dejar pasar el conflicto hasta GlobalExceptionHandler
+@ExtendWith(MockitoExtension.class)
+class ConflictoConcurrenciaControllerTest {
+
+    private static final String VENTA = "{\"vendedorId\":1,\"cajaId\":1,\"formaPago\":\"EFECTIVO\"," +
+            "\"detalles\":[{\"productoId\":1,\"cantidad\":2,\"precioUnitario\":15.00}]}";
+
+    @Mock
+    private VentaService ventaService;
+    @Mock
+    private HistorialClienteService historialClienteService;
+    @Mock
+    private InventarioService inventarioService;
+    @Mock
+    private AlertaStockService alertaStockService;
+    @Mock
+    private KardexService kardexService;
+    @Mock
+    private ReordenService reordenService;
+    @Mock
+    private EjecutorReintentos ejecutorReintentos;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new VentaController(ventaService, historialClienteService),
+                        new InventarioController(inventarioService, alertaStockService, kardexService,
+                                reordenService, ejecutorReintentos))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void unaVentaConLosReintentosAgotadosRespondeConflicto() throws Exception {
+        when(ventaService.crearVenta(any())).thenThrow(new ConflictoConcurrenciaException("Stock modificado"));
+
+        mockMvc.perform(post("/api/ventas").contentType(MediaType.APPLICATION_JSON).content(VENTA))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Stock modificado"));
+    }
+
+    @Test
+    void unaAnulacionConLosReintentosAgotadosRespondeConflicto() throws Exception {
+        doThrow(new ConflictoConcurrenciaException("Venta modificada")).when(ventaService).anularVenta(anyLong(), anyString());
+
+        mockMvc.perform(post("/api/ventas/5/anular").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"motivo\":\"Cliente desiste\"}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void unAjusteDeStockConLosReintentosAgotadosRespondeConflicto() throws Exception {
+        when(inventarioService.incrementarStock(anyLong(), any(), anyString(), anyLong()))
+                .thenThrow(new ConflictoConcurrenciaException("Producto modificado"));
+
+        mockMvc.perform(post("/api/inventario/incrementar-stock")
+                        .param("productoId", "1")
+                        .param("cantidad", "3")
+                        .param("motivo", "Recepción")
+                        .param("usuarioId", "7"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Producto modificado"));
+    }
+
+    @Test
+    void losDemasErroresSiguenRespondiendoPeticionIncorrecta() throws Exception {
+        when(ventaService.crearVenta(any())).thenThrow(new ValidacionException("La caja no está abierta"));
+
+        mockMvc.perform(post("/api/ventas").contentType(MediaType.APPLICATION_JSON).content(VENTA))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("La caja no está abierta"));
+    }
+}
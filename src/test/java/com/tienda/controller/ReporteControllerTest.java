@@ -0,0 +1,71 @@
+package com.tienda.controller;
+
+import com.tienda.exception.ColaReportesLlenaException;
+import com.tienda.exception.GlobalExceptionHandler;
+import com.tienda.exception.ValidacionException;
+import com.tienda.service.ArchivoHistoricoService;
+import com.tienda.service.ReporteService;
+import com.tienda.service.ReporteTrabajoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class ReporteControllerTest {
+
+    private static final String FILTRO = "{\"tipoReporte\":\"ESTADISTICAS_VENTAS\"," +
+            "\"fechaInicio\":\"2026-01-01\",\"fechaFin\":\"2026-01-31\"}";
+
+    @Mock
+    private ReporteService reporteService;
+    @Mock
+    private ArchivoHistoricoService archivoHistoricoService;
+    @Mock
+    private ReporteTrabajoService reporteTrabajoService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new ReporteController(reporteService, archivoHistoricoService, reporteTrabajoService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void conLaColaLlenaSeRespondeNoDisponibleConRetryAfter() throws Exception {
+        when(reporteTrabajoService.solicitarReporte(any(), anyString()))
+                .thenThrow(new ColaReportesLlenaException("Hay 20 reportes pendientes", 60));
+
+        mockMvc.perform(post("/api/reportes/trabajos").contentType(MediaType.APPLICATION_JSON).content(FILTRO))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "60"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Hay 20 reportes pendientes"));
+    }
+
+    @Test
+    void unFiltroInvalidoSigueRespondiendoPeticionIncorrecta() throws Exception {
+        when(reporteTrabajoService.solicitarReporte(any(), anyString()))
+                .thenThrow(new ValidacionException("Tipo de reporte no soportado"));
+
+        mockMvc.perform(post("/api/reportes/trabajos").contentType(MediaType.APPLICATION_JSON).content(FILTRO))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER));
+    }
+}
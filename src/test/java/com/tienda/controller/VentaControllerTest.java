@@ -0,0 +1,73 @@
+package com.tienda.controller;
+
+import com.tienda.dto.response.HistorialClienteResponse;
+import com.tienda.dto.response.VentaResponse;
+import com.tienda.exception.GlobalExceptionHandler;
+import com.tienda.service.HistorialClienteService;
+import com.tienda.service.VentaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class VentaControllerTest {
+
+    @Mock
+    private VentaService ventaService;
+    @Mock
+    private HistorialClienteService historialClienteService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new VentaController(ventaService, historialClienteService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void elListadoAntiguoSigueDevolviendoUnaListaYAnunciaSuSucesor() throws Exception {
+        when(ventaService.obtenerVentasPorCliente(7L))
+                .thenReturn(Collections.singletonList(VentaResponse.builder().id(3L).build()));
+
+        mockMvc.perform(get("/api/ventas/cliente/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value(3))
+                .andExpect(header().string("Deprecation", "true"))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("/api/ventas/cliente/7/historial")));
+        verifyNoInteractions(historialClienteService);
+    }
+
+    @Test
+    void elHistorialPorCursorTieneSuPropiaRuta() throws Exception {
+        when(historialClienteService.obtenerHistorial(7L, "abc", 10, true))
+                .thenReturn(HistorialClienteResponse.builder().clienteId(7L)
+                        .ventas(Collections.emptyList()).siguienteCursor("def").hayMas(true).tamano(10).build());
+
+        mockMvc.perform(get("/api/ventas/cliente/7/historial")
+                        .param("cursor", "abc")
+                        .param("tamano", "10")
+                        .param("detalles", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.siguienteCursor").value("def"))
+                .andExpect(jsonPath("$.data.hayMas").value(true));
+        verifyNoInteractions(ventaService);
+    }
+}
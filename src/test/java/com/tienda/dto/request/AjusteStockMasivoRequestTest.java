@@ -0,0 +1,60 @@
+package com.tienda.dto.request;
+
+import com.tienda.dto.request.AjusteStockMasivoRequest.ItemAjusteRequest;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AjusteStockMasivoRequestTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    void ceroSoloSeAdmiteEnUnAjusteFijo() {
+        assertThat(mensajes(request(item("0", "FIJO"), item("3", "INCREMENTO")))).isEmpty();
+        assertThat(mensajes(request(item("0", "DECREMENTO"))))
+                .containsExactly("La cantidad debe ser mayor que cero salvo en un ajuste FIJO");
+    }
+
+    @Test
+    void unaCantidadNegativaSeRechazaEnCualquierTipo() {
+        for (String tipo : new String[]{"INCREMENTO", "DECREMENTO", "FIJO"}) {
+            assertThat(mensajes(request(item("-2", tipo)))).contains("La cantidad no puede ser negativa");
+        }
+    }
+
+    @Test
+    void elLoteTieneUnTamanoMaximo() {
+        ItemAjusteRequest[] maximo = new ItemAjusteRequest[AjusteStockMasivoRequest.MAX_AJUSTES];
+        Arrays.fill(maximo, item("1", "INCREMENTO"));
+        assertThat(mensajes(request(maximo))).isEmpty();
+
+        ItemAjusteRequest[] demasiados = Arrays.copyOf(maximo, maximo.length + 1);
+        demasiados[maximo.length] = item("1", "INCREMENTO");
+        assertThat(mensajes(request(demasiados)))
+                .containsExactly("Un ajuste masivo admite como máximo " + AjusteStockMasivoRequest.MAX_AJUSTES + " líneas");
+    }
+
+    // Métodos privados auxiliares
+    private List<String> mensajes(AjusteStockMasivoRequest request) {
+        return validator.validate(request).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.toList());
+    }
+
+    private static AjusteStockMasivoRequest request(ItemAjusteRequest... items) {
+        return new AjusteStockMasivoRequest(7L, "CONTEO-001", Arrays.asList(items));
+    }
+
+    private static ItemAjusteRequest item(String cantidad, String tipo) {
+        return new ItemAjusteRequest(1L, new BigDecimal(cantidad), tipo, "Conteo físico");
+    }
+}
@@ -0,0 +1,66 @@
+package com.tienda.event;
+
+import com.tienda.model.Producto;
+import com.tienda.soporte.DatosPrueba;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ProductoAlertaListenerTest {
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ProductoAlertaListener listener;
+
+    @Test
+    void unProductoQueSigueEnNormalNoPublicaNada() {
+        Producto producto = cargado("50");
+        producto.setStockActual(new BigDecimal("40"));
+        producto.calcularEstadoStock();
+
+        listener.alEscribir(producto);
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void publicaLaTransicionConElNivelLeidoDeLaBd() {
+        Producto producto = cargado("50");
+        producto.setStockActual(new BigDecimal("4"));
+        producto.calcularEstadoStock();
+
+        listener.alEscribir(producto);
+
+        ArgumentCaptor<AlertaStockEvent> evento = ArgumentCaptor.forClass(AlertaStockEvent.class);
+        verify(eventPublisher).publishEvent(evento.capture());
+        assertThat(evento.getValue().getAlertaAnterior()).isEqualTo(Producto.AlertaStock.NORMAL);
+        assertThat(evento.getValue().getAlertaNueva()).isEqualTo(Producto.AlertaStock.BAJO);
+        assertThat(evento.getValue().esTransicion()).isTrue();
+
+        // La siguiente escritura parte del nivel que se acaba de escribir
+        assertThat(producto.getAlertaStockPersistida()).isEqualTo(Producto.AlertaStock.BAJO);
+    }
+
+    // Métodos privados auxiliares
+    private Producto cargado(String stock) {
+        Producto producto = DatosPrueba.producto("P1", stock);
+        producto.setId(1L);
+        producto.calcularEstadoStock();
+        listener.alCargar(producto);
+        return producto;
+    }
+}
@@ -0,0 +1,147 @@
+package com.tienda.repository;
+
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Producto;
+import com.tienda.model.Venta;
+import com.tienda.model.Venta.EstadoVenta;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import(ArchivoHistoricoRepository.class)
+class ArchivoHistoricoRepositoryTest {
+
+    @Autowired
+    private ArchivoHistoricoRepository archivoHistoricoRepository;
+    @Autowired
+    private MovimientoInventarioRepository movimientoInventarioRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final YearMonth periodo = YearMonth.now().minusMonths(14);
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        producto = entityManager.persistFlushFind(DatosPrueba.producto("ARCH", "10"));
+    }
+
+    @Test
+    void soloSeMueveElPeriodoIndicadoYMoverloDeNuevoNoDuplica() {
+        registrar(periodo.atDay(1).atStartOfDay());
+        registrar(periodo.atEndOfMonth().atTime(23, 59));
+        registrar(periodo.plusMonths(1).atDay(1).atStartOfDay());
+
+        archivar(TablaArchivable.MOVIMIENTOS_INVENTARIO);
+
+        assertThat(contar("movimientos_inventario")).isEqualTo(1);
+        assertThat(contar("movimientos_inventario_historico")).isEqualTo(2);
+        assertThat(archivoHistoricoRepository.moverPeriodo(TablaArchivable.MOVIMIENTOS_INVENTARIO, periodo)).isZero();
+        assertThat(archivoHistoricoRepository.obtenerParticiones(TablaArchivable.MOVIMIENTOS_INVENTARIO))
+                .extracting(p -> p.get("particion"))
+                .containsExactly("movimientos_inventario_historico_p" + periodo.toString().replace("-", ""));
+    }
+
+    @Test
+    void laFechaMasAntiguaIgnoraLoQueEstaDespuesDelCorte() {
+        LocalDateTime antigua = periodo.atDay(3).atTime(8, 0);
+        registrar(antigua);
+        registrar(LocalDateTime.now());
+
+        assertThat(archivoHistoricoRepository.obtenerFechaMasAntigua(TablaArchivable.MOVIMIENTOS_INVENTARIO,
+                periodo.plusMonths(1).atDay(1).atStartOfDay())).isEqualTo(antigua);
+        assertThat(archivoHistoricoRepository.obtenerFechaMasAntigua(TablaArchivable.MOVIMIENTOS_INVENTARIO,
+                periodo.atDay(1).atStartOfDay())).isNull();
+    }
+
+    @Test
+    void lasVentasPendientesNoSeArchivanYLosDetallesLlevanLaFechaDeSuVenta() {
+        Venta completada = venta(1, "100.00", EstadoVenta.COMPLETADA);
+        Venta anulada = venta(2, "40.00", EstadoVenta.ANULADA);
+        Venta pendiente = venta(3, "25.00", EstadoVenta.PENDIENTE);
+        entityManager.persist(DatosPrueba.detalle(completada, producto, "2"));
+        entityManager.persist(DatosPrueba.detalle(pendiente, producto, "1"));
+        entityManager.flush();
+        LocalDateTime emision = periodo.atDay(15).atTime(12, 0);
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ?", Timestamp.valueOf(emision));
+
+        // Mismo orden que el servicio: los detalles antes que sus ventas
+        archivar(TablaArchivable.DETALLE_VENTAS);
+        archivar(TablaArchivable.VENTAS);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM ventas", Long.class))
+                .containsExactly(pendiente.getId());
+        assertThat(jdbcTemplate.queryForList("SELECT venta_id FROM detalle_ventas", Long.class))
+                .containsExactly(pendiente.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT fecha_venta FROM detalle_ventas_historico", Timestamp.class))
+                .isEqualTo(Timestamp.valueOf(emision));
+
+        List<Map<String, Object>> meses = archivoHistoricoRepository.obtenerVentasArchivadasPorMes(
+                periodo.atDay(1).atStartOfDay(), periodo.plusMonths(1).atDay(1).atStartOfDay());
+        assertThat(meses).singleElement().satisfies(mes -> {
+            assertThat(mes.get("periodo")).isEqualTo(periodo.toString());
+            assertThat(((Number) mes.get("cantidadventas")).intValue()).isEqualTo(2);
+            assertThat((BigDecimal) mes.get("totalventas")).isEqualByComparingTo("140.00");
+            assertThat(((Number) mes.get("ventasanuladas")).intValue()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void lasColumnasNuevasDeLaTablaActivaLleganALaHistorica() {
+        archivoHistoricoRepository.prepararTablaHistorica(TablaArchivable.MOVIMIENTOS_INVENTARIO);
+        jdbcTemplate.execute("ALTER TABLE movimientos_inventario ADD COLUMN lote varchar(30)");
+
+        archivoHistoricoRepository.prepararTablaHistorica(TablaArchivable.MOVIMIENTOS_INVENTARIO);
+
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns WHERE table_name = ?",
+                String.class, "movimientos_inventario_historico")).contains("lote");
+    }
+
+    // Métodos privados auxiliares
+    private void archivar(TablaArchivable tabla) {
+        archivoHistoricoRepository.prepararTablaHistorica(tabla);
+        archivoHistoricoRepository.crearParticion(tabla, periodo);
+        archivoHistoricoRepository.moverPeriodo(tabla, periodo);
+    }
+
+    private void registrar(LocalDateTime fecha) {
+        movimientoInventarioRepository.insertarEnLote(Arrays.asList(MovimientoInventario.builder()
+                .producto(producto)
+                .tipoMovimiento("ENTRADA")
+                .cantidad(BigDecimal.ONE)
+                .cantidadAnterior(BigDecimal.ZERO)
+                .cantidadNueva(BigDecimal.ONE)
+                .fechaMovimiento(fecha)
+                .build()));
+    }
+
+    private Venta venta(int consecutivo, String total, EstadoVenta estado) {
+        Venta venta = DatosPrueba.venta(consecutivo, total);
+        venta.setEstado(estado);
+        return entityManager.persist(venta);
+    }
+
+    private int contar(String tabla) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tabla, Integer.class);
+    }
+}
@@ -0,0 +1,108 @@
+package com.tienda.repository;
+
+import com.tienda.model.Producto;
+import com.tienda.repository.BusquedaTextoRepository.TablaBusqueda;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import(BusquedaTextoRepository.class)
+class BusquedaTextoRepositoryTest {
+
+    private static final Map<String, Object> SIN_FILTROS = Collections.emptyMap();
+
+    @Autowired
+    private BusquedaTextoRepository busquedaTextoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Long entera;
+    private Long deslactosada;
+    private Long lacteos;
+
+    @BeforeEach
+    void setUp() {
+        entera = producto("LAC-1", "Leche entera", "3.20");
+        deslactosada = producto("LAC-2", "Leche deslactosada", "4.10");
+        lacteos = producto("Z-9", "Lácteos surtidos", "9.00");
+        producto("PAN-1", "Pan tajado", "2.50");
+        entityManager.flush();
+    }
+
+    @Test
+    void elCodigoFiltraPorPrefijoYNoComoTextoLibre() {
+        // "lac" como texto también traería "Lácteos" por el nombre
+        assertThat(ids(busquedaTextoRepository.buscar(
+                TablaBusqueda.PRODUCTOS, null, "lac", SIN_FILTROS, PageRequest.of(0, 10))))
+                .containsExactlyInAnyOrder(entera, deslactosada);
+        assertThat(ids(busquedaTextoRepository.buscar(
+                TablaBusqueda.PRODUCTOS, "lacteos", "LAC", SIN_FILTROS, PageRequest.of(0, 10))))
+                .isEmpty();
+        assertThat(ids(busquedaTextoRepository.buscar(
+                TablaBusqueda.PRODUCTOS, "lacteos", null, SIN_FILTROS, PageRequest.of(0, 10))))
+                .containsExactly(lacteos);
+    }
+
+    @Test
+    void elOrdenPedidoManda() {
+        Page<Long> porPrecio = busquedaTextoRepository.buscar(TablaBusqueda.PRODUCTOS, "leche", null,
+                SIN_FILTROS, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "precioVenta")));
+        Page<Long> porCodigo = busquedaTextoRepository.buscar(TablaBusqueda.PRODUCTOS, null, "lac",
+                SIN_FILTROS, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "codigo")));
+
+        assertThat(ids(porPrecio)).containsExactly(deslactosada, entera);
+        assertThat(ids(porCodigo)).containsExactly(deslactosada, entera);
+    }
+
+    @Test
+    void sinOrdenPedidoElCodigoExactoVaPrimero() {
+        Page<Long> pagina = busquedaTextoRepository.buscar(
+                TablaBusqueda.PRODUCTOS, "lac-2", SIN_FILTROS, PageRequest.of(0, 10));
+
+        assertThat(ids(pagina).get(0)).isEqualTo(deslactosada);
+    }
+
+    @Test
+    void unaPropiedadDeOrdenConSqlSeRechaza() {
+        assertThatThrownBy(() -> busquedaTextoRepository.buscar(TablaBusqueda.PRODUCTOS, "leche", null,
+                SIN_FILTROS, PageRequest.of(0, 10, Sort.by("nombre; DELETE FROM productos"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void elTotalCuentaTodasLasCoincidenciasAunqueLaPaginaEsteVacia() {
+        Page<Long> fueraDeRango = busquedaTextoRepository.buscar(
+                TablaBusqueda.PRODUCTOS, null, "lac", SIN_FILTROS, PageRequest.of(5, 1));
+
+        assertThat(fueraDeRango.getContent()).isEmpty();
+        assertThat(fueraDeRango.getTotalElements()).isEqualTo(2);
+    }
+
+    // Métodos privados auxiliares
+    private Long producto(String codigo, String nombre, String precio) {
+        Producto producto = DatosPrueba.producto(codigo, "1");
+        producto.setNombre(nombre);
+        producto.setPrecioVenta(new BigDecimal(precio));
+        return entityManager.persist(producto).getId();
+    }
+
+    private List<Long> ids(Page<Long> pagina) {
+        return pagina.getContent();
+    }
+}
@@ -0,0 +1,136 @@
+package com.tienda.repository;
+
+import com.tienda.model.Caja;
+import com.tienda.model.Sucursal;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import(CajaMovimientoRepository.class)
+class CajaMovimientoRepositoryTest {
+
+    @Autowired
+    private CajaMovimientoRepository cajaMovimientoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Caja caja;
+    private Caja otra;
+
+    @BeforeEach
+    void setUp() {
+        Sucursal sucursal = entityManager.persist(Sucursal.builder().codigo("S1").nombre("Centro").build());
+        caja = entityManager.persist(Caja.builder().codigo("C1").nombre("Caja 1").sucursal(sucursal).build());
+        otra = entityManager.persist(Caja.builder().codigo("C2").nombre("Caja 2").sucursal(sucursal).build());
+        entityManager.flush();
+    }
+
+    @Test
+    void cadaMovimientoGuardaElSaldoAcumuladoDeSuSesion() {
+        cajaMovimientoRepository.abrirSesion(caja.getId(), new BigDecimal("100.00"), null);
+
+        assertThat(registrar(caja, "VENTA", "EFECTIVO", "40.00")).isEqualByComparingTo("140.00");
+        assertThat(registrar(caja, "EGRESO", "EFECTIVO", "-15.00")).isEqualByComparingTo("125.00");
+        assertThat(registrar(caja, "VENTA", "TARJETA_CREDITO", "60.00")).isEqualByComparingTo("185.00");
+
+        assertThat(cajaMovimientoRepository.obtenerMovimientosSesion(caja.getId(), 1))
+                .extracting(m -> ((BigDecimal) m.get("saldo")).stripTrailingZeros().toPlainString())
+                .containsExactly("100", "140", "125", "185");
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerSaldo(caja.getId()).get("saldo"))
+                .isEqualByComparingTo("185.00");
+    }
+
+    @Test
+    void losTotalesDeLaSesionSeparanFormasDePagoYCuadranConElSaldo() {
+        cajaMovimientoRepository.abrirSesion(caja.getId(), new BigDecimal("50.00"), null);
+        registrar(caja, "VENTA", "EFECTIVO", "30.00");
+        registrar(caja, "VENTA", "TARJETA_DEBITO", "20.00");
+        registrar(caja, "VENTA", "TRANSFERENCIA", "10.00");
+        registrar(caja, "ANULACION", "EFECTIVO", "-30.00");
+        registrar(caja, "INGRESO", "EFECTIVO", "5.00");
+        registrar(caja, "EGRESO", "EFECTIVO", "-8.00");
+        // Otra caja no entra en los totales
+        cajaMovimientoRepository.abrirSesion(otra.getId(), new BigDecimal("999.00"), null);
+        registrar(otra, "VENTA", "EFECTIVO", "999.00");
+
+        Map<String, Object> totales = cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), 1);
+
+        assertThat((BigDecimal) totales.get("saldo_inicial")).isEqualByComparingTo("50.00");
+        assertThat((BigDecimal) totales.get("ventas")).isEqualByComparingTo("30.00");
+        assertThat(((Number) totales.get("numero_ventas")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) totales.get("ingresos")).isEqualByComparingTo("5.00");
+        assertThat((BigDecimal) totales.get("egresos")).isEqualByComparingTo("8.00");
+        assertThat((BigDecimal) totales.get("efectivo")).isEqualByComparingTo("47.00");
+        assertThat((BigDecimal) totales.get("tarjetas")).isEqualByComparingTo("20.00");
+        assertThat((BigDecimal) totales.get("transferencias")).isEqualByComparingTo("10.00");
+        assertThat((BigDecimal) totales.get("saldo"))
+                .isEqualByComparingTo((BigDecimal) cajaMovimientoRepository.obtenerSaldo(caja.getId()).get("saldo"));
+    }
+
+    @Test
+    void unaSesionNuevaEmpiezaDesdeSuSaldoInicialYDejaIntactaLaAnterior() {
+        assertThat(registrar(caja, "VENTA", "EFECTIVO", "10.00")).isNull();
+
+        assertThat(cajaMovimientoRepository.abrirSesion(caja.getId(), new BigDecimal("20.00"), null)).isEqualTo(1);
+        registrar(caja, "VENTA", "EFECTIVO", "10.00");
+        assertThat(cajaMovimientoRepository.abrirSesion(caja.getId(), new BigDecimal("70.00"), null)).isEqualTo(2);
+        registrar(caja, "VENTA", "EFECTIVO", "5.00");
+
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), 1).get("saldo"))
+                .isEqualByComparingTo("30.00");
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), 2).get("saldo"))
+                .isEqualByComparingTo("75.00");
+        assertThat(cajaMovimientoRepository.obtenerSaldo(caja.getId())).containsEntry("sesion", 2);
+    }
+
+    @Test
+    void lasCajasAbiertasAntesDelLibroSeMigranConSusVentasDesdeLaApertura() {
+        jdbcTemplate.update("UPDATE cajas SET estado = 'ABIERTA', saldo_inicial = 40.00, fecha_apertura = ? " +
+                "WHERE id = ?", LocalDateTime.now().minusHours(2), caja.getId());
+        jdbcTemplate.update("INSERT INTO ventas (numero_factura, consecutivo, caja_id, total, subtotal, forma_pago, " +
+                "estado, fecha_emision) VALUES ('F-1', 1, ?, 25.00, 25.00, 'EFECTIVO', 'COMPLETADA', ?)",
+                caja.getId(), LocalDateTime.now().minusHours(1));
+
+        assertThat(cajaMovimientoRepository.migrarCajasAbiertas()).isEqualTo(1);
+        assertThat(cajaMovimientoRepository.migrarCajasAbiertas()).isZero();
+
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerSaldo(caja.getId()).get("saldo"))
+                .isEqualByComparingTo("65.00");
+        assertThat(cajaMovimientoRepository.obtenerSaldo(otra.getId())).isNull();
+    }
+
+    @Test
+    void elResumenDeVariasCajasSaleEnUnaConsulta() {
+        cajaMovimientoRepository.abrirSesion(caja.getId(), BigDecimal.ZERO, null);
+        registrar(caja, "VENTA", "EFECTIVO", "12.00");
+        registrar(caja, "VENTA", "EFECTIVO", "8.00");
+        registrar(caja, "ANULACION", "EFECTIVO", "-8.00");
+
+        Map<Long, Map<String, Object>> resumen = cajaMovimientoRepository.obtenerResumenCajas(
+                Arrays.asList(caja.getId(), otra.getId()), LocalDateTime.now().toLocalDate().atStartOfDay());
+
+        assertThat(resumen.get(caja.getId())).containsEntry("ventasHoy", 1).containsEntry("cierres", 0);
+        assertThat((BigDecimal) resumen.get(caja.getId()).get("totalHoy")).isEqualByComparingTo("12.00");
+        assertThat(resumen.get(otra.getId())).containsEntry("ventasHoy", 0).containsEntry("saldo", null);
+    }
+
+    // Métodos privados auxiliares
+    private BigDecimal registrar(Caja destino, String tipo, String formaPago, String monto) {
+        return cajaMovimientoRepository.registrar(destino.getId(), tipo, formaPago, new BigDecimal(monto),
+                null, null, tipo);
+    }
+}
@@ -0,0 +1,141 @@
+package com.tienda.repository;
+
+import com.tienda.model.Categoria;
+import com.tienda.model.Producto;
+import com.tienda.model.Venta;
+import com.tienda.model.Venta.EstadoVenta;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({CategoriaArbolRepository.class, ArchivoHistoricoRepository.class})
+class CategoriaArbolRepositoryTest {
+
+    @Autowired
+    private CategoriaArbolRepository categoriaArbolRepository;
+    @Autowired
+    private ArchivoHistoricoRepository archivoHistoricoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final YearMonth archivado = YearMonth.now().minusMonths(3);
+    private Long bebidas;
+    private Long gaseosas;
+    private Producto cola;
+    private Producto agua;
+
+    @BeforeEach
+    void setUp() {
+        bebidas = entityManager.persist(Categoria.builder().nombre("Bebidas").build()).getId();
+        gaseosas = entityManager.persist(Categoria.builder()
+                .nombre("Gaseosas")
+                .categoriaPadre(entityManager.find(Categoria.class, bebidas))
+                .nivel(2)
+                .build()).getId();
+        entityManager.flush();
+        categoriaArbolRepository.reconstruir();
+
+        cola = producto("COLA", gaseosas);
+        agua = producto("AGUA", bebidas);
+    }
+
+    // El repositorio recuerda que el archivo existe y el rollback lo borra: se olvida tras cada prueba
+    @AfterEach
+    void olvidarArchivo() {
+        ReflectionTestUtils.setField(categoriaArbolRepository, "hayArchivoVentas", false);
+    }
+
+    @Test
+    void lasVentasSeAcumulanEnLosAncestrosYSoloCuentanLasCompletadas() {
+        vender(1, EstadoVenta.COMPLETADA, LocalDateTime.now().minusHours(1), cola, "2", agua, "3");
+        vender(2, EstadoVenta.ANULADA, LocalDateTime.now().minusHours(1), cola, "5", agua, "5");
+
+        Map<Long, Map<String, Object>> resumen = resumen(LocalDateTime.now().minusDays(1), LocalDateTime.now());
+
+        assertThat(((Number) resumen.get(gaseosas).get("ventas")).intValue()).isEqualTo(1);
+        assertThat((BigDecimal) resumen.get(gaseosas).get("unidades")).isEqualByComparingTo("2");
+        // La misma venta toca las dos categorías y el padre la cuenta una vez
+        assertThat(((Number) resumen.get(bebidas).get("ventas")).intValue()).isEqualTo(1);
+        assertThat((BigDecimal) resumen.get(bebidas).get("unidades")).isEqualByComparingTo("5");
+        assertThat((BigDecimal) resumen.get(bebidas).get("subtotal")).isEqualByComparingTo("75.00");
+        assertThat((BigDecimal) resumen.get(bebidas).get("utilidad")).isEqualByComparingTo("25.00");
+    }
+
+    @Test
+    void lasVentasArchivadasSiguenEnElResumenDelRango() {
+        LocalDateTime antigua = archivado.atDay(10).atTime(12, 0);
+        vender(1, EstadoVenta.COMPLETADA, antigua, cola, "2", agua, "1");
+        vender(2, EstadoVenta.ANULADA, antigua, cola, "7", agua, "7");
+        vender(3, EstadoVenta.COMPLETADA, LocalDateTime.now().minusHours(1), cola, "4", agua, "0");
+        LocalDateTime desde = archivado.atDay(1).atStartOfDay();
+        LocalDateTime hasta = LocalDateTime.now();
+        Map<Long, Map<String, Object>> antes = resumen(desde, hasta);
+
+        // Mismo orden que el servicio: los detalles antes que sus ventas
+        for (TablaArchivable tabla : new TablaArchivable[]{TablaArchivable.DETALLE_VENTAS, TablaArchivable.VENTAS}) {
+            archivoHistoricoRepository.prepararTablaHistorica(tabla);
+            archivoHistoricoRepository.crearParticion(tabla, archivado);
+            archivoHistoricoRepository.moverPeriodo(tabla, archivado);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ventas", Integer.class)).isEqualTo(1);
+
+        Map<Long, Map<String, Object>> despues = resumen(desde, hasta);
+        assertThat(((Number) despues.get(bebidas).get("ventas")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) despues.get(bebidas).get("unidades")).isEqualByComparingTo("7");
+        assertThat((BigDecimal) despues.get(gaseosas).get("unidades")).isEqualByComparingTo("6");
+        assertThat(despues).isEqualTo(antes);
+
+        // Un rango sin meses archivados no suma lo movido
+        Map<Long, Map<String, Object>> reciente = resumen(archivado.plusMonths(1).atDay(1).atStartOfDay(), hasta);
+        assertThat((BigDecimal) reciente.get(gaseosas).get("unidades")).isEqualByComparingTo("4");
+        assertThat(((Number) reciente.get(bebidas).get("ventas")).intValue()).isEqualTo(1);
+    }
+
+    // Métodos privados auxiliares
+    private Producto producto(String codigo, Long categoriaId) {
+        Producto producto = DatosPrueba.producto(codigo, "100");
+        producto.setCategoria(entityManager.find(Categoria.class, categoriaId));
+        return entityManager.persist(producto);
+    }
+
+    private void vender(int consecutivo, EstadoVenta estado, LocalDateTime fecha,
+                        Producto primero, String cantidadPrimero, Producto segundo, String cantidadSegundo) {
+        Venta venta = DatosPrueba.venta(consecutivo, "0");
+        venta.setEstado(estado);
+        entityManager.persist(venta);
+        entityManager.persist(DatosPrueba.detalle(venta, primero, cantidadPrimero));
+        if (new BigDecimal(cantidadSegundo).signum() > 0) {
+            entityManager.persist(DatosPrueba.detalle(venta, segundo, cantidadSegundo));
+        }
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ? WHERE id = ?", Timestamp.valueOf(fecha), venta.getId());
+    }
+
+    private Map<Long, Map<String, Object>> resumen(LocalDateTime desde, LocalDateTime hasta) {
+        List<Map<String, Object>> filas = categoriaArbolRepository.obtenerResumenVentas(desde, hasta);
+        Map<Long, Map<String, Object>> porCategoria = new HashMap<>();
+        filas.forEach(fila -> porCategoria.put(((Number) fila.get("id")).longValue(), fila));
+        return porCategoria;
+    }
+}
@@ -0,0 +1,163 @@
+package com.tienda.repository;
+
+import com.tienda.model.Cliente;
+import com.tienda.model.Venta;
+import com.tienda.model.Venta.EstadoVenta;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({ClienteMetricasRepository.class, ArchivoHistoricoRepository.class})
+class ClienteMetricasRepositoryTest {
+
+    @Autowired
+    private ClienteMetricasRepository clienteMetricasRepository;
+    @Autowired
+    private ArchivoHistoricoRepository archivoHistoricoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final YearMonth archivado = YearMonth.now().minusMonths(14);
+    private final LocalDateTime ahora = LocalDateTime.now().withNano(0);
+    private Cliente cliente;
+    private int consecutivo;
+
+    @BeforeEach
+    void setUp() {
+        cliente = entityManager.persistAndFlush(Cliente.builder().nombre("Ana Ruiz").build());
+    }
+
+    @Test
+    void lasMetricasCuentanSoloLasVentasCompletadasYSeCopianAlCliente() {
+        vender("100.00", EstadoVenta.COMPLETADA, ahora.minusDays(10));
+        vender("50.00", EstadoVenta.COMPLETADA, ahora.minusDays(4));
+        vender("900.00", EstadoVenta.ANULADA, ahora.minusDays(2));
+
+        clienteMetricasRepository.recalcular(cliente.getId());
+
+        Map<String, Object> metricas = clienteMetricasRepository.obtenerMetricas(cliente.getId());
+        assertThat(((Number) metricas.get("compras")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) metricas.get("total")).isEqualByComparingTo("150.00");
+        assertThat((BigDecimal) metricas.get("ticket_promedio")).isEqualByComparingTo("75.00");
+        assertThat((BigDecimal) metricas.get("frecuencia_dias")).isEqualByComparingTo("6.00");
+        assertThat(metricas.get("ultima_compra")).isEqualTo(Timestamp.valueOf(ahora.minusDays(4)));
+        assertThat(jdbcTemplate.queryForObject("SELECT total_compras FROM clientes WHERE id = ?",
+                BigDecimal.class, cliente.getId())).isEqualByComparingTo("150.00");
+    }
+
+    @Test
+    void sinVentasCompletadasLasMetricasDesaparecen() {
+        Long venta = vender("80.00", EstadoVenta.COMPLETADA, ahora.minusDays(1));
+        clienteMetricasRepository.recalcular(cliente.getId());
+
+        jdbcTemplate.update("UPDATE ventas SET estado = 'ANULADA' WHERE id = ?", venta);
+        clienteMetricasRepository.recalcular(cliente.getId());
+
+        assertThat(clienteMetricasRepository.obtenerMetricas(cliente.getId())).isNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT total_compras FROM clientes WHERE id = ?",
+                BigDecimal.class, cliente.getId())).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void lasVentasArchivadasSiguenContandoAlRecalcular() {
+        LocalDateTime primera = archivado.atDay(5).atTime(9, 0);
+        vender("200.00", EstadoVenta.COMPLETADA, primera);
+        vender("70.00", EstadoVenta.ANULADA, archivado.atDay(8).atTime(9, 0));
+        vender("40.00", EstadoVenta.COMPLETADA, ahora.minusDays(3));
+        clienteMetricasRepository.recalcular(cliente.getId());
+        Map<String, Object> antes = clienteMetricasRepository.obtenerMetricas(cliente.getId());
+
+        // Como el servicio de archivo: el aporte se acumula en la misma transacción que mueve las ventas
+        assertThat(clienteMetricasRepository.acumularArchivo(archivado.atDay(1).atStartOfDay(),
+                archivado.plusMonths(1).atDay(1).atStartOfDay())).isEqualTo(1);
+        archivoHistoricoRepository.prepararTablaHistorica(TablaArchivable.VENTAS);
+        archivoHistoricoRepository.crearParticion(TablaArchivable.VENTAS, archivado);
+        assertThat(archivoHistoricoRepository.moverPeriodo(TablaArchivable.VENTAS, archivado)).isEqualTo(2);
+
+        clienteMetricasRepository.recalcular(cliente.getId());
+        Map<String, Object> despues = clienteMetricasRepository.obtenerMetricas(cliente.getId());
+
+        assertThat(((Number) despues.get("compras")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) despues.get("total")).isEqualByComparingTo("240.00");
+        assertThat(despues.get("primera_compra")).isEqualTo(Timestamp.valueOf(primera));
+        assertThat(despues.get("frecuencia_dias")).isEqualTo(antes.get("frecuencia_dias"));
+
+        // La reconstrucción completa lee ventas_historico y llega a lo mismo
+        clienteMetricasRepository.reconstruir();
+        Map<String, Object> reconstruidas = clienteMetricasRepository.obtenerMetricas(cliente.getId());
+        assertThat(reconstruidas.get("compras")).isEqualTo(despues.get("compras"));
+        assertThat((BigDecimal) reconstruidas.get("total")).isEqualByComparingTo("240.00");
+        assertThat(reconstruidas.get("primera_compra")).isEqualTo(Timestamp.valueOf(primera));
+    }
+
+    @Test
+    void acumularDosPeriodosSumaSobreElMismoCliente() {
+        vender("30.00", EstadoVenta.COMPLETADA, archivado.atDay(2).atStartOfDay());
+        vender("20.00", EstadoVenta.COMPLETADA, archivado.plusMonths(1).atDay(2).atStartOfDay());
+
+        clienteMetricasRepository.acumularArchivo(archivado.atDay(1).atStartOfDay(),
+                archivado.plusMonths(1).atDay(1).atStartOfDay());
+        clienteMetricasRepository.acumularArchivo(archivado.plusMonths(1).atDay(1).atStartOfDay(),
+                archivado.plusMonths(2).atDay(1).atStartOfDay());
+
+        Map<String, Object> archivo = jdbcTemplate.queryForMap(
+                "SELECT compras, total, primera_compra, ultima_compra FROM cliente_metricas_archivo WHERE cliente_id = ?",
+                cliente.getId());
+        assertThat(((Number) archivo.get("compras")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) archivo.get("total")).isEqualByComparingTo("50.00");
+        assertThat(archivo.get("primera_compra")).isEqualTo(Timestamp.valueOf(archivado.atDay(2).atStartOfDay()));
+        assertThat(archivo.get("ultima_compra"))
+                .isEqualTo(Timestamp.valueOf(archivado.plusMonths(1).atDay(2).atStartOfDay()));
+    }
+
+    @Test
+    void laSegmentacionSeparaAlClienteRecienteYFrecuenteDelPerdido() {
+        Cliente perdido = entityManager.persistAndFlush(Cliente.builder().nombre("Luis Mora").build());
+        for (int i = 1; i <= 5; i++) {
+            vender("100.00", EstadoVenta.COMPLETADA, ahora.minusDays(i));
+        }
+        Long antigua = vender("10.00", EstadoVenta.COMPLETADA, ahora.minusDays(300));
+        jdbcTemplate.update("UPDATE ventas SET cliente_id = ? WHERE id = ?", perdido.getId(), antigua);
+        clienteMetricasRepository.reconstruir();
+
+        assertThat(clienteMetricasRepository.recalcularSegmentos()).isEqualTo(2);
+
+        assertThat(clienteMetricasRepository.obtenerMetricas(cliente.getId())).containsEntry("segmento", "CAMPEONES");
+        // Con dos clientes el peor queda en el quintil 3 de cada dimensión (CUME_DIST = 0,5)
+        assertThat(clienteMetricasRepository.obtenerMetricas(perdido.getId()))
+                .containsEntry("recencia", 3)
+                .containsEntry("frecuencia", 3)
+                .containsEntry("segmento", "NECESITAN_ATENCION");
+        assertThat(clienteMetricasRepository.contarClientesSegmento("CAMPEONES")).isEqualTo(1);
+        assertThat(clienteMetricasRepository.obtenerClientesSegmento("CAMPEONES", 10, 0))
+                .extracting(fila -> ((Number) fila.get("id")).longValue())
+                .containsExactly(cliente.getId());
+    }
+
+    // Métodos privados auxiliares
+    private Long vender(String total, EstadoVenta estado, LocalDateTime fecha) {
+        Venta venta = DatosPrueba.venta(++consecutivo, total);
+        venta.setEstado(estado);
+        venta.setCliente(cliente);
+        entityManager.persistAndFlush(venta);
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ? WHERE id = ?", Timestamp.valueOf(fecha), venta.getId());
+        return venta.getId();
+    }
+}
@@ -0,0 +1,149 @@
+package com.tienda.repository;
+
+import com.tienda.model.Cliente;
+import com.tienda.model.Venta;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({CohorteClientesRepository.class, ClienteMetricasRepository.class, ArchivoHistoricoRepository.class})
+class CohorteClientesRepositoryTest {
+
+    @Autowired
+    private CohorteClientesRepository cohorteClientesRepository;
+    @Autowired
+    private ClienteMetricasRepository clienteMetricasRepository;
+    @Autowired
+    private ArchivoHistoricoRepository archivoHistoricoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final YearMonth actual = YearMonth.now();
+    private final YearMonth primero = actual.minusMonths(3);
+    private final YearMonth segundo = actual.minusMonths(2);
+    private Cliente ana;
+    private Cliente luis;
+    private Cliente rosa;
+    private int consecutivo;
+
+    @BeforeEach
+    void setUp() {
+        ana = entityManager.persist(Cliente.builder().nombre("Ana").build());
+        luis = entityManager.persist(Cliente.builder().nombre("Luis").build());
+        rosa = entityManager.persist(Cliente.builder().nombre("Rosa").build());
+
+        // Cohorte del primer mes: Ana y Luis; Ana vuelve el mes siguiente. Rosa empieza el segundo mes.
+        vender(ana, "100.00", primero);
+        vender(luis, "50.00", primero);
+        vender(ana, "30.00", segundo);
+        vender(rosa, "20.00", segundo);
+    }
+
+    @Test
+    void laMatrizDaTamanoRetencionEImporteAcumuladoPorCohorte() {
+        clienteMetricasRepository.reconstruir();
+        cohorteClientesRepository.cerrarMeses(actual.atDay(1));
+
+        List<Map<String, Object>> matriz = cohorteClientesRepository.obtenerMatriz(
+                primero.atDay(1), actual.atDay(1), actual.plusMonths(1).atDay(1));
+
+        assertThat(matriz).hasSize(3);
+        assertThat(matriz.get(0)).containsEntry("cohorte", Date.valueOf(primero.atDay(1))).containsEntry("periodo", 0);
+        assertThat(((Number) matriz.get(0).get("tamano_cohorte")).intValue()).isEqualTo(2);
+        assertThat(matriz.get(1)).containsEntry("mes", Date.valueOf(segundo.atDay(1))).containsEntry("periodo", 1);
+        assertThat((BigDecimal) matriz.get(1).get("retencion")).isEqualByComparingTo("50.00");
+        assertThat((BigDecimal) matriz.get(1).get("total_acumulado")).isEqualByComparingTo("180.00");
+        assertThat(matriz.get(2)).containsEntry("cohorte", Date.valueOf(segundo.atDay(1)));
+        assertThat((BigDecimal) matriz.get(2).get("retencion")).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void losMesesCerradosSeGuardanUnaVezYElMesEnCursoSeCalculaAlVuelo() {
+        clienteMetricasRepository.reconstruir();
+        assertThat(cohorteClientesRepository.cerrarMeses(actual.atDay(1))).isEqualTo(3);
+        assertThat(cohorteClientesRepository.obtenerCerradoHasta()).isEqualTo(actual.atDay(1));
+        assertThat(cohorteClientesRepository.cerrarMeses(actual.atDay(1))).isZero();
+
+        // Un cambio tardío en un mes cerrado no reescribe sus celdas
+        jdbcTemplate.update("UPDATE ventas SET total = 999 WHERE total = 100.00");
+        vender(luis, "10.00", actual);
+        clienteMetricasRepository.reconstruir();
+
+        List<Map<String, Object>> matriz = cohorteClientesRepository.obtenerMatriz(
+                primero.atDay(1), actual.atDay(1), actual.plusMonths(1).atDay(1));
+
+        assertThat(matriz).hasSize(4);
+        assertThat((BigDecimal) matriz.get(0).get("total")).isEqualByComparingTo("150.00");
+        assertThat(matriz.get(2)).containsEntry("mes", Date.valueOf(actual.atDay(1)));
+        assertThat((BigDecimal) matriz.get(2).get("retencion")).isEqualByComparingTo("50.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cliente_cohortes", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void laRetencionDelPrimerMesSaleDeLasCeldasGuardadas() {
+        clienteMetricasRepository.reconstruir();
+        cohorteClientesRepository.cerrarMeses(actual.atDay(1));
+
+        Map<String, Object> retencion = cohorteClientesRepository.obtenerRetencionPrimerMes(
+                primero.atDay(1), actual.atDay(1));
+
+        assertThat(((Number) retencion.get("adquiridos")).intValue()).isEqualTo(3);
+        assertThat(((Number) retencion.get("retenidos")).intValue()).isEqualTo(1);
+    }
+
+    @Test
+    void elPrimerCierreIncluyeLasVentasArchivadas() {
+        clienteMetricasRepository.reconstruir();
+        archivoHistoricoRepository.prepararTablaHistorica(TablaArchivable.VENTAS);
+        archivoHistoricoRepository.crearParticion(TablaArchivable.VENTAS, primero);
+        assertThat(archivoHistoricoRepository.moverPeriodo(TablaArchivable.VENTAS, primero)).isEqualTo(2);
+
+        cohorteClientesRepository.cerrarMeses(actual.atDay(1));
+
+        List<Map<String, Object>> matriz = cohorteClientesRepository.obtenerMatriz(
+                primero.atDay(1), actual.atDay(1), actual.plusMonths(1).atDay(1));
+        assertThat(matriz.get(0)).containsEntry("mes", Date.valueOf(primero.atDay(1)));
+        assertThat(((Number) matriz.get(0).get("clientes")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) matriz.get(1).get("retencion")).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void laDistribucionAgrupaLosClientesPorNumeroDeCompras() {
+        clienteMetricasRepository.reconstruir();
+
+        List<Map<String, Object>> distribucion = cohorteClientesRepository.obtenerDistribucionCompras();
+
+        assertThat(distribucion).extracting(fila -> fila.get("rango")).containsExactly("1", "2");
+        assertThat(((Number) distribucion.get(0).get("clientes")).intValue()).isEqualTo(2);
+        assertThat((BigDecimal) distribucion.get(1).get("total")).isEqualByComparingTo("130.00");
+    }
+
+    // Métodos privados auxiliares
+    private void vender(Cliente cliente, String total, YearMonth mes) {
+        Venta venta = DatosPrueba.venta(++consecutivo, total);
+        venta.setCliente(cliente);
+        entityManager.persistAndFlush(venta);
+        LocalDate dia = mes.equals(actual) ? LocalDate.now() : mes.atDay(10);
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ? WHERE id = ?",
+                Timestamp.valueOf(dia.atStartOfDay()), venta.getId());
+    }
+}
@@ -0,0 +1,59 @@
+package com.tienda.repository;
+
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Producto;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+class MovimientoInventarioRepositoryTest {
+
+    @Autowired
+    private MovimientoInventarioRepository movimientoInventarioRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void insertarEnLoteAgrupaLasFilasEnLotesDeQuinientos() {
+        Producto producto = entityManager.persistFlushFind(DatosPrueba.producto("LOTE", "0"));
+        LocalDateTime fecha = LocalDateTime.of(2026, 3, 10, 9, 0);
+
+        List<MovimientoInventario> movimientos = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            movimientos.add(MovimientoInventario.builder()
+                    .producto(producto)
+                    .tipoMovimiento("INCREMENTO")
+                    .subtipo("MASIVO")
+                    .cantidad(BigDecimal.ONE)
+                    .cantidadAnterior(BigDecimal.valueOf(i))
+                    .cantidadNueva(BigDecimal.valueOf(i + 1))
+                    .fechaMovimiento(fecha)
+                    .build());
+        }
+
+        int[][] lotes = movimientoInventarioRepository.insertarEnLote(movimientos);
+
+        assertThat(lotes.length).isEqualTo(2);
+        assertThat(lotes[0]).hasSize(500);
+        assertThat(lotes[1]).hasSize(1);
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM movimientos_inventario WHERE producto_id = ? AND subtipo = 'MASIVO'",
+                Long.class, producto.getId())).isEqualTo(501L);
+        assertThat(movimientoInventarioRepository.calcularVariacionStock(producto.getId(),
+                fecha.minusSeconds(1), fecha)).isEqualByComparingTo("501");
+    }
+}
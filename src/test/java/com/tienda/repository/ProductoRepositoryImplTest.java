@@ -0,0 +1,139 @@
+package com.tienda.repository;
+
+import com.tienda.dto.request.ActualizacionPreciosRequest;
+import com.tienda.model.Categoria;
+import com.tienda.model.Producto;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import(CategoriaArbolRepository.class)
+class ProductoRepositoryImplTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private CategoriaArbolRepository categoriaArbolRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void unPorcentajeSobreElSubarbolActualizaPrecioMargenVersionEHistorialEnUnaSentencia() {
+        Categoria raiz = categoria("Bebidas", null);
+        Categoria hija = categoria("Gaseosas", raiz);
+        Categoria otra = categoria("Aseo", null);
+        Producto enRaiz = producto("R-1", raiz, "15.00");
+        Producto enHija = producto("H-1", hija, "15.00");
+        Producto fuera = producto("O-1", otra, "15.00");
+        categoriaArbolRepository.reconstruir();
+
+        ActualizacionPreciosRequest request = request("PORCENTAJE", "10");
+        request.setCategoriaId(raiz.getId());
+        request.setMotivo("Temporada");
+        List<Long> ids = productoRepository.actualizarPreciosMasivo(request, "LOTE-1");
+
+        assertThat(ids).containsExactly(enRaiz.getId(), enHija.getId());
+        Map<String, Object> fila = fila(enHija.getId());
+        assertThat((BigDecimal) fila.get("precio_venta")).isEqualByComparingTo("16.50");
+        // (16.50 - 10.00) / 10.00 * 100
+        assertThat((BigDecimal) fila.get("margen_ganancia")).isEqualByComparingTo("65.00");
+        assertThat(((Number) fila.get("version")).longValue()).isEqualTo(1L);
+        assertThat((BigDecimal) fila(fuera.getId()).get("precio_venta")).isEqualByComparingTo("15.00");
+
+        List<Map<String, Object>> historial = jdbcTemplate.queryForList(
+                "SELECT producto_id, precio_anterior, precio_nuevo, tipo_cambio, motivo FROM historial_precios " +
+                "WHERE lote = 'LOTE-1' ORDER BY producto_id");
+        assertThat(historial).hasSize(2);
+        assertThat((BigDecimal) historial.get(0).get("precio_anterior")).isEqualByComparingTo("15.00");
+        assertThat((BigDecimal) historial.get(0).get("precio_nuevo")).isEqualByComparingTo("16.50");
+        assertThat(historial.get(0)).containsEntry("tipo_cambio", "PORCENTAJE").containsEntry("motivo", "Temporada");
+    }
+
+    @Test
+    void unMargenObjetivoOmiteProductosSinCostoEInactivos() {
+        Producto conCosto = producto("M-1", null, "15.00");
+        Producto sinCosto = producto("M-2", null, "15.00");
+        Producto inactivo = producto("M-3", null, "15.00");
+        jdbcTemplate.update("UPDATE productos SET costo_promedio = 0 WHERE id = ?", sinCosto.getId());
+        jdbcTemplate.update("UPDATE productos SET estado = 'INACTIVO' WHERE id = ?", inactivo.getId());
+
+        ActualizacionPreciosRequest request = request("MARGEN", "40");
+        request.setProductoIds(Arrays.asList(conCosto.getId(), sinCosto.getId(), inactivo.getId()));
+        List<Long> ids = productoRepository.actualizarPreciosMasivo(request, "LOTE-2");
+
+        assertThat(ids).containsExactly(conCosto.getId());
+        assertThat((BigDecimal) fila(conCosto.getId()).get("precio_venta")).isEqualByComparingTo("14.00");
+        assertThat((BigDecimal) fila(conCosto.getId()).get("margen_ganancia")).isEqualByComparingTo("40.00");
+
+        request.setSoloActivos(false);
+        assertThat(productoRepository.actualizarPreciosMasivo(request, "LOTE-3")).containsExactly(inactivo.getId());
+    }
+
+    @Test
+    void losPreciosSeRedondeanYLosQueQuedanEnCeroNoSeTocan() {
+        Producto redondeado = producto("D-1", null, "15.00");
+        Producto barato = producto("D-2", null, "2.00");
+
+        ActualizacionPreciosRequest request = request("MONTO", "-2.40");
+        request.setDecimales(0);
+        request.setProductoIds(Arrays.asList(redondeado.getId(), barato.getId()));
+        List<Long> ids = productoRepository.actualizarPreciosMasivo(request, "LOTE-4");
+
+        assertThat(ids).containsExactly(redondeado.getId());
+        assertThat((BigDecimal) fila(redondeado.getId()).get("precio_venta")).isEqualByComparingTo("13");
+        assertThat((BigDecimal) fila(barato.getId()).get("precio_venta")).isEqualByComparingTo("2.00");
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM historial_precios WHERE producto_id = ?", Integer.class, barato.getId()))
+                .isZero();
+    }
+
+    @Test
+    void sinCambioDePrecioNoSeEscribeNada() {
+        Producto producto = producto("S-1", null, "15.00");
+
+        ActualizacionPreciosRequest request = request("PORCENTAJE", "0");
+        request.setProductoIds(Collections.singletonList(producto.getId()));
+
+        assertThat(productoRepository.actualizarPreciosMasivo(request, "LOTE-5")).isEmpty();
+        assertThat(((Number) fila(producto.getId()).get("version")).longValue()).isZero();
+    }
+
+    // Métodos privados auxiliares
+    private Categoria categoria(String nombre, Categoria padre) {
+        return entityManager.persistAndFlush(Categoria.builder().nombre(nombre).categoriaPadre(padre).build());
+    }
+
+    private Producto producto(String codigo, Categoria categoria, String precio) {
+        Producto producto = DatosPrueba.producto(codigo, "10");
+        producto.setCategoria(categoria);
+        producto.setPrecioVenta(new BigDecimal(precio));
+        return entityManager.persistAndFlush(producto);
+    }
+
+    private ActualizacionPreciosRequest request(String tipoCambio, String valor) {
+        ActualizacionPreciosRequest request = new ActualizacionPreciosRequest();
+        request.setTipoCambio(tipoCambio);
+        request.setValor(new BigDecimal(valor));
+        return request;
+    }
+
+    private Map<String, Object> fila(Long id) {
+        return jdbcTemplate.queryForMap(
+                "SELECT precio_venta, margen_ganancia, version FROM productos WHERE id = ?", id);
+    }
+}
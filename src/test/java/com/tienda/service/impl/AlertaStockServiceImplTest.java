@@ -0,0 +1,123 @@
+package com.tienda.service.impl;
+
+import com.tienda.event.AlertaStockEvent;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AlertaStockServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @InjectMocks
+    private AlertaStockServiceImpl alertaStockService;
+
+    @Test
+    void reconstruirIndiceNuncaExponeUnIndiceParcial() throws InterruptedException {
+        List<Producto> enAlerta = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            enAlerta.add(producto(id, "2"));
+        }
+        when(productoRepository.findByAlertaStockInConRelaciones(anyList())).thenReturn(enAlerta);
+        alertaStockService.reconstruirIndice();
+
+        AtomicBoolean activo = new AtomicBoolean(true);
+        AtomicLong minimoVisto = new AtomicLong(Long.MAX_VALUE);
+        Thread lector = new Thread(() -> {
+            while (activo.get()) {
+                long total = alertaStockService.contarProductosEnAlerta(Producto.AlertaStock.BAJO);
+                minimoVisto.accumulateAndGet(total, Math::min);
+            }
+        });
+        lector.start();
+
+        for (int i = 0; i < 50; i++) {
+            alertaStockService.reconstruirIndice();
+        }
+        activo.set(false);
+        lector.join();
+
+        assertThat(minimoVisto.get()).isEqualTo(2000L);
+    }
+
+    @Test
+    void lasTransicionesMuevenElProductoEntreNivelesYSalenAlVolverANormal() {
+        Producto producto = producto(1L, "2");
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(producto, Producto.AlertaStock.NORMAL));
+        assertThat(alertaStockService.contarProductosEnAlerta(Producto.AlertaStock.BAJO)).isEqualTo(1);
+
+        producto.setStockActual(BigDecimal.ZERO);
+        producto.calcularEstadoStock();
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(producto, Producto.AlertaStock.BAJO));
+        assertThat(alertaStockService.contarProductosEnAlerta(Producto.AlertaStock.BAJO)).isZero();
+        assertThat(alertaStockService.contarProductosEnAlerta(Producto.AlertaStock.AGOTADO)).isEqualTo(1);
+
+        producto.setStockActual(new BigDecimal("50"));
+        producto.calcularEstadoStock();
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(producto, Producto.AlertaStock.AGOTADO));
+        assertThat(alertaStockService.obtenerProductosEnAlerta(Producto.AlertaStock.values())).isEmpty();
+
+        assertThat(alertaStockService.obtenerTransicionesRecientes(10))
+                .extracting(AlertaStockEvent::getAlertaNueva)
+                .containsExactly(Producto.AlertaStock.NORMAL, Producto.AlertaStock.AGOTADO,
+                        Producto.AlertaStock.BAJO);
+    }
+
+    @Test
+    void unCambioDeCantidadSinCambioDeNivelNoEsTransicion() {
+        Producto producto = producto(1L, "3");
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(producto, Producto.AlertaStock.BAJO));
+
+        assertThat(alertaStockService.obtenerTransicionesRecientes(10)).isEmpty();
+        assertThat(alertaStockService.obtenerProductosEnAlerta(Producto.AlertaStock.BAJO))
+                .extracting(e -> e.getStockActual().toPlainString())
+                .containsExactly("3");
+    }
+
+    @Test
+    void laReconciliacionCorrigeEventosDesordenadosYEscriturasSinListener() {
+        // Llega primero el evento nuevo (AGOTADO) y después el viejo (BAJO)
+        Producto nuevo = producto(1L, "0");
+        Producto viejo = producto(1L, "2");
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(nuevo, Producto.AlertaStock.BAJO));
+        alertaStockService.alCambiarEstadoStock(AlertaStockEvent.de(viejo, Producto.AlertaStock.NORMAL));
+        assertThat(alertaStockService.contarProductosEnAlerta(Producto.AlertaStock.BAJO)).isEqualTo(1);
+
+        // El producto 2 quedó CRITICO por una escritura JDBC que no publicó evento
+        when(productoRepository.findByAlertaStockInConRelaciones(anyList()))
+                .thenReturn(Arrays.asList(nuevo, producto(2L, "1")));
+
+        alertaStockService.reconciliarIndice();
+
+        assertThat(alertaStockService.obtenerResumenAlertas())
+                .containsEntry("BAJO", 0L)
+                .containsEntry("AGOTADO", 1L)
+                .containsEntry("CRITICO", 1L);
+    }
+
+    // Métodos privados auxiliares
+    private static Producto producto(Long id, String stock) {
+        Producto producto = DatosPrueba.producto("P" + id, stock);
+        producto.setId(id);
+        producto.calcularEstadoStock();
+        return producto;
+    }
+}
@@ -0,0 +1,201 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import com.tienda.event.ProductoModificadoEvent;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BusquedaProductoServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private BusquedaProductoServiceImpl busqueda;
+    private long siguienteId;
+
+    @BeforeEach
+    void setUp() {
+        busqueda = new BusquedaProductoServiceImpl(productoRepository);
+        siguienteId = 1;
+    }
+
+    @Test
+    void laBusquedaIgnoraTildesYMayusculas() {
+        indexar("CAF-1", "Café Molido", "Sello Rojo");
+        indexar("JUG-1", "Jugo para Niño", null);
+
+        assertThat(codigos(busqueda.buscar("cafe", 10, true))).containsExactly("CAF-1");
+        assertThat(codigos(busqueda.buscar("NINO", 10, true))).containsExactly("JUG-1");
+        assertThat(codigos(busqueda.buscar("sello", 10, true))).containsExactly("CAF-1");
+    }
+
+    @Test
+    void elCodigoExactoGanaAlPrefijoYElPrefijoDePalabraALaSubcadena() {
+        indexar("ARR-10", "Arroz blanco", null);
+        indexar("ARR-1", "Arroz integral", null);
+        indexar("HAR-1", "Harina de trigo", null);
+        indexar("CHO-1", "Chocolate con arroz inflado", null);
+
+        assertThat(codigos(busqueda.buscar("arr-1", 10, true))).startsWith("ARR-1", "ARR-10");
+        // Nombre que empieza por "arroz" antes que la palabra en medio del nombre
+        assertThat(codigos(busqueda.buscar("arroz", 10, true)).get(2)).isEqualTo("CHO-1");
+        // "ari" solo aparece dentro de "harina": coincidencia por subcadena
+        assertThat(codigos(busqueda.buscar("ari", 10, true))).containsExactly("HAR-1");
+    }
+
+    @Test
+    void todosLosTerminosDebenCoincidir() {
+        indexar("A", "Leche entera", "Alpina");
+        indexar("B", "Leche deslactosada", "Colanta");
+
+        assertThat(codigos(busqueda.buscar("leche alp", 10, true))).containsExactly("A");
+        assertThat(busqueda.buscar("leche xyz", 10, true)).isEmpty();
+    }
+
+    @Test
+    void seDevuelvenSoloLosMejoresNYLosActivosSiSePide() {
+        for (int i = 0; i < 30; i++) {
+            indexar("GAL-" + i, "Galleta sabor " + i, null);
+        }
+        Producto inactivo = producto("GAL-X", "Galleta descontinuada", null);
+        inactivo.setEstado(Producto.EstadoProducto.INACTIVO);
+        publicar(inactivo);
+
+        assertThat(busqueda.buscar("galleta", 5, true)).hasSize(5);
+        assertThat(codigos(busqueda.buscar("descontinuada", 10, true))).isEmpty();
+        assertThat(codigos(busqueda.buscar("descontinuada", 10, false))).containsExactly("GAL-X");
+    }
+
+    @Test
+    void unCambioReindexaElProductoYUnEventoViejoSeDescarta() {
+        Producto producto = indexar("P-1", "Azúcar morena", null);
+
+        producto.setNombre("Panela");
+        producto.setVersion(1);
+        publicar(producto);
+        Producto viejo = DatosPrueba.producto("P-1", "10");
+        viejo.setId(producto.getId());
+        viejo.setNombre("Azúcar morena");
+        publicar(viejo);
+
+        assertThat(busqueda.buscar("azucar", 10, true)).isEmpty();
+        assertThat(codigos(busqueda.buscar("panela", 10, true))).containsExactly("P-1");
+    }
+
+    @Test
+    void unProductoEliminadoDejaDeAparecer() {
+        Producto producto = indexar("P-1", "Aceite de oliva", null);
+
+        busqueda.alModificarProducto(new ProductoModificadoEvent(producto.getId(), null, true));
+
+        assertThat(busqueda.buscar("aceite", 10, true)).isEmpty();
+    }
+
+    @Test
+    void laCompactacionConservaLosResultados() {
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            productos.add(indexar("C-" + i, "Producto " + i, null));
+        }
+        // Más de mil posiciones reemplazadas y más de un cuarto del índice: se compacta
+        for (int i = 0; i < 1100; i++) {
+            Producto producto = productos.get(i);
+            producto.setVersion(1);
+            producto.setNombre("Renombrado " + i);
+            publicar(producto);
+        }
+
+        assertThat(busqueda.obtenerEstadisticas()).containsEntry("productos", 1500);
+        assertThat((Integer) busqueda.obtenerEstadisticas().get("posicionesMuertas")).isLessThan(1000);
+        assertThat(codigos(busqueda.buscar("renombrado 1099", 10, true))).containsExactly("C-1099");
+        assertThat(codigos(busqueda.buscar("producto 1499", 10, true))).containsExactly("C-1499");
+    }
+
+    @Test
+    void laReconstruccionLeeElCatalogoPorBloquesDeId() {
+        List<Producto> bloque = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            bloque.add(producto("B-" + i, "Bloque " + i, null));
+        }
+        Producto ultimo = producto("Z-1", "Zanahoria", null);
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class))).thenReturn(bloque);
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(eq(2000L), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(ultimo));
+
+        assertThat(busqueda.isIndiceConstruido()).isFalse();
+        assertThat(busqueda.reconstruirIndice()).isEqualTo(2001);
+        assertThat(busqueda.isIndiceConstruido()).isTrue();
+        assertThat(codigos(busqueda.buscar("zanah", 10, true))).containsExactly("Z-1");
+    }
+
+    @Test
+    void laBusquedaPorCodigoSoloMiraCodigoYCodigoDeBarrasPorPrefijo() {
+        indexar("P-100", "Leche entera", "Alpina");
+        Producto lecitina = indexar("LEC-7", "Lecitina de soya", null);
+        Producto conBarras = producto("Q-1", "Queso", null);
+        conBarras.setCodigoBarras("7701234");
+        publicar(conBarras);
+
+        assertThat(busqueda.buscarIdsPorCodigo("lec")).containsExactly(lecitina.getId());
+        assertThat(busqueda.buscarIdsPorCodigo("770")).containsExactly(conBarras.getId());
+        // Ni subcadenas del código ni marca
+        assertThat(busqueda.buscarIdsPorCodigo("100")).isEmpty();
+        assertThat(busqueda.buscarIdsPorCodigo("alpina")).isEmpty();
+    }
+
+    @Test
+    void laBusquedaPorCodigoDevuelveTodasLasCoincidenciasConLaExactaPrimero() {
+        for (int i = 60; i > 0; i--) {
+            indexar("GAL-" + i, "Galleta " + i, null);
+        }
+        Producto exacto = indexar("GAL", "Galleta surtida", null);
+
+        List<Long> ids = busqueda.buscarIdsPorCodigo("GAL");
+
+        assertThat(ids).hasSize(61).startsWith(exacto.getId());
+        assertThat(busqueda.buscarIdsPorCodigo("gal-1")).hasSize(11);
+    }
+
+    // Métodos privados auxiliares
+    private Producto indexar(String codigo, String nombre, String marca) {
+        Producto producto = producto(codigo, nombre, marca);
+        publicar(producto);
+        return producto;
+    }
+
+    private Producto producto(String codigo, String nombre, String marca) {
+        Producto producto = DatosPrueba.producto(codigo, "10");
+        producto.setId(siguienteId++);
+        producto.setNombre(nombre);
+        producto.setMarca(marca);
+        return producto;
+    }
+
+    private void publicar(Producto producto) {
+        busqueda.alModificarProducto(
+                new ProductoModificadoEvent(producto.getId(), ProductoEscaneoResponse.de(producto), false));
+    }
+
+    private List<String> codigos(List<ProductoEscaneoResponse> resultados) {
+        List<String> codigos = new ArrayList<>();
+        resultados.forEach(r -> codigos.add(r.getCodigo()));
+        return codigos;
+    }
+}
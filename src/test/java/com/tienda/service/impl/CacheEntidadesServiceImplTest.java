@@ -0,0 +1,123 @@
+package com.tienda.service.impl;
+
+import com.tienda.model.Categoria;
+import com.tienda.model.Proveedor;
+import com.tienda.repository.CategoriaRepository;
+import com.tienda.repository.ProveedorRepository;
+import com.tienda.soporte.ContadorSentencias;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// El segundo nivel se llena al confirmar: cada llamada al repositorio es su propia transacción
+@PruebaPostgres
+@Import(CacheEntidadesServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = ContadorSentencias.PROPIEDAD)
+class CacheEntidadesServiceImplTest {
+
+    @Autowired
+    private CacheEntidadesServiceImpl cacheEntidadesService;
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+    @Autowired
+    private ProveedorRepository proveedorRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        cacheEntidadesService.vaciar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM categorias");
+        jdbcTemplate.update("DELETE FROM proveedores");
+        cacheEntidadesService.vaciar();
+    }
+
+    @Test
+    void unaEntidadYaLeidaSaleDelSegundoNivelSinSql() {
+        Long id = categoriaRepository.save(Categoria.builder().nombre("Bebidas").build()).getId();
+        // READ_WRITE no entrega lo escrito a una sesión abierta en el mismo instante: la primera lectura puede ir a la base
+        categoriaRepository.findById(id);
+
+        long sentencias = ContadorSentencias.contar(() ->
+                assertThat(categoriaRepository.findById(id).get().getNombre()).isEqualTo("Bebidas"));
+
+        assertThat(sentencias).isZero();
+        assertThat((Long) region("tienda.categorias").get("aciertos")).isPositive();
+    }
+
+    @Test
+    void unaEscrituraPorJpaActualizaLaRegion() {
+        Categoria categoria = categoriaRepository.save(Categoria.builder().nombre("Bebidas").build());
+        categoriaRepository.findById(categoria.getId());
+
+        categoria.setNombre("Bebidas frías");
+        categoriaRepository.save(categoria);
+
+        assertThat(categoriaRepository.findById(categoria.getId()).get().getNombre()).isEqualTo("Bebidas frías");
+        long sentencias = ContadorSentencias.contar(() ->
+                assertThat(categoriaRepository.findById(categoria.getId()).get().getNombre())
+                        .isEqualTo("Bebidas frías"));
+        assertThat(sentencias).isZero();
+    }
+
+    @Test
+    void laConsultaCacheadaSeInvalidaAlEscribirEnLaTabla() {
+        proveedorRepository.save(proveedor("PRV-1"));
+        assertThat(proveedorRepository.findByEstado(Proveedor.EstadoProveedor.ACTIVO)).hasSize(1);
+
+        long repetida = ContadorSentencias.contar(() ->
+                assertThat(proveedorRepository.findByEstado(Proveedor.EstadoProveedor.ACTIVO)).hasSize(1));
+        assertThat(repetida).isZero();
+        assertThat(consultas()).containsEntry("aciertos", 1L);
+
+        proveedorRepository.save(proveedor("PRV-2"));
+
+        assertThat(proveedorRepository.findByEstado(Proveedor.EstadoProveedor.ACTIVO)).hasSize(2);
+    }
+
+    @Test
+    void vaciarDescartaLasEntradasYLasMetricas() {
+        Long id = categoriaRepository.save(Categoria.builder().nombre("Aseo").build()).getId();
+        categoriaRepository.findById(id);
+
+        cacheEntidadesService.vaciar();
+
+        long sentencias = ContadorSentencias.contar(() -> categoriaRepository.findById(id));
+        assertThat(sentencias).isEqualTo(1);
+        assertThat(region("tienda.categorias"))
+                .containsEntry("aciertos", 0L)
+                .containsEntry("fallos", 1L);
+    }
+
+    // Métodos privados auxiliares
+    private Proveedor proveedor(String codigo) {
+        return Proveedor.builder().codigo(codigo).nombre("Proveedor " + codigo).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> region(String nombre) {
+        Map<String, Object> regiones = (Map<String, Object>) cacheEntidadesService.obtenerEstadisticas().get("regiones");
+        return (Map<String, Object>) regiones.get(nombre);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> consultas() {
+        return (Map<String, Object>) cacheEntidadesService.obtenerEstadisticas().get("consultas");
+    }
+}
@@ -0,0 +1,229 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.request.CierreCajaRequest;
+import com.tienda.dto.response.CajaResponse;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Caja;
+import com.tienda.model.Sucursal;
+import com.tienda.model.Usuario;
+import com.tienda.repository.CajaMovimientoRepository;
+import com.tienda.repository.ResumenCierresRepository;
+import com.tienda.soporte.ContadorSentencias;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import({CajaServiceImpl.class, CajaMovimientoRepository.class, MaquinaEstadosCaja.class,
+        RegistroSesionesCaja.class, ResumenCierresRepository.class})
+@TestPropertySource(properties = ContadorSentencias.PROPIEDAD)
+class CajaServiceImplTest {
+
+    @Autowired
+    private CajaServiceImpl cajaService;
+    @Autowired
+    private CajaMovimientoRepository cajaMovimientoRepository;
+    @Autowired
+    private ResumenCierresRepository resumenCierresRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Sucursal sucursal;
+    private int cajas;
+
+    @BeforeEach
+    void setUp() {
+        sucursal = entityManager.persist(Sucursal.builder().codigo("S1").nombre("Centro").build());
+    }
+
+    @Test
+    void elListadoTomaVentasDelDiaSaldoYCierresDelLibro() {
+        Caja abierta = caja();
+        Caja cerrada = caja();
+        abrir(abierta, "100.00");
+        registrar(abierta, "VENTA", "40.00");
+        registrar(abierta, "VENTA", "15.00");
+        registrar(abierta, "ANULACION", "-15.00");
+        // Dos sesiones cerradas de la otra caja
+        for (int i = 0; i < 2; i++) {
+            abrir(cerrada, "10.00");
+            registrar(cerrada, "VENTA", "5.00");
+            cajaService.cerrarCaja(cerrada.getId(), cerrada.getUsuarioAsignado().getId(), null, null);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Long, CajaResponse> porId = cajaService.obtenerTodasCajas().stream()
+                .collect(Collectors.toMap(CajaResponse::getId, Function.identity()));
+
+        CajaResponse a = porId.get(abierta.getId());
+        assertThat(a.getTotalVentasHoy()).isEqualTo(1);
+        assertThat(a.getTotalVentasHoyMonto()).isEqualByComparingTo("40.00");
+        assertThat(a.getSaldoActual()).isEqualByComparingTo("140.00");
+        assertThat(a.getTotalCierres()).isZero();
+        assertThat(a.getUltimoCierre()).isNull();
+
+        CajaResponse c = porId.get(cerrada.getId());
+        assertThat(c.getEstado()).isEqualTo("CERRADA");
+        assertThat(c.getTotalVentasHoy()).isZero();
+        assertThat(c.getTotalCierres()).isEqualTo(2);
+        assertThat(c.getUltimoCierre()).isNotNull();
+        assertThat(c.getSaldoActual()).isEqualByComparingTo("15.00");
+
+        // La consulta de una sola caja da lo mismo que el listado
+        assertThat(cajaService.obtenerCajaPorId(abierta.getId())).isEqualTo(a);
+    }
+
+    @Test
+    void losListadosNoCrecenConElNumeroDeCajas() {
+        for (int i = 0; i < 3; i++) {
+            abrir(caja(), "10.00");
+        }
+        entityManager.flush();
+        entityManager.clear();
+        long pocas = ContadorSentencias.contar(() -> assertThat(cajaService.obtenerCajasAbiertas()).hasSize(3));
+
+        for (int i = 0; i < 6; i++) {
+            abrir(caja(), "10.00");
+        }
+        entityManager.flush();
+        entityManager.clear();
+        long muchas = ContadorSentencias.contar(() -> assertThat(cajaService.obtenerCajasAbiertas()).hasSize(9));
+        entityManager.clear();
+        long todas = ContadorSentencias.contar(() -> assertThat(cajaService.obtenerTodasCajas()).hasSize(9));
+
+        // Cajas con sucursal y usuario en una sentencia; el resumen va por JdbcTemplate
+        assertThat(pocas).isEqualTo(1);
+        assertThat(muchas).isEqualTo(pocas);
+        assertThat(todas).isEqualTo(pocas);
+    }
+
+    @Test
+    void elReporteMensualYLasEstadisticasSalenDelResumenPorMes() {
+        Caja norte = caja();
+        Caja sur = caja();
+        Usuario supervisor = entityManager.persist(DatosPrueba.usuario("supervisor"));
+        LocalDate marzo = LocalDate.of(2024, 3, 15);
+        LocalDate abril = LocalDate.of(2024, 4, 10);
+
+        aprobar(cerrarEn(norte, marzo, "200.00", "195.00"), supervisor);
+        aprobar(cerrarEn(sur, marzo, "50.00", "55.00"), supervisor);
+        aprobar(cerrarEn(norte, abril, "80.00", null), supervisor);
+        // Pendiente: cuenta en las estadísticas pero no en el reporte de aprobados
+        cerrarEn(sur, abril, "500.00", "490.00");
+
+        Map<String, Object> reporte = cajaService.generarReporteMensual(3, 2024);
+        assertThat((BigDecimal) reporte.get("totalVentasMensual")).isEqualByComparingTo("250.00");
+        assertThat((List<?>) reporte.get("datosMensuales")).hasSize(1);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> porCaja = (List<Map<String, Object>>) reporte.get("porCaja");
+        assertThat(porCaja).extracting(f -> ((Number) f.get("caja_id")).longValue())
+                .containsExactly(norte.getId(), sur.getId());
+
+        Map<String, Object> anual = cajaService.generarReporteMensual(null, 2024);
+        assertThat((BigDecimal) anual.get("totalVentasMensual")).isEqualByComparingTo("330.00");
+        assertThat((List<?>) anual.get("datosMensuales")).hasSize(2);
+
+        Map<String, Object> estadisticas = cajaService.obtenerEstadisticasCajas();
+        assertThat(estadisticas).containsEntry("totalCierres", 4L);
+        assertThat((BigDecimal) estadisticas.get("ventasTotalesHistoricas")).isEqualByComparingTo("830.00");
+        // (-5 + 5 + 0 - 10) / 4
+        assertThat((BigDecimal) estadisticas.get("diferenciaPromedio")).isEqualByComparingTo("-2.50");
+        assertThat(estadisticas.get("cierresPorEstado")).isEqualTo(estados(3L, 1L));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> top = (Map<String, Object>) estadisticas.get("cajaTopVentas");
+        assertThat(((Number) top.get("cajaId")).longValue()).isEqualTo(sur.getId());
+    }
+
+    @Test
+    void cadaCambioDeEstadoRecalculaSoloSuMesYCoincideConUnaReconstruccion() {
+        Caja caja = caja();
+        Usuario supervisor = entityManager.persist(DatosPrueba.usuario("supervisor"));
+        Long marzo = cerrarEn(caja, LocalDate.of(2024, 3, 5), "10.00", null);
+        cerrarEn(caja, LocalDate.of(2024, 4, 5), "20.00", null);
+
+        assertThat(cajaService.generarReporteMensual(3, 2024).get("datosMensuales")).asList().isEmpty();
+        aprobar(marzo, supervisor);
+        assertThat((BigDecimal) cajaService.generarReporteMensual(3, 2024).get("totalVentasMensual"))
+                .isEqualByComparingTo("10.00");
+
+        List<Map<String, Object>> incremental = filasResumen();
+        resumenCierresRepository.reconstruir();
+        assertThat(filasResumen()).isEqualTo(incremental);
+    }
+
+    @Test
+    void unMesFueraDeRangoSeRechaza() {
+        assertThatThrownBy(() -> cajaService.generarReporteMensual(13, 2024))
+                .isInstanceOf(ValidacionException.class);
+    }
+
+    // Métodos privados auxiliares
+    private Caja caja() {
+        cajas++;
+        Usuario usuario = entityManager.persist(DatosPrueba.usuario("cajero" + cajas));
+        return entityManager.persistAndFlush(Caja.builder()
+                .codigo("C" + cajas)
+                .nombre("Caja " + cajas)
+                .sucursal(sucursal)
+                .usuarioAsignado(usuario)
+                .build());
+    }
+
+    private void abrir(Caja caja, String saldoInicial) {
+        cajaService.abrirCaja(caja.getId(), caja.getUsuarioAsignado().getId(), new BigDecimal(saldoInicial));
+    }
+
+    // Abre una sesión, vende y la cierra con fecha de cierre dada; devuelve el id del cierre
+    private Long cerrarEn(Caja caja, LocalDate fecha, String ventas, String saldoFinalReal) {
+        abrir(caja, "0.00");
+        registrar(caja, "VENTA", ventas);
+        CierreCajaRequest request = new CierreCajaRequest();
+        request.setCajaId(caja.getId());
+        request.setFechaCierre(fecha);
+        request.setHoraApertura(LocalTime.of(8, 0));
+        request.setHoraCierre(LocalTime.of(18, 0));
+        request.setSaldoFinalReal(saldoFinalReal != null ? new BigDecimal(saldoFinalReal) : null);
+        return cajaService.realizarCierreDiario(request).getId();
+    }
+
+    private void aprobar(Long cierreId, Usuario supervisor) {
+        cajaService.conciliarCierre(cierreId, supervisor.getId(), null);
+        cajaService.aprobarCierre(cierreId, supervisor.getId());
+    }
+
+    private Map<String, Long> estados(long aprobados, long pendientes) {
+        Map<String, Long> estados = new HashMap<>();
+        estados.put("APROBADO", aprobados);
+        estados.put("PENDIENTE", pendientes);
+        return estados;
+    }
+
+    private List<Map<String, Object>> filasResumen() {
+        return jdbcTemplate.queryForList("SELECT * FROM cierres_caja_mensual ORDER BY mes, caja_id, estado");
+    }
+
+    private void registrar(Caja caja, String tipo, String monto) {
+        cajaMovimientoRepository.registrar(caja.getId(), tipo, "EFECTIVO", new BigDecimal(monto), null, null, tipo);
+    }
+}
@@ -0,0 +1,150 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.ProductoEscaneoResponse;
+import com.tienda.event.PreciosActualizadosEvent;
+import com.tienda.event.ProductoModificadoEvent;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogoEscaneoServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private CatalogoEscaneoServiceImpl catalogo;
+
+    @BeforeEach
+    void setUp() {
+        catalogo = new CatalogoEscaneoServiceImpl(productoRepository);
+        ReflectionTestUtils.setField(catalogo, "maxEntradas", 2);
+    }
+
+    @Test
+    void elSegundoEscaneoSeResuelveSinConsultarLaBase() {
+        Producto producto = producto(1L, "A", "770001", 0);
+        when(productoRepository.findByCodigoBarras("770001")).thenReturn(Optional.of(producto));
+
+        catalogo.buscarPorCodigoEscaneado("770001");
+        ProductoEscaneoResponse vista = catalogo.buscarPorCodigoEscaneado(" 770001 ");
+        // El código interno apunta a la misma vista
+        catalogo.buscarPorCodigoEscaneado("A");
+
+        assertThat(vista.getId()).isEqualTo(1L);
+        verify(productoRepository, times(1)).findByCodigoBarras(anyString());
+        verifyNoMoreInteractions(productoRepository);
+        assertThat(catalogo.obtenerMetricas())
+                .containsEntry("aciertos", 2L)
+                .containsEntry("fallos", 1L)
+                .containsEntry("entradas", 1);
+    }
+
+    @Test
+    void unCodigoInexistenteSeCuentaYNoSeGuarda() {
+        when(productoRepository.findByCodigoBarras("X")).thenReturn(Optional.empty());
+        when(productoRepository.findByCodigo("X")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> catalogo.buscarPorCodigoEscaneado("X"))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(catalogo.obtenerMetricas())
+                .containsEntry("noEncontrados", 1L)
+                .containsEntry("entradas", 0);
+    }
+
+    @Test
+    void alSuperarLaCapacidadSeDesalojaElMenosUsado() {
+        catalogo.alModificarProducto(evento(producto(1L, "A", null, 0)));
+        catalogo.alModificarProducto(evento(producto(2L, "B", null, 0)));
+        // Acierto: A pasa a ser el más reciente y B el menos usado
+        catalogo.buscarPorCodigoEscaneado("A");
+
+        catalogo.alModificarProducto(evento(producto(3L, "C", null, 0)));
+
+        assertThat(catalogo.obtenerMetricas()).containsEntry("entradas", 2).containsEntry("desalojos", 1L);
+        when(productoRepository.findByCodigoBarras("B")).thenReturn(Optional.empty());
+        when(productoRepository.findByCodigo("B")).thenReturn(Optional.of(producto(2L, "B", null, 0)));
+        catalogo.buscarPorCodigoEscaneado("B");
+        verify(productoRepository).findByCodigo("B");
+    }
+
+    @Test
+    void unEventoConVersionAnteriorNoPisaLaVistaNueva() {
+        Producto nuevo = producto(1L, "A", null, 5);
+        nuevo.setPrecioVenta(new BigDecimal("20.00"));
+        catalogo.alModificarProducto(evento(nuevo));
+
+        catalogo.alModificarProducto(evento(producto(1L, "A", null, 4)));
+
+        assertThat(catalogo.buscarPorCodigoEscaneado("A").getPrecioVenta()).isEqualByComparingTo("20.00");
+    }
+
+    @Test
+    void unCodigoDeBarrasReasignadoApuntaAlNuevoProducto() {
+        catalogo.alModificarProducto(evento(producto(1L, "A", "770001", 0)));
+        catalogo.alModificarProducto(evento(producto(1L, "A", "770099", 1)));
+        catalogo.alModificarProducto(evento(producto(2L, "B", "770001", 0)));
+
+        assertThat(catalogo.buscarPorCodigoEscaneado("770001").getId()).isEqualTo(2L);
+        assertThat(catalogo.buscarPorCodigoEscaneado("770099").getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void unProductoEliminadoSaleDeLaCache() {
+        catalogo.alModificarProducto(evento(producto(1L, "A", null, 0)));
+
+        catalogo.alModificarProducto(new ProductoModificadoEvent(1L, null, true));
+
+        when(productoRepository.findByCodigoBarras("A")).thenReturn(Optional.empty());
+        when(productoRepository.findByCodigo("A")).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> catalogo.buscarPorCodigoEscaneado("A"))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void unLoteDePreciosRecargaSoloLasVistasEnCacheDeUnaVez() {
+        catalogo.alModificarProducto(evento(producto(1L, "A", null, 0)));
+        Producto recargado = producto(1L, "A", null, 1);
+        recargado.setPrecioVenta(new BigDecimal("16.50"));
+        when(productoRepository.findAllById(Collections.singletonList(1L)))
+                .thenReturn(Collections.singletonList(recargado));
+
+        // El producto 2 no estaba en caché: no se consulta
+        catalogo.alActualizarPrecios(new PreciosActualizadosEvent("LOTE", Arrays.asList(1L, 2L)));
+
+        assertThat(catalogo.buscarPorCodigoEscaneado("A").getPrecioVenta()).isEqualByComparingTo("16.50");
+        verify(productoRepository, times(1)).findAllById(Collections.singletonList(1L));
+        verifyNoMoreInteractions(productoRepository);
+    }
+
+    // Métodos privados auxiliares
+    private Producto producto(Long id, String codigo, String codigoBarras, long version) {
+        Producto producto = DatosPrueba.producto(codigo, "10");
+        producto.setId(id);
+        producto.setCodigoBarras(codigoBarras);
+        producto.setVersion(version);
+        return producto;
+    }
+
+    private ProductoModificadoEvent evento(Producto producto) {
+        return new ProductoModificadoEvent(producto.getId(), ProductoEscaneoResponse.de(producto), false);
+    }
+}
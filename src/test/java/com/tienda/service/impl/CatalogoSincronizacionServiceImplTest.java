@@ -0,0 +1,144 @@
+package com.tienda.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tienda.model.Producto;
+import com.tienda.repository.CatalogoCambiosRepository;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Los triggers diferidos anotan al hacer commit: sin transacción de prueba
+@PruebaPostgres
+@Import({CatalogoSincronizacionServiceImpl.class, CatalogoCambiosRepository.class, ObjectMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogoSincronizacionServiceImplTest {
+
+    @Autowired
+    private CatalogoSincronizacionServiceImpl sincronizacion;
+    @Autowired
+    private CatalogoCambiosRepository catalogoCambiosRepository;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM productos");
+        jdbcTemplate.update("DELETE FROM categorias");
+        jdbcTemplate.update("DELETE FROM catalogo_cambios");
+        jdbcTemplate.update("UPDATE catalogo_cambios_estado SET secuencia_purgada = 0");
+    }
+
+    @Test
+    void desdeUnaSecuenciaSoloLlegaLoModificadoYLasBajas() throws IOException {
+        Producto cambia = productoRepository.save(DatosPrueba.producto("CAMBIA", "5"));
+        Producto borrado = productoRepository.save(DatosPrueba.producto("BORRADO", "5"));
+        productoRepository.save(DatosPrueba.producto("QUIETO", "5"));
+        long desde = catalogoCambiosRepository.obtenerUltimaSecuencia();
+
+        jdbcTemplate.update("UPDATE productos SET precio_venta = 18.50 WHERE id = ?", cambia.getId());
+        jdbcTemplate.update("UPDATE productos SET nombre = 'Otro nombre' WHERE id = ?", cambia.getId());
+        jdbcTemplate.update("DELETE FROM productos WHERE id = ?", borrado.getId());
+
+        List<Map<String, Object>> lineas = leer(desde);
+
+        assertThat(lineas.get(0))
+                .containsEntry("tipo", "inicio")
+                .containsEntry("completo", false)
+                .containsEntry("desde", (int) desde);
+        // Dos cambios del mismo producto salen como una sola línea con el estado actual
+        assertThat(lineas).hasSize(4);
+        assertThat(lineas.get(1))
+                .containsEntry("tipo", "producto")
+                .containsEntry("codigo", "CAMBIA")
+                .containsEntry("nombre", "Otro nombre")
+                .containsEntry("precioVenta", 18.5);
+        assertThat(lineas.get(2))
+                .containsEntry("tipo", "baja")
+                .containsEntry("entidad", "producto")
+                .containsEntry("id", borrado.getId().intValue());
+        assertThat(lineas.get(3))
+                .containsEntry("tipo", "fin")
+                .containsEntry("productos", 1)
+                .containsEntry("bajas", 1)
+                .containsEntry("hasta", (int) catalogoCambiosRepository.obtenerUltimaSecuencia());
+    }
+
+    @Test
+    void unMovimientoDeStockNoGeneraCambios() throws IOException {
+        Producto producto = productoRepository.save(DatosPrueba.producto("STOCK", "5"));
+        long desde = catalogoCambiosRepository.obtenerUltimaSecuencia();
+
+        jdbcTemplate.update("UPDATE productos SET stock_actual = 2 WHERE id = ?", producto.getId());
+
+        assertThat(catalogoCambiosRepository.obtenerUltimaSecuencia()).isEqualTo(desde);
+        List<Map<String, Object>> lineas = leer(desde);
+        assertThat(lineas).hasSize(2);
+        assertThat(lineas.get(1)).containsEntry("tipo", "fin").containsEntry("productos", 0);
+    }
+
+    @Test
+    void sinSecuenciaOConElRangoPurgadoSeEnviaElCatalogoCompleto() throws IOException {
+        jdbcTemplate.update("INSERT INTO categorias (nombre, nivel, orden, estado) VALUES ('Bebidas', 1, 0, 'ACTIVO')");
+        productoRepository.save(DatosPrueba.producto("A", "1"));
+        long desde = catalogoCambiosRepository.obtenerUltimaSecuencia();
+        productoRepository.save(DatosPrueba.producto("B", "1"));
+
+        List<Map<String, Object>> completo = leer(0);
+        assertThat(completo.get(0)).containsEntry("completo", true);
+        assertThat(completo.get(completo.size() - 1))
+                .containsEntry("categorias", 1)
+                .containsEntry("productos", 2);
+
+        catalogoCambiosRepository.purgarAnterioresA(LocalDateTime.now().plusMinutes(1));
+
+        List<Map<String, Object>> trasPurga = leer(desde);
+        assertThat(trasPurga.get(0)).containsEntry("completo", true);
+        assertThat(trasPurga.get(trasPurga.size() - 1)).containsEntry("productos", 2);
+        // La secuencia publicada no retrocede al vaciar el registro
+        assertThat(catalogoCambiosRepository.obtenerUltimaSecuencia()).isGreaterThan(desde);
+    }
+
+    // Métodos privados auxiliares
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> leer(long desde) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        sincronizacion.escribirCambios(desde, salida);
+
+        List<Map<String, Object>> lineas = new ArrayList<>();
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(salida.toByteArray())), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                // NDJSON estricto: cada línea es un objeto completo, sin separadores delante
+                assertThat(linea).startsWith("{").endsWith("}");
+                lineas.add(objectMapper.readValue(linea, Map.class));
+            }
+        }
+        return lineas;
+    }
+}
@@ -0,0 +1,151 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.request.CategoriaRequest;
+import com.tienda.dto.response.CategoriaResponse;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Categoria;
+import com.tienda.model.Producto;
+import com.tienda.repository.CategoriaArbolRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import({CategoriaServiceImpl.class, CategoriaArbolRepository.class, ArbolCategoriasCache.class})
+class CategoriaServiceImplTest {
+
+    @Autowired
+    private CategoriaServiceImpl categoriaService;
+    @Autowired
+    private CategoriaArbolRepository categoriaArbolRepository;
+    @Autowired
+    private ArbolCategoriasCache arbolCategoriasCache;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long bebidas;
+    private Long gaseosas;
+    private Long colas;
+
+    @BeforeEach
+    void setUp() {
+        bebidas = crear("Bebidas", null);
+        gaseosas = crear("Gaseosas", bebidas);
+        colas = crear("Colas", gaseosas);
+    }
+
+    @Test
+    void crearAgregaLosCaminosDeLaHojaYSuNivel() {
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM categoria_arbol", Integer.class)).isEqualTo(6);
+        assertThat(profundidad(bebidas, colas)).isEqualTo(2);
+        assertThat(nivel(colas)).isEqualTo(3);
+        assertThat(categoriaArbolRepository.contarCategoriasSinClausura()).isZero();
+    }
+
+    @Test
+    void moverUnSubarbolRehaceLosCaminosYLosNiveles() {
+        Long licores = crear("Licores", null);
+        Long importados = crear("Importados", licores);
+
+        categoriaService.actualizarCategoria(gaseosas, padre(importados));
+        entityManager.flush();
+
+        assertThat(categoriaArbolRepository.esDescendiente(colas, bebidas)).isFalse();
+        assertThat(profundidad(licores, colas)).isEqualTo(3);
+        assertThat(nivel(gaseosas)).isEqualTo(3);
+        assertThat(nivel(colas)).isEqualTo(4);
+        // La tabla coincide con una reconstrucción desde categoria_padre_id
+        List<Map<String, Object>> antes = caminos();
+        categoriaArbolRepository.reconstruir();
+        assertThat(caminos()).isEqualTo(antes);
+    }
+
+    @Test
+    void unDescendienteOLaPropiaCategoriaNoPuedenSerPadre() {
+        assertThatThrownBy(() -> categoriaService.actualizarCategoria(bebidas, padre(colas)))
+                .isInstanceOf(ValidacionException.class)
+                .hasMessageContaining("descendiente");
+        assertThatThrownBy(() -> categoriaService.actualizarCategoria(bebidas, padre(bebidas)))
+                .isInstanceOf(ValidacionException.class);
+    }
+
+    @Test
+    void eliminarRevisaLosProductosDeTodoElSubarbolYBorraDesdeLasHojas() {
+        Producto producto = DatosPrueba.producto("COLA", "1");
+        producto.setCategoria(entityManager.find(Categoria.class, colas));
+        entityManager.persistAndFlush(producto);
+
+        assertThatThrownBy(() -> categoriaService.eliminarCategoria(bebidas))
+                .isInstanceOf(ValidacionException.class)
+                .hasMessageContaining("1 productos");
+
+        entityManager.remove(producto);
+        entityManager.flush();
+        categoriaService.eliminarCategoria(bebidas);
+        entityManager.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM categorias", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM categoria_arbol", Integer.class)).isZero();
+    }
+
+    @Test
+    void elArbolSeLeeDeLaInstantaneaHastaQueUnCambioLaReemplaza() {
+        ArbolCategorias instantanea = arbolCategoriasCache.recargar();
+        assertThat(arbolCategoriasCache.obtener()).isSameAs(instantanea);
+
+        Map<String, Object> arbol = categoriaService.obtenerArbolCategorias();
+        assertThat(arbol).containsEntry("totalCategorias", 3).containsEntry("totalNiveles", 3);
+        @SuppressWarnings("unchecked")
+        CategoriaResponse raiz = ((List<CategoriaResponse>) arbol.get("categorias")).get(0);
+        assertThat(raiz.getSubcategorias().get(0).getSubcategorias().get(0).getNombre()).isEqualTo("Colas");
+
+        crear("Aguas", bebidas);
+        assertThat(arbolCategoriasCache.obtener()).isSameAs(instantanea);
+        arbolCategoriasCache.alModificarCategorias(null);
+        assertThat(arbolCategoriasCache.obtener()).isNotSameAs(instantanea);
+        assertThat(categoriaService.obtenerSubcategorias(bebidas)).hasSize(2);
+    }
+
+    // Métodos privados auxiliares
+    private Long crear(String nombre, Long padreId) {
+        CategoriaRequest request = new CategoriaRequest();
+        request.setNombre(nombre);
+        request.setCategoriaPadreId(padreId);
+        Long id = categoriaService.crearCategoria(request).getId();
+        entityManager.flush();
+        return id;
+    }
+
+    private CategoriaRequest padre(Long padreId) {
+        CategoriaRequest request = new CategoriaRequest();
+        request.setCategoriaPadreId(padreId);
+        return request;
+    }
+
+    private int profundidad(Long ancestro, Long descendiente) {
+        return jdbcTemplate.queryForObject("SELECT profundidad FROM categoria_arbol " +
+                "WHERE ancestro_id = ? AND descendiente_id = ?", Integer.class, ancestro, descendiente);
+    }
+
+    private int nivel(Long id) {
+        return jdbcTemplate.queryForObject("SELECT nivel FROM categorias WHERE id = ?", Integer.class, id);
+    }
+
+    private List<Map<String, Object>> caminos() {
+        return jdbcTemplate.queryForList("SELECT ancestro_id, descendiente_id, profundidad FROM categoria_arbol " +
+                "ORDER BY ancestro_id, descendiente_id");
+    }
+}
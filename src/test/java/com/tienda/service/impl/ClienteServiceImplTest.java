@@ -0,0 +1,81 @@
+package com.tienda.service.impl;
+
+import com.tienda.config.EsquemaBaseDatos;
+import com.tienda.dto.response.ClienteResponse;
+import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.model.Cliente;
+import com.tienda.repository.BusquedaTextoRepository;
+import com.tienda.repository.ClienteMetricasRepository;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({ClienteServiceImpl.class, BusquedaTextoRepository.class, ClienteMetricasRepository.class})
+class ClienteServiceImplTest {
+
+    @Autowired
+    private ClienteServiceImpl clienteService;
+    @Autowired
+    private EsquemaBaseDatos esquemaBaseDatos;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        cliente("María Gómez", "ACTIVO");
+        cliente("Mario Gómez", "INACTIVO");
+        cliente("Pedro Ruiz", "ACTIVO");
+        entityManager.flush();
+    }
+
+    @Test
+    void sinBusquedaDeTextoElEstadoTambienFiltra() {
+        // La instancia es compartida entre pruebas: la disponibilidad se restaura al terminar
+        ReflectionTestUtils.setField(esquemaBaseDatos, "busquedaTextoDisponible", false);
+        try {
+            assertThat(nombres(clienteService.buscarClientes("Gómez", null, "INACTIVO", PageRequest.of(0, 10))))
+                    .containsExactly("Mario Gómez");
+            assertThat(nombres(clienteService.buscarClientes("Gómez", null, null, PageRequest.of(0, 10))))
+                    .containsExactlyInAnyOrder("María Gómez", "Mario Gómez");
+        } finally {
+            ReflectionTestUtils.setField(esquemaBaseDatos, "busquedaTextoDisponible", true);
+        }
+    }
+
+    @Test
+    void conBusquedaDeTextoElEstadoFiltraIgual() {
+        // El esquema de arranque ya creó las columnas e índices de búsqueda
+        assertThat(esquemaBaseDatos.isBusquedaTextoDisponible()).isTrue();
+
+        assertThat(nombres(clienteService.buscarClientes("gomez", null, "INACTIVO", PageRequest.of(0, 10))))
+                .containsExactly("Mario Gómez");
+        assertThat(nombres(clienteService.buscarClientes("gomez", null, "ACTIVO", PageRequest.of(0, 10))))
+                .containsExactly("María Gómez");
+    }
+
+    // Métodos privados auxiliares
+    private void cliente(String nombre, String estado) {
+        Cliente cliente = Cliente.builder()
+                .nombre(nombre)
+                .estado(estado)
+                .build();
+        entityManager.persist(cliente);
+    }
+
+    private List<String> nombres(PaginacionResponse<ClienteResponse> pagina) {
+        List<String> nombres = new ArrayList<>();
+        pagina.getContent().forEach(c -> nombres.add(c.getNombre()));
+        return nombres;
+    }
+}
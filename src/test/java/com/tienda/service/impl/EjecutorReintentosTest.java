@@ -0,0 +1,133 @@
+package com.tienda.service.impl;
+
+import com.tienda.exception.ConflictoConcurrenciaException;
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Sin transacción de prueba: el ejecutor abre la suya en cada intento
+@PruebaPostgres
+@Import(EjecutorReintentos.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "reintentos.max-intentos=3",
+        "reintentos.espera-base-ms=1",
+        "reintentos.espera-maxima-ms=2"
+})
+class EjecutorReintentosTest {
+
+    @Autowired
+    private EjecutorReintentos ejecutorReintentos;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM productos");
+    }
+
+    @Test
+    void unaVersionObsoletaSeRepiteConDatosFrescosSinPerderLaOtraEscritura() {
+        Long id = productoRepository.save(DatosPrueba.producto("VERSION", "10")).getId();
+        AtomicInteger intentos = new AtomicInteger();
+
+        ejecutorReintentos.ejecutarSinResultado("prueba.version", () -> {
+            Producto producto = productoRepository.findById(id).get();
+            if (intentos.incrementAndGet() == 1) {
+                // Otra escritura confirma entre la lectura y el guardado de este intento
+                concurrente(() -> jdbcTemplate.update(
+                        "UPDATE productos SET stock_actual = stock_actual + 5, version = version + 1 WHERE id = ?", id));
+            }
+            producto.setStockActual(producto.getStockActual().add(BigDecimal.ONE));
+            productoRepository.saveAndFlush(producto);
+        });
+
+        assertThat(intentos).hasValue(2);
+        assertThat(productoRepository.findById(id).get().getStockActual()).isEqualByComparingTo("16");
+        assertThat(metrica("prueba.version"))
+                .containsEntry("ejecuciones", 1L)
+                .containsEntry("conflictos", 1L)
+                .containsEntry("reintentos", 1L)
+                .containsEntry("agotados", 0L);
+    }
+
+    @Test
+    void alAgotarLosIntentosFallaConConflictoDeConcurrencia() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        assertThatThrownBy(() -> ejecutorReintentos.ejecutar("prueba.agotada", () -> {
+            intentos.incrementAndGet();
+            throw new OptimisticLockingFailureException("versión obsoleta");
+        })).isInstanceOf(ConflictoConcurrenciaException.class);
+
+        assertThat(intentos).hasValue(3);
+        assertThat(metrica("prueba.agotada"))
+                .containsEntry("conflictos", 3L)
+                .containsEntry("reintentos", 2L)
+                .containsEntry("agotados", 1L);
+    }
+
+    @Test
+    void dentroDeUnaTransaccionDelLlamadorElConflictoSePropagaSinRepetir() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        assertThatThrownBy(() -> transactionTemplate.execute(status ->
+                ejecutorReintentos.ejecutar("prueba.anidada", () -> {
+                    intentos.incrementAndGet();
+                    throw new OptimisticLockingFailureException("versión obsoleta");
+                }))).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(intentos).hasValue(1);
+    }
+
+    @Test
+    void otrosErroresNoSeReintentan() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        assertThatThrownBy(() -> ejecutorReintentos.ejecutar("prueba.error", () -> {
+            intentos.incrementAndGet();
+            throw new IllegalStateException("falla");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(intentos).hasValue(1);
+    }
+
+    // Métodos privados auxiliares
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> metrica(String operacion) {
+        return (Map<String, Object>) ejecutorReintentos.obtenerMetricas().get(operacion);
+    }
+
+    private void concurrente(Runnable escritura) {
+        Thread hilo = new Thread(escritura);
+        hilo.start();
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
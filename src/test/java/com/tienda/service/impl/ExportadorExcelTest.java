@@ -0,0 +1,114 @@
+package com.tienda.service.impl;
+
+import com.tienda.model.Producto;
+import com.tienda.model.Venta;
+import com.tienda.model.Venta.EstadoVenta;
+import com.tienda.repository.ExportacionRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({ExportadorExcel.class, ExportacionRepository.class,
+        ImportadorProductosExcel.class, EjecutorReintentos.class, LocalValidatorFactoryBean.class})
+class ExportadorExcelTest {
+
+    @Autowired
+    private ExportadorExcel exportador;
+    @Autowired
+    private ImportadorProductosExcel importador;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void elCatalogoExportadoSePuedeReimportarSinErrores() throws IOException {
+        for (int i = 0; i < 150; i++) {
+            entityManager.persist(DatosPrueba.producto(String.format("P-%03d", i), String.valueOf(i)));
+        }
+        entityManager.flush();
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportador.exportarProductos(salida);
+
+        try (XSSFWorkbook libro = leer(salida)) {
+            Sheet hoja = libro.getSheet("Productos");
+            assertThat(hoja.getLastRowNum()).isEqualTo(150);
+            assertThat(hoja.getRow(1).getCell(0).getStringCellValue()).isEqualTo("P-000");
+            assertThat(hoja.getRow(150).getCell(10).getNumericCellValue()).isEqualTo(149);
+        }
+
+        Map<String, Object> resultado = importador.importar(new MockMultipartFile("archivo", "catalogo.xlsx",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", salida.toByteArray()));
+        assertThat(resultado)
+                .containsEntry("totalFilas", 150)
+                .containsEntry("actualizados", 150)
+                .containsEntry("creados", 0)
+                .containsEntry("conErrores", 0);
+    }
+
+    @Test
+    void lasVentasSalenEnTresHojasYSoloLasDelRango() throws IOException {
+        Producto producto = entityManager.persist(DatosPrueba.producto("VENTA", "10"));
+        LocalDate dia = LocalDate.now().minusDays(3);
+        Venta dentro = venta(1, "30.00", EstadoVenta.COMPLETADA);
+        Venta anulada = venta(2, "10.00", EstadoVenta.ANULADA);
+        Venta fuera = venta(3, "99.00", EstadoVenta.COMPLETADA);
+        entityManager.persist(DatosPrueba.detalle(dentro, producto, "2"));
+        entityManager.persist(DatosPrueba.detalle(fuera, producto, "1"));
+        entityManager.flush();
+        fechar(dentro, dia);
+        fechar(anulada, dia);
+        fechar(fuera, dia.minusDays(10));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportador.exportarVentas(dia, dia, salida);
+
+        try (XSSFWorkbook libro = leer(salida)) {
+            assertThat(libro.getSheet("Ventas").getLastRowNum()).isEqualTo(2);
+            assertThat(libro.getSheet("Ventas").getRow(1).getCell(0).getStringCellValue()).isEqualTo("F-1");
+            assertThat(libro.getSheet("Detalle").getLastRowNum()).isEqualTo(1);
+            assertThat(libro.getSheet("Detalle").getRow(1).getCell(3).getStringCellValue()).isEqualTo("VENTA");
+
+            // El resumen diario no suma las anuladas
+            Sheet resumen = libro.getSheet("Resumen diario");
+            assertThat(resumen.getLastRowNum()).isEqualTo(1);
+            assertThat(resumen.getRow(1).getCell(1).getNumericCellValue()).isEqualTo(1);
+            assertThat(resumen.getRow(1).getCell(5).getNumericCellValue()).isEqualTo(30.0);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private Venta venta(int consecutivo, String total, EstadoVenta estado) {
+        Venta venta = DatosPrueba.venta(consecutivo, total);
+        venta.setEstado(estado);
+        return entityManager.persist(venta);
+    }
+
+    private void fechar(Venta venta, LocalDate dia) {
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ? WHERE id = ?",
+                Timestamp.valueOf(dia.atTime(11, 0)), venta.getId());
+    }
+
+    private XSSFWorkbook leer(ByteArrayOutputStream salida) throws IOException {
+        return new XSSFWorkbook(new ByteArrayInputStream(salida.toByteArray()));
+    }
+}
@@ -0,0 +1,205 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.HistorialClienteResponse;
+import com.tienda.dto.response.VentaResponse;
+import com.tienda.event.VentaRegistradaEvent;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Cliente;
+import com.tienda.model.Producto;
+import com.tienda.model.Venta;
+import com.tienda.repository.ClienteMetricasRepository;
+import com.tienda.repository.HistorialClienteRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import({HistorialClienteServiceImpl.class, HistorialClienteRepository.class, ClienteMetricasRepository.class})
+class HistorialClienteServiceImplTest {
+
+    @Autowired
+    private HistorialClienteServiceImpl historialClienteService;
+    @Autowired
+    private HistorialClienteRepository historialClienteRepository;
+    @Autowired
+    private ClienteMetricasRepository clienteMetricasRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime base = LocalDateTime.now().withNano(0).minusDays(10);
+    private Cliente cliente;
+    private Producto arroz;
+    private Producto cafe;
+    private int consecutivo;
+
+    @BeforeEach
+    void setUp() {
+        cliente = entityManager.persist(Cliente.builder().nombre("Ana Ruiz").build());
+        arroz = entityManager.persist(DatosPrueba.producto("ARROZ", "100"));
+        cafe = entityManager.persist(DatosPrueba.producto("CAFE", "100"));
+    }
+
+    @Test
+    void elCursorRecorreTodasLasVentasSinRepetirNiSaltarAunqueCompartanFecha() {
+        List<Long> esperadas = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Tres ventas en el mismo instante: el id desempata
+            esperadas.add(vender(i < 3 ? base : base.plusHours(i), arroz, "1"));
+        }
+        esperadas.sort((a, b) -> {
+            int porFecha = fechaDe(b).compareTo(fechaDe(a));
+            return porFecha != 0 ? porFecha : b.compareTo(a);
+        });
+
+        List<Long> leidas = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            HistorialClienteResponse pagina = historialClienteService.obtenerHistorial(cliente.getId(), cursor, 2, false);
+            pagina.getVentas().forEach(v -> leidas.add(v.getId()));
+            assertThat(pagina.isHayMas()).isEqualTo(pagina.getSiguienteCursor() != null);
+            cursor = pagina.getSiguienteCursor();
+            paginas++;
+        } while (cursor != null);
+
+        assertThat(paginas).isEqualTo(4);
+        assertThat(leidas).containsExactlyElementsOf(esperadas);
+    }
+
+    @Test
+    void losDetallesSoloSeCarganSiSePiden() {
+        Long venta = vender(base, arroz, "2");
+        entityManager.persist(DatosPrueba.detalle(entityManager.find(Venta.class, venta), cafe, "3"));
+        entityManager.flush();
+
+        VentaResponse cabecera = historialClienteService.obtenerHistorial(cliente.getId(), null, 10, false)
+                .getVentas().get(0);
+        assertThat(cabecera.getDetalles()).isNull();
+        assertThat(cabecera.getTotal()).isNotNull();
+
+        VentaResponse completa = historialClienteService.obtenerHistorial(cliente.getId(), null, 10, true)
+                .getVentas().get(0);
+        assertThat(completa.getDetalles())
+                .extracting(d -> d.getProductoId())
+                .containsExactly(arroz.getId(), cafe.getId());
+    }
+
+    @Test
+    void seRechazanUnCursorAlteradoUnTamanoFueraDeRangoYUnClienteInexistente() {
+        assertThatThrownBy(() -> historialClienteService.obtenerHistorial(cliente.getId(), "no-es-un-cursor", 10, false))
+                .isInstanceOf(ValidacionException.class);
+        assertThatThrownBy(() -> historialClienteService.obtenerHistorial(cliente.getId(), null, 101, false))
+                .isInstanceOf(ValidacionException.class);
+        assertThatThrownBy(() -> historialClienteService.obtenerHistorial(-1L, null, 10, false))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void losProductosDelClienteSumanConCadaVentaYRestanConLaAnulacion() {
+        historialClienteRepository.registrarProductos(cliente.getId(), unidades(arroz, "2"), false);
+        historialClienteRepository.registrarProductos(cliente.getId(), unidades(arroz, "1"), false);
+        historialClienteRepository.registrarProductos(cliente.getId(), unidades(cafe, "5"), false);
+
+        List<Map<String, Object>> favoritos = historialClienteRepository.obtenerProductosFavoritos(cliente.getId(), 5);
+        assertThat(favoritos).extracting(f -> f.get("codigo")).containsExactly("ARROZ", "CAFE");
+        assertThat((BigDecimal) favoritos.get(0).get("unidades")).isEqualByComparingTo("3");
+
+        historialClienteRepository.registrarProductos(cliente.getId(), unidades(cafe, "5"), true);
+
+        assertThat(historialClienteRepository.obtenerProductosFavoritos(cliente.getId(), 5))
+                .extracting(f -> f.get("codigo")).containsExactly("ARROZ");
+    }
+
+    @Test
+    void elResumenSeSirveDeCacheYSeRecargaTrasUnaVentaDelCliente() {
+        vender(base, arroz, "1");
+        clienteMetricasRepository.recalcular(cliente.getId());
+        Map<String, Object> antes = historialClienteService.obtenerMetricasCache();
+
+        Map<String, Object> primero = historialClienteService.obtenerResumen(cliente.getId());
+        assertThat(historialClienteService.obtenerResumen(cliente.getId())).isSameAs(primero);
+        assertThat(primero).containsEntry("compras", 1);
+
+        // Lo que hacen los oyentes de métricas y productos antes de la recarga
+        vender(base.plusDays(1), cafe, "4");
+        clienteMetricasRepository.recalcular(cliente.getId());
+        historialClienteRepository.registrarProductos(cliente.getId(), unidades(cafe, "4"), false);
+        historialClienteService.refrescarResumen(evento(cliente.getId()));
+
+        Map<String, Object> recargado = historialClienteService.obtenerResumen(cliente.getId());
+        assertThat(recargado).isNotSameAs(primero).containsEntry("compras", 2);
+        assertThat((List<?>) recargado.get("productosFavoritos")).hasSize(1);
+        Map<String, Object> despues = historialClienteService.obtenerMetricasCache();
+        assertThat(diferencia(antes, despues, "aciertos")).isEqualTo(2);
+        assertThat(diferencia(antes, despues, "fallos")).isEqualTo(1);
+        assertThat(diferencia(antes, despues, "recargas")).isEqualTo(1);
+    }
+
+    @Test
+    void laCacheDeResumenesNoPasaDelMaximoYNoRecargaClientesQueNoTiene() {
+        Cliente otro = entityManager.persistAndFlush(Cliente.builder().nombre("Luis Mora").build());
+        // La instancia es compartida entre pruebas: el máximo se restaura al terminar
+        ReflectionTestUtils.setField(historialClienteService, "maxEntradas", 1);
+        try {
+            historialClienteService.obtenerResumen(cliente.getId());
+            historialClienteService.obtenerResumen(otro.getId());
+            assertThat(historialClienteService.obtenerMetricasCache()).containsEntry("entradas", 1);
+            Map<String, Object> antes = historialClienteService.obtenerMetricasCache();
+
+            // El primero ya salió de la caché: su venta no provoca recarga
+            historialClienteService.refrescarResumen(evento(cliente.getId()));
+            assertThat(diferencia(antes, historialClienteService.obtenerMetricasCache(), "recargas")).isZero();
+        } finally {
+            ReflectionTestUtils.setField(historialClienteService, "maxEntradas", 5000);
+        }
+    }
+
+    // Métodos privados auxiliares
+    private Long vender(LocalDateTime fecha, Producto producto, String cantidad) {
+        Venta venta = DatosPrueba.venta(++consecutivo, "15.00");
+        venta.setCliente(cliente);
+        entityManager.persist(venta);
+        entityManager.persist(DatosPrueba.detalle(venta, producto, cantidad));
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE ventas SET fecha_emision = ? WHERE id = ?", Timestamp.valueOf(fecha), venta.getId());
+        return venta.getId();
+    }
+
+    private LocalDateTime fechaDe(Long ventaId) {
+        return jdbcTemplate.queryForObject("SELECT fecha_emision FROM ventas WHERE id = ?",
+                Timestamp.class, ventaId).toLocalDateTime();
+    }
+
+    private Map<Long, BigDecimal> unidades(Producto producto, String cantidad) {
+        return Collections.singletonMap(producto.getId(), new BigDecimal(cantidad));
+    }
+
+    private long diferencia(Map<String, Object> antes, Map<String, Object> despues, String contador) {
+        return (Long) despues.get(contador) - (Long) antes.get(contador);
+    }
+
+    private VentaRegistradaEvent evento(Long clienteId) {
+        return new VentaRegistradaEvent(null, clienteId, LocalDate.now(), Collections.emptyMap(), false);
+    }
+}
@@ -0,0 +1,138 @@
+package com.tienda.service.impl;
+
+import com.tienda.model.Producto;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import({ImportadorProductosExcel.class, EjecutorReintentos.class, LocalValidatorFactoryBean.class})
+class ImportadorProductosExcelTest {
+
+    private static final List<Object> ENCABEZADO =
+            Arrays.asList("Código", "Nombre", "Precio", "Stock", "Código de barras", "Proveedor Id");
+
+    @Autowired
+    private ImportadorProductosExcel importador;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void unIdFraccionarioSeReportaComoErrorDeLaFilaSinCortarLaImportacion() throws IOException {
+        Map<String, Object> resultado = importar(
+                Arrays.asList("A-1", "Primero", 10, 3, null, 1.5),
+                Arrays.asList("A-2", "Segundo", 12, 4, null, null));
+
+        assertThat(resultado)
+                .containsEntry("totalFilas", 2)
+                .containsEntry("creados", 1)
+                .containsEntry("conErrores", 1);
+        assertThat(errores(resultado)).singleElement().satisfies(error -> {
+            assertThat(error.get("fila")).isEqualTo(2);
+            assertThat(error.get("codigo")).isEqualTo("A-1");
+            assertThat(error.get("errores").toString()).contains("proveedorId: valor inválido '1.5'");
+        });
+        assertThat(productoRepository.findByCodigo("A-2")).isPresent();
+    }
+
+    @Test
+    void unCodigoExistenteSeActualizaSinTocarSuStock() throws IOException {
+        entityManager.persistAndFlush(DatosPrueba.producto("EXISTE", "7"));
+
+        Map<String, Object> resultado = importar(
+                Arrays.asList("EXISTE", "Nombre nuevo", 99, 500, null, null),
+                Arrays.asList("NUEVO", "Producto nuevo", 20, 8, null, null));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(resultado).containsEntry("creados", 1).containsEntry("actualizados", 1);
+        Producto existente = productoRepository.findByCodigo("EXISTE").get();
+        assertThat(existente.getNombre()).isEqualTo("Nombre nuevo");
+        assertThat(existente.getPrecioVenta()).isEqualByComparingTo("99");
+        assertThat(existente.getStockActual()).isEqualByComparingTo("7");
+        assertThat(productoRepository.findByCodigo("NUEVO").get().getStockActual()).isEqualByComparingTo("8");
+    }
+
+    @Test
+    void unCodigoDeBarrasDeOtroProductoRechazaLaFila() throws IOException {
+        Producto otro = DatosPrueba.producto("OTRO", "1");
+        otro.setCodigoBarras("7701234");
+        entityManager.persistAndFlush(otro);
+
+        Map<String, Object> resultado = importar(Arrays.asList("B-1", "Con barras ajenas", 10, 1, "7701234", null));
+
+        assertThat(resultado).containsEntry("creados", 0).containsEntry("conErrores", 1);
+        assertThat(errores(resultado).get(0).get("errores").toString()).contains("OTRO");
+    }
+
+    @Test
+    void variosLotesYCodigosRepetidosSeAplicanEnOrden() throws IOException {
+        List<List<Object>> filas = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            filas.add(Arrays.asList("L-" + i, "Lote " + i, 10, 1, null, null));
+        }
+        // La última aparición de un código gana
+        filas.add(Arrays.asList("L-5", "Repetido", 11, 1, null, null));
+
+        Map<String, Object> resultado = importar(filas.toArray(new List[0]));
+
+        assertThat(resultado)
+                .containsEntry("totalFilas", 1201)
+                .containsEntry("creados", 1200)
+                .containsEntry("actualizados", 1)
+                .containsEntry("conErrores", 0);
+        assertThat(productoRepository.findByCodigo("L-5").get().getNombre()).isEqualTo("Repetido");
+    }
+
+    // Métodos privados auxiliares
+    @SafeVarargs
+    private final Map<String, Object> importar(List<Object>... filas) throws IOException {
+        try (XSSFWorkbook libro = new XSSFWorkbook(); ByteArrayOutputStream salida = new ByteArrayOutputStream()) {
+            Sheet hoja = libro.createSheet("Productos");
+            escribirFila(hoja.createRow(0), ENCABEZADO);
+            for (int i = 0; i < filas.length; i++) {
+                escribirFila(hoja.createRow(i + 1), filas[i]);
+            }
+            libro.write(salida);
+
+            return importador.importar(new MockMultipartFile("archivo", "productos.xlsx",
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", salida.toByteArray()));
+        }
+    }
+
+    private void escribirFila(Row fila, List<Object> valores) {
+        for (int i = 0; i < valores.size(); i++) {
+            Object valor = valores.get(i);
+            if (valor instanceof Number) {
+                fila.createCell(i).setCellValue(((Number) valor).doubleValue());
+            } else if (valor != null) {
+                fila.createCell(i).setCellValue(valor.toString());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> errores(Map<String, Object> resultado) {
+        return (List<Map<String, Object>>) resultado.get("errores");
+    }
+}
@@ -0,0 +1,178 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.request.AjusteStockMasivoRequest;
+import com.tienda.dto.request.AjusteStockMasivoRequest.ItemAjusteRequest;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.StockInsuficienteException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Producto;
+import com.tienda.model.Usuario;
+import com.tienda.repository.MovimientoInventarioRepository;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.repository.UsuarioRepository;
+import com.tienda.soporte.DatosPrueba;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventarioServiceImplTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+    @Mock
+    private MovimientoInventarioRepository movimientoInventarioRepository;
+    @Mock
+    private UsuarioRepository usuarioRepository;
+    @Mock
+    private EjecutorReintentos ejecutorReintentos;
+
+    @InjectMocks
+    private InventarioServiceImpl inventarioService;
+
+    private Producto arroz;
+    private Producto azucar;
+
+    @BeforeEach
+    void setUp() {
+        arroz = DatosPrueba.producto("ARROZ", "10");
+        arroz.setId(1L);
+        azucar = DatosPrueba.producto("AZUCAR", "3");
+        azucar.setId(2L);
+
+        Usuario usuario = DatosPrueba.usuario("bodega");
+        usuario.setId(7L);
+        when(usuarioRepository.findById(7L)).thenReturn(Optional.of(usuario));
+        when(ejecutorReintentos.ejecutar(anyString(), any()))
+                .thenAnswer(inv -> ((Supplier<?>) inv.getArgument(1)).get());
+    }
+
+    @Test
+    void ajusteMasivoCargaElLoteUnaVezYEncadenaLasLineasDelMismoProducto() {
+        when(productoRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(arroz, azucar));
+
+        Map<String, Object> resultado = inventarioService.ajustarStockMasivo(request(
+                item(1L, "5", "INCREMENTO"),
+                item(2L, "20", "FIJO"),
+                item(1L, "12", "DECREMENTO")));
+
+        assertThat(arroz.getStockActual()).isEqualByComparingTo("3");
+        assertThat(azucar.getStockActual()).isEqualByComparingTo("20");
+        assertThat(resultado.get("lineasProcesadas")).isEqualTo(3);
+        assertThat(resultado.get("productosAfectados")).isEqualTo(2);
+
+        // (3 - 10) * 10 + (20 - 3) * 10
+        assertThat((BigDecimal) resultado.get("variacionValorCosto")).isEqualByComparingTo("100");
+
+        verify(productoRepository, times(1)).findAllById(anyCollection());
+        verify(productoRepository, times(1)).saveAll(anyCollection());
+
+        ArgumentCaptor<List<MovimientoInventario>> lote = movimientosCaptor();
+        verify(movimientoInventarioRepository, times(1)).insertarEnLote(lote.capture());
+        List<MovimientoInventario> movimientos = lote.getValue();
+        assertThat(movimientos).hasSize(3);
+
+        // La tercera línea parte del stock que dejó la primera
+        assertThat(movimientos.get(0).getCantidadAnterior()).isEqualByComparingTo("10");
+        assertThat(movimientos.get(0).getCantidadNueva()).isEqualByComparingTo("15");
+        assertThat(movimientos.get(2).getCantidadAnterior()).isEqualByComparingTo("15");
+        assertThat(movimientos.get(2).getCantidadNueva()).isEqualByComparingTo("3");
+        assertThat(movimientos).allMatch(m -> "MASIVO".equals(m.getSubtipo()));
+    }
+
+    @Test
+    void ajusteMasivoInformaLasTransicionesDeAlertaDelLote() {
+        when(productoRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(arroz, azucar));
+        arroz.calcularEstadoStock();
+        azucar.calcularEstadoStock();
+
+        Map<String, Object> resultado = inventarioService.ajustarStockMasivo(request(
+                item(1L, "10", "DECREMENTO"),
+                item(2L, "1", "INCREMENTO")));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> cambios = (List<Map<String, Object>>) resultado.get("cambiosAlerta");
+        assertThat(cambios).hasSize(1);
+        assertThat(cambios.get(0).get("productoId")).isEqualTo(1L);
+        assertThat(cambios.get(0).get("alertaAnterior")).isEqualTo("NORMAL");
+        assertThat(cambios.get(0).get("alertaNueva")).isEqualTo("AGOTADO");
+    }
+
+    @Test
+    void ajusteMasivoConProductosInexistentesNoEscribeNada() {
+        when(productoRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(arroz));
+
+        assertThatThrownBy(() -> inventarioService.ajustarStockMasivo(request(
+                item(1L, "1", "INCREMENTO"),
+                item(99L, "1", "INCREMENTO"))))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("[99]");
+
+        verify(productoRepository, never()).saveAll(anyCollection());
+        verify(movimientoInventarioRepository, never()).insertarEnLote(any());
+    }
+
+    @Test
+    void ajusteMasivoRechazaElLoteSiUnaLineaDejaStockNegativo() {
+        when(productoRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(arroz, azucar));
+
+        assertThatThrownBy(() -> inventarioService.ajustarStockMasivo(request(
+                item(1L, "4", "DECREMENTO"),
+                item(2L, "4", "DECREMENTO"))))
+                .isInstanceOf(StockInsuficienteException.class);
+
+        verify(productoRepository, never()).saveAll(anyCollection());
+        verify(movimientoInventarioRepository, never()).insertarEnLote(any());
+    }
+
+    @Test
+    void ajusteMasivoRechazaCantidadesNegativasAunSinValidarLaPeticion() {
+        when(productoRepository.findAllById(anyCollection())).thenReturn(Arrays.asList(arroz, azucar));
+
+        assertThatThrownBy(() -> inventarioService.ajustarStockMasivo(request(
+                item(1L, "-5", "DECREMENTO"),
+                item(2L, "-1", "FIJO"))))
+                .isInstanceOf(ValidacionException.class)
+                .hasMessageContaining("negativa");
+
+        assertThat(arroz.getStockActual()).isEqualByComparingTo("10");
+        verify(productoRepository, never()).saveAll(anyCollection());
+    }
+
+    // Métodos privados auxiliares
+    private static AjusteStockMasivoRequest request(ItemAjusteRequest... items) {
+        return new AjusteStockMasivoRequest(7L, "CONTEO-001", Arrays.asList(items));
+    }
+
+    private static ItemAjusteRequest item(Long productoId, String cantidad, String tipo) {
+        return new ItemAjusteRequest(productoId, new BigDecimal(cantidad), tipo, "Conteo físico");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<MovimientoInventario>> movimientosCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
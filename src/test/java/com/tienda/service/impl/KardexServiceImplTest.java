@@ -0,0 +1,206 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.KardexResponse;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.MovimientoInventario;
+import com.tienda.model.Producto;
+import com.tienda.repository.ArchivoHistoricoRepository;
+import com.tienda.repository.ArchivoHistoricoRepository.TablaArchivable;
+import com.tienda.repository.MovimientoInventarioRepository;
+import com.tienda.repository.MovimientoInventarioRepositoryImpl;
+import com.tienda.repository.SaldoInventarioRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import({KardexServiceImpl.class, ArchivoHistoricoRepository.class})
+class KardexServiceImplTest {
+
+    @Autowired
+    private KardexServiceImpl kardexService;
+    @Autowired
+    private MovimientoInventarioRepository movimientoInventarioRepository;
+    @Autowired
+    private MovimientoInventarioRepositoryImpl movimientoInventarioRepositoryImpl;
+    @Autowired
+    private SaldoInventarioRepository saldoInventarioRepository;
+    @Autowired
+    private ArchivoHistoricoRepository archivoHistoricoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Producto producto;
+    private LocalDateTime ahora;
+
+    @BeforeEach
+    void setUp() {
+        producto = entityManager.persistFlushFind(DatosPrueba.producto("KARDEX", "0"));
+        ahora = LocalDateTime.now();
+    }
+
+    // El repositorio recuerda que el archivo existe y el rollback lo borra: se olvida tras cada prueba
+    @AfterEach
+    void olvidarArchivo() {
+        ReflectionTestUtils.setField(movimientoInventarioRepositoryImpl, "hayArchivo", false);
+    }
+
+    @Test
+    void sinSaldoPrevioDescuentaDesdeElStockActual() {
+        registrar("0", "10", ahora.minusDays(3));
+        registrar("10", "4", ahora.minusDays(2));
+        registrar("4", "9", ahora.minusDays(1));
+        fijarStock("9");
+
+        assertThat(kardexService.calcularStockEnFecha(producto.getId(), ahora.minusDays(4))).isEqualByComparingTo("0");
+        assertThat(kardexService.calcularStockEnFecha(producto.getId(), ahora.minusDays(2).plusHours(1)))
+                .isEqualByComparingTo("4");
+        assertThat(kardexService.calcularStockEnFecha(producto.getId(), ahora.plusMinutes(1)))
+                .isEqualByComparingTo("9");
+    }
+
+    @Test
+    void elSaldoDeCierreMasElDeltaDaElStockEnFecha() {
+        registrar("0", "10", ahora.minusHours(3));
+        fijarStock("10");
+        assertThat(kardexService.generarSaldos(LocalDate.now())).isEqualTo(1);
+
+        registrar("10", "7", ahora.plusMinutes(5));
+        fijarStock("7");
+
+        assertThat(kardexService.obtenerStockEnFecha(producto.getId(), ahora.plusMinutes(10)))
+                .containsEntry("origen", "SALDO_CIERRE")
+                .hasEntrySatisfying("stock", stock -> assertThat((BigDecimal) stock).isEqualByComparingTo("7"));
+    }
+
+    @Test
+    void unMovimientoConfirmadoDespuesDelSaldoCuentaAunqueSuFechaSeaAnterior() {
+        registrar("0", "10", ahora.minusHours(3));
+        fijarStock("10");
+        kardexService.generarSaldos(LocalDate.now());
+        LocalDateTime fechaSaldo = saldoInventarioRepository.findByProductoIdOrderByFechaCorteDesc(producto.getId())
+                .get(0).getFechaSaldo();
+
+        // Fecha tomada por la aplicación antes del saldo, pero la fila llega después
+        registrar("10", "12", fechaSaldo.minusSeconds(30));
+        fijarStock("12");
+
+        assertThat(kardexService.calcularStockEnFecha(producto.getId(), fechaSaldo.plusSeconds(1)))
+                .isEqualByComparingTo("12");
+    }
+
+    @Test
+    void elSaldoSeAnclaAlRelojYAlUltimoMovimientoDeLaBd() {
+        registrar("0", "10", ahora.minusHours(3));
+        fijarStock("10");
+        Long ultimoId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM movimientos_inventario", Long.class);
+
+        kardexService.generarSaldos(LocalDate.now());
+        assertThat(kardexService.generarSaldos(LocalDate.now())).isZero();
+
+        assertThat(saldoInventarioRepository.findByProductoIdOrderByFechaCorteDesc(producto.getId()))
+                .singleElement()
+                .satisfies(saldo -> {
+                    assertThat(saldo.getCantidad()).isEqualByComparingTo("10");
+                    assertThat(saldo.getUltimoMovimientoId()).isGreaterThanOrEqualTo(ultimoId);
+                    assertThat(saldo.getFechaSaldo()).isAfterOrEqualTo(ahora.minusMinutes(1));
+                });
+    }
+
+    @Test
+    void noSeGeneranSaldosParaOtroDiaQueHoy() {
+        assertThatThrownBy(() -> kardexService.generarSaldos(LocalDate.now().minusDays(1)))
+                .isInstanceOf(ValidacionException.class);
+        assertThat(saldoInventarioRepository.count()).isZero();
+    }
+
+    @Test
+    void elKardexAcumulaElSaldoDesdeElSaldoInicial() {
+        registrar("0", "10", ahora.minusDays(5));
+        registrar("10", "6", ahora.minusDays(3));
+        registrar("6", "11", ahora.minusDays(2));
+        registrar("11", "8", ahora.minusDays(1));
+        fijarStock("8");
+
+        KardexResponse kardex = kardexService.obtenerKardex(producto.getId(),
+                ahora.minusDays(4), ahora.minusDays(1).minusHours(1));
+
+        assertThat(kardex.getSaldoInicial()).isEqualByComparingTo("10");
+        assertThat(kardex.getMovimientos()).extracting(m -> m.getSaldo().stripTrailingZeros().toPlainString())
+                .containsExactly("6", "11");
+        assertThat(kardex.getTotalEntradas()).isEqualByComparingTo("5");
+        assertThat(kardex.getTotalSalidas()).isEqualByComparingTo("4");
+        assertThat(kardex.getSaldoFinal()).isEqualByComparingTo("11");
+    }
+
+    @Test
+    void elKardexRechazaUnRangoInvertido() {
+        assertThatThrownBy(() -> kardexService.obtenerKardex(producto.getId(), ahora, ahora.minusDays(1)))
+                .isInstanceOf(ValidacionException.class);
+    }
+
+    @Test
+    void losMovimientosArchivadosSiguenContandoEnElKardexYElStockEnFecha() {
+        YearMonth archivado = YearMonth.from(ahora).minusMonths(3);
+        LocalDateTime inicio = archivado.atDay(1).atTime(10, 0);
+        registrar("0", "20", inicio);
+        registrar("20", "15", inicio.plusDays(5));
+        registrar("15", "18", ahora.minusDays(1));
+        fijarStock("18");
+
+        LocalDateTime mitadDelMes = inicio.plusDays(10);
+        BigDecimal stockAntes = kardexService.calcularStockEnFecha(producto.getId(), mitadDelMes);
+        KardexResponse kardexAntes = kardexService.obtenerKardex(producto.getId(), inicio.minusDays(1), ahora);
+
+        archivoHistoricoRepository.prepararTablaHistorica(TablaArchivable.MOVIMIENTOS_INVENTARIO);
+        archivoHistoricoRepository.crearParticion(TablaArchivable.MOVIMIENTOS_INVENTARIO, archivado);
+        assertThat(archivoHistoricoRepository.moverPeriodo(TablaArchivable.MOVIMIENTOS_INVENTARIO, archivado))
+                .isEqualTo(2);
+
+        KardexResponse kardex = kardexService.obtenerKardex(producto.getId(), inicio.minusDays(1), ahora);
+        assertThat(stockAntes).isEqualByComparingTo("15");
+        assertThat(kardexService.calcularStockEnFecha(producto.getId(), mitadDelMes)).isEqualByComparingTo("15");
+        assertThat(kardex.getMovimientos()).hasSize(3);
+        assertThat(kardex.getMovimientos()).extracting(m -> m.getSaldo().stripTrailingZeros().toPlainString())
+                .containsExactly("20", "15", "18");
+        assertThat(kardex.getSaldoInicial()).isEqualByComparingTo(kardexAntes.getSaldoInicial());
+        assertThat(kardex.getSaldoFinal()).isEqualByComparingTo(kardexAntes.getSaldoFinal());
+    }
+
+    // Métodos privados auxiliares
+    private void registrar(String anterior, String nueva, LocalDateTime fecha) {
+        BigDecimal antes = new BigDecimal(anterior);
+        BigDecimal despues = new BigDecimal(nueva);
+        movimientoInventarioRepository.insertarEnLote(Collections.singletonList(MovimientoInventario.builder()
+                .producto(producto)
+                .tipoMovimiento(despues.compareTo(antes) >= 0 ? "ENTRADA" : "SALIDA")
+                .cantidad(despues.subtract(antes).abs())
+                .cantidadAnterior(antes)
+                .cantidadNueva(despues)
+                .fechaMovimiento(fecha)
+                .build()));
+    }
+
+    private void fijarStock(String stock) {
+        jdbcTemplate.update("UPDATE productos SET stock_actual = ? WHERE id = ?", new BigDecimal(stock), producto.getId());
+        entityManager.clear();
+    }
+}
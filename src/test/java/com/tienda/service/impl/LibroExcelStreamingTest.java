@@ -0,0 +1,87 @@
+package com.tienda.service.impl;
+
+import com.tienda.service.impl.LibroExcelStreaming.Formato;
+import com.tienda.service.impl.LibroExcelStreaming.Hoja;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibroExcelStreamingTest {
+
+    @Test
+    void lasFilasFueraDeLaVentanaLleganCompletasAlArchivo() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            Hoja hoja = libro.crearHoja("Datos")
+                    .columna("Número", Formato.ENTERO, 10)
+                    .columna("Importe", Formato.MONEDA, 14);
+            for (int i = 1; i <= 1000; i++) {
+                hoja.fila(i, new BigDecimal(i).movePointLeft(2));
+            }
+            assertThat(hoja.getFilasEscritas()).isEqualTo(1000);
+            libro.escribir(salida);
+        }
+
+        try (XSSFWorkbook leido = leer(salida)) {
+            Sheet hoja = leido.getSheet("Datos");
+            assertThat(hoja.getLastRowNum()).isEqualTo(1000);
+            assertThat(hoja.getRow(0).getCell(0).getStringCellValue()).isEqualTo("Número");
+            assertThat(hoja.getRow(1).getCell(0).getNumericCellValue()).isEqualTo(1);
+            assertThat(hoja.getRow(1000).getCell(1).getNumericCellValue()).isEqualTo(10.0);
+            assertThat(hoja.getPaneInformation().getHorizontalSplitPosition()).isEqualTo((short) 1);
+        }
+    }
+
+    @Test
+    void variasHojasCompartenLosMismosEstilos() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            for (String nombre : new String[]{"Uno", "Dos", "Tres"}) {
+                Hoja hoja = libro.crearHoja(nombre)
+                        .columna("Fecha", Formato.FECHA, 12)
+                        .columna("Total", Formato.MONEDA, 14);
+                for (int i = 0; i < 300; i++) {
+                    hoja.fila(LocalDate.of(2026, 1, 1).plusDays(i % 28), new BigDecimal("12.50"));
+                }
+            }
+            libro.escribir(salida);
+        }
+
+        try (XSSFWorkbook leido = leer(salida)) {
+            assertThat(leido.getNumberOfSheets()).isEqualTo(3);
+            // Estilo por defecto, encabezado y uno por formato: no crece con las filas ni con las hojas
+            assertThat(leido.getNumCellStyles()).isLessThanOrEqualTo(7);
+            assertThat(leido.getSheet("Tres").getRow(5).getCell(1).getCellStyle().getIndex())
+                    .isEqualTo(leido.getSheet("Uno").getRow(200).getCell(1).getCellStyle().getIndex());
+            assertThat(leido.getSheet("Dos").getRow(1).getCell(0).getLocalDateTimeCellValue().toLocalDate())
+                    .isEqualTo(LocalDate.of(2026, 1, 1));
+        }
+    }
+
+    @Test
+    void unaHojaSinFilasConservaSuEncabezado() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (LibroExcelStreaming libro = new LibroExcelStreaming()) {
+            libro.crearHoja("Vacía").columna("Código", Formato.TEXTO, 16);
+            libro.escribir(salida);
+        }
+
+        try (XSSFWorkbook leido = leer(salida)) {
+            assertThat(leido.getSheet("Vacía").getLastRowNum()).isZero();
+            assertThat(leido.getSheet("Vacía").getRow(0).getCell(0).getStringCellValue()).isEqualTo("Código");
+        }
+    }
+
+    // Métodos privados auxiliares
+    private XSSFWorkbook leer(ByteArrayOutputStream salida) throws IOException {
+        return new XSSFWorkbook(new ByteArrayInputStream(salida.toByteArray()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.tienda.service.impl;
+
+import com.tienda.config.EsquemaBaseDatos;
+import com.tienda.dto.response.PaginacionResponse;
+import com.tienda.dto.response.ProductoResponse;
+import com.tienda.model.Categoria;
+import com.tienda.model.Producto;
+import com.tienda.model.Proveedor;
+import com.tienda.repository.BusquedaTextoRepository;
+import com.tienda.service.AlertaStockService;
+import com.tienda.service.BusquedaProductoService;
+import com.tienda.service.ReordenService;
+import com.tienda.soporte.ContadorSentencias;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Cada producto con su propia categoría y proveedor: una relación LAZY recorrida fila a fila se notaría
+@PruebaPostgres
+@Import({ProductoServiceImpl.class, InventarioServiceImpl.class})
+@TestPropertySource(properties = ContadorSentencias.PROPIEDAD)
+class ListadosProductoSentenciasTest {
+
+    private static final int PRODUCTOS = 30;
+
+    @Autowired
+    private ProductoServiceImpl productoService;
+    @Autowired
+    private InventarioServiceImpl inventarioService;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private AlertaStockService alertaStockService;
+    @MockBean
+    private BusquedaProductoService busquedaProductoService;
+    @MockBean
+    private ReordenService reordenService;
+    @MockBean
+    private EjecutorReintentos ejecutorReintentos;
+    @MockBean
+    private ImportadorProductosExcel importadorProductosExcel;
+    @MockBean
+    private ExportadorExcel exportadorExcel;
+    @MockBean
+    private BusquedaTextoRepository busquedaTextoRepository;
+    @MockBean
+    private EsquemaBaseDatos esquemaBaseDatos;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Categoria categoria = entityManager.persist(Categoria.builder().nombre("Categoría " + i).build());
+            Proveedor proveedor = entityManager.persist(Proveedor.builder()
+                    .codigo("PRV-" + i)
+                    .nombre("Proveedor " + i)
+                    .build());
+            Producto producto = DatosPrueba.producto(String.format("P-%02d", i), "10");
+            producto.setCategoria(categoria);
+            producto.setProveedor(proveedor);
+            entityManager.persist(producto);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void laPaginaDeProductosNoCreceConElTamano() {
+        long pequena = ContadorSentencias.contar(() -> productos(5));
+        entityManager.clear();
+        long grande = ContadorSentencias.contar(() -> productos(25));
+
+        // Página y conteo
+        assertThat(pequena).isEqualTo(2);
+        assertThat(grande).isEqualTo(pequena);
+    }
+
+    @Test
+    void elListadoCompletoEsUnaSolaSentencia() {
+        long sentencias = ContadorSentencias.contar(() ->
+                assertThat(productoService.obtenerTodosProductos())
+                        .hasSize(PRODUCTOS)
+                        .allSatisfy(p -> assertThat(p.getProveedorNombre()).isNotNull()));
+
+        assertThat(sentencias).isEqualTo(1);
+    }
+
+    @Test
+    void laPaginaDeInventarioNoCreceConElTamano() {
+        long pequena = ContadorSentencias.contar(() ->
+                assertThat(inventarioService.obtenerInventarioPaginado(PageRequest.of(0, 5)).getContent()).hasSize(5));
+        entityManager.clear();
+        long grande = ContadorSentencias.contar(() ->
+                assertThat(inventarioService.obtenerInventarioPaginado(PageRequest.of(0, 25)).getContent()).hasSize(25));
+
+        assertThat(pequena).isEqualTo(2);
+        assertThat(grande).isEqualTo(pequena);
+    }
+
+    @Test
+    void elInventarioCompletoEsUnaSolaSentencia() {
+        long sentencias = ContadorSentencias.contar(() ->
+                assertThat(inventarioService.obtenerInventarioConEstados()).hasSize(PRODUCTOS));
+
+        assertThat(sentencias).isEqualTo(1);
+    }
+
+    // Métodos privados auxiliares
+    private void productos(int tamano) {
+        PaginacionResponse<ProductoResponse> pagina =
+                productoService.obtenerProductosPaginados(PageRequest.of(0, tamano));
+        assertThat(pagina.getContent())
+                .hasSize(tamano)
+                .allSatisfy(p -> assertThat(p.getCategoriaNombre()).isNotNull());
+    }
+}
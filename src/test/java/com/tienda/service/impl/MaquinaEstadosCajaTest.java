@@ -0,0 +1,254 @@
+package com.tienda.service.impl;
+
+import com.tienda.exception.ConflictoConcurrenciaException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Caja;
+import com.tienda.model.Producto;
+import com.tienda.model.Sucursal;
+import com.tienda.model.Usuario;
+import com.tienda.model.Venta;
+import com.tienda.repository.CajaMovimientoRepository;
+import com.tienda.service.InventarioService;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Sin transacción de prueba: los bloqueos y el registro solo se ven entre transacciones confirmadas
+@PruebaPostgres
+@Import({MaquinaEstadosCaja.class, RegistroSesionesCaja.class, VentaServiceImpl.class,
+        CajaMovimientoRepository.class, EjecutorReintentos.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MaquinaEstadosCajaTest {
+
+    @Autowired
+    private MaquinaEstadosCaja maquinaEstadosCaja;
+    @Autowired
+    private RegistroSesionesCaja registroSesionesCaja;
+    @Autowired
+    private VentaServiceImpl ventaService;
+    @Autowired
+    private CajaMovimientoRepository cajaMovimientoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private InventarioService inventarioService;
+
+    private final ExecutorService otraConexion = Executors.newSingleThreadExecutor();
+
+    private Long sucursalId;
+    private Long cajaId;
+    private Long usuarioId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.execute(status -> {
+            Sucursal sucursal = entityManager.persist(Sucursal.builder().codigo("S1").nombre("Centro").build());
+            sucursalId = sucursal.getId();
+            usuarioId = entityManager.persist(DatosPrueba.usuario("cajero")).getId();
+            cajaId = entityManager.persist(Caja.builder().codigo("C1").nombre("Caja 1").sucursal(sucursal).build()).getId();
+            return null;
+        });
+        registroSesionesCaja.recargar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        otraConexion.shutdownNow();
+        jdbcTemplate.update("DELETE FROM caja_movimientos");
+        jdbcTemplate.update("DELETE FROM caja_saldos");
+        jdbcTemplate.update("DELETE FROM movimientos_inventario");
+        jdbcTemplate.update("DELETE FROM detalle_ventas");
+        jdbcTemplate.update("DELETE FROM ventas");
+        jdbcTemplate.update("DELETE FROM productos");
+        jdbcTemplate.update("DELETE FROM cajas");
+        jdbcTemplate.update("DELETE FROM usuarios");
+        jdbcTemplate.update("DELETE FROM sucursales");
+        registroSesionesCaja.recargar();
+    }
+
+    @Test
+    void deDosTransicionesSobreLaMismaLecturaSoloSeAplicaUna() {
+        abrir(cajaId, usuarioId);
+
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> {
+            Caja leida = entityManager.find(Caja.class, cajaId);
+            // Otra operación cierra la caja después de la lectura
+            enOtraConexion(() -> transactionTemplate.execute(otra -> {
+                maquinaEstadosCaja.cerrar(entityManager.find(Caja.class, cajaId));
+                return null;
+            }));
+            maquinaEstadosCaja.bloquear(leida);
+            return null;
+        })).isInstanceOf(ConflictoConcurrenciaException.class).hasMessageContaining("estado CERRADA");
+        assertThat(estado(cajaId)).isEqualTo("CERRADA");
+    }
+
+    @Test
+    void unaTransicionDesdeUnEstadoNoPermitidoSeRechaza() {
+        abrir(cajaId, usuarioId);
+
+        assertThatThrownBy(() -> abrir(cajaId, usuarioId))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("estado ABIERTA");
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.asignarUsuario(entityManager.find(Caja.class, cajaId), null);
+            return null;
+        })).isInstanceOf(ValidacionException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT usuario_asignado_id FROM cajas WHERE id = ?",
+                Long.class, cajaId)).isEqualTo(usuarioId);
+    }
+
+    @Test
+    void unUsuarioNoPuedeTenerDosCajasAbiertas() {
+        Long otra = transactionTemplate.execute(status -> entityManager.persist(Caja.builder().codigo("C2")
+                .nombre("Caja 2").sucursal(entityManager.find(Sucursal.class, sucursalId)).build()).getId());
+        abrir(cajaId, usuarioId);
+
+        assertThatThrownBy(() -> abrir(otra, usuarioId))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("ya tiene otra caja abierta");
+        assertThat(estado(otra)).isEqualTo("CERRADA");
+    }
+
+    @Test
+    void elRegistroSigueLasTransicionesConfirmadas() {
+        abrir(cajaId, usuarioId);
+
+        assertThat(registroSesionesCaja.obtenerCajaAbiertaPorUsuario(usuarioId)).contains(cajaId);
+        assertThat(registroSesionesCaja.obtenerCajasAbiertasPorSucursal(sucursalId)).containsExactly(cajaId);
+
+        // Una transición deshecha no llega al registro
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.cerrar(entityManager.find(Caja.class, cajaId));
+            throw new IllegalStateException("deshacer");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(registroSesionesCaja.estaAbierta(cajaId)).isTrue();
+
+        transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.cerrar(entityManager.find(Caja.class, cajaId));
+            return null;
+        });
+        assertThat(registroSesionesCaja.estaAbierta(cajaId)).isFalse();
+        assertThat(registroSesionesCaja.obtenerCajaAbiertaPorUsuario(usuarioId)).isEmpty();
+    }
+
+    @Test
+    void bloquearAbiertaRechazaUnaCajaCerrada() {
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.bloquearAbierta(cajaId);
+            return null;
+        })).isInstanceOf(ValidacionException.class).hasMessageContaining("no está abierta");
+    }
+
+    @Test
+    void elCierreNoPuedeAplicarseMientrasUnaAnulacionEstaEnCurso() {
+        abrir(cajaId, usuarioId);
+        Long venta = vender();
+
+        transactionTemplate.execute(status -> {
+            ventaService.anularVenta(venta, "Cliente desiste");
+            // La anulación retiene la caja: el cierre desde otra conexión no consigue el bloqueo
+            assertThatThrownBy(() -> enOtraConexion(() -> transactionTemplate.execute(otra -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '200ms'");
+                return jdbcTemplate.update("UPDATE cajas SET estado = 'CERRADA' WHERE id = ?", cajaId);
+            }))).isInstanceOf(DataAccessException.class);
+            return null;
+        });
+
+        assertThat(estado(cajaId)).isEqualTo("ABIERTA");
+        assertThat(cajaMovimientoRepository.obtenerMovimientosSesion(cajaId, 1))
+                .extracting(m -> m.get("tipo")).containsExactly("APERTURA", "VENTA", "ANULACION");
+    }
+
+    @Test
+    void unaAnulacionQueLlegaDuranteElCierreEsperaYVeLaCajaCerrada() {
+        abrir(cajaId, usuarioId);
+        Long venta = vender();
+
+        Future<?> anulacion = transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.cerrar(entityManager.find(Caja.class, cajaId));
+            Future<?> enCurso = otraConexion.submit(() -> ventaService.anularVenta(venta, "Tarde"));
+            // Sin confirmar el cierre, la anulación sigue esperando el bloqueo
+            assertThatThrownBy(() -> enCurso.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            return enCurso;
+        });
+
+        assertThatThrownBy(() -> anulacion.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(ValidacionException.class);
+        assertThat(cajaMovimientoRepository.obtenerMovimientosSesion(cajaId, 1))
+                .extracting(m -> m.get("tipo")).containsExactly("APERTURA", "VENTA");
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM ventas WHERE id = ?", String.class, venta))
+                .isEqualTo("COMPLETADA");
+    }
+
+    // Métodos privados auxiliares
+    private void abrir(Long caja, Long usuario) {
+        transactionTemplate.execute(status -> {
+            maquinaEstadosCaja.abrir(entityManager.find(Caja.class, caja),
+                    entityManager.find(Usuario.class, usuario), new BigDecimal("50.00"));
+            cajaMovimientoRepository.abrirSesion(caja, new BigDecimal("50.00"), usuario);
+            return null;
+        });
+    }
+
+    // Venta ya cobrada en la sesión abierta, como la deja crearVenta
+    private Long vender() {
+        return transactionTemplate.execute(status -> {
+            Producto producto = entityManager.persist(DatosPrueba.producto("ARROZ", "6"));
+            Venta venta = DatosPrueba.venta(1, "0");
+            venta.setCaja(entityManager.find(Caja.class, cajaId));
+            venta.getDetalles().add(DatosPrueba.detalle(venta, producto, "2"));
+            venta.calcularTotales();
+            entityManager.persist(venta);
+            entityManager.flush();
+            cajaMovimientoRepository.registrar(cajaId, "VENTA", venta.getFormaPago(), venta.getTotal(),
+                    venta.getId(), null, venta.getNumeroFactura());
+            return venta.getId();
+        });
+    }
+
+    private String estado(Long caja) {
+        return jdbcTemplate.queryForObject("SELECT estado FROM cajas WHERE id = ?", String.class, caja);
+    }
+
+    // Corre la acción en otro hilo, con su propia conexión, y devuelve su resultado o su error
+    private <T> T enOtraConexion(Callable<T> accion) {
+        try {
+            return otraConexion.submit(accion).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
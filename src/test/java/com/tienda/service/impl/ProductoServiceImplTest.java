@@ -0,0 +1,94 @@
+package com.tienda.service.impl;
+
+import com.tienda.config.EsquemaBaseDatos;
+import com.tienda.dto.response.ProductoResponse;
+import com.tienda.model.Producto;
+import com.tienda.repository.BusquedaTextoRepository;
+import com.tienda.service.AlertaStockService;
+import com.tienda.service.BusquedaProductoService;
+import com.tienda.service.ReordenService;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@PruebaPostgres
+@Import(ProductoServiceImpl.class)
+class ProductoServiceImplTest {
+
+    @Autowired
+    private ProductoServiceImpl productoService;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockBean
+    private BusquedaProductoService busquedaProductoService;
+    @MockBean
+    private AlertaStockService alertaStockService;
+    @MockBean
+    private ReordenService reordenService;
+    @MockBean
+    private EjecutorReintentos ejecutorReintentos;
+    @MockBean
+    private ImportadorProductosExcel importadorProductosExcel;
+    @MockBean
+    private ExportadorExcel exportadorExcel;
+    @MockBean
+    private BusquedaTextoRepository busquedaTextoRepository;
+    @MockBean
+    private EsquemaBaseDatos esquemaBaseDatos;
+
+    private Producto lecitina;
+    private Producto queso;
+
+    @BeforeEach
+    void setUp() {
+        Producto leche = DatosPrueba.producto("P-100", "5");
+        leche.setNombre("Leche entera");
+        entityManager.persist(leche);
+        lecitina = entityManager.persist(DatosPrueba.producto("LEC-7", "5"));
+        queso = DatosPrueba.producto("Q_1", "5");
+        queso.setCodigoBarras("7701234");
+        entityManager.persist(queso);
+        entityManager.persist(DatosPrueba.producto("QX1", "5"));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void sinIndiceLaBusquedaPorCodigoVaALaBaseDeDatosPorPrefijo() {
+        assertThat(codigos(productoService.buscarProductosPorCodigo("lec"))).containsExactly("LEC-7");
+        assertThat(codigos(productoService.buscarProductosPorCodigo("770"))).containsExactly("Q_1");
+        assertThat(productoService.buscarProductosPorCodigo("100")).isEmpty();
+        // El guion bajo se busca literal, no como comodín
+        assertThat(codigos(productoService.buscarProductosPorCodigo("Q_"))).containsExactly("Q_1");
+
+        verify(busquedaProductoService, never()).buscarIdsPorCodigo("lec");
+    }
+
+    @Test
+    void conElIndiceConstruidoSeRespetaSuOrden() {
+        when(busquedaProductoService.isIndiceConstruido()).thenReturn(true);
+        when(busquedaProductoService.buscarIdsPorCodigo("q")).thenReturn(Arrays.asList(queso.getId(), lecitina.getId()));
+
+        assertThat(codigos(productoService.buscarProductosPorCodigo("q"))).containsExactly("Q_1", "LEC-7");
+    }
+
+    // Métodos privados auxiliares
+    private static List<String> codigos(List<ProductoResponse> productos) {
+        return productos.stream().map(ProductoResponse::getCodigo).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,170 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.SugerenciaCompraResponse;
+import com.tienda.event.VentaRegistradaEvent;
+import com.tienda.model.Producto;
+import com.tienda.model.Proveedor;
+import com.tienda.model.VelocidadVenta;
+import com.tienda.repository.ProductoRepository;
+import com.tienda.repository.VelocidadVentaRepository;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PruebaPostgres
+@Import(ReordenServiceImpl.class)
+class ReordenServiceImplTest {
+
+    @Autowired
+    private ReordenServiceImpl reordenService;
+    @Autowired
+    private VelocidadVentaRepository velocidadVentaRepository;
+    @Autowired
+    private ProductoRepository productoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void elPuntoDeReordenUsaLaVelocidadYElPlazoDelProveedor() {
+        Proveedor proveedor = proveedor("PRV-1", 3);
+        Producto producto = producto("RAPIDO", "30", proveedor);
+
+        vender(producto, "10");
+
+        VelocidadVenta velocidad = velocidadVentaRepository.findAll().get(0);
+        // 10 u/día * 3 días + 1.65 * sqrt(30) de seguridad; cobertura de 14 días
+        assertThat(velocidad.getVelocidadReorden()).isEqualByComparingTo("10");
+        assertThat(velocidad.getStockSeguridad()).isEqualByComparingTo("9.04");
+        assertThat(velocidad.getPuntoReorden()).isEqualByComparingTo("39.04");
+        assertThat(velocidad.getStockCobertura()).isEqualByComparingTo("140.00");
+    }
+
+    @Test
+    void elRecalculoNocturnoDecaeLaVelocidadDeLosProductosSinVentas() {
+        Producto producto = producto("QUIETO", "30", null);
+        vender(producto, "10");
+        jdbcTemplate.update("UPDATE velocidades_venta SET fecha_dia = fecha_dia - 3");
+
+        velocidadVentaRepository.recalcularTodosLosPuntos(LocalDate.now(), 0.2, 1.65, 7, 14);
+        entityManager.clear();
+
+        // El día cerrado entra con peso 0.2 y decae dos días sin ventas: 2 * 0.8^2
+        assertThat(velocidadVentaRepository.findAll().get(0).getVelocidadReorden()).isEqualByComparingTo("1.28");
+    }
+
+    @Test
+    void soloSeLeenLosProductosEnOBajoSuPuntoDeReorden() {
+        Proveedor proveedor = proveedor("PRV-1", 3);
+        Producto rapido = producto("RAPIDO", "30", proveedor);
+        Producto holgado = producto("HOLGADO", "500", proveedor);
+        Producto sinVentas = producto("SIN-VENTAS", "4", null);
+        producto("SOBRADO", "50", null);
+        vender(rapido, "10");
+        vender(holgado, "10");
+
+        List<Object[]> filas = velocidadVentaRepository.findBajoPuntoReorden();
+
+        assertThat(filas).extracting(f -> ((Producto) f[0]).getCodigo())
+                .containsExactlyInAnyOrder(rapido.getCodigo(), sinVentas.getCodigo());
+    }
+
+    @Test
+    void laSugerenciaAgrupaPorProveedorYRespetaElStockMaximo() {
+        Proveedor proveedor = proveedor("PRV-1", 3);
+        Producto rapido = producto("RAPIDO", "30", proveedor);
+        rapido.setStockMaximo(new BigDecimal("100"));
+        Producto sinVentas = producto("SIN-VENTAS", "4", null);
+        vender(rapido, "10");
+
+        List<SugerenciaCompraResponse> sugerencia = reordenService.obtenerSugerenciaCompra();
+
+        assertThat(sugerencia).hasSize(2);
+        SugerenciaCompraResponse conProveedor = sugerencia.get(0);
+        assertThat(conProveedor.getProveedorCodigo()).isEqualTo("PRV-1");
+        assertThat(conProveedor.getDiasEntrega()).isEqualTo(3);
+        assertThat(conProveedor.getItems()).singleElement().satisfies(item -> {
+            assertThat(item.getPuntoReorden()).isEqualByComparingTo("39.04");
+            // Tope: stock máximo 100 - disponible 30
+            assertThat(item.getCantidadSugerida()).isEqualByComparingTo("70");
+            assertThat(item.getDiasCobertura()).isEqualByComparingTo("3.00");
+        });
+        assertThat(sugerencia.get(1).getProveedorNombre()).isEqualTo("Sin proveedor");
+        assertThat(sugerencia.get(1).getItems()).singleElement().satisfies(item -> {
+            assertThat(item.getProductoId()).isEqualTo(sinVentas.getId());
+            assertThat(item.getPuntoReorden()).isEqualByComparingTo("5");
+        });
+    }
+
+    @Test
+    void elStockMinimoSigueSiendoElPisoDelPuntoDeReorden() {
+        Producto lento = producto("LENTO", "18", null);
+        lento.setStockMinimo(new BigDecimal("20"));
+        vender(lento, "1");
+
+        assertThat(reordenService.obtenerProductosBajoPuntoReorden())
+                .extracting(Producto::getCodigo).containsExactly("LENTO");
+    }
+
+    // El evento llega después del commit y el recálculo corre en su propia transacción
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void cadaVentaConfirmadaActualizaLosValoresDeReposicion() {
+        Producto producto = productoRepository.save(DatosPrueba.producto("EVENTO", "30"));
+        try {
+            reordenService.alRegistrarVenta(new VentaRegistradaEvent(1L, null, LocalDate.now(),
+                    Collections.singletonMap(producto.getId(), new BigDecimal("4")), false));
+
+            assertThat(velocidadVentaRepository.findAll()).singleElement().satisfies(v -> {
+                assertThat(v.getVelocidadReorden()).isEqualByComparingTo("4");
+                assertThat(v.getPuntoReorden()).isEqualByComparingTo("36.73");
+            });
+
+            // Una anulación de otro día ya no toca la media
+            reordenService.alRegistrarVenta(new VentaRegistradaEvent(1L, null, LocalDate.now().minusDays(1),
+                    Collections.singletonMap(producto.getId(), new BigDecimal("4")), true));
+            assertThat(velocidadVentaRepository.findAll().get(0).getVelocidadReorden()).isEqualByComparingTo("4");
+        } finally {
+            jdbcTemplate.update("DELETE FROM velocidades_venta");
+            jdbcTemplate.update("DELETE FROM productos");
+        }
+    }
+
+    // Métodos privados auxiliares
+    private Proveedor proveedor(String codigo, Integer diasEntrega) {
+        return entityManager.persist(Proveedor.builder()
+                .codigo(codigo)
+                .nombre("Proveedor " + codigo)
+                .diasEntrega(diasEntrega)
+                .build());
+    }
+
+    private Producto producto(String codigo, String stock, Proveedor proveedor) {
+        Producto producto = DatosPrueba.producto(codigo, stock);
+        producto.setProveedor(proveedor);
+        return entityManager.persist(producto);
+    }
+
+    private void vender(Producto producto, String unidades) {
+        entityManager.flush();
+        LocalDate hoy = LocalDate.now();
+        velocidadVentaRepository.registrarUnidades(producto.getId(), new BigDecimal(unidades), hoy, 0.2);
+        velocidadVentaRepository.recalcularPuntos(Collections.singletonList(producto.getId()), hoy,
+                0.2, 1.65, 7, 14);
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,308 @@
+package com.tienda.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tienda.dto.request.FiltroReporteRequest;
+import com.tienda.dto.response.TrabajoReporteResponse;
+import com.tienda.exception.ColaReportesLlenaException;
+import com.tienda.exception.ResourceNotFoundException;
+import com.tienda.exception.ValidacionException;
+import com.tienda.service.ReporteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Un solo hilo: mientras el primer trabajo espera el cerrojo, los demás quedan en la cola
+@ExtendWith(MockitoExtension.class)
+class ReporteTrabajoServiceImplTest {
+
+    private static final LocalDate INICIO = LocalDate.of(2026, 1, 1);
+
+    @Mock
+    private ReporteService reporteService;
+
+    @TempDir
+    Path directorio;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private final List<LocalDate> generados = Collections.synchronizedList(new ArrayList<>());
+    private final List<ReporteTrabajoServiceImpl> servicios = new ArrayList<>();
+
+    private ReporteTrabajoServiceImpl servicio;
+
+    @BeforeEach
+    void setUp() {
+        servicio = crearServicio(24);
+    }
+
+    // Los hilos del pool terminan antes de que JUnit borre el directorio temporal
+    @AfterEach
+    void detener() throws InterruptedException {
+        liberar.countDown();
+        for (ReporteTrabajoServiceImpl creado : servicios) {
+            creado.detener();
+            ((ExecutorService) ReflectionTestUtils.getField(creado, "ejecutor")).awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void elTrabajoTerminadoDejaSuResultadoEnDisco() throws IOException {
+        responderEstadisticas(false);
+
+        String id = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        TrabajoReporteResponse trabajo = esperar(id);
+
+        assertThat(trabajo.getEstado()).isEqualTo("COMPLETADO");
+        assertThat(trabajo.getProgreso()).isEqualTo(100);
+        assertThat(trabajo.getPrioridad()).isEqualTo("NORMAL");
+        assertThat(trabajo.getExpiraEn()).isAfter(trabajo.getFinalizadoEn());
+        Path resultado = servicio.obtenerResultado(id);
+        assertThat(trabajo.getTamanoResultado()).isEqualTo(Files.size(resultado));
+        assertThat(objectMapper.readValue(resultado.toFile(), Map.class)).containsEntry("desde", INICIO.toString());
+        assertThat(objectMapper.readValue(directorio.resolve(id + ".json").toFile(), TrabajoReporteResponse.class)
+                .getEstado()).isEqualTo("COMPLETADO");
+    }
+
+    @Test
+    void unaSolicitudEquivalenteEnCursoReutilizaElTrabajo() {
+        responderEstadisticas(true);
+        TrabajoReporteResponse primero = servicio.solicitarReporte(estadisticas(INICIO), "alta");
+
+        // Mismo filtro normalizado: el tipo en minúsculas y un campo que el reporte no usa no cuentan
+        FiltroReporteRequest equivalente = estadisticas(INICIO);
+        equivalente.setTipoReporte(" estadisticas ");
+        equivalente.setCajaId(7L);
+        TrabajoReporteResponse segundo = servicio.solicitarReporte(equivalente, "BAJA");
+
+        assertThat(segundo.getId()).isEqualTo(primero.getId());
+        assertThat(segundo.getSolicitudes()).isEqualTo(2);
+        liberar.countDown();
+        assertThat(esperar(primero.getId()).getEstado()).isEqualTo("COMPLETADO");
+        verify(reporteService, times(1)).generarEstadisticasVentas(any(), any());
+
+        esperarSinActivos();
+        // Terminado el trabajo, la misma solicitud vuelve a ejecutarse
+        assertThat(servicio.solicitarReporte(estadisticas(INICIO), null).getId()).isNotEqualTo(primero.getId());
+    }
+
+    @Test
+    void laColaAtiendePorPrioridadYAIgualPrioridadPorLlegada() {
+        responderEstadisticas(true);
+        String enCurso = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        esperarEstado(enCurso, "EN_CURSO");
+
+        String baja = servicio.solicitarReporte(estadisticas(INICIO.plusDays(1)), "BAJA").getId();
+        String normal1 = servicio.solicitarReporte(estadisticas(INICIO.plusDays(2)), "NORMAL").getId();
+        String alta = servicio.solicitarReporte(estadisticas(INICIO.plusDays(3)), "ALTA").getId();
+        String normal2 = servicio.solicitarReporte(estadisticas(INICIO.plusDays(4)), null).getId();
+        assertThat(servicio.obtenerTrabajo(alta).getEstado()).isEqualTo("PENDIENTE");
+
+        liberar.countDown();
+        for (String id : new String[]{baja, normal1, alta, normal2}) {
+            esperar(id);
+        }
+
+        assertThat(generados).containsExactly(INICIO, INICIO.plusDays(3), INICIO.plusDays(2),
+                INICIO.plusDays(4), INICIO.plusDays(1));
+    }
+
+    @Test
+    void porEncimaDelMaximoDePendientesSeRechazaLaSolicitud() {
+        ReflectionTestUtils.setField(servicio, "maxPendientes", 2);
+        responderEstadisticas(true);
+        String primero = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        servicio.solicitarReporte(estadisticas(INICIO.plusDays(1)), null);
+
+        assertThatThrownBy(() -> servicio.solicitarReporte(estadisticas(INICIO.plusDays(2)), null))
+                .isInstanceOf(ColaReportesLlenaException.class)
+                .hasFieldOrPropertyWithValue("reintentarEnSegundos", 60L);
+        // Una solicitud equivalente a una activa no ocupa lugar
+        assertThat(servicio.solicitarReporte(estadisticas(INICIO), null).getId()).isEqualTo(primero);
+
+        liberar.countDown();
+        esperar(primero);
+        esperarSinActivos();
+        assertThat(servicio.solicitarReporte(estadisticas(INICIO.plusDays(2)), null).getEstado())
+                .isIn("PENDIENTE", "EN_CURSO", "COMPLETADO");
+    }
+
+    @Test
+    void unReporteConErrorQuedaFallidoYSinResultado() {
+        when(reporteService.generarEstadisticasVentas(any(), any())).thenThrow(new IllegalStateException("sin conexión"));
+
+        String id = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        TrabajoReporteResponse trabajo = esperar(id);
+
+        assertThat(trabajo.getEstado()).isEqualTo("FALLIDO");
+        assertThat(trabajo.getError()).isEqualTo("sin conexión");
+        assertThatThrownBy(() -> servicio.obtenerResultado(id))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("FALLIDO");
+        assertThat(directorio.resolve(id + "-resultado.json")).doesNotExist();
+    }
+
+    @Test
+    void alReiniciarSeConservanLosTerminadosYLosEnCursoSeDanPorFallidos() throws IOException {
+        responderEstadisticas(true);
+        when(reporteService.generarReporteInventario()).thenReturn(null);
+        String terminado = servicio.solicitarReporte(inventario(), null).getId();
+        esperar(terminado);
+        String enCurso = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        esperarEstado(enCurso, "EN_CURSO");
+        Files.write(directorio.resolve("huerfano.json.tmp"), new byte[]{'{'});
+
+        // Otra instancia sobre el mismo directorio, como tras un reinicio
+        ReporteTrabajoServiceImpl reiniciado = crearServicio(24);
+
+        assertThat(reiniciado.obtenerTrabajo(terminado).getEstado()).isEqualTo("COMPLETADO");
+        assertThat(reiniciado.obtenerResultado(terminado)).exists();
+        TrabajoReporteResponse interrumpido = reiniciado.obtenerTrabajo(enCurso);
+        assertThat(interrumpido.getEstado()).isEqualTo("FALLIDO");
+        assertThat(interrumpido.getError()).contains("reinicio");
+        assertThat(directorio.resolve("huerfano.json.tmp")).doesNotExist();
+    }
+
+    @Test
+    void losTrabajosVencidosSeBorranConSusArchivos() {
+        servicio = crearServicio(0);
+        responderEstadisticas(false);
+        String id = servicio.solicitarReporte(estadisticas(INICIO), null).getId();
+        esperar(id);
+
+        assertThat(servicio.limpiarTrabajosVencidos()).isEqualTo(1);
+
+        assertThatThrownBy(() -> servicio.obtenerTrabajo(id)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(directorio.resolve(id + ".json")).doesNotExist();
+        assertThat(directorio.resolve(id + "-resultado.json")).doesNotExist();
+    }
+
+    @Test
+    void seRechazanTipoPrioridadYPeriodoInvalidos() {
+        assertThatThrownBy(() -> servicio.solicitarReporte(new FiltroReporteRequest(), null))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("obligatorio");
+        FiltroReporteRequest desconocido = new FiltroReporteRequest();
+        desconocido.setTipoReporte("KARDEX");
+        assertThatThrownBy(() -> servicio.solicitarReporte(desconocido, null))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("no soportado");
+        assertThatThrownBy(() -> servicio.solicitarReporte(inventario(), "URGENTE"))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("Prioridad");
+        FiltroReporteRequest invertido = estadisticas(INICIO);
+        invertido.setFechaFin(INICIO.minusDays(1));
+        assertThatThrownBy(() -> servicio.solicitarReporte(invertido, null))
+                .isInstanceOf(ValidacionException.class).hasMessageContaining("posterior");
+
+        assertThat(servicio.obtenerTrabajos()).isEmpty();
+    }
+
+    // Métodos privados auxiliares
+    private ReporteTrabajoServiceImpl crearServicio(long ttlHoras) {
+        ReporteTrabajoServiceImpl nuevo = new ReporteTrabajoServiceImpl(reporteService, objectMapper);
+        ReflectionTestUtils.setField(nuevo, "directorio", directorio.toString());
+        ReflectionTestUtils.setField(nuevo, "hilos", 1);
+        ReflectionTestUtils.setField(nuevo, "maxPendientes", 20);
+        ReflectionTestUtils.setField(nuevo, "reintentarEnSegundos", 60L);
+        ReflectionTestUtils.setField(nuevo, "ttlHoras", ttlHoras);
+        nuevo.prepararTrabajos();
+        servicios.add(nuevo);
+        return nuevo;
+    }
+
+    // Anota el periodo generado; con bloquear, cada reporte espera a que la prueba lo libere
+    private void responderEstadisticas(boolean bloquear) {
+        when(reporteService.generarEstadisticasVentas(any(), any())).thenAnswer(invocacion -> {
+            LocalDate desde = invocacion.getArgument(0);
+            generados.add(desde);
+            if (bloquear && !liberar.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("La prueba no liberó el reporte");
+            }
+            return Collections.singletonMap("desde", desde.toString());
+        });
+    }
+
+    private FiltroReporteRequest estadisticas(LocalDate inicio) {
+        FiltroReporteRequest filtro = new FiltroReporteRequest();
+        filtro.setTipoReporte("ESTADISTICAS");
+        filtro.setFechaInicio(inicio);
+        filtro.setFechaFin(inicio.plusDays(30));
+        return filtro;
+    }
+
+    private FiltroReporteRequest inventario() {
+        FiltroReporteRequest filtro = new FiltroReporteRequest();
+        filtro.setTipoReporte("INVENTARIO");
+        return filtro;
+    }
+
+    private TrabajoReporteResponse esperar(String id) {
+        return esperarHasta(id, t -> "COMPLETADO".equals(t.getEstado()) || "FALLIDO".equals(t.getEstado()));
+    }
+
+    private void esperarEstado(String id, String estado) {
+        esperarHasta(id, t -> estado.equals(t.getEstado()));
+    }
+
+    private TrabajoReporteResponse esperarHasta(String id, Predicate<TrabajoReporteResponse> condicion) {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < limite) {
+            TrabajoReporteResponse trabajo = servicio.obtenerTrabajo(id);
+            if (condicion.test(trabajo)) {
+                return trabajo;
+            }
+            dormir();
+        }
+        throw new AssertionError("El trabajo " + id + " no llegó al estado esperado: " + servicio.obtenerTrabajo(id));
+    }
+
+    // El trabajo se da por terminado un instante antes de salir de los activos
+    private void esperarSinActivos() {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!sinActivos()) {
+            if (System.currentTimeMillis() > limite) {
+                throw new AssertionError("Quedaron trabajos activos");
+            }
+            dormir();
+        }
+    }
+
+    private boolean sinActivos() {
+        synchronized (servicio) {
+            return ((Map<?, ?>) ReflectionTestUtils.getField(servicio, "activos")).isEmpty();
+        }
+    }
+
+    private void dormir() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
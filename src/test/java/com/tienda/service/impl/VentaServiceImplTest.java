@@ -0,0 +1,164 @@
+package com.tienda.service.impl;
+
+import com.tienda.dto.response.VentaResponse;
+import com.tienda.exception.ValidacionException;
+import com.tienda.model.Caja;
+import com.tienda.model.Cliente;
+import com.tienda.model.Producto;
+import com.tienda.model.Sucursal;
+import com.tienda.model.Usuario;
+import com.tienda.model.Venta;
+import com.tienda.repository.CajaMovimientoRepository;
+import com.tienda.service.InventarioService;
+import com.tienda.service.VentaService;
+import com.tienda.soporte.DatosPrueba;
+import com.tienda.soporte.PruebaPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PruebaPostgres
+@Import({VentaServiceImpl.class, CajaMovimientoRepository.class, MaquinaEstadosCaja.class, EjecutorReintentos.class})
+class VentaServiceImplTest {
+
+    @Autowired
+    private VentaServiceImpl ventaService;
+    @Autowired
+    private CajaMovimientoRepository cajaMovimientoRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private InventarioService inventarioService;
+
+    private Caja caja;
+    private Producto producto;
+
+    @BeforeEach
+    void setUp() {
+        Sucursal sucursal = entityManager.persist(Sucursal.builder().codigo("S1").nombre("Centro").build());
+        caja = entityManager.persist(Caja.builder().codigo("C1").nombre("Caja 1").sucursal(sucursal).build());
+        producto = entityManager.persist(DatosPrueba.producto("ARROZ", "8"));
+        entityManager.flush();
+        abrir("50.00");
+    }
+
+    @Test
+    void laAnulacionDevuelveElImporteEnLaSesionEnCursoYRestauraElStock() {
+        Long venta = vender("2");
+
+        ventaService.anularVenta(venta, "Cliente desiste");
+        entityManager.flush();
+
+        List<Map<String, Object>> movimientos = cajaMovimientoRepository.obtenerMovimientosSesion(caja.getId(), 1);
+        assertThat(movimientos).extracting(m -> m.get("tipo")).containsExactly("APERTURA", "VENTA", "ANULACION");
+        assertThat((BigDecimal) movimientos.get(2).get("monto")).isEqualByComparingTo("-30.00");
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerSaldo(caja.getId()).get("saldo"))
+                .isEqualByComparingTo("50.00");
+        assertThat(((Number) cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), 1).get("numero_ventas"))
+                .intValue()).isZero();
+        assertThat(stock()).isEqualByComparingTo("8");
+    }
+
+    @Test
+    void unaVentaDeUnaSesionAnteriorSeDevuelveEnLaSesionActual() {
+        Long venta = vender("1");
+        cerrar();
+        abrir("20.00");
+
+        ventaService.anularVenta(venta, "Devolución");
+        entityManager.flush();
+
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerTotalesSesion(caja.getId(), 1).get("saldo"))
+                .isEqualByComparingTo("65.00");
+        assertThat(cajaMovimientoRepository.obtenerMovimientosSesion(caja.getId(), 2))
+                .extracting(m -> m.get("tipo")).containsExactly("APERTURA", "ANULACION");
+        assertThat((BigDecimal) cajaMovimientoRepository.obtenerSaldo(caja.getId()).get("saldo"))
+                .isEqualByComparingTo("5.00");
+    }
+
+    @Test
+    void conLaCajaCerradaLaAnulacionSeRechazaSinTocarLaSesionCerrada() {
+        Long venta = vender("2");
+        cerrar();
+
+        assertThatThrownBy(() -> ventaService.anularVenta(venta, "Tarde"))
+                .isInstanceOf(ValidacionException.class)
+                .hasMessageContaining("no está abierta");
+
+        assertThat(cajaMovimientoRepository.obtenerMovimientosSesion(caja.getId(), 1))
+                .extracting(m -> m.get("tipo")).containsExactly("APERTURA", "VENTA");
+        assertThat(entityManager.find(Venta.class, venta).getEstado()).isEqualTo(Venta.EstadoVenta.COMPLETADA);
+        assertThat(stock()).isEqualByComparingTo("6");
+    }
+
+    @Test
+    void elListadoPlanoDelClienteSeLimitaALasVentasMasRecientes() {
+        Cliente cliente = entityManager.persist(Cliente.builder().nombre("Ana Ruiz").build());
+        Usuario vendedor = entityManager.persist(DatosPrueba.usuario("vendedor"));
+        List<Long> ventas = new ArrayList<>();
+        for (int i = 1; i <= VentaService.MAX_VENTAS_POR_CLIENTE + 1; i++) {
+            Venta venta = DatosPrueba.venta(i, "10.00");
+            venta.setCliente(cliente);
+            venta.setVendedor(vendedor);
+            venta.setCaja(entityManager.find(Caja.class, caja.getId()));
+            ventas.add(entityManager.persist(venta).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<VentaResponse> respuesta = ventaService.obtenerVentasPorCliente(cliente.getId());
+
+        // La más antigua queda fuera; el historial completo se pide por cursor
+        assertThat(respuesta).hasSize(VentaService.MAX_VENTAS_POR_CLIENTE);
+        assertThat(respuesta).extracting(VentaResponse::getId).doesNotContain(ventas.get(0));
+        assertThat(respuesta.get(0).getId()).isEqualTo(ventas.get(ventas.size() - 1));
+    }
+
+    // Métodos privados auxiliares
+    private void abrir(String saldoInicial) {
+        jdbcTemplate.update("UPDATE cajas SET estado = 'ABIERTA' WHERE id = ?", caja.getId());
+        cajaMovimientoRepository.abrirSesion(caja.getId(), new BigDecimal(saldoInicial), null);
+        entityManager.clear();
+    }
+
+    private void cerrar() {
+        jdbcTemplate.update("UPDATE cajas SET estado = 'CERRADA' WHERE id = ?", caja.getId());
+        entityManager.clear();
+    }
+
+    // Venta ya cobrada: el stock descontado y el importe en el libro, como la deja crearVenta
+    private Long vender(String cantidad) {
+        Venta venta = DatosPrueba.venta(1, "0");
+        venta.setCaja(entityManager.find(Caja.class, caja.getId()));
+        Producto enSesion = entityManager.find(Producto.class, producto.getId());
+        venta.getDetalles().add(DatosPrueba.detalle(venta, enSesion, cantidad));
+        venta.calcularTotales();
+        entityManager.persist(venta);
+        enSesion.setStockActual(enSesion.getStockActual().subtract(new BigDecimal(cantidad)));
+        entityManager.flush();
+        cajaMovimientoRepository.registrar(caja.getId(), "VENTA", venta.getFormaPago(), venta.getTotal(),
+                venta.getId(), null, venta.getNumeroFactura());
+        entityManager.clear();
+        return venta.getId();
+    }
+
+    private BigDecimal stock() {
+        return jdbcTemplate.queryForObject("SELECT stock_actual FROM productos WHERE id = ?",
+                BigDecimal.class, producto.getId());
+    }
+}
@@ -0,0 +1,32 @@
+package com.tienda.soporte;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara en el hilo actual. La prueba lo
+ * registra con {@link #PROPIEDAD}; las consultas hechas con JdbcTemplate no pasan por aquí.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    public static final String PROPIEDAD =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.tienda.soporte.ContadorSentencias";
+
+    private static final ThreadLocal<long[]> CONTADOR = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        CONTADOR.get()[0]++;
+        return sql;
+    }
+
+    // Sentencias ejecutadas por la acción
+    public static long contar(Runnable accion) {
+        CONTADOR.get()[0] = 0;
+        try {
+            accion.run();
+            return CONTADOR.get()[0];
+        } finally {
+            CONTADOR.remove();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.tienda.soporte;
+
+import com.tienda.model.DetalleVenta;
+import com.tienda.model.Producto;
+import com.tienda.model.Usuario;
+import com.tienda.model.Venta;
+
+import java.math.BigDecimal;
+
+/**
+ * Entidades mínimas válidas para las pruebas; cada prueba ajusta solo lo que verifica.
+ */
+public final class DatosPrueba {
+
+    private DatosPrueba() {
+    }
+
+    public static Producto producto(String codigo, String stock) {
+        return Producto.builder()
+                .codigo(codigo)
+                .nombre("Producto " + codigo)
+                .stockActual(new BigDecimal(stock))
+                .stockMinimo(new BigDecimal("5"))
+                .costoPromedio(new BigDecimal("10.00"))
+                .precioVenta(new BigDecimal("15.00"))
+                .build();
+    }
+
+    public static Usuario usuario(String username) {
+        return Usuario.builder()
+                .username(username)
+                .email(username + "@tienda.test")
+                .passwordHash("x")
+                .nombreCompleto("Usuario " + username)
+                .build();
+    }
+
+    // fecha_emision la fija @PrePersist: las pruebas que la necesitan la cambian por SQL
+    public static Venta venta(int consecutivo, String total) {
+        return Venta.builder()
+                .numeroFactura("F-" + consecutivo)
+                .consecutivo(consecutivo)
+                .total(new BigDecimal(total))
+                .subtotal(new BigDecimal(total))
+                .build();
+    }
+
+    public static DetalleVenta detalle(Venta venta, Producto producto, String cantidad) {
+        return DetalleVenta.builder()
+                .venta(venta)
+                .producto(producto)
+                .cantidad(new BigDecimal(cantidad))
+                .precioUnitario(producto.getPrecioVenta())
+                .build();
+    }
+}
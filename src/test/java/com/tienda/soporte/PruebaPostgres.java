@@ -0,0 +1,30 @@
+package com.tienda.soporte;
+
+import com.tienda.config.EsquemaBaseDatos;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.repository.config.BootstrapMode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Prueba de repositorio contra un PostgreSQL embebido: las consultas nativas
+ * (ON CONFLICT, FILTER, particiones, FOR SHARE) no tienen equivalente en H2.
+ * Los repositorios se crean al primer uso, así cada prueba solo levanta los que toca.
+ * El esquema fuera de JPA lo crea EsquemaBaseDatos al levantar el contexto, como en la aplicación.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@DataJpaTest(bootstrapMode = BootstrapMode.LAZY)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@AutoConfigureEmbeddedDatabase(provider = AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY)
+@Import(EsquemaBaseDatos.class)
+public @interface PruebaPostgres {
+}